@@ -18,6 +18,7 @@
  */
 package com.rapid7.client.dcerpc.io;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -48,9 +49,7 @@ public class PacketInput extends PrimitiveInput {
         final int actualCount = readInt();
         final byte[] result = new byte[initialOffset + actualCount];
 
-        for (int index = initialOffset; index < result.length; index++) {
-            result[index] = readByte();
-        }
+        readFully(result, initialOffset, actualCount);
 
         return result;
     }
@@ -68,6 +67,45 @@ public class PacketInput extends PrimitiveInput {
         return result;
     }
 
+    /**
+     * Read the body of an NDR conformant array of fixed size structures whose members are all 32-bit (integers and
+     * embedded pointer referent IDs) into one primitive column per member, so callers can index the members of each
+     * structure without boxing them.
+     *
+     * @param count The number of structures in the array.
+     * @param columnCount The number of 32-bit members in each structure.
+     * @return The columns, indexed by member and then by structure.
+     * @throws IOException If the array could not be read, or is larger than the rest of the stub.
+     */
+    public int[][] readIntColumns(final int count, final int columnCount)
+        throws IOException {
+        if (count < 0) {
+            throw new IllegalArgumentException("Invalid count: " + count);
+        }
+        if (columnCount <= 0) {
+            throw new IllegalArgumentException("Invalid column count: " + columnCount);
+        }
+        // Check the size against the stub before allocating, so a corrupt count cannot exhaust the heap.
+        final long length = 4l * count * columnCount;
+        if (length > available()) {
+            throw new EOFException(
+                String.format("Array of %d bytes exceeds the %d bytes left in the stub.", length, available()));
+        }
+        final int[][] columns = new int[columnCount][count];
+        final int rowsPerChunk = Math.max(1, Math.min(count, 2048 / columnCount));
+        final int[] rows = new int[rowsPerChunk * columnCount];
+        for (int row = 0; row < count;) {
+            final int chunkRows = Math.min(count - row, rowsPerChunk);
+            readInts(rows, 0, chunkRows * columnCount);
+            for (int chunkRow = 0, index = 0; chunkRow < chunkRows; chunkRow++, row++) {
+                for (int column = 0; column < columnCount; column++) {
+                    columns[column][row] = rows[index++];
+                }
+            }
+        }
+        return columns;
+    }
+
     public byte[] readRawBytes(int length)
 	throws IOException {
 	byte[] bytes = new byte[length];
@@ -83,31 +121,34 @@ public class PacketInput extends PrimitiveInput {
 
     public String readString(final boolean nullTerminated)
         throws IOException {
-        final StringBuffer result;
-
         readInt();
         final int initialOffset = readInt();
         final int currentChars = readInt();
+        // Check the counts against the stub before allocating, so a corrupt count cannot exhaust the heap.
+        if (initialOffset < 0 || currentChars < 0) {
+            throw new IOException(
+                String.format("String offset %d or length %d is invalid.", initialOffset, currentChars));
+        }
+        if (initialOffset > available() / 2 || currentChars > available() / 2) {
+            throw new EOFException(
+                String.format("String of %d characters at offset %d exceeds the %d bytes left in the stub.",
+                    currentChars, initialOffset, available()));
+        }
+        final byte[] bytes = readRawBytes(2 * currentChars);
+        final char[] chars = new char[initialOffset + currentChars];
 
-        result = new StringBuffer(currentChars);
-        result.setLength(initialOffset);
-
-        int currentOffset = 0;
-        while (currentOffset++ < currentChars) {
-            final char currentChar = (char) readShort();
+        int length = initialOffset;
+        for (int index = 0; index < bytes.length; index += 2) {
+            final char currentChar = (char) (bytes[index] & 0xFF | bytes[index + 1] << 8);
             if (nullTerminated && currentChar == 0) {
                 break;
             }
-            result.append(currentChar);
-        }
-
-        while (currentOffset++ < currentChars) {
-            readShort();
+            chars[length++] = currentChar;
         }
 
         align();
 
-        return result.toString();
+        return new String(chars, 0, length);
     }
 
     public String readStringRef(final boolean nullTerminated)
@@ -114,8 +114,12 @@ public class PacketOutput extends PrimitiveOutput {
 
     public void writeStringRef(final String string, final boolean nullTerminate)
         throws IOException {
-        writeReferentID();
-        writeString(string, nullTerminate);
+        if (string != null) {
+            writeReferentID();
+            writeString(string, nullTerminate);
+        } else {
+            writeNull();
+        }
     }
 
     public void writeString(final String string, final boolean nullTerminate)
@@ -22,10 +22,16 @@ import java.io.DataInput;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 import com.google.common.io.CountingInputStream;
 import com.google.common.io.LittleEndianDataInputStream;
 
 class PrimitiveInput {
+    /** The number of bytes read from the stream at a time by the bulk read methods. */
+    private final static int BULK_READ_SIZE = 8192;
     private final CountingInputStream dataInStream;
     private final DataInput dataIn;
 
@@ -49,6 +55,16 @@ class PrimitiveInput {
         return dataInStream.getCount();
     }
 
+    /**
+     * @return The number of bytes which can be read without blocking. For a stub read from a byte array, which is how
+     *         every stub is read, this is the number of bytes left in the stub, which bounds the size of any array that
+     *         can still be decoded from it.
+     */
+    public int available()
+        throws IOException {
+        return dataInStream.available();
+    }
+
     public void readFully(final byte[] b)
         throws IOException {
         dataIn.readFully(b);
@@ -105,4 +121,38 @@ class PrimitiveInput {
         throws IOException {
         return dataIn.readLong();
     }
+
+    /**
+     * Read len little endian 32-bit integers into values, a buffer at a time rather than one stream read per value.
+     */
+    public void readInts(final int[] values, final int off, final int len)
+        throws IOException {
+        final byte[] bytes = new byte[(int) Math.min(4L * len, BULK_READ_SIZE)];
+        final IntBuffer intBuffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        final int end = off + len;
+        for (int index = off; index < end;) {
+            final int chunk = Math.min(end - index, bytes.length >> 2);
+            readFully(bytes, 0, chunk << 2);
+            intBuffer.rewind();
+            intBuffer.get(values, index, chunk);
+            index += chunk;
+        }
+    }
+
+    /**
+     * Read len little endian 64-bit integers into values, a buffer at a time rather than one stream read per value.
+     */
+    public void readLongs(final long[] values, final int off, final int len)
+        throws IOException {
+        final byte[] bytes = new byte[(int) Math.min(8L * len, BULK_READ_SIZE)];
+        final LongBuffer longBuffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        final int end = off + len;
+        for (int index = off; index < end;) {
+            final int chunk = Math.min(end - index, bytes.length >> 3);
+            readFully(bytes, 0, chunk << 3);
+            longBuffer.rewind();
+            longBuffer.get(values, index, chunk);
+            index += chunk;
+        }
+    }
 }
@@ -88,6 +88,7 @@ import com.rapid7.client.dcerpc.io.PacketOutput;
 public final class Request extends Header {
     private short opNum;
     private byte[] stub;
+    private int allocHint = -1;
 
     public Request() {
         setPDUType(PDUType.REQUEST);
@@ -103,6 +104,11 @@ public final class Request extends Header {
         return stub;
     }
 
+    /** @return The allocation hint, or -1 if the length of the stub is sent as the hint. */
+    public int getAllocHint() {
+        return allocHint;
+    }
+
     public void setOpNum(final short opNum) {
         this.opNum = opNum;
     }
@@ -111,6 +117,14 @@ public final class Request extends Header {
         this.stub = stub;
     }
 
+    /**
+     * @param allocHint The length of the stub data of this and the remaining fragments of a fragmented request, or -1
+     *        to send the length of the stub of this fragment.
+     */
+    public void setAllocHint(final int allocHint) {
+        this.allocHint = allocHint;
+    }
+
     @Override
     public void marshal(final PacketOutput packetOut)
         throws IOException {
@@ -121,7 +135,7 @@ public final class Request extends Header {
         setFragLength((short) ((pfcFlags.contains(PFCFlag.OBJECT_UUID) ? 40 : 24) + stub.length));
         super.marshal(packetOut);
         final byte[] stub = getStub();
-        packetOut.writeInt(stub.length); // 16:04 Allocation hint
+        packetOut.writeInt(allocHint < 0 ? stub.length : allocHint); // 16:04 Allocation hint
         packetOut.writeShort(0); // 20:02 Presentation context, i.e. data representation
         packetOut.writeShort(getOpNum()); // 22:02 Operation # within the interface
         packetOut.write(stub);
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad;
+
+import com.hierynomus.msdtyp.SID;
+import com.rapid7.client.dcerpc.mslsad.objects.SidNameUse;
+
+/**
+ * The translation of a SID to an account name, or of an account name to a SID. A SID or name which the server could
+ * not translate is reported with the type {@link SidNameUse#SID_TYPE_UNKNOWN}, and without the side which was not
+ * found.
+ */
+public class AccountName {
+    private final SID sid;
+    private final String domainName;
+    private final String name;
+    private final SidNameUse use;
+
+    /**
+     * @param sid The account SID, or null if a name could not be translated.
+     * @param domainName The name of the domain holding the account, or null if there is none.
+     * @param name The account name, or null for a domain or a SID which could not be translated.
+     * @param use The type of account.
+     */
+    public AccountName(final SID sid, final String domainName, final String name, final SidNameUse use) {
+        if (use == null) {
+            throw new IllegalArgumentException("SID name use is invalid: " + use);
+        }
+        this.sid = sid;
+        this.domainName = domainName;
+        this.name = name;
+        this.use = use;
+    }
+
+    /** @return The account SID, or null if a name could not be translated. */
+    public SID getSid() {
+        return sid;
+    }
+
+    /** @return The name of the domain holding the account, or null if there is none. */
+    public String getDomainName() {
+        return domainName;
+    }
+
+    /** @return The account name, or null for a domain or a SID which could not be translated. */
+    public String getName() {
+        return name;
+    }
+
+    /** @return The type of account. */
+    public SidNameUse getUse() {
+        return use;
+    }
+
+    /** @return True if the server translated the SID or name. */
+    public boolean isMapped() {
+        return use != SidNameUse.SID_TYPE_UNKNOWN && use != SidNameUse.SID_TYPE_INVALID;
+    }
+
+    /** @return The name qualified by its domain, e.g. BUILTIN\Administrators, or null if it was not translated. */
+    public String getFullName() {
+        if (domainName == null || domainName.isEmpty()) {
+            return name;
+        }
+        if (name == null || name.isEmpty()) {
+            return domainName;
+        }
+        return domainName + "\\" + name;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AccountName {sid=%s, name=%s, use=%s}", sid, getFullName(), use);
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * The privileges held by one account, or the NTSTATUS the server returned for it. An account which holds no privilege
+ * is reported with STATUS_OBJECT_NAME_NOT_FOUND rather than an empty list. Privilege names are interned: a domain has
+ * only a few dozen of them, so the results for thousands of accounts share one instance of each name.
+ */
+public class AccountPrivileges {
+    /** The NTSTATUS returned for an account which holds no privilege. */
+    public final static int STATUS_OBJECT_NAME_NOT_FOUND = 0xC0000034;
+    private final static Interner<String> INTERNER = Interners.newWeakInterner();
+    private final String sid;
+    private final int returnValue;
+    private final List<String> privilegeNames;
+
+    AccountPrivileges(final String sid, final int returnValue, final String[] privilegeNames) {
+        this.sid = sid;
+        this.returnValue = returnValue;
+        if (returnValue != 0 || privilegeNames == null) {
+            this.privilegeNames = Collections.emptyList();
+        } else {
+            final List<String> internedNames = new ArrayList<>(privilegeNames.length);
+            for (final String privilegeName : privilegeNames) {
+                internedNames.add(INTERNER.intern(privilegeName));
+            }
+            this.privilegeNames = Collections.unmodifiableList(internedNames);
+        }
+    }
+
+    /** @return The string form of the account SID. */
+    public String getSid() {
+        return sid;
+    }
+
+    /** @return The NTSTATUS returned by the server, 0 (STATUS_SUCCESS) if the privileges were read. */
+    public int getReturnValue() {
+        return returnValue;
+    }
+
+    /** @return True if the privileges were read. */
+    public boolean isSuccess() {
+        return returnValue == 0;
+    }
+
+    /** @return True if the server reported that the account holds no privilege. */
+    public boolean isNotFound() {
+        return returnValue == STATUS_OBJECT_NAME_NOT_FOUND;
+    }
+
+    /** @return The privilege names held by the account, which is empty if the lookup did not succeed. */
+    public List<String> getPrivilegeNames() {
+        return privilegeNames;
+    }
+
+    @Override
+    public String toString() {
+        if (isSuccess()) {
+            return String.format("AccountPrivileges {sid=%s, privilegeNames=%s}", sid, privilegeNames);
+        }
+        return String.format("AccountPrivileges {sid=%s, returnValue=%d}", sid, returnValue);
+    }
+}
@@ -19,17 +19,38 @@
 package com.rapid7.client.dcerpc.mslsad;
 
 import static com.rapid7.client.dcerpc.mslsad.objects.PolicyInformationClass.POLICY_AUDIT_EVENTS_INFORMATION;
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import com.google.common.collect.Lists;
+import com.hierynomus.msdtyp.AccessMask;
 import com.hierynomus.msdtyp.SID;
 
+import com.rapid7.client.dcerpc.RPCException;
 import com.rapid7.client.dcerpc.mslsad.messages.LsarClosePolicyRpcRequest;
 import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupAcctPrivsRpcRequest;
 import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupAcctPrivsRpcResponse;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupNames3Request;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupNames3Response;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupResponse;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupSids2Request;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupSids2Response;
 import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupSidsWithAcctPrivRpcRequest;
 import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupSidsWithAcctPrivRpcResponse;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarOpenPolicy2Request;
 import com.rapid7.client.dcerpc.mslsad.messages.LsarQueryInformationPolicyRequest;
 import com.rapid7.client.dcerpc.mslsad.messages.PolicyAuditEventsInformationResponse;
 import com.rapid7.client.dcerpc.mslsad.objects.PolicyAuditEventsInfo;
+import com.rapid7.client.dcerpc.mslsad.objects.SidNameUse;
+import com.rapid7.client.dcerpc.msrrp.messages.HandleResponse;
 import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
 import com.rapid7.client.dcerpc.transport.RPCTransport;
 
@@ -38,13 +59,44 @@ import com.rapid7.client.dcerpc.transport.RPCTransport;
  *
  * TODO: Add more functionalities.
  *
+ * Methods which do not take a {@link ContextHandle} use a policy handle which is opened on first use, cached per access
+ * mask and reused by later calls. A cached handle which the server no longer recognizes is reopened and the call is
+ * retried once. {@link #close()} closes every cached handle.
+ *
+ * SIDs and names are translated in batches. Well-known SIDs are translated without a call to the server, and a
+ * {@link SidNameCache} shared by the services of many hosts answers SIDs which were translated before.
+ *
  * @see <a href= "https://msdn.microsoft.com/en-us/library/cc234225.aspx">[MS-LSAD]</a>
  * @see <a href= "https://msdn.microsoft.com/en-us/library/cc234420.aspx">[MS-LSAT]</a>
  */
-public class LocalSecurityAuthorityService {
+public class LocalSecurityAuthorityService implements Closeable {
+    private final static int STATUS_INVALID_HANDLE = 0xC0000008;
+    private final static int NCA_S_FAULT_CONTEXT_MISMATCH = 0x1C00001A;
+    private final static int STATUS_NO_MORE_ENTRIES = 0x8000001A;
+    private final static int STATUS_NO_SUCH_PRIVILEGE = 0xC0000060;
+    private final static int STATUS_SOME_NOT_MAPPED = 0x00000107;
+    private final static int STATUS_NONE_MAPPED = 0xC0000073;
+    private final static EnumSet<AccessMask> DEFAULT_ACCESS_MASK = EnumSet.of(AccessMask.MAXIMUM_ALLOWED);
+    private final Map<EnumSet<AccessMask>, ContextHandle> policyHandleCache = new HashMap<>();
+    private final SidNameCache sidNameCache;
 
     public LocalSecurityAuthorityService(final RPCTransport transport) {
 	this.transport = transport;
+	this.sidNameCache = null;
+    }
+
+    /**
+     * Create a service which answers SID translations from the given cache, and caches the translations it receives.
+     *
+     * @param transport The transport bound to the lsarpc interface.
+     * @param sidNameCache The cache of SID translations, which may be shared between services connected to any host.
+     */
+    public LocalSecurityAuthorityService(final RPCTransport transport, final SidNameCache sidNameCache) {
+        if (sidNameCache == null) {
+            throw new IllegalArgumentException("Invalid SID name cache: " + sidNameCache);
+        }
+        this.transport = transport;
+        this.sidNameCache = sidNameCache;
     }
 
     public void checkHandle(ContextHandle handle) throws IOException {
@@ -62,6 +114,31 @@ public class LocalSecurityAuthorityService {
 	return queryResponse.getPolicyAuditInformation();
     }
 
+    /**
+     * Query the audit policy using the cached policy handle.
+     *
+     * @return The audit events information.
+     * @throws IOException On a transport failure, if the server rejects the policy handle twice, or if the server
+     *         returns any other error status, e.g. STATUS_ACCESS_DENIED.
+     */
+    public PolicyAuditEventsInfo getAuditPolicy()
+        throws IOException {
+        return callWithPolicyHandle(DEFAULT_ACCESS_MASK, new PolicyCall<PolicyAuditEventsInfo>() {
+            @Override
+            public PolicyAuditEventsInfo call(final ContextHandle handle)
+                throws IOException {
+                final LsarQueryInformationPolicyRequest request =
+                    new LsarQueryInformationPolicyRequest(handle, POLICY_AUDIT_EVENTS_INFORMATION);
+                final PolicyAuditEventsInformationResponse response = transport.call(request);
+                final int returnCode = response.getReturnValue();
+                if (returnCode != 0) {
+                    throw new RPCException("LsarQueryInformationPolicy", returnCode);
+                }
+                return response.getPolicyAuditInformation();
+            }
+        });
+    }
+
     public String[] getLookupAcctPrivs(ContextHandle handle, String sid) throws IOException {
 	checkHandle(handle);
 
@@ -70,6 +147,72 @@ public class LocalSecurityAuthorityService {
 	return queryResponse.getPrivNames();
     }
 
+    /**
+     * Look up the privileges of an account using the cached policy handle.
+     *
+     * @param sid The string form of the account SID.
+     * @return The privilege names, or null if the account has none, which the server reports with
+     *         STATUS_OBJECT_NAME_NOT_FOUND.
+     * @throws IOException On a transport failure, if the server rejects the policy handle twice, or if the server
+     *         returns any other error status, e.g. STATUS_ACCESS_DENIED.
+     */
+    public String[] getLookupAcctPrivs(final String sid)
+        throws IOException {
+        return callWithPolicyHandle(DEFAULT_ACCESS_MASK, new PolicyCall<String[]>() {
+            @Override
+            public String[] call(final ContextHandle handle)
+                throws IOException {
+                final LsarLookupAcctPrivsRpcRequest request = new LsarLookupAcctPrivsRpcRequest(handle, sid);
+                final LsarLookupAcctPrivsRpcResponse response = transport.call(request);
+                final int returnCode = response.getReturnValue();
+                if (returnCode == AccountPrivileges.STATUS_OBJECT_NAME_NOT_FOUND) {
+                    return null;
+                }
+                if (returnCode != 0) {
+                    throw new RPCException("LsarEnumerateAccountRights", returnCode);
+                }
+                return response.getPrivNames();
+            }
+        });
+    }
+
+    /**
+     * Look up the privileges of many accounts over this pipe using the cached policy handle. Use a
+     * {@link PrivilegeLookupExecutor} to spread the lookups over several pipes.
+     *
+     * @param sids The string forms of the account SIDs. Duplicates are looked up once.
+     * @return The privileges of each distinct account, in the order in which the accounts were first given. An account
+     *         which holds no privilege is reported by its {@link AccountPrivileges} rather than by throwing.
+     * @throws IOException On a transport failure, or if the server rejects the policy handle twice.
+     */
+    public Map<String, AccountPrivileges> getAccountPrivileges(final Collection<String> sids)
+        throws IOException {
+        if (sids == null || sids.contains(null)) {
+            throw new IllegalArgumentException("SIDs are invalid: " + sids);
+        }
+        final Map<String, AccountPrivileges> results = new LinkedHashMap<>();
+        for (final String sid : sids) {
+            if (!results.containsKey(sid)) {
+                results.put(sid, getAccountPrivileges(sid));
+            }
+        }
+        return results;
+    }
+
+    AccountPrivileges getAccountPrivileges(final String sid)
+        throws IOException {
+        return callWithPolicyHandle(DEFAULT_ACCESS_MASK, new PolicyCall<AccountPrivileges>() {
+            @Override
+            public AccountPrivileges call(final ContextHandle handle)
+                throws IOException {
+                final LsarLookupAcctPrivsRpcRequest request = new LsarLookupAcctPrivsRpcRequest(handle, sid);
+                final LsarLookupAcctPrivsRpcResponse response = transport.call(request);
+                checkPolicyHandle("LsarEnumerateAccountRights", response.getReturnValue());
+                return new AccountPrivileges(sid, response.getReturnValue(), response.getPrivNames());
+            }
+        });
+    }
+
     public SID[] enumerateAccountsWithPrivilege(ContextHandle handle, String privilege) throws IOException {
 	checkHandle(handle);
 
@@ -79,13 +222,321 @@ public class LocalSecurityAuthorityService {
 	return queryResponse.getSids();
     }
 
+    /**
+     * Enumerate the accounts which hold a privilege using the cached policy handle.
+     *
+     * @param privilege The privilege name, e.g. SeBackupPrivilege.
+     * @return The account SIDs, or null if no account holds the privilege or the server does not know it, which the
+     *         server reports with STATUS_NO_MORE_ENTRIES or STATUS_NO_SUCH_PRIVILEGE.
+     * @throws IOException On a transport failure, if the server rejects the policy handle twice, or if the server
+     *         returns any other error status, e.g. STATUS_ACCESS_DENIED.
+     */
+    public SID[] enumerateAccountsWithPrivilege(final String privilege)
+        throws IOException {
+        return callWithPolicyHandle(DEFAULT_ACCESS_MASK, new PolicyCall<SID[]>() {
+            @Override
+            public SID[] call(final ContextHandle handle)
+                throws IOException {
+                final LsarLookupSidsWithAcctPrivRpcRequest request =
+                    new LsarLookupSidsWithAcctPrivRpcRequest(handle, privilege);
+                final LsarLookupSidsWithAcctPrivRpcResponse response = transport.call(request);
+                final int returnCode = response.getReturnValue();
+                if (returnCode == STATUS_NO_MORE_ENTRIES || returnCode == STATUS_NO_SUCH_PRIVILEGE) {
+                    return null;
+                }
+                if (returnCode != 0) {
+                    throw new RPCException("LsarEnumerateAccountsWithUserRight", returnCode);
+                }
+                return response.getSids();
+            }
+        });
+    }
+
+    /**
+     * Enumerate the accounts holding each of the {@link PrivilegeMatrix#USER_RIGHTS} over this pipe. Use a
+     * {@link PrivilegeLookupExecutor} to spread the enumerations over several pipes.
+     *
+     * @return The privilege matrix.
+     * @throws IOException On a transport failure, or if the server refuses an enumeration.
+     */
+    public PrivilegeMatrix getPrivilegeMatrix()
+        throws IOException {
+        return new PrivilegeLookupExecutor(Collections.singletonList(this)).getPrivilegeMatrix();
+    }
+
+    /**
+     * Enumerate the accounts holding a user right, which is empty if no account holds it or the server does not know
+     * it.
+     */
+    SID[] getAccountsWithUserRight(final String userRight)
+        throws IOException {
+        return callWithPolicyHandle(DEFAULT_ACCESS_MASK, new PolicyCall<SID[]>() {
+            @Override
+            public SID[] call(final ContextHandle handle)
+                throws IOException {
+                final LsarLookupSidsWithAcctPrivRpcRequest request =
+                    new LsarLookupSidsWithAcctPrivRpcRequest(handle, userRight);
+                final LsarLookupSidsWithAcctPrivRpcResponse response = transport.call(request);
+                final int returnCode = response.getReturnValue();
+                checkPolicyHandle("LsarEnumerateAccountsWithUserRight", returnCode);
+                if (returnCode == STATUS_NO_MORE_ENTRIES || returnCode == STATUS_NO_SUCH_PRIVILEGE) {
+                    return new SID[0];
+                }
+                if (returnCode != 0) {
+                    throw new RPCException("LsarEnumerateAccountsWithUserRight", returnCode);
+                }
+                return response.getSids() == null ? new SID[0] : response.getSids();
+            }
+        });
+    }
+
+    /**
+     * Translate SIDs to account names. Well-known and cached SIDs are translated locally, and the others with as few
+     * LsarLookupSids2 calls as the server limit of {@link LsarLookupSids2Request#MAX_SIDS} SIDs per call allows.
+     *
+     * @param sids The SIDs to translate. Duplicates are translated once.
+     * @return The translation of each distinct SID, in the order in which the SIDs were first given. A SID which the
+     *         server could not translate is reported with the type {@link SidNameUse#SID_TYPE_UNKNOWN}.
+     * @throws IOException On a transport failure, or if the server refuses the translation.
+     */
+    public Map<SID, AccountName> lookupSids(final Collection<SID> sids)
+        throws IOException {
+        if (sids == null || sids.contains(null)) {
+            throw new IllegalArgumentException("SIDs are invalid: " + sids);
+        }
+        final Map<SID, AccountName> results = new LinkedHashMap<>();
+        final List<SID> unresolvedSids = new ArrayList<>();
+        for (final SID sid : sids) {
+            if (!results.containsKey(sid)) {
+                AccountName accountName = WellKnownSids.getAccountName(sid);
+                if (accountName == null && sidNameCache != null) {
+                    accountName = sidNameCache.get(sid);
+                }
+                results.put(sid, accountName);
+                if (accountName == null) {
+                    unresolvedSids.add(sid);
+                }
+            }
+        }
+        for (final List<SID> chunk : Lists.partition(unresolvedSids, LsarLookupSids2Request.MAX_SIDS)) {
+            final SID[] chunkSids = chunk.toArray(new SID[chunk.size()]);
+            final LsarLookupSids2Response response =
+                callWithPolicyHandle(DEFAULT_ACCESS_MASK, new PolicyCall<LsarLookupSids2Response>() {
+                    @Override
+                    public LsarLookupSids2Response call(final ContextHandle handle)
+                        throws IOException {
+                        final LsarLookupSids2Request request = new LsarLookupSids2Request(handle, chunkSids);
+                        final LsarLookupSids2Response lookupResponse = transport.call(request);
+                        checkLookupStatus("LsarLookupSids2", lookupResponse.getReturnValue());
+                        return lookupResponse;
+                    }
+                });
+            final String[] domainNames = getDomainNames(response);
+            final int[] uses = response.getUses();
+            final String[] names = response.getNames();
+            final int[] domainIndexes = response.getDomainIndexes();
+            for (int index = 0; index < chunkSids.length; index++) {
+                final AccountName accountName;
+                if (index < uses.length) {
+                    accountName = new AccountName(chunkSids[index], getDomainName(domainNames, domainIndexes[index]),
+                        names[index], SidNameUse.fromValue(uses[index]));
+                    if (sidNameCache != null) {
+                        sidNameCache.put(accountName);
+                    }
+                } else {
+                    accountName = new AccountName(chunkSids[index], null, null, SidNameUse.SID_TYPE_UNKNOWN);
+                }
+                results.put(chunkSids[index], accountName);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Translate account names to SIDs. Names of well-known SIDs are translated locally, and the others with as few
+     * LsarLookupNames3 calls as the server limit of {@link LsarLookupNames3Request#MAX_NAMES} names per call allows.
+     *
+     * @param names The names to translate, either isolated (e.g. Administrator) or qualified by their domain (e.g.
+     *        CORP\Administrator). Duplicates are translated once.
+     * @return The translation of each distinct name, in the order in which the names were first given. A name which
+     *         the server could not translate is reported with the type {@link SidNameUse#SID_TYPE_UNKNOWN}.
+     * @throws IOException On a transport failure, or if the server refuses the translation.
+     */
+    public Map<String, AccountName> lookupNames(final Collection<String> names)
+        throws IOException {
+        if (names == null || names.contains(null)) {
+            throw new IllegalArgumentException("Names are invalid: " + names);
+        }
+        final Map<String, AccountName> results = new LinkedHashMap<>();
+        final List<String> unresolvedNames = new ArrayList<>();
+        for (final String name : names) {
+            if (!results.containsKey(name)) {
+                final AccountName accountName = WellKnownSids.getAccountName(name);
+                results.put(name, accountName);
+                if (accountName == null) {
+                    unresolvedNames.add(name);
+                }
+            }
+        }
+        for (final List<String> chunk : Lists.partition(unresolvedNames, LsarLookupNames3Request.MAX_NAMES)) {
+            final String[] chunkNames = chunk.toArray(new String[chunk.size()]);
+            final LsarLookupNames3Response response =
+                callWithPolicyHandle(DEFAULT_ACCESS_MASK, new PolicyCall<LsarLookupNames3Response>() {
+                    @Override
+                    public LsarLookupNames3Response call(final ContextHandle handle)
+                        throws IOException {
+                        final LsarLookupNames3Request request = new LsarLookupNames3Request(handle, chunkNames);
+                        final LsarLookupNames3Response lookupResponse = transport.call(request);
+                        checkLookupStatus("LsarLookupNames3", lookupResponse.getReturnValue());
+                        return lookupResponse;
+                    }
+                });
+            final String[] domainNames = getDomainNames(response);
+            final int[] uses = response.getUses();
+            final SID[] sids = response.getSids();
+            final int[] domainIndexes = response.getDomainIndexes();
+            for (int index = 0; index < chunkNames.length; index++) {
+                final String name = chunkNames[index].substring(chunkNames[index].lastIndexOf('\\') + 1);
+                final AccountName accountName;
+                if (index < uses.length) {
+                    final SidNameUse use = SidNameUse.fromValue(uses[index]);
+                    accountName = new AccountName(sids[index], getDomainName(domainNames, domainIndexes[index]),
+                        use == SidNameUse.SID_TYPE_DOMAIN ? null : name, use);
+                } else {
+                    accountName = new AccountName(null, null, name, SidNameUse.SID_TYPE_UNKNOWN);
+                }
+                results.put(chunkNames[index], accountName);
+            }
+        }
+        return results;
+    }
+
     public void closePolicyHandle(ContextHandle handle) throws IOException {
 	checkHandle(handle);
 
+	synchronized (policyHandleCache) {
+	    policyHandleCache.values().remove(handle);
+	}
 	LsarClosePolicyRpcRequest closeRequest = new LsarClosePolicyRpcRequest(handle);
 	transport.call(closeRequest);
     }
 
+    /**
+     * Get the cached policy handle for an access mask, opening it with LsarOpenPolicy2 on first use. The handle is
+     * owned by this service and is closed by {@link #close()}.
+     *
+     * @param desiredAccess The access mask to open the policy with.
+     * @return The policy handle.
+     * @throws IOException On a transport failure, or if the server refuses to open the policy.
+     */
+    public ContextHandle getPolicyHandle(final EnumSet<AccessMask> desiredAccess)
+        throws IOException {
+        if (desiredAccess == null || desiredAccess.isEmpty()) {
+            throw new IllegalArgumentException("Desired access is invalid: " + desiredAccess);
+        }
+        synchronized (policyHandleCache) {
+            final ContextHandle cachedHandle = policyHandleCache.get(desiredAccess);
+            if (cachedHandle != null) {
+                return cachedHandle;
+            }
+            final LsarOpenPolicy2Request request = new LsarOpenPolicy2Request(null, desiredAccess);
+            final HandleResponse response = transport.call(request);
+            final int returnCode = response.getReturnValue();
+            if (returnCode != 0) {
+                throw new RPCException("LsarOpenPolicy2", returnCode);
+            }
+            final ContextHandle handle = response.getHandle();
+            policyHandleCache.put(EnumSet.copyOf(desiredAccess), handle);
+            return handle;
+        }
+    }
+
+    /**
+     * Close every cached policy handle. Each handle is closed even if closing an earlier one fails; the first failure
+     * is rethrown.
+     */
+    @Override
+    public void close()
+        throws IOException {
+        IOException failure = null;
+        synchronized (policyHandleCache) {
+            final Iterator<ContextHandle> handles = policyHandleCache.values().iterator();
+            while (handles.hasNext()) {
+                final ContextHandle handle = handles.next();
+                handles.remove();
+                try {
+                    transport.call(new LsarClosePolicyRpcRequest(handle));
+                } catch (final IOException exception) {
+                    if (failure == null) {
+                        failure = exception;
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private <T> T callWithPolicyHandle(final EnumSet<AccessMask> desiredAccess, final PolicyCall<T> call)
+        throws IOException {
+        final ContextHandle handle = getPolicyHandle(desiredAccess);
+        try {
+            return call.call(handle);
+        } catch (final RPCException exception) {
+            if (!isInvalidHandle(exception.getReturnValue())) {
+                throw exception;
+            }
+        }
+        // The server dropped the handle, e.g. after the pipe was rebound. Forget it and retry once with a new one.
+        synchronized (policyHandleCache) {
+            if (policyHandleCache.get(desiredAccess) == handle) {
+                policyHandleCache.remove(desiredAccess);
+            }
+        }
+        return call.call(getPolicyHandle(desiredAccess));
+    }
+
+    private static void checkLookupStatus(final String opName, final int returnCode)
+        throws RPCException {
+        checkPolicyHandle(opName, returnCode);
+        if (returnCode != 0 && returnCode != STATUS_SOME_NOT_MAPPED && returnCode != STATUS_NONE_MAPPED) {
+            throw new RPCException(opName, returnCode);
+        }
+    }
+
+    /** @return The referenced domain names, shared with the SID name cache if there is one. */
+    private String[] getDomainNames(final LsarLookupResponse response) {
+        final String[] domainNames = response.getDomainNames().clone();
+        if (sidNameCache != null) {
+            final SID[] domainSids = response.getDomainSids();
+            for (int index = 0; index < domainNames.length; index++) {
+                domainNames[index] = sidNameCache.putDomain(domainSids[index], domainNames[index]);
+            }
+        }
+        return domainNames;
+    }
+
+    private static String getDomainName(final String[] domainNames, final int domainIndex) {
+        return domainIndex >= 0 && domainIndex < domainNames.length ? domainNames[domainIndex] : null;
+    }
+
+    private static void checkPolicyHandle(final String opName, final int returnCode)
+        throws RPCException {
+        if (returnCode == STATUS_INVALID_HANDLE) {
+            throw new RPCException(opName, returnCode);
+        }
+    }
+
+    private static boolean isInvalidHandle(final int returnCode) {
+        return returnCode == STATUS_INVALID_HANDLE || returnCode == NCA_S_FAULT_CONTEXT_MISMATCH;
+    }
+
+    private interface PolicyCall<T> {
+        T call(ContextHandle handle)
+            throws IOException;
+    }
+
     private final RPCTransport transport;
 }
 
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import com.hierynomus.msdtyp.SID;
+import com.rapid7.client.dcerpc.transport.PipeFanOut;
+
+/**
+ * Looks up the privileges of many accounts over a bounded set of lsarpc pipes. Each pipe is served by its own
+ * {@link LocalSecurityAuthorityService}, which reuses one cached policy handle for all of its lookups, and the
+ * accounts are handed out to the pipes in order, so each pipe always has a lookup in flight. The same pipes build the
+ * {@link PrivilegeMatrix}, one LsarEnumerateAccountsWithUserRight call per user right.
+ */
+public class PrivilegeLookupExecutor {
+    private final PipeFanOut<LocalSecurityAuthorityService> pipes;
+
+    /**
+     * @param services One local security authority service per lsarpc pipe to the host.
+     */
+    public PrivilegeLookupExecutor(final List<LocalSecurityAuthorityService> services) {
+        if (services == null || services.isEmpty() || services.contains(null)) {
+            throw new IllegalArgumentException("Local security authority services are invalid: " + services);
+        }
+        this.pipes = new PipeFanOut<>(services);
+    }
+
+    /**
+     * @param sids The string forms of the account SIDs. Duplicates are looked up once.
+     * @return The privileges of each distinct account, in the order in which the accounts were first given.
+     * @throws IOException On a transport failure.
+     */
+    public Map<String, AccountPrivileges> getAccountPrivileges(final Collection<String> sids)
+        throws IOException {
+        if (sids == null || sids.contains(null)) {
+            throw new IllegalArgumentException("SIDs are invalid: " + sids);
+        }
+        final Set<String> distinctSids = new LinkedHashSet<>(sids);
+        final Queue<String> queue = new ConcurrentLinkedQueue<>(distinctSids);
+        final Map<String, AccountPrivileges> results = new ConcurrentHashMap<>();
+        pipes.run(distinctSids.size(), queue, "privilege-lookup-%d",
+            new PipeFanOut.Task<LocalSecurityAuthorityService>() {
+                @Override
+                public void run(final LocalSecurityAuthorityService service)
+                    throws IOException {
+                    String sid;
+                    while ((sid = queue.poll()) != null) {
+                        results.put(sid, service.getAccountPrivileges(sid));
+                    }
+                }
+            });
+        final Map<String, AccountPrivileges> orderedResults = new LinkedHashMap<>();
+        for (final String sid : distinctSids) {
+            orderedResults.put(sid, results.get(sid));
+        }
+        return Collections.unmodifiableMap(orderedResults);
+    }
+
+    /**
+     * @return The accounts holding each of the {@link PrivilegeMatrix#USER_RIGHTS}.
+     * @throws IOException On a transport failure, or if the server refuses an enumeration.
+     */
+    public PrivilegeMatrix getPrivilegeMatrix()
+        throws IOException {
+        return getPrivilegeMatrix(PrivilegeMatrix.USER_RIGHTS);
+    }
+
+    /**
+     * @param userRights The privilege and logon right names to enumerate. Duplicates are enumerated once, and a name
+     *        the server does not know yields an empty column.
+     * @return The accounts holding each distinct user right.
+     * @throws IOException On a transport failure, or if the server refuses an enumeration.
+     */
+    public PrivilegeMatrix getPrivilegeMatrix(final Collection<String> userRights)
+        throws IOException {
+        if (userRights == null || userRights.contains(null)) {
+            throw new IllegalArgumentException("User rights are invalid: " + userRights);
+        }
+        final List<String> distinctUserRights = new ArrayList<>(new LinkedHashSet<>(userRights));
+        final Queue<String> queue = new ConcurrentLinkedQueue<>(distinctUserRights);
+        final Map<String, SID[]> results = new ConcurrentHashMap<>();
+        pipes.run(distinctUserRights.size(), queue, "privilege-matrix-%d",
+            new PipeFanOut.Task<LocalSecurityAuthorityService>() {
+                @Override
+                public void run(final LocalSecurityAuthorityService service)
+                    throws IOException {
+                    String userRight;
+                    while ((userRight = queue.poll()) != null) {
+                        results.put(userRight, service.getAccountsWithUserRight(userRight));
+                    }
+                }
+            });
+        final List<SID[]> accounts = new ArrayList<>(distinctUserRights.size());
+        for (final String userRight : distinctUserRights) {
+            accounts.add(results.get(userRight));
+        }
+        return new PrivilegeMatrix(distinctUserRights, accounts);
+    }
+}
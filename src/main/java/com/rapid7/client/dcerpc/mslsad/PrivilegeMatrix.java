@@ -0,0 +1,150 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.hierynomus.msdtyp.SID;
+
+/**
+ * The user rights held by every account which holds at least one of them. Columns are user rights and rows are
+ * accounts; each account is stored once in a shared SID table with a bit set of the user rights it holds, so a matrix
+ * of thousands of accounts costs one SID and a few words per account.
+ */
+public class PrivilegeMatrix {
+    /** The privileges and logon rights defined by Windows, as accepted by LsarEnumerateAccountsWithUserRight. */
+    public final static List<String> USER_RIGHTS = Collections.unmodifiableList(Arrays.asList(
+        "SeAssignPrimaryTokenPrivilege", "SeAuditPrivilege", "SeBackupPrivilege", "SeChangeNotifyPrivilege",
+        "SeCreateGlobalPrivilege", "SeCreatePagefilePrivilege", "SeCreatePermanentPrivilege",
+        "SeCreateSymbolicLinkPrivilege", "SeCreateTokenPrivilege", "SeDebugPrivilege",
+        "SeDelegateSessionUserImpersonatePrivilege", "SeEnableDelegationPrivilege", "SeImpersonatePrivilege",
+        "SeIncreaseBasePriorityPrivilege", "SeIncreaseQuotaPrivilege", "SeIncreaseWorkingSetPrivilege",
+        "SeLoadDriverPrivilege", "SeLockMemoryPrivilege", "SeMachineAccountPrivilege", "SeManageVolumePrivilege",
+        "SeProfileSingleProcessPrivilege", "SeRelabelPrivilege", "SeRemoteShutdownPrivilege", "SeRestorePrivilege",
+        "SeSecurityPrivilege", "SeShutdownPrivilege", "SeSyncAgentPrivilege", "SeSystemEnvironmentPrivilege",
+        "SeSystemProfilePrivilege", "SeSystemtimePrivilege", "SeTakeOwnershipPrivilege", "SeTcbPrivilege",
+        "SeTimeZonePrivilege", "SeTrustedCredManAccessPrivilege", "SeUndockPrivilege",
+        "SeUnsolicitedInputPrivilege", "SeBatchLogonRight", "SeDenyBatchLogonRight", "SeDenyInteractiveLogonRight",
+        "SeDenyNetworkLogonRight", "SeDenyRemoteInteractiveLogonRight", "SeDenyServiceLogonRight",
+        "SeInteractiveLogonRight", "SeNetworkLogonRight", "SeRemoteInteractiveLogonRight", "SeServiceLogonRight"));
+    private final List<String> userRights;
+    private final Map<String, Integer> userRightIndexes;
+    private final List<SID> sids;
+    private final Map<SID, Integer> sidIndexes;
+    private final List<BitSet> rows;
+
+    /**
+     * @param userRights The user rights, in column order.
+     * @param accounts The accounts holding each user right, indexed like the user rights.
+     */
+    PrivilegeMatrix(final List<String> userRights, final List<SID[]> accounts) {
+        this.userRights = Collections.unmodifiableList(new ArrayList<>(userRights));
+        this.userRightIndexes = new HashMap<>();
+        for (int column = 0; column < userRights.size(); column++) {
+            userRightIndexes.put(userRights.get(column), column);
+        }
+        final List<SID> sids = new ArrayList<>();
+        this.sidIndexes = new HashMap<>();
+        this.rows = new ArrayList<>();
+        for (int column = 0; column < accounts.size(); column++) {
+            for (final SID sid : accounts.get(column)) {
+                Integer row = sidIndexes.get(sid);
+                if (row == null) {
+                    row = sids.size();
+                    sids.add(sid);
+                    sidIndexes.put(sid, row);
+                    rows.add(new BitSet(userRights.size()));
+                }
+                rows.get(row).set(column);
+            }
+        }
+        this.sids = Collections.unmodifiableList(sids);
+    }
+
+    /** @return The user rights which were enumerated, in column order. */
+    public List<String> getUserRights() {
+        return userRights;
+    }
+
+    /** @return Every account which holds at least one user right, in the order in which they were first seen. */
+    public List<SID> getSids() {
+        return sids;
+    }
+
+    /**
+     * @param sid An account SID.
+     * @return A copy of the account's row, with bit i set if the account holds user right i of
+     *         {@link #getUserRights()}. The row is empty if the account holds none of them.
+     */
+    public BitSet getUserRightBits(final SID sid) {
+        final Integer row = sidIndexes.get(sid);
+        return row == null ? new BitSet() : (BitSet) rows.get(row).clone();
+    }
+
+    /**
+     * @param sid An account SID.
+     * @return The user rights held by the account, in column order.
+     */
+    public List<String> getUserRights(final SID sid) {
+        final Integer row = sidIndexes.get(sid);
+        if (row == null) {
+            return Collections.emptyList();
+        }
+        final BitSet bits = rows.get(row);
+        final List<String> names = new ArrayList<>(bits.cardinality());
+        for (int column = bits.nextSetBit(0); column >= 0; column = bits.nextSetBit(column + 1)) {
+            names.add(userRights.get(column));
+        }
+        return names;
+    }
+
+    /**
+     * @param sid An account SID.
+     * @param userRight A user right name.
+     * @return True if the account holds the user right.
+     */
+    public boolean hasUserRight(final SID sid, final String userRight) {
+        final Integer row = sidIndexes.get(sid);
+        final Integer column = userRightIndexes.get(userRight);
+        return row != null && column != null && rows.get(row).get(column);
+    }
+
+    /**
+     * @param userRight A user right name.
+     * @return The accounts holding the user right, in row order.
+     */
+    public List<SID> getAccounts(final String userRight) {
+        final Integer column = userRightIndexes.get(userRight);
+        if (column == null) {
+            return Collections.emptyList();
+        }
+        final List<SID> accounts = new ArrayList<>();
+        for (int row = 0; row < rows.size(); row++) {
+            if (rows.get(row).get(column)) {
+                accounts.add(sids.get(row));
+            }
+        }
+        return accounts;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad;
+
+import java.util.concurrent.TimeUnit;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.hierynomus.msdtyp.SID;
+import com.rapid7.client.dcerpc.mslsad.objects.SidNameUse;
+
+/**
+ * A cache of SID translations which may be shared by the services of many hosts. SIDs outside the well-known ones are
+ * unique to the domain or machine which issued them, so a domain account translated through one host is served from
+ * the cache for every other host of the domain. The domains referenced by translations are cached separately and
+ * once per domain SID: every account of a domain shares one instance of the domain name, and the domain SID itself
+ * translates without a call to the server.<br>
+ * <br>
+ * Only translated SIDs are cached. Entries expire a fixed time after they were written, and the least recently used
+ * entries are evicted once the number of accounts or domains exceeds the configured maximum.
+ */
+public class SidNameCache {
+    private final Cache<SID, AccountName> accounts;
+    private final Cache<SID, String> domains;
+
+    /**
+     * @param timeToLive The time after which an entry expires.
+     * @param unit The unit of timeToLive.
+     * @param maximumSize The maximum number of accounts, and separately of domains, held by the cache.
+     */
+    public SidNameCache(final long timeToLive, final TimeUnit unit, final long maximumSize) {
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("Time to live is invalid: " + timeToLive);
+        }
+        if (unit == null) {
+            throw new IllegalArgumentException("Unit is invalid: " + unit);
+        }
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Maximum size is invalid: " + maximumSize);
+        }
+        accounts = CacheBuilder.newBuilder().expireAfterWrite(timeToLive, unit).maximumSize(maximumSize).build();
+        domains = CacheBuilder.newBuilder().expireAfterWrite(timeToLive, unit).maximumSize(maximumSize).build();
+    }
+
+    /** @return The approximate number of accounts and domains in the cache. */
+    public long size() {
+        return accounts.size() + domains.size();
+    }
+
+    /** Discard all entries in the cache. */
+    public void invalidateAll() {
+        accounts.invalidateAll();
+        domains.invalidateAll();
+    }
+
+    /**
+     * @return The cached translation of an account or domain SID, or null if it is not cached.
+     */
+    AccountName get(final SID sid) {
+        final AccountName accountName = accounts.getIfPresent(sid);
+        if (accountName != null) {
+            return accountName;
+        }
+        final String domainName = domains.getIfPresent(sid);
+        return domainName == null ? null : new AccountName(sid, domainName, null, SidNameUse.SID_TYPE_DOMAIN);
+    }
+
+    /** Cache a translation, which is ignored unless it has a SID and was mapped by the server. */
+    void put(final AccountName accountName) {
+        if (accountName.getSid() != null && accountName.isMapped()) {
+            accounts.put(accountName.getSid(), accountName);
+        }
+    }
+
+    /**
+     * Cache a referenced domain.
+     *
+     * @return The cached instance of the domain name, which is shared by the translations of all of its accounts.
+     */
+    String putDomain(final SID domainSid, final String domainName) {
+        if (domainSid == null || domainName == null) {
+            return domainName;
+        }
+        final String cachedName = domains.asMap().putIfAbsent(domainSid, domainName);
+        if (cachedName == null) {
+            return domainName;
+        }
+        if (cachedName.equals(domainName)) {
+            return cachedName;
+        }
+        // The domain has been renamed since it was cached.
+        domains.put(domainSid, domainName);
+        return domainName;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad;
+
+import static com.rapid7.client.dcerpc.mslsad.objects.SidNameUse.SID_TYPE_ALIAS;
+import static com.rapid7.client.dcerpc.mslsad.objects.SidNameUse.SID_TYPE_DOMAIN;
+import static com.rapid7.client.dcerpc.mslsad.objects.SidNameUse.SID_TYPE_WELL_KNOWN_GROUP;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import com.hierynomus.msdtyp.SID;
+import com.rapid7.client.dcerpc.mslsad.objects.SidNameUse;
+
+/**
+ * The SIDs which have the same meaning on every Windows host, resolved without a call to the server. Names are those
+ * of an English installation; a localized server may report other names for the same SIDs.
+ *
+ * @see <a href="https://msdn.microsoft.com/en-us/library/cc980032.aspx">[MS-DTYP] 2.4.2.4 Well-Known SID
+ *      Structures</a>
+ */
+public final class WellKnownSids {
+    private final static String NT_AUTHORITY = "NT AUTHORITY";
+    private final static String BUILTIN = "BUILTIN";
+    private final static Map<SID, AccountName> BY_SID = new HashMap<>();
+    private final static Map<String, AccountName> BY_NAME = new HashMap<>();
+
+    static {
+        add("S-1-1-0", "", "Everyone", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-2-0", "", "LOCAL", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-3-0", "", "CREATOR OWNER", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-3-1", "", "CREATOR GROUP", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-5-1", NT_AUTHORITY, "DIALUP", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-5-2", NT_AUTHORITY, "NETWORK", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-5-3", NT_AUTHORITY, "BATCH", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-5-4", NT_AUTHORITY, "INTERACTIVE", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-5-6", NT_AUTHORITY, "SERVICE", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-5-7", NT_AUTHORITY, "ANONYMOUS LOGON", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-5-9", NT_AUTHORITY, "ENTERPRISE DOMAIN CONTROLLERS", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-5-10", NT_AUTHORITY, "SELF", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-5-11", NT_AUTHORITY, "Authenticated Users", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-5-13", NT_AUTHORITY, "TERMINAL SERVER USER", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-5-14", NT_AUTHORITY, "REMOTE INTERACTIVE LOGON", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-5-18", NT_AUTHORITY, "SYSTEM", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-5-19", NT_AUTHORITY, "LOCAL SERVICE", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-5-20", NT_AUTHORITY, "NETWORK SERVICE", SID_TYPE_WELL_KNOWN_GROUP);
+        add("S-1-5-32", BUILTIN, null, SID_TYPE_DOMAIN);
+        add("S-1-5-32-544", BUILTIN, "Administrators", SID_TYPE_ALIAS);
+        add("S-1-5-32-545", BUILTIN, "Users", SID_TYPE_ALIAS);
+        add("S-1-5-32-546", BUILTIN, "Guests", SID_TYPE_ALIAS);
+        add("S-1-5-32-547", BUILTIN, "Power Users", SID_TYPE_ALIAS);
+        add("S-1-5-32-548", BUILTIN, "Account Operators", SID_TYPE_ALIAS);
+        add("S-1-5-32-549", BUILTIN, "Server Operators", SID_TYPE_ALIAS);
+        add("S-1-5-32-550", BUILTIN, "Print Operators", SID_TYPE_ALIAS);
+        add("S-1-5-32-551", BUILTIN, "Backup Operators", SID_TYPE_ALIAS);
+        add("S-1-5-32-552", BUILTIN, "Replicator", SID_TYPE_ALIAS);
+        add("S-1-5-32-555", BUILTIN, "Remote Desktop Users", SID_TYPE_ALIAS);
+        add("S-1-5-32-556", BUILTIN, "Network Configuration Operators", SID_TYPE_ALIAS);
+        add("S-1-5-32-558", BUILTIN, "Performance Monitor Users", SID_TYPE_ALIAS);
+        add("S-1-5-32-559", BUILTIN, "Performance Log Users", SID_TYPE_ALIAS);
+        add("S-1-5-32-562", BUILTIN, "Distributed COM Users", SID_TYPE_ALIAS);
+        add("S-1-5-32-568", BUILTIN, "IIS_IUSRS", SID_TYPE_ALIAS);
+        add("S-1-5-32-573", BUILTIN, "Event Log Readers", SID_TYPE_ALIAS);
+    }
+
+    private WellKnownSids() {
+    }
+
+    /**
+     * @param sid A SID.
+     * @return The translation of the SID, or null if it is not a well-known SID.
+     */
+    public static AccountName getAccountName(final SID sid) {
+        return BY_SID.get(sid);
+    }
+
+    /**
+     * @param name An account name, either alone (e.g. SYSTEM) or qualified by its domain (e.g. NT AUTHORITY\SYSTEM).
+     *        Names are matched regardless of case.
+     * @return The translation of the name, or null if it is not the name of a well-known SID.
+     */
+    public static AccountName getAccountName(final String name) {
+        return name == null ? null : BY_NAME.get(name.toUpperCase(Locale.ROOT));
+    }
+
+    private static void add(final String sid, final String domainName, final String name, final SidNameUse use) {
+        final AccountName accountName = new AccountName(SID.fromString(sid), domainName, name, use);
+        BY_SID.put(accountName.getSid(), accountName);
+        BY_NAME.put(accountName.getFullName().toUpperCase(Locale.ROOT), accountName);
+        if (name != null) {
+            BY_NAME.put(name.toUpperCase(Locale.ROOT), accountName);
+        }
+    }
+}
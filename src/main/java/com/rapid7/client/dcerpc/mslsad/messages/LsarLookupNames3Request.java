@@ -0,0 +1,97 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad.messages;
+
+import java.io.IOException;
+import com.rapid7.client.dcerpc.io.PacketOutput;
+import com.rapid7.client.dcerpc.messages.RequestCall;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+/**
+ * Translates a batch of account names to SIDs.
+ *
+ * <pre>
+ * NTSTATUS LsarLookupNames3(
+ *     [in] LSAPR_HANDLE PolicyHandle,
+ *     [in, range(0,1000)] unsigned long Count,
+ *     [in, size_is(Count)] PRPC_UNICODE_STRING Names,
+ *     [out] PLSAPR_REFERENCED_DOMAIN_LIST* ReferencedDomains,
+ *     [in, out] PLSAPR_TRANSLATED_SIDS_EX2 TranslatedSids,
+ *     [in] LSAP_LOOKUP_LEVEL LookupLevel,
+ *     [in, out] unsigned long* MappedCount,
+ *     [in] unsigned long LookupOptions,
+ *     [in] unsigned long ClientRevision);
+ * </pre>
+ *
+ * Names are either isolated (e.g. Administrator) or qualified by their domain (e.g. CORP\Administrator). The server
+ * rejects a request for more than {@link #MAX_NAMES} names.
+ *
+ * @see <a href="https://msdn.microsoft.com/en-us/library/cc234492.aspx">[MS-LSAT] 3.1.4.6 LsarLookupNames3</a>
+ */
+public class LsarLookupNames3Request extends RequestCall<LsarLookupNames3Response> {
+    /** The largest number of names the server translates in one call. */
+    public final static int MAX_NAMES = 1000;
+    private final static short OP_NUM = 68;
+    private final static short LSAP_LOOKUP_WKSTA = 1;
+    private final static int LSA_CLIENT_REVISION_1 = 1;
+    private final ContextHandle handle;
+    private final String[] names;
+
+    public LsarLookupNames3Request(final ContextHandle handle, final String[] names) {
+        super(OP_NUM);
+        if (names == null || names.length > MAX_NAMES) {
+            throw new IllegalArgumentException("Names are invalid: " + (names == null ? null : names.length));
+        }
+        this.handle = handle;
+        this.names = names;
+    }
+
+    @Override
+    public LsarLookupNames3Response getResponseObject() {
+        return new LsarLookupNames3Response();
+    }
+
+    @Override
+    public void marshal(final PacketOutput packetOut)
+        throws IOException {
+        packetOut.write(handle.getBytes());
+
+        packetOut.writeInt(names.length);
+        // Names: the RPC_UNICODE_STRING headers, followed by their deferred buffers
+        packetOut.writeInt(names.length);
+        for (final String name : names) {
+            packetOut.writeShort((short) (2 * name.length()));
+            packetOut.writeShort((short) (2 * name.length()));
+            packetOut.writeReferentID();
+        }
+        for (final String name : names) {
+            packetOut.writeString(name, false);
+        }
+
+        // LSAPR_TRANSLATED_SIDS_EX2
+        packetOut.writeInt(0);
+        packetOut.writeNull();
+
+        packetOut.writeShort(LSAP_LOOKUP_WKSTA);
+        packetOut.align();
+        packetOut.writeInt(0); // MappedCount
+        packetOut.writeInt(0); // LookupOptions
+        packetOut.writeInt(LSA_CLIENT_REVISION_1);
+    }
+}
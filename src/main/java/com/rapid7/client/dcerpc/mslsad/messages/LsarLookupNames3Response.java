@@ -0,0 +1,77 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad.messages;
+
+import java.io.IOException;
+import com.hierynomus.msdtyp.SID;
+import com.rapid7.client.dcerpc.io.PacketInput;
+
+/**
+ * <pre>
+ * typedef struct _LSAPR_TRANSLATED_SID_EX2 {
+ *     SID_NAME_USE Use;
+ *     PRPC_SID Sid;
+ *     long DomainIndex;
+ *     unsigned long Flags;
+ * } LSAPR_TRANSLATED_SID_EX2;
+ * </pre>
+ *
+ * @see <a href="https://msdn.microsoft.com/en-us/library/cc234492.aspx">[MS-LSAT] 3.1.4.6 LsarLookupNames3</a>
+ */
+public class LsarLookupNames3Response extends LsarLookupResponse {
+    private int[] uses;
+    private SID[] sids;
+    private int[] domainIndexes;
+
+    /** @return The SID_NAME_USE of each name, indexed like the request. */
+    public int[] getUses() {
+        return uses;
+    }
+
+    /** @return The SID of each name, or null where the name was not translated. */
+    public SID[] getSids() {
+        return sids;
+    }
+
+    /** @return The index of each name's domain in the referenced domains, or -1 if it has none. */
+    public int[] getDomainIndexes() {
+        return domainIndexes;
+    }
+
+    @Override
+    protected void readEntries(final PacketInput packetIn, final int count)
+        throws IOException {
+        uses = new int[count];
+        sids = new SID[count];
+        domainIndexes = new int[count];
+        final int[] sidReferentIDs = new int[count];
+        for (int index = 0; index < count; index++) {
+            uses[index] = packetIn.readUnsignedShort();
+            packetIn.align();
+            sidReferentIDs[index] = packetIn.readReferentID();
+            domainIndexes[index] = packetIn.readInt();
+            packetIn.readInt(); // Flags
+        }
+        for (int index = 0; index < count; index++) {
+            if (0 != sidReferentIDs[index]) {
+                sids[index] = readSid(packetIn);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad.messages;
+
+import java.io.IOException;
+import com.hierynomus.msdtyp.SID;
+import com.hierynomus.protocol.transport.TransportException;
+import com.rapid7.client.dcerpc.io.PacketInput;
+import com.rapid7.client.dcerpc.messages.RequestResponse;
+
+/**
+ * Common response layout of the LSA translation methods (LsarLookupSids2 and LsarLookupNames3):
+ *
+ * <pre>
+ * [out] PLSAPR_REFERENCED_DOMAIN_LIST* ReferencedDomains,
+ * [in, out] PLSAPR_TRANSLATED_*  Translated*,
+ * [out] unsigned long* MappedCount
+ * </pre>
+ *
+ * The referenced domain list holds the name and SID of every domain which a translation refers to by its domain
+ * index. The translations are a conformant array of fixed size structures followed by their deferred strings or SIDs,
+ * which subclasses decode into primitive columns indexed like the request.
+ *
+ * @see <a href="https://msdn.microsoft.com/en-us/library/cc234453.aspx">[MS-LSAT] 2.2.12
+ *      LSAPR_REFERENCED_DOMAIN_LIST</a>
+ */
+public abstract class LsarLookupResponse extends RequestResponse {
+    private String[] domainNames;
+    private SID[] domainSids;
+    private int mappedCount;
+    private int returnValue;
+
+    /** @return The names of the referenced domains, indexed by domain index. */
+    public String[] getDomainNames() {
+        return domainNames;
+    }
+
+    /** @return The SIDs of the referenced domains, indexed by domain index. */
+    public SID[] getDomainSids() {
+        return domainSids;
+    }
+
+    /** @return The number of SIDs or names which were translated. */
+    public int getMappedCount() {
+        return mappedCount;
+    }
+
+    /**
+     * @return The NTSTATUS returned by the server: 0 (STATUS_SUCCESS) if everything was translated, 0x00000107
+     *         (STATUS_SOME_NOT_MAPPED) or 0xC0000073 (STATUS_NONE_MAPPED) if some or none of it was.
+     */
+    public int getReturnValue() {
+        return returnValue;
+    }
+
+    @Override
+    public void unmarshal(final PacketInput packetIn)
+        throws IOException {
+        readReferencedDomains(packetIn);
+
+        final int count = packetIn.readInt();
+        if (0 != packetIn.readReferentID()) {
+            packetIn.readInt(); // Maximum count
+            // Each translation holds at least three 32-bit members, which bounds the count by the rest of the stub.
+            if (count < 0 || count > packetIn.available() / 12) {
+                throw new TransportException("Invalid entry count: " + count);
+            }
+            readEntries(packetIn, count);
+        } else {
+            readEntries(packetIn, 0);
+        }
+
+        mappedCount = packetIn.readInt();
+        returnValue = packetIn.readInt();
+    }
+
+    /**
+     * Decode the conformant array of translations, fixed size parts first and deferred data after.
+     *
+     * @param packetIn The stub positioned at the first translation.
+     * @param count The number of translations.
+     * @throws IOException If the stub is malformed.
+     */
+    protected abstract void readEntries(PacketInput packetIn, int count)
+        throws IOException;
+
+    /** Decode an RPC_SID, which is a conformant structure prefixed by its sub-authority count. */
+    protected static SID readSid(final PacketInput packetIn)
+        throws IOException {
+        packetIn.readInt(); // Maximum count
+        final byte revision = packetIn.readByte();
+        final int subAuthorityCount = packetIn.readUnsignedByte();
+        final byte[] identifierAuthority = packetIn.readRawBytes(6);
+        final long[] subAuthorities = new long[subAuthorityCount];
+        for (int index = 0; index < subAuthorityCount; index++) {
+            subAuthorities[index] = packetIn.readInt() & 0xFFFFFFFFL;
+        }
+        return new SID(revision, identifierAuthority, subAuthorities);
+    }
+
+    private void readReferencedDomains(final PacketInput packetIn)
+        throws IOException {
+        domainNames = new String[0];
+        domainSids = new SID[0];
+        if (0 == packetIn.readReferentID()) {
+            return;
+        }
+        final int count = packetIn.readInt();
+        final int domainsReferentID = packetIn.readReferentID();
+        packetIn.readInt(); // MaxEntries
+        if (0 == domainsReferentID) {
+            return;
+        }
+        packetIn.readInt(); // Maximum count
+        // Each domain holds a name header and a SID referent ID, which bound the count by the rest of the stub.
+        if (count < 0 || count > packetIn.available() / 12) {
+            throw new TransportException("Invalid domain count: " + count);
+        }
+        final int[] nameReferentIDs = new int[count];
+        final int[] sidReferentIDs = new int[count];
+        for (int index = 0; index < count; index++) {
+            packetIn.readShort(); // Length
+            packetIn.readShort(); // MaximumLength
+            nameReferentIDs[index] = packetIn.readReferentID();
+            sidReferentIDs[index] = packetIn.readReferentID();
+        }
+        domainNames = new String[count];
+        domainSids = new SID[count];
+        for (int index = 0; index < count; index++) {
+            if (0 != nameReferentIDs[index]) {
+                domainNames[index] = packetIn.readString(false);
+            }
+            if (0 != sidReferentIDs[index]) {
+                domainSids[index] = readSid(packetIn);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad.messages;
+
+import java.io.IOException;
+import com.hierynomus.msdtyp.SID;
+import com.rapid7.client.dcerpc.io.PacketOutput;
+import com.rapid7.client.dcerpc.messages.RequestCall;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+/**
+ * Translates a batch of SIDs to account names.
+ *
+ * <pre>
+ * NTSTATUS LsarLookupSids2(
+ *     [in] LSAPR_HANDLE PolicyHandle,
+ *     [in] PLSAPR_SID_ENUM_BUFFER SidEnumBuffer,
+ *     [out] PLSAPR_REFERENCED_DOMAIN_LIST* ReferencedDomains,
+ *     [in, out] PLSAPR_TRANSLATED_NAMES_EX TranslatedNames,
+ *     [in] LSAP_LOOKUP_LEVEL LookupLevel,
+ *     [in, out] unsigned long* MappedCount,
+ *     [in] unsigned long LookupOptions,
+ *     [in] unsigned long ClientRevision);
+ * </pre>
+ *
+ * The server rejects a request for more than {@link #MAX_SIDS} SIDs.
+ *
+ * @see <a href="https://msdn.microsoft.com/en-us/library/cc234487.aspx">[MS-LSAT] 3.1.4.10 LsarLookupSids2</a>
+ */
+public class LsarLookupSids2Request extends RequestCall<LsarLookupSids2Response> {
+    /** The largest number of SIDs the server translates in one call. */
+    public final static int MAX_SIDS = 20480;
+    private final static short OP_NUM = 57;
+    private final static short LSAP_LOOKUP_WKSTA = 1;
+    private final static int LSA_CLIENT_REVISION_1 = 1;
+    private final ContextHandle handle;
+    private final SID[] sids;
+
+    public LsarLookupSids2Request(final ContextHandle handle, final SID[] sids) {
+        super(OP_NUM);
+        if (sids == null || sids.length > MAX_SIDS) {
+            throw new IllegalArgumentException("SIDs are invalid: " + (sids == null ? null : sids.length));
+        }
+        this.handle = handle;
+        this.sids = sids;
+    }
+
+    @Override
+    public LsarLookupSids2Response getResponseObject() {
+        return new LsarLookupSids2Response();
+    }
+
+    @Override
+    public void marshal(final PacketOutput packetOut)
+        throws IOException {
+        packetOut.write(handle.getBytes());
+
+        // LSAPR_SID_ENUM_BUFFER
+        packetOut.writeInt(sids.length);
+        packetOut.writeReferentID();
+        packetOut.writeInt(sids.length);
+        for (int index = 0; index < sids.length; index++) {
+            packetOut.writeReferentID();
+        }
+        for (final SID sid : sids) {
+            // RPC_SID
+            final long[] subAuthorities = sid.getSubAuthorities();
+            packetOut.writeInt(subAuthorities.length);
+            packetOut.writeByte(sid.getRevision());
+            packetOut.writeByte(subAuthorities.length);
+            packetOut.write(sid.getSidIdentifierAuthority());
+            for (final long subAuthority : subAuthorities) {
+                packetOut.writeInt((int) subAuthority);
+            }
+        }
+
+        // LSAPR_TRANSLATED_NAMES_EX
+        packetOut.writeInt(0);
+        packetOut.writeNull();
+
+        packetOut.writeShort(LSAP_LOOKUP_WKSTA);
+        packetOut.align();
+        packetOut.writeInt(0); // MappedCount
+        packetOut.writeInt(0); // LookupOptions
+        packetOut.writeInt(LSA_CLIENT_REVISION_1);
+    }
+}
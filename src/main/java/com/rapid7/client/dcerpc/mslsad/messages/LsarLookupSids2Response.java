@@ -0,0 +1,78 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad.messages;
+
+import java.io.IOException;
+import com.rapid7.client.dcerpc.io.PacketInput;
+
+/**
+ * <pre>
+ * typedef struct _LSAPR_TRANSLATED_NAME_EX {
+ *     SID_NAME_USE Use;
+ *     RPC_UNICODE_STRING Name;
+ *     long DomainIndex;
+ *     unsigned long Flags;
+ * } LSAPR_TRANSLATED_NAME_EX;
+ * </pre>
+ *
+ * @see <a href="https://msdn.microsoft.com/en-us/library/cc234487.aspx">[MS-LSAT] 3.1.4.10 LsarLookupSids2</a>
+ */
+public class LsarLookupSids2Response extends LsarLookupResponse {
+    private int[] uses;
+    private String[] names;
+    private int[] domainIndexes;
+
+    /** @return The SID_NAME_USE of each SID, indexed like the request. */
+    public int[] getUses() {
+        return uses;
+    }
+
+    /** @return The account name of each SID, or null where the SID was not translated. */
+    public String[] getNames() {
+        return names;
+    }
+
+    /** @return The index of each SID's domain in the referenced domains, or -1 if it has none. */
+    public int[] getDomainIndexes() {
+        return domainIndexes;
+    }
+
+    @Override
+    protected void readEntries(final PacketInput packetIn, final int count)
+        throws IOException {
+        uses = new int[count];
+        names = new String[count];
+        domainIndexes = new int[count];
+        final int[] nameReferentIDs = new int[count];
+        for (int index = 0; index < count; index++) {
+            uses[index] = packetIn.readUnsignedShort();
+            packetIn.align();
+            packetIn.readShort(); // Length
+            packetIn.readShort(); // MaximumLength
+            nameReferentIDs[index] = packetIn.readReferentID();
+            domainIndexes[index] = packetIn.readInt();
+            packetIn.readInt(); // Flags
+        }
+        for (int index = 0; index < count; index++) {
+            if (0 != nameReferentIDs[index]) {
+                names[index] = packetIn.readString(false);
+            }
+        }
+    }
+}
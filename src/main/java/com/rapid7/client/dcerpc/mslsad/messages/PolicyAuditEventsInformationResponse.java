@@ -57,15 +57,26 @@ import com.rapid7.client.dcerpc.mslsad.objects.PolicyInformationClass;
 public class PolicyAuditEventsInformationResponse extends RequestResponse {
     private final static PolicyInformationClass infoLevel = POLICY_AUDIT_EVENTS_INFORMATION;
     private PolicyAuditEventsInfo auditInfo;
+    private int returnValue;
 
+    /** @return The audit events information, or null if the server did not return any. */
     public PolicyAuditEventsInfo getPolicyAuditInformation() {
         return auditInfo;
     }
 
+    /** @return The NTSTATUS returned by the server, 0 (STATUS_SUCCESS) on success. */
+    public int getReturnValue() {
+        return returnValue;
+    }
+
     @Override
     public void unmarshal(final PacketInput packetIn)
         throws IOException {
-        packetIn.readReferentID();
+        if (packetIn.readReferentID() == 0) {
+            // The server returns a null information pointer when the call fails, e.g. STATUS_INVALID_HANDLE.
+            returnValue = packetIn.readInt();
+            return;
+        }
         final int info = packetIn.readInt();
         if (info != infoLevel.getInfoLevel()) {
             throw new IllegalArgumentException("Unexpected information level");
@@ -83,5 +94,6 @@ public class PolicyAuditEventsInformationResponse extends RequestResponse {
             }
         }
         auditInfo = new PolicyAuditEventsInfo(auditMode, auditFlags, count);
+        returnValue = packetIn.readInt();
     }
 }
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad.objects;
+
+/**
+ * The type of account a SID or name was translated to.
+ *
+ * @see <a href="https://msdn.microsoft.com/en-us/library/cc234454.aspx">[MS-LSAT] 2.2.13 SID_NAME_USE</a>
+ */
+public enum SidNameUse {
+    SID_TYPE_USER(1),
+    SID_TYPE_GROUP(2),
+    SID_TYPE_DOMAIN(3),
+    SID_TYPE_ALIAS(4),
+    SID_TYPE_WELL_KNOWN_GROUP(5),
+    SID_TYPE_DELETED_ACCOUNT(6),
+    SID_TYPE_INVALID(7),
+    SID_TYPE_UNKNOWN(8),
+    SID_TYPE_COMPUTER(9),
+    SID_TYPE_LABEL(10);
+
+    private final int value;
+
+    private SidNameUse(final int value) {
+        this.value = value;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * @param value The SID_NAME_USE value returned by the server.
+     * @return The matching type, or {@link #SID_TYPE_UNKNOWN} for a value this client does not know.
+     */
+    public static SidNameUse fromValue(final int value) {
+        for (final SidNameUse use : values()) {
+            if (use.value == value) {
+                return use;
+            }
+        }
+        return SID_TYPE_UNKNOWN;
+    }
+}
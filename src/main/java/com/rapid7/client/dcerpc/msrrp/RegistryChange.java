@@ -0,0 +1,82 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import java.util.Objects;
+
+/**
+ * A change to a registry key or value found by comparing a live registry tree with a {@link RegistrySnapshot}.
+ */
+public class RegistryChange {
+    public enum Type {
+        ADDED,
+        REMOVED,
+        CHANGED
+    }
+
+    private final Type type;
+    private final String keyPath;
+    private final String valueName;
+
+    public RegistryChange(final Type type, final String keyPath, final String valueName) {
+        if (type == null) {
+            throw new IllegalArgumentException("Type is invalid: " + type);
+        }
+        if (keyPath == null) {
+            throw new IllegalArgumentException("Key path is invalid: " + keyPath);
+        }
+        this.type = type;
+        this.keyPath = keyPath;
+        this.valueName = valueName;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /** @return The path of the key relative to the hive. */
+    public String getKeyPath() {
+        return keyPath;
+    }
+
+    /** @return The name of the value, or null if this is a change to the key. */
+    public String getValueName() {
+        return valueName;
+    }
+
+    @Override
+    public String toString() {
+        if (valueName == null) {
+            return String.format("%s %s", type, keyPath);
+        }
+        return String.format("%s %s {value=%s}", type, keyPath, valueName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, keyPath, valueName);
+    }
+
+    @Override
+    public boolean equals(final Object anObject) {
+        return anObject instanceof RegistryChange && type == ((RegistryChange) anObject).type
+            && Objects.equals(keyPath, ((RegistryChange) anObject).keyPath)
+            && Objects.equals(valueName, ((RegistryChange) anObject).valueName);
+    }
+}
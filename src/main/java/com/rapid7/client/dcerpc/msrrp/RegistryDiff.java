@@ -0,0 +1,75 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of {@link RegistryDiffScanner#scan(String, String, RegistrySnapshot)}: the changes to keys and values
+ * since the previous snapshot, and the snapshot of the live tree to compare against on the next scan.
+ */
+public class RegistryDiff {
+    private final List<RegistryChange> keyChanges;
+    private final List<RegistryChange> valueChanges;
+    private final RegistrySnapshot snapshot;
+
+    public RegistryDiff(
+        final List<RegistryChange> keyChanges,
+        final List<RegistryChange> valueChanges,
+        final RegistrySnapshot snapshot) {
+        if (keyChanges == null) {
+            throw new IllegalArgumentException("Key changes are invalid: " + keyChanges);
+        }
+        if (valueChanges == null) {
+            throw new IllegalArgumentException("Value changes are invalid: " + valueChanges);
+        }
+        if (snapshot == null) {
+            throw new IllegalArgumentException("Snapshot is invalid: " + snapshot);
+        }
+        this.keyChanges = Collections.unmodifiableList(new ArrayList<>(keyChanges));
+        this.valueChanges = Collections.unmodifiableList(new ArrayList<>(valueChanges));
+        this.snapshot = snapshot;
+    }
+
+    /** @return The keys which were added, removed, or whose values changed. */
+    public List<RegistryChange> getKeyChanges() {
+        return keyChanges;
+    }
+
+    /** @return The values which were added, removed, or whose type or data changed. */
+    public List<RegistryChange> getValueChanges() {
+        return valueChanges;
+    }
+
+    /** @return The snapshot of the scanned tree. */
+    public RegistrySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public boolean isEmpty() {
+        return keyChanges.isEmpty() && valueChanges.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RegistryDiff {keyChanges=%s, valueChanges=%s}", keyChanges, valueChanges);
+    }
+}
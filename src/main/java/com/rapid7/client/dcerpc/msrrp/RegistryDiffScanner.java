@@ -0,0 +1,207 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import com.google.common.base.Strings;
+import com.rapid7.client.dcerpc.RPCException;
+import com.rapid7.client.dcerpc.msrrp.RegistrySnapshot.KeyEntry;
+import com.rapid7.client.dcerpc.msrrp.RegistrySnapshot.ValueEntry;
+
+/**
+ * Walks a registry tree and compares it with a {@link RegistrySnapshot} of a previous walk. Every key is checked with
+ * one BaseRegQueryInfoKey call; its values and subkeys are only read when its last write time or subkey count differs
+ * from the snapshot. The values of a key whose last write time and subkey count are unchanged are carried over from
+ * the previous snapshot, and its subkeys are taken from the previous snapshot rather than enumerated.<br>
+ * <br>
+ * The registry updates the last write time of a key when its values or its list of subkeys change, but not when a key
+ * further down the tree changes, so the subkeys of an unchanged key are still checked in turn.<br>
+ * <br>
+ * Keys which cannot be read because access is denied are carried over from the previous snapshot and are not reported
+ * as changed.<br>
+ * <br>
+ * The handle of each key is closed once the key is scanned, so a scan holds no more than one open key handle.
+ */
+public class RegistryDiffScanner {
+    private final RegistryService registryService;
+
+    public RegistryDiffScanner(final RegistryService registryService) {
+        if (registryService == null) {
+            throw new IllegalArgumentException("Registry service is invalid: " + registryService);
+        }
+        this.registryService = registryService;
+    }
+
+    /**
+     * @param hiveName The name of the hive, e.g. HKLM.
+     * @param keyPath The path of the key at which to start the walk, relative to the hive.
+     * @param previous The snapshot from the previous scan of the same key, or an empty snapshot for a full scan.
+     * @return The changes since the previous snapshot, and the snapshot of this scan.
+     * @throws IOException On a transport error or an unexpected error code from the server.
+     */
+    public RegistryDiff scan(final String hiveName, final String keyPath, final RegistrySnapshot previous)
+        throws IOException {
+        if (previous == null) {
+            throw new IllegalArgumentException("Previous snapshot is invalid: " + previous);
+        }
+        final RegistrySnapshot snapshot = new RegistrySnapshot();
+        final List<RegistryChange> keyChanges = new ArrayList<>();
+        final List<RegistryChange> valueChanges = new ArrayList<>();
+        final Deque<String> pendingKeyPaths = new ArrayDeque<>();
+        pendingKeyPaths.push(normalize(keyPath));
+
+        while (!pendingKeyPaths.isEmpty()) {
+            final String path = pendingKeyPaths.pop();
+            final KeyEntry previousKey = previous.getKey(path);
+            final List<String> subKeyPaths;
+            try {
+                subKeyPaths = scanKey(hiveName, path, previousKey, previous, snapshot, keyChanges, valueChanges);
+            } catch (final RPCException exception) {
+                if (!exception.hasErrorCode()) {
+                    throw exception;
+                }
+                switch (exception.getErrorCode()) {
+                case ERROR_FILE_NOT_FOUND:
+                case ERROR_KEY_DELETED:
+                    // The key was deleted after its parent was enumerated.
+                    if (previousKey != null) {
+                        addRemovedKeys(path, previous, keyChanges);
+                    }
+                    continue;
+                case ERROR_ACCESS_DENIED:
+                    if (previousKey != null) {
+                        snapshot.putKey(path, previousKey);
+                        putDescendants(path, previous, snapshot);
+                    }
+                    continue;
+                default:
+                    throw exception;
+                }
+            } finally {
+                registryService.closeKey(hiveName, path);
+            }
+            for (int index = subKeyPaths.size() - 1; index >= 0; index--) {
+                pendingKeyPaths.push(subKeyPaths.get(index));
+            }
+        }
+        return new RegistryDiff(keyChanges, valueChanges, snapshot);
+    }
+
+    /**
+     * @return The paths of the subkeys which need to be scanned.
+     */
+    private List<String> scanKey(
+        final String hiveName,
+        final String path,
+        final KeyEntry previousKey,
+        final RegistrySnapshot previous,
+        final RegistrySnapshot snapshot,
+        final List<RegistryChange> keyChanges,
+        final List<RegistryChange> valueChanges)
+        throws IOException {
+        final RegistryKeyInfo keyInfo = registryService.getKeyInfo(hiveName, path);
+        if (previousKey != null && previousKey.getLastWriteTime() == keyInfo.getLastWriteTime()
+            && previousKey.getSubKeys() == keyInfo.getSubKeys()) {
+            snapshot.putKey(path, previousKey);
+            return previous.getSubKeyPaths(path);
+        }
+
+        final Map<String, ValueEntry> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (final RegistryValue value : registryService.getValues(hiveName, path)) {
+            values.put(value.getName(), RegistrySnapshot.newValueEntry(value));
+        }
+        final List<String> subKeyPaths = new ArrayList<>();
+        final Set<String> subKeyNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (final RegistryKey subKey : registryService.getSubKeys(hiveName, path)) {
+            subKeyNames.add(subKey.getName());
+            subKeyPaths.add(path.isEmpty() ? subKey.getName() : path + "\\" + subKey.getName());
+        }
+        snapshot.putKey(path, new KeyEntry(keyInfo.getLastWriteTime(), keyInfo.getSubKeys(), values));
+
+        if (previousKey == null) {
+            keyChanges.add(new RegistryChange(RegistryChange.Type.ADDED, path, null));
+            for (final String valueName : values.keySet()) {
+                valueChanges.add(new RegistryChange(RegistryChange.Type.ADDED, path, valueName));
+            }
+            return subKeyPaths;
+        }
+
+        final int valueChangeCount = valueChanges.size();
+        for (final Map.Entry<String, ValueEntry> value : values.entrySet()) {
+            final ValueEntry previousValue = previousKey.getValues().get(value.getKey());
+            if (previousValue == null) {
+                valueChanges.add(new RegistryChange(RegistryChange.Type.ADDED, path, value.getKey()));
+            } else if (!previousValue.equals(value.getValue())) {
+                valueChanges.add(new RegistryChange(RegistryChange.Type.CHANGED, path, value.getKey()));
+            }
+        }
+        for (final String previousValueName : previousKey.getValues().keySet()) {
+            if (!values.containsKey(previousValueName)) {
+                valueChanges.add(new RegistryChange(RegistryChange.Type.REMOVED, path, previousValueName));
+            }
+        }
+        if (valueChanges.size() != valueChangeCount) {
+            keyChanges.add(new RegistryChange(RegistryChange.Type.CHANGED, path, null));
+        }
+
+        final int prefixLength = path.isEmpty() ? 0 : path.length() + 1;
+        for (final String previousPath : previous.getDescendants(path).keySet()) {
+            final String previousName = previousPath.substring(prefixLength);
+            if (previousName.indexOf('\\') < 0 && !subKeyNames.contains(previousName)) {
+                addRemovedKeys(previousPath, previous, keyChanges);
+            }
+        }
+        return subKeyPaths;
+    }
+
+    private void addRemovedKeys(
+        final String path,
+        final RegistrySnapshot previous,
+        final List<RegistryChange> keyChanges) {
+        keyChanges.add(new RegistryChange(RegistryChange.Type.REMOVED, path, null));
+        for (final String removedPath : previous.getDescendants(path).keySet()) {
+            keyChanges.add(new RegistryChange(RegistryChange.Type.REMOVED, removedPath, null));
+        }
+    }
+
+    private void putDescendants(final String path, final RegistrySnapshot previous, final RegistrySnapshot snapshot) {
+        for (final Map.Entry<String, KeyEntry> descendant : previous.getDescendants(path).entrySet()) {
+            snapshot.putKey(descendant.getKey(), descendant.getValue());
+        }
+    }
+
+    private String normalize(String keyPath) {
+        keyPath = Strings.nullToEmpty(keyPath);
+        while (keyPath.contains("\\\\")) {
+            keyPath = keyPath.replace("\\\\", "\\");
+        }
+        while (keyPath.endsWith("\\")) {
+            keyPath = keyPath.substring(0, keyPath.length() - 1);
+        }
+        return keyPath;
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import com.hierynomus.smbj.session.Session;
+import com.hierynomus.smbj.share.DiskShare;
+import com.hierynomus.smbj.share.Share;
+import com.rapid7.client.dcerpc.msrrp.regf.RegfHive;
+import com.rapid7.helper.smbj.share.RemoteFile;
+
+/**
+ * Exports a registry key in bulk rather than enumerating it one key and value at a time. The key is saved to a
+ * temporary file on the server with BaseRegSaveKey, the file is transferred over an SMB disk share with several reads
+ * outstanding at once and deleted, and the registry file (regf) format is parsed locally by {@link RegfHive}.<br>
+ * <br>
+ * By default the file is saved to ..\Temp, relative to the working directory of the remote registry service, which is
+ * %SystemRoot%\System32. That directory is Temp on the ADMIN$ share. Saving a key requires the SeBackupPrivilege, and
+ * reading ADMIN$ requires administrative rights on the server.
+ */
+public class RegistryHiveExporter {
+    private final static String DEFAULT_SERVER_DIRECTORY = "..\\Temp";
+    private final static String DEFAULT_SHARE_NAME = "ADMIN$";
+    private final static String DEFAULT_SHARE_DIRECTORY = "Temp";
+    private final RegistryService registryService;
+    private final Session session;
+    private final String serverDirectory;
+    private final String shareName;
+    private final String shareDirectory;
+
+    /**
+     * @param registryService The registry service of the server.
+     * @param session The SMB session to the same server.
+     */
+    public RegistryHiveExporter(final RegistryService registryService, final Session session) {
+        this(registryService, session, DEFAULT_SERVER_DIRECTORY, DEFAULT_SHARE_NAME, DEFAULT_SHARE_DIRECTORY);
+    }
+
+    /**
+     * @param registryService The registry service of the server.
+     * @param session The SMB session to the same server.
+     * @param serverDirectory The directory on the server in which the key is saved, as passed to BaseRegSaveKey.
+     * @param shareName The name of the disk share through which the directory is reachable.
+     * @param shareDirectory The path of the same directory relative to the share.
+     */
+    public RegistryHiveExporter(
+        final RegistryService registryService,
+        final Session session,
+        final String serverDirectory,
+        final String shareName,
+        final String shareDirectory) {
+        if (registryService == null) {
+            throw new IllegalArgumentException("Registry service is invalid: " + registryService);
+        }
+        if (session == null) {
+            throw new IllegalArgumentException("Session is invalid: " + session);
+        }
+        if (serverDirectory == null) {
+            throw new IllegalArgumentException("Server directory is invalid: " + serverDirectory);
+        }
+        if (shareName == null || shareName.isEmpty()) {
+            throw new IllegalArgumentException("Share name is invalid: " + shareName);
+        }
+        if (shareDirectory == null) {
+            throw new IllegalArgumentException("Share directory is invalid: " + shareDirectory);
+        }
+        this.registryService = registryService;
+        this.session = session;
+        this.serverDirectory = serverDirectory;
+        this.shareName = shareName;
+        this.shareDirectory = shareDirectory;
+    }
+
+    /**
+     * Export a key, its subkeys and its values and parse the result.
+     *
+     * @param hiveName The name of the hive, e.g. HKLM.
+     * @param keyPath The path of the key relative to the hive.
+     * @return The exported hive, whose root key is the given key.
+     * @throws IOException On a transport error, an error code from the server, or if the export cannot be parsed.
+     */
+    public RegfHive export(final String hiveName, final String keyPath)
+        throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        export(hiveName, keyPath, outputStream);
+        return new RegfHive(ByteBuffer.wrap(outputStream.toByteArray()));
+    }
+
+    /**
+     * Export a key, its subkeys and its values in the regf format.
+     *
+     * @param hiveName The name of the hive, e.g. HKLM.
+     * @param keyPath The path of the key relative to the hive.
+     * @param outputStream The stream to which the exported hive file is written.
+     * @return The size of the exported hive file in bytes.
+     * @throws IOException On a transport error or an error code from the server. The saved file is deleted from the
+     *         server before the error is thrown.
+     */
+    public long export(final String hiveName, final String keyPath, final OutputStream outputStream)
+        throws IOException {
+        final String fileName = "rrp-" + UUID.randomUUID() + ".hiv";
+        final String sharePath = join(shareDirectory, fileName);
+        registryService.saveKey(hiveName, keyPath, join(serverDirectory, fileName));
+        try (final Share share = session.connectShare(shareName);
+            final RemoteFile file = new RemoteFile(session, share, sharePath, true)) {
+            return file.read(outputStream);
+        } catch (final IOException | RuntimeException exception) {
+            deleteFile(sharePath, exception);
+            throw exception;
+        }
+    }
+
+    /**
+     * Delete a saved file after a failure to read it. A file which was opened is already deleted when it is closed,
+     * so a failure to delete the file is added to the original failure as a suppressed exception.
+     */
+    private void deleteFile(final String sharePath, final Exception exception) {
+        try (final Share share = session.connectShare(shareName)) {
+            if (share instanceof DiskShare) {
+                ((DiskShare) share).rm(sharePath);
+            }
+        } catch (final IOException | RuntimeException deleteException) {
+            exception.addSuppressed(deleteException);
+        }
+    }
+
+    private static String join(final String directory, final String fileName) {
+        return directory.isEmpty() ? fileName : directory + "\\" + fileName;
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.hierynomus.msdtyp.ACL;
+import com.hierynomus.msdtyp.SID;
+import com.hierynomus.msdtyp.SecurityDescriptor;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.smb.SMBBuffer;
+
+/**
+ * The security descriptor of a registry key, held in self-relative format together with its parsed owner, group and
+ * access control lists. Instances are interned by content: most keys inherit their descriptor from a parent, so an
+ * audit of thousands of keys typically yields a handful of distinct descriptors, and every key which shares a
+ * descriptor shares one instance of this class. Interned instances are weakly held and are discarded once no result
+ * refers to them.
+ */
+public class RegistryKeySecurity {
+    private final static Interner<RegistryKeySecurity> INTERNER = Interners.newWeakInterner();
+    private final byte[] bytes;
+    private final int hashCode;
+    private final SecurityDescriptor securityDescriptor;
+
+    private RegistryKeySecurity(final byte[] bytes, final SecurityDescriptor securityDescriptor) {
+        this.bytes = bytes;
+        this.hashCode = Arrays.hashCode(bytes);
+        this.securityDescriptor = securityDescriptor;
+    }
+
+    /**
+     * @param securityDescriptor A security descriptor in self-relative format.
+     * @return The shared instance for a security descriptor with this content.
+     * @throws IOException If the security descriptor is malformed.
+     */
+    public static RegistryKeySecurity valueOf(final byte[] securityDescriptor)
+        throws IOException {
+        if (securityDescriptor == null) {
+            throw new IllegalArgumentException("Security descriptor is invalid: " + securityDescriptor);
+        }
+        return intern(securityDescriptor.clone());
+    }
+
+    /** Intern a security descriptor without copying it, for buffers which are not shared with the caller. */
+    static RegistryKeySecurity intern(final byte[] securityDescriptor)
+        throws IOException {
+        final SecurityDescriptor parsed;
+        try {
+            parsed = SecurityDescriptor.read(new SMBBuffer(securityDescriptor));
+        } catch (final Buffer.BufferException | RuntimeException exception) {
+            throw new IOException("Malformed security descriptor", exception);
+        }
+        return INTERNER.intern(new RegistryKeySecurity(securityDescriptor, parsed));
+    }
+
+    /** @return A copy of the security descriptor in self-relative format. */
+    public byte[] getBytes() {
+        return bytes.clone();
+    }
+
+    /** @return The size in bytes of the security descriptor in self-relative format. */
+    public int getSize() {
+        return bytes.length;
+    }
+
+    /** @return The control flags of the security descriptor. */
+    public Set<SecurityDescriptor.Control> getControl() {
+        return securityDescriptor.getControl();
+    }
+
+    /** @return The owner of the key, or null if the owner was not requested or is not set. */
+    public SID getOwnerSid() {
+        return securityDescriptor.getOwnerSid();
+    }
+
+    /** @return The primary group of the key, or null if the group was not requested or is not set. */
+    public SID getGroupSid() {
+        return securityDescriptor.getGroupSid();
+    }
+
+    /** @return The discretionary access control list, or null if it was not requested or is not present. */
+    public ACL getDacl() {
+        return securityDescriptor.getDacl();
+    }
+
+    /** @return The system access control list, or null if it was not requested or is not present. */
+    public ACL getSacl() {
+        return securityDescriptor.getSacl();
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (!(obj instanceof RegistryKeySecurity)) {
+            return false;
+        }
+        final RegistryKeySecurity other = (RegistryKeySecurity) obj;
+        return hashCode == other.hashCode && Arrays.equals(bytes, other.bytes);
+    }
+
+    @Override
+    public String toString() {
+        return securityDescriptor.toString();
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * A cache of registry keys and values which were found not to exist, so repeated probes for them can be answered
+ * without a round trip to the server. Entries are grouped by the key which holds them (the parent of a missing key, or
+ * the key of a missing value) and remember the last write time of that key when it is known. Creating a subkey or a
+ * value updates the last write time of the key which holds it, so whenever the service observes a key's last write
+ * time, for example through BaseRegQueryInfoKey or BaseRegEnumKey, entries recorded against a different (or an
+ * unknown) last write time are discarded.<br>
+ * <br>
+ * A key is also reported missing when one of its ancestors is cached as missing, and so are the values of a missing
+ * key. Entries expire a fixed time after they were written and are evicted once the number of cached names exceeds the
+ * configured maximum. Key paths and value names are matched case insensitively.
+ */
+public class RegistryNegativeCache {
+    private final static long UNKNOWN_LAST_WRITE_TIME = -1;
+    private final Cache<CacheKey, CacheEntry> cache;
+
+    /**
+     * @param timeToLive The time after which an entry expires, regardless of the last write time of its key.
+     * @param unit The unit of timeToLive.
+     * @param maximumSize The approximate number of missing keys and values which may be held by the cache.
+     */
+    public RegistryNegativeCache(final long timeToLive, final TimeUnit unit, final long maximumSize) {
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("Time to live is invalid: " + timeToLive);
+        }
+        if (unit == null) {
+            throw new IllegalArgumentException("Unit is invalid: " + unit);
+        }
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Maximum size is invalid: " + maximumSize);
+        }
+        cache = CacheBuilder.newBuilder().expireAfterWrite(timeToLive, unit).maximumWeight(maximumSize)
+            .weigher(new Weigher<CacheKey, CacheEntry>() {
+                @Override
+                public int weigh(final CacheKey key, final CacheEntry entry) {
+                    return entry.getWeight();
+                }
+            }).build();
+    }
+
+    /** @return The approximate number of keys with missing subkeys or values in the cache. */
+    public long size() {
+        return cache.size();
+    }
+
+    /** Discard all entries in the cache. */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @param keyPath The canonicalized path of the key.
+     * @return True if the key, or one of its ancestors, is cached as missing.
+     */
+    boolean isKeyMissing(final RegistryHive hive, final String keyPath) {
+        for (int index = keyPath.lastIndexOf('\\'); ; index = keyPath.lastIndexOf('\\', index - 1)) {
+            final String parentPath = index < 0 ? "" : keyPath.substring(0, index);
+            final String keyName = keyPath.substring(index + 1, nextSeparator(keyPath, index + 1));
+            final CacheEntry entry = cache.getIfPresent(new CacheKey(hive, parentPath));
+            if (entry != null && entry.getKeyNames().contains(keyName)) {
+                return true;
+            }
+            if (index < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @param keyPath The canonicalized path of the key.
+     * @param valueName The name of the value, which is empty for the default value.
+     * @return True if the value, or the key which holds it, is cached as missing.
+     */
+    boolean isValueMissing(final RegistryHive hive, final String keyPath, final String valueName) {
+        final CacheEntry entry = cache.getIfPresent(new CacheKey(hive, keyPath));
+        if (entry != null && entry.getValueNames().contains(valueName.toLowerCase())) {
+            return true;
+        }
+        return !keyPath.isEmpty() && isKeyMissing(hive, keyPath);
+    }
+
+    /**
+     * @param keyPath The canonicalized path of the key, which must not be the root of the hive.
+     */
+    void putMissingKey(final RegistryHive hive, final String keyPath) {
+        final int index = keyPath.lastIndexOf('\\');
+        final String parentPath = index < 0 ? "" : keyPath.substring(0, index);
+        put(new CacheKey(hive, parentPath), UNKNOWN_LAST_WRITE_TIME, keyPath.substring(index + 1), null);
+    }
+
+    /**
+     * @param keyPath The canonicalized path of the key.
+     * @param lastWriteTime The last write time of the key when the value was found missing, or -1 if unknown.
+     */
+    void putMissingValue(
+        final RegistryHive hive,
+        final String keyPath,
+        final String valueName,
+        final long lastWriteTime) {
+        put(new CacheKey(hive, keyPath), lastWriteTime, null, valueName.toLowerCase());
+    }
+
+    /**
+     * Discard the missing subkeys and values of a key which were recorded against a different last write time.
+     *
+     * @param keyPath The canonicalized path of the key.
+     * @param lastWriteTime The current last write time of the key.
+     */
+    void keyWritten(final RegistryHive hive, final String keyPath, final long lastWriteTime) {
+        final CacheKey key = new CacheKey(hive, keyPath);
+        final CacheEntry entry = cache.getIfPresent(key);
+        if (entry != null && entry.getLastWriteTime() != lastWriteTime) {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Discard the missing subkeys and values of a key and of its ancestors, after the key was created or written by
+     * this client. Creating a key also creates its missing ancestors.
+     *
+     * @param keyPath The canonicalized path of the key.
+     */
+    void keyModified(final RegistryHive hive, final String keyPath) {
+        cache.invalidate(new CacheKey(hive, keyPath));
+        for (int index = keyPath.lastIndexOf('\\'); index >= 0; index = keyPath.lastIndexOf('\\', index - 1)) {
+            cache.invalidate(new CacheKey(hive, keyPath.substring(0, index)));
+        }
+        cache.invalidate(new CacheKey(hive, ""));
+    }
+
+    private void put(final CacheKey key, final long lastWriteTime, final String keyName, final String valueName) {
+        synchronized (cache) {
+            final CacheEntry entry = cache.getIfPresent(key);
+            final Set<String> keyNames = new HashSet<>();
+            final Set<String> valueNames = new HashSet<>();
+            long entryLastWriteTime = lastWriteTime;
+            // Names recorded against the same, or an unknown, last write time remain valid. A newer last write time
+            // has already discarded the entry through keyWritten.
+            if (entry != null
+                && (lastWriteTime == UNKNOWN_LAST_WRITE_TIME || lastWriteTime == entry.getLastWriteTime())) {
+                keyNames.addAll(entry.getKeyNames());
+                valueNames.addAll(entry.getValueNames());
+                entryLastWriteTime = entry.getLastWriteTime();
+            }
+            if (keyName != null) {
+                keyNames.add(keyName);
+            }
+            if (valueName != null) {
+                valueNames.add(valueName);
+            }
+            cache.put(key, new CacheEntry(entryLastWriteTime, keyNames, valueNames));
+        }
+    }
+
+    private static int nextSeparator(final String keyPath, final int fromIndex) {
+        final int index = keyPath.indexOf('\\', fromIndex);
+        return index < 0 ? keyPath.length() : index;
+    }
+
+    private static class CacheKey {
+        private final RegistryHive hive;
+        private final String keyPath;
+
+        CacheKey(final RegistryHive hive, final String keyPath) {
+            this.hive = hive;
+            this.keyPath = keyPath;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hive, keyPath);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj == this) {
+                return true;
+            } else if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) obj;
+            return hive == other.hive && Objects.equals(keyPath, other.keyPath);
+        }
+    }
+
+    private static class CacheEntry {
+        private final long lastWriteTime;
+        private final Set<String> keyNames;
+        private final Set<String> valueNames;
+
+        CacheEntry(final long lastWriteTime, final Set<String> keyNames, final Set<String> valueNames) {
+            this.lastWriteTime = lastWriteTime;
+            this.keyNames = Collections.unmodifiableSet(keyNames);
+            this.valueNames = Collections.unmodifiableSet(valueNames);
+        }
+
+        long getLastWriteTime() {
+            return lastWriteTime;
+        }
+
+        Set<String> getKeyNames() {
+            return keyNames;
+        }
+
+        Set<String> getValueNames() {
+            return valueNames;
+        }
+
+        int getWeight() {
+            return Math.max(1, keyNames.size() + valueNames.size());
+        }
+    }
+}
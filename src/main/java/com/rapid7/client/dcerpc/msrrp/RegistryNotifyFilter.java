@@ -0,0 +1,56 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import com.hierynomus.protocol.commons.EnumWithValue;
+
+/**
+ * The changes reported by BaseRegNotifyChangeKeyValue, as specified in [MS-RRP] section 3.1.5.14.
+ *
+ * <pre>
+ * #define REG_NOTIFY_CHANGE_NAME       0x00000001
+ * #define REG_NOTIFY_CHANGE_ATTRIBUTES 0x00000002
+ * #define REG_NOTIFY_CHANGE_LAST_SET   0x00000004
+ * #define REG_NOTIFY_CHANGE_SECURITY   0x00000008
+ * </pre>
+ */
+public enum RegistryNotifyFilter implements EnumWithValue<RegistryNotifyFilter> {
+    /** Notify the caller if a subkey is added or deleted. */
+    REG_NOTIFY_CHANGE_NAME(0x00000001),
+    /** Notify the caller of changes to the attributes of the key, such as the security descriptor information. */
+    REG_NOTIFY_CHANGE_ATTRIBUTES(0x00000002),
+    /**
+     * Notify the caller of changes to a value of the key. This can include adding or deleting a value, or changing an
+     * existing value.
+     */
+    REG_NOTIFY_CHANGE_LAST_SET(0x00000004),
+    /** Notify the caller of changes to the security descriptor of the key. */
+    REG_NOTIFY_CHANGE_SECURITY(0x00000008);
+
+    private final int value;
+
+    private RegistryNotifyFilter(final int value) {
+        this.value = value;
+    }
+
+    @Override
+    public long getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import java.util.Objects;
+import com.google.common.base.Strings;
+
+/**
+ * A single declarative registry lookup, executed as part of a {@link RegistryQueryPlan}. Lookups of the same key are
+ * equal regardless of the case and redundant separators of their key path, so repeated lookups in a rule set are only
+ * executed once.
+ */
+public class RegistryQuery {
+    /** The kind of lookup, which determines the type of the value held by its {@link RegistryResult}. */
+    public enum Mode {
+        /** Whether the key exists, as a {@link Boolean}. */
+        KEY_EXISTS,
+        /** Whether the value exists, as a {@link Boolean}. */
+        VALUE_EXISTS,
+        /** The value, as a {@link RegistryValue}. */
+        VALUE,
+        /** The subkeys of the key, as a {@link java.util.List} of {@link RegistryKey}. */
+        SUB_KEYS,
+        /** The values of the key, as a {@link java.util.List} of {@link RegistryValue}. */
+        VALUES
+    }
+
+    private final RegistryHive hive;
+    private final String keyPath;
+    private final String valueName;
+    private final Mode mode;
+
+    private RegistryQuery(final String hiveName, final String keyPath, final String valueName, final Mode mode) {
+        if (hiveName == null) {
+            throw new IllegalArgumentException("Invalid hive: " + hiveName);
+        }
+        final RegistryHive hive = RegistryHive.getRegistryHiveByName(hiveName);
+        if (hive == null) {
+            throw new IllegalArgumentException("Unknown hive: " + hiveName);
+        }
+        this.hive = hive;
+        this.keyPath = RegistryService.canonicalizeKeyPath(keyPath);
+        this.valueName = valueName;
+        this.mode = mode;
+    }
+
+    public static RegistryQuery keyExists(final String hiveName, final String keyPath) {
+        return new RegistryQuery(hiveName, keyPath, null, Mode.KEY_EXISTS);
+    }
+
+    public static RegistryQuery valueExists(final String hiveName, final String keyPath, final String valueName) {
+        return new RegistryQuery(hiveName, keyPath, Strings.nullToEmpty(valueName), Mode.VALUE_EXISTS);
+    }
+
+    public static RegistryQuery value(final String hiveName, final String keyPath, final String valueName) {
+        return new RegistryQuery(hiveName, keyPath, Strings.nullToEmpty(valueName), Mode.VALUE);
+    }
+
+    public static RegistryQuery subKeys(final String hiveName, final String keyPath) {
+        return new RegistryQuery(hiveName, keyPath, null, Mode.SUB_KEYS);
+    }
+
+    public static RegistryQuery values(final String hiveName, final String keyPath) {
+        return new RegistryQuery(hiveName, keyPath, null, Mode.VALUES);
+    }
+
+    /**
+     * @param hiveName The hive of the new lookup.
+     * @param parentKeyPath The path of the key, relative to the hive, under which the key path of this lookup is
+     *        resolved.
+     * @return The same lookup of the same value, made under another key.
+     */
+    RegistryQuery under(final String hiveName, final String parentKeyPath) {
+        final String canonicalizedParentKeyPath = RegistryService.canonicalizeKeyPath(parentKeyPath);
+        final String rebasedKeyPath;
+        if (canonicalizedParentKeyPath.isEmpty()) {
+            rebasedKeyPath = keyPath;
+        } else if (keyPath.isEmpty()) {
+            rebasedKeyPath = canonicalizedParentKeyPath;
+        } else {
+            rebasedKeyPath = canonicalizedParentKeyPath + "\\" + keyPath;
+        }
+        return new RegistryQuery(hiveName, rebasedKeyPath, valueName, mode);
+    }
+
+    public RegistryHive getHive() {
+        return hive;
+    }
+
+    /** @return The canonicalized path of the key relative to the hive. */
+    public String getKeyPath() {
+        return keyPath;
+    }
+
+    /** @return The name of the value, or null for lookups of a key. */
+    public String getValueName() {
+        return valueName;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(hive, keyPath, valueName, mode);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (!(obj instanceof RegistryQuery)) {
+            return false;
+        }
+        final RegistryQuery other = (RegistryQuery) obj;
+        return hive == other.hive && keyPath.equals(other.keyPath) && Objects.equals(valueName, other.valueName)
+            && mode == other.mode;
+    }
+
+    @Override
+    public String toString() {
+        if (valueName == null) {
+            return String.format("%s %s\\%s", mode, hive.getFullName(), keyPath);
+        }
+        return String.format("%s %s\\%s {value=%s}", mode, hive.getFullName(), keyPath, valueName);
+    }
+}
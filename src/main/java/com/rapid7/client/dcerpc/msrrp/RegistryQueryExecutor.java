@@ -0,0 +1,191 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_FILE_NOT_FOUND;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import com.rapid7.client.dcerpc.RPCException;
+import com.rapid7.client.dcerpc.msrrp.RegistryQueryPlan.KeyGroup;
+import com.rapid7.client.dcerpc.transport.PipeFanOut;
+
+/**
+ * Executes a {@link RegistryQueryPlan} against a host over a bounded set of winreg pipes. Each pipe is served by its
+ * own {@link RegistryService}, and the keys of the plan are handed out to the pipes in plan order, so one pipe opens a
+ * key and reads all of its values while the others work on the following keys. Lookups of a key which does not exist,
+ * or of a value which does not exist, are reported through their {@link RegistryResult} rather than by throwing.
+ */
+public class RegistryQueryExecutor {
+    private final PipeFanOut<RegistryService> pipes;
+
+    /**
+     * @param services One registry service per winreg pipe to the host. The services may share a value cache or a
+     *        negative cache.
+     */
+    public RegistryQueryExecutor(final List<RegistryService> services) {
+        if (services == null || services.isEmpty() || services.contains(null)) {
+            throw new IllegalArgumentException("Registry services are invalid: " + services);
+        }
+        this.pipes = new PipeFanOut<>(services);
+    }
+
+    /**
+     * @param queries The lookups to execute, in rule order.
+     * @return The result of each distinct lookup, in the order in which the lookups were first requested.
+     * @throws IOException On a transport error.
+     */
+    public Map<RegistryQuery, RegistryResult<?>> execute(final Collection<RegistryQuery> queries)
+        throws IOException {
+        return execute(new RegistryQueryPlan(queries));
+    }
+
+    /**
+     * @param plan The plan to execute.
+     * @return The result of each distinct lookup, in the order in which the lookups were first requested.
+     * @throws IOException On a transport error.
+     */
+    public Map<RegistryQuery, RegistryResult<?>> execute(final RegistryQueryPlan plan)
+        throws IOException {
+        if (plan == null) {
+            throw new IllegalArgumentException("Query plan is invalid: " + plan);
+        }
+        final Queue<KeyGroup> keyGroups = new ConcurrentLinkedQueue<>(plan.getKeyGroups());
+        final Set<KeyGroup> missingKeys = Collections.newSetFromMap(new ConcurrentHashMap<KeyGroup, Boolean>());
+        final Map<RegistryQuery, RegistryResult<?>> results = new ConcurrentHashMap<>();
+        pipes.run(plan.getKeyCount(), keyGroups, "registry-query-%d", new PipeFanOut.Task<RegistryService>() {
+            @Override
+            public void run(final RegistryService service)
+                throws IOException {
+                KeyGroup keyGroup;
+                while ((keyGroup = keyGroups.poll()) != null) {
+                    executeKeyGroup(service, keyGroup, missingKeys, results);
+                }
+            }
+        });
+        final Map<RegistryQuery, RegistryResult<?>> orderedResults = new LinkedHashMap<>();
+        for (final RegistryQuery query : plan.getQueries()) {
+            orderedResults.put(query, results.get(query));
+        }
+        return Collections.unmodifiableMap(orderedResults);
+    }
+
+    private void executeKeyGroup(
+        final RegistryService service,
+        final KeyGroup keyGroup,
+        final Set<KeyGroup> missingKeys,
+        final Map<RegistryQuery, RegistryResult<?>> results)
+        throws IOException {
+        final String hiveName = keyGroup.getHive().getFullName();
+        final String keyPath = keyGroup.getKeyPath();
+        final RegistryResult<Void> key;
+        if (hasMissingAncestor(keyGroup, missingKeys)) {
+            key = RegistryResult.failure("BaseRegOpenKey", ERROR_FILE_NOT_FOUND.getErrorCode());
+        } else {
+            key = service.tryOpenKey(hiveName, keyPath);
+            if (key.is(ERROR_FILE_NOT_FOUND)) {
+                missingKeys.add(keyGroup);
+            }
+        }
+        if (!key.isSuccess()) {
+            for (final RegistryQuery query : keyGroup.getQueries()) {
+                switch (query.getMode()) {
+                case KEY_EXISTS:
+                case VALUE_EXISTS:
+                    results.put(query, key.is(ERROR_FILE_NOT_FOUND) ? RegistryResult.success(false)
+                        : RegistryResult.failure(key));
+                    break;
+                default:
+                    results.put(query, RegistryResult.failure(key));
+                }
+            }
+            return;
+        }
+
+        final Set<String> valueNames = new LinkedHashSet<>();
+        for (final RegistryQuery query : keyGroup.getQueries()) {
+            if (query.getValueName() != null) {
+                valueNames.add(query.getValueName());
+            }
+        }
+        final Map<String, RegistryValue> values = new HashMap<>();
+        RegistryResult<Void> valuesResult = RegistryResult.success(null);
+        if (!valueNames.isEmpty()) {
+            try {
+                for (final RegistryValue value : service.getValues(hiveName, keyPath, valueNames)) {
+                    values.put(value.getName(), value);
+                }
+            } catch (final RPCException exception) {
+                valuesResult = RegistryResult.failure("BaseRegQueryValue", exception.getReturnValue());
+            }
+        }
+
+        for (final RegistryQuery query : keyGroup.getQueries()) {
+            switch (query.getMode()) {
+            case KEY_EXISTS:
+                results.put(query, RegistryResult.success(true));
+                break;
+            case VALUE_EXISTS:
+                results.put(query, valuesResult.isSuccess()
+                    ? RegistryResult.success(values.containsKey(query.getValueName()))
+                    : RegistryResult.failure(valuesResult));
+                break;
+            case VALUE:
+                if (!valuesResult.isSuccess()) {
+                    results.put(query, RegistryResult.failure(valuesResult));
+                } else if (values.containsKey(query.getValueName())) {
+                    results.put(query, RegistryResult.success(values.get(query.getValueName())));
+                } else {
+                    results.put(query,
+                        RegistryResult.failure("BaseRegQueryValue", ERROR_FILE_NOT_FOUND.getErrorCode()));
+                }
+                break;
+            case SUB_KEYS:
+                results.put(query, service.tryGetSubKeys(hiveName, keyPath));
+                break;
+            case VALUES:
+                try {
+                    results.put(query, RegistryResult.success(service.getValues(hiveName, keyPath)));
+                } catch (final RPCException exception) {
+                    results.put(query, RegistryResult.failure("BaseRegEnumValue", exception.getReturnValue()));
+                }
+                break;
+            }
+        }
+    }
+
+    private boolean hasMissingAncestor(final KeyGroup keyGroup, final Set<KeyGroup> missingKeys) {
+        final String keyPath = keyGroup.getKeyPath();
+        for (int index = keyPath.indexOf('\\'); index >= 0; index = keyPath.indexOf('\\', index + 1)) {
+            if (missingKeys.contains(new KeyGroup(keyGroup.getHive(), keyPath.substring(0, index)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
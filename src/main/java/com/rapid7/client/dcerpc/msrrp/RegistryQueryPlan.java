@@ -0,0 +1,154 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A set of registry lookups grouped by the key they read, so each key is opened once and its values are read in one
+ * batch however many lookups refer to it. Repeated lookups are executed once. Keys are ordered by hive and then
+ * depth first by path, so every key follows its ancestors: once an ancestor is found not to exist, the lookups of its
+ * descendants are answered without a round trip to the server.
+ */
+public class RegistryQueryPlan {
+    private final static Comparator<KeyGroup> KEY_ORDER = new Comparator<KeyGroup>() {
+        @Override
+        public int compare(final KeyGroup group1, final KeyGroup group2) {
+            final int result = group1.getHive().compareTo(group2.getHive());
+            if (result != 0) {
+                return result;
+            }
+            final String path1 = group1.getKeyPath();
+            final String path2 = group2.getKeyPath();
+            final int length = Math.min(path1.length(), path2.length());
+            for (int index = 0; index < length; index++) {
+                final char char1 = path1.charAt(index);
+                final char char2 = path2.charAt(index);
+                if (char1 != char2) {
+                    // Order the separator before any other character, so the subkeys of a key are contiguous.
+                    if (char1 == '\\') {
+                        return -1;
+                    } else if (char2 == '\\') {
+                        return 1;
+                    }
+                    return char1 - char2;
+                }
+            }
+            return path1.length() - path2.length();
+        }
+    };
+    private final List<RegistryQuery> queries;
+    private final List<KeyGroup> keyGroups;
+
+    /**
+     * @param queries The lookups to execute, in rule order.
+     */
+    public RegistryQueryPlan(final Collection<RegistryQuery> queries) {
+        if (queries == null) {
+            throw new IllegalArgumentException("Queries are invalid: " + queries);
+        }
+        final Map<KeyGroup, KeyGroup> keyGroups = new TreeMap<>(KEY_ORDER);
+        final Set<RegistryQuery> uniqueQueries = new LinkedHashSet<>();
+        for (final RegistryQuery query : queries) {
+            if (query == null) {
+                throw new IllegalArgumentException("Query is invalid: " + query);
+            }
+            if (!uniqueQueries.add(query)) {
+                continue;
+            }
+            final KeyGroup key = new KeyGroup(query.getHive(), query.getKeyPath());
+            KeyGroup keyGroup = keyGroups.get(key);
+            if (keyGroup == null) {
+                keyGroup = key;
+                keyGroups.put(key, keyGroup);
+            }
+            keyGroup.getQueries().add(query);
+        }
+        this.queries = Collections.unmodifiableList(new ArrayList<>(uniqueQueries));
+        this.keyGroups = Collections.unmodifiableList(new ArrayList<>(keyGroups.keySet()));
+    }
+
+    /** @return The distinct lookups of the plan, in the order in which they were first requested. */
+    public List<RegistryQuery> getQueries() {
+        return queries;
+    }
+
+    /** @return The number of distinct keys which are read by the plan. */
+    public int getKeyCount() {
+        return keyGroups.size();
+    }
+
+    /** @return The lookups grouped by key, with every key following its ancestors. */
+    List<KeyGroup> getKeyGroups() {
+        return keyGroups;
+    }
+
+    static class KeyGroup {
+        private final RegistryHive hive;
+        private final String keyPath;
+        private final List<RegistryQuery> queries = new ArrayList<>();
+
+        KeyGroup(final RegistryHive hive, final String keyPath) {
+            this.hive = hive;
+            this.keyPath = keyPath;
+        }
+
+        RegistryHive getHive() {
+            return hive;
+        }
+
+        String getKeyPath() {
+            return keyPath;
+        }
+
+        List<RegistryQuery> getQueries() {
+            return queries;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hive, keyPath);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj == this) {
+                return true;
+            } else if (!(obj instanceof KeyGroup)) {
+                return false;
+            }
+            final KeyGroup other = (KeyGroup) obj;
+            return hive == other.hive && keyPath.equals(other.keyPath);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s\\%s {queries=%d}", hive.getFullName(), keyPath, queries.size());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import com.rapid7.client.dcerpc.RPCException;
+import com.rapid7.client.dcerpc.mserref.SystemErrorCode;
+
+/**
+ * The outcome of a registry lookup, carrying either the value which was read or the Win32 error code returned by the
+ * server. Expected errors such as ERROR_FILE_NOT_FOUND are reported without creating an {@link RPCException}, so a
+ * lookup of a missing key or value costs no more than a successful one.
+ *
+ * @param <T> The type of the value which was read.
+ */
+public class RegistryResult<T> {
+    private final String opName;
+    private final int returnCode;
+    private final T value;
+
+    private RegistryResult(final String opName, final int returnCode, final T value) {
+        this.opName = opName;
+        this.returnCode = returnCode;
+        this.value = value;
+    }
+
+    static <T> RegistryResult<T> success(final T value) {
+        return new RegistryResult<>(null, SystemErrorCode.ERROR_SUCCESS.getErrorCode(), value);
+    }
+
+    static <T> RegistryResult<T> failure(final String opName, final int returnCode) {
+        return new RegistryResult<>(opName, returnCode, null);
+    }
+
+    static <T> RegistryResult<T> failure(final RegistryResult<?> result) {
+        return new RegistryResult<>(result.opName, result.returnCode, null);
+    }
+
+    /** @return True if the lookup succeeded. */
+    public boolean isSuccess() {
+        return SystemErrorCode.ERROR_SUCCESS.is(returnCode);
+    }
+
+    /** @return True if the lookup failed with the given error code. */
+    public boolean is(final SystemErrorCode errorCode) {
+        return errorCode.is(returnCode);
+    }
+
+    /** @return The name of the operation which failed, or null if the lookup succeeded. */
+    public String getOpName() {
+        return opName;
+    }
+
+    /** @return The Win32 error code returned by the server, which is 0 (ERROR_SUCCESS) if the lookup succeeded. */
+    public int getReturnCode() {
+        return returnCode;
+    }
+
+    /** @return The system error code for the return code, or null if the return code is not a known error code. */
+    public SystemErrorCode getErrorCode() {
+        return SystemErrorCode.getErrorCode(returnCode);
+    }
+
+    /** @return The value which was read, or null if the lookup failed. */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * @return The value which was read.
+     * @throws RPCException If the lookup failed.
+     */
+    public T get()
+        throws RPCException {
+        if (!isSuccess()) {
+            throw new RPCException(opName, returnCode);
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        if (isSuccess()) {
+            return String.format("RegistryResult {value=%s}", value);
+        }
+        return String.format("RegistryResult {opName=%s, returnCode=%d}", opName, returnCode);
+    }
+}
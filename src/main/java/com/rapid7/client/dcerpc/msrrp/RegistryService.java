@@ -18,30 +18,52 @@
  */
 package com.rapid7.client.dcerpc.msrrp;
 
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_CALL_NOT_IMPLEMENTED;
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_FILE_NOT_FOUND;
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_INSUFFICIENT_BUFFER;
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_INVALID_FUNCTION;
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_MORE_DATA;
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_NOT_SUPPORTED;
 import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_NO_MORE_ITEMS;
 import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_SUCCESS;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import com.google.common.base.Strings;
 import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.msdtyp.SecurityInformation;
 import com.rapid7.client.dcerpc.RPCException;
+import com.rapid7.client.dcerpc.msrrp.messages.BaseRegCloseKey;
+import com.rapid7.client.dcerpc.msrrp.messages.BaseRegCreateKeyRequest;
+import com.rapid7.client.dcerpc.msrrp.messages.BaseRegCreateKeyResponse;
+import com.rapid7.client.dcerpc.msrrp.messages.BaseRegDeleteValue;
 import com.rapid7.client.dcerpc.msrrp.messages.BaseRegEnumKeyRequest;
 import com.rapid7.client.dcerpc.msrrp.messages.BaseRegEnumKeyResponse;
 import com.rapid7.client.dcerpc.msrrp.messages.BaseRegEnumValueRequest;
 import com.rapid7.client.dcerpc.msrrp.messages.BaseRegEnumValueResponse;
+import com.rapid7.client.dcerpc.msrrp.messages.BaseRegGetKeySecurityRequest;
+import com.rapid7.client.dcerpc.msrrp.messages.BaseRegGetKeySecurityResponse;
+import com.rapid7.client.dcerpc.msrrp.messages.BaseRegNotifyChangeKeyValue;
 import com.rapid7.client.dcerpc.msrrp.messages.BaseRegOpenKey;
+import com.rapid7.client.dcerpc.msrrp.messages.BaseRegQueryMultipleValues2Request;
+import com.rapid7.client.dcerpc.msrrp.messages.BaseRegQueryMultipleValues2Response;
 import com.rapid7.client.dcerpc.msrrp.messages.BaseRegQueryInfoKeyRequest;
 import com.rapid7.client.dcerpc.msrrp.messages.BaseRegQueryInfoKeyResponse;
 import com.rapid7.client.dcerpc.msrrp.messages.BaseRegQueryValueRequest;
 import com.rapid7.client.dcerpc.msrrp.messages.BaseRegQueryValueResponse;
+import com.rapid7.client.dcerpc.msrrp.messages.BaseRegSaveKey;
+import com.rapid7.client.dcerpc.msrrp.messages.BaseRegSetValue;
 import com.rapid7.client.dcerpc.msrrp.messages.HandleRequest;
 import com.rapid7.client.dcerpc.msrrp.messages.HandleResponse;
+import com.rapid7.client.dcerpc.msrrp.messages.ReturnValueResponse;
 import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
 import com.rapid7.client.dcerpc.transport.RPCTransport;
 
@@ -57,49 +79,220 @@ public class RegistryService {
     private final static int MAX_REGISTRY_KEY_CLASS_SIZE = 32767;
     private final static int MAX_REGISTRY_VALUE_NAME_SIZE = 32767;
     private final static int MAX_REGISTRY_VALUE_DATA_SIZE = 1048576;
+    private final static int INITIAL_MULTIPLE_VALUES_DATA_SIZE = 1024;
+    private final static int INITIAL_PERFORMANCE_DATA_SIZE = 65536;
+    private final static int MAX_PERFORMANCE_DATA_SIZE = 33554432;
+    private final static int INITIAL_SECURITY_DESCRIPTOR_SIZE = 4096;
+    private final static int MAX_SECURITY_DESCRIPTOR_SIZE = 262144;
+    private final static long UNKNOWN_LAST_WRITE_TIME = -1;
+    private final static EnumSet<SecurityInformation> DEFAULT_SECURITY_INFORMATION =
+        EnumSet.of(SecurityInformation.OWNER_SECURITY_INFORMATION, SecurityInformation.GROUP_SECURITY_INFORMATION,
+            SecurityInformation.DACL_SECURITY_INFORMATION);
     private final static EnumSet<AccessMask> ACCESS_MASK = EnumSet.of(AccessMask.MAXIMUM_ALLOWED);
     private final Map<RegistryHive, ContextHandle> hiveCache = new HashMap<>();
-    private final Map<String, ContextHandle> keyPathCache = new HashMap<>();
+    private final Map<KeyPathKey, ContextHandle> keyPathCache = new HashMap<>();
+    // The last write times against which the value cache is revalidated, held while their keys are open.
+    private final Map<KeyPathKey, Long> lastWriteTimeCache = new HashMap<>();
     private final RPCTransport transport;
+    private final RegistryValueCache valueCache;
+    private final RegistryNegativeCache negativeCache;
+    private volatile boolean queryMultipleValuesUnsupported;
+    private volatile int performanceDataSize = INITIAL_PERFORMANCE_DATA_SIZE;
 
     public RegistryService(final RPCTransport transport) {
         if (transport == null) {
             throw new IllegalArgumentException("Invalid RPC transport: " + transport);
         }
         this.transport = transport;
+        this.valueCache = null;
+        this.negativeCache = null;
+    }
+
+    /**
+     * Create a registry service which serves values from the given cache while the last write time of their key is
+     * unchanged. The last write time of a key is read with one BaseRegQueryInfoKey call when its values are first read,
+     * or when {@link #getKeyInfo(String, String)} is called, and is held until the key is closed with
+     * {@link #closeKey(String, String)}, so every value read of an open key is revalidated by that one call. Values are
+     * only read from the server when the key has been written since they were cached. Writes made through this service
+     * drop the held last write time of the key they write, and a change reported by
+     * {@link #waitForChange(String, String, boolean, EnumSet)} drops every held last write time; close a key to see
+     * values written by other clients since it was opened. The last write time of a hive root is never held.
+     *
+     * @param transport The transport bound to the winreg interface.
+     * @param valueCache The cache of values, which may be shared between services connected to the same host.
+     */
+    public RegistryService(final RPCTransport transport, final RegistryValueCache valueCache) {
+        if (transport == null) {
+            throw new IllegalArgumentException("Invalid RPC transport: " + transport);
+        }
+        if (valueCache == null) {
+            throw new IllegalArgumentException("Invalid registry value cache: " + valueCache);
+        }
+        this.transport = transport;
+        this.valueCache = valueCache;
+        this.negativeCache = null;
+    }
+
+    /**
+     * Create a registry service which answers lookups of keys and values that were recently found not to exist from
+     * the given cache, without a round trip to the server. Missing entries are discarded when they expire, or when the
+     * last write time of the key holding them is seen to change.
+     *
+     * @param transport The transport bound to the winreg interface.
+     * @param valueCache The cache of values, or null to always read values from the server.
+     * @param negativeCache The cache of missing keys and values, which may be shared between services connected to the
+     *        same host.
+     */
+    public RegistryService(
+        final RPCTransport transport,
+        final RegistryValueCache valueCache,
+        final RegistryNegativeCache negativeCache) {
+        if (transport == null) {
+            throw new IllegalArgumentException("Invalid RPC transport: " + transport);
+        }
+        if (negativeCache == null) {
+            throw new IllegalArgumentException("Invalid registry negative cache: " + negativeCache);
+        }
+        this.transport = transport;
+        this.valueCache = valueCache;
+        this.negativeCache = negativeCache;
     }
 
     public boolean doesKeyExist(final String hiveName, final String keyPath)
         throws IOException {
-        try {
-            openKey(hiveName, keyPath);
-        } catch (final RPCException exception) {
-            if (exception.hasErrorCode()) {
-                switch (exception.getErrorCode()) {
-                case ERROR_FILE_NOT_FOUND:
-                    return false;
-                default:
-                    throw exception;
-                }
+        return exists(tryOpenKey(hiveName, keyPath));
+    }
+
+    public boolean doesValueExist(final String hiveName, final String keyPath, final String valueName)
+        throws IOException {
+        return exists(queryValueInfo(hiveName, keyPath, valueName));
+    }
+
+    /**
+     * Open a key, reporting a key which does not exist or cannot be opened through the returned result rather than
+     * by throwing an {@link RPCException}. The handle is cached exactly as it is by the other lookups.
+     *
+     * @param hiveName The name of the hive, e.g. HKLM.
+     * @param keyPath The path of the key relative to the hive.
+     * @return The result of opening the key, which carries the error code returned by the server on failure.
+     * @throws IOException On a transport error.
+     */
+    public RegistryResult<Void> tryOpenKey(final String hiveName, final String keyPath)
+        throws IOException {
+        final RegistryResult<ContextHandle> handle = openKeyResult(hiveName, keyPath);
+        if (!handle.isSuccess()) {
+            return RegistryResult.failure(handle);
+        }
+        return RegistryResult.success(null);
+    }
+
+    /**
+     * Close the cached handle of a key, so that walking a large tree does not hold a handle open on the server for
+     * every key it has visited. The key is opened again if it is used afterwards. Hive handles are not closed, and a
+     * key whose handle is not cached is ignored. An error code returned by the server is ignored, as the handle is
+     * discarded either way.
+     *
+     * @param hiveName The name of the hive, e.g. HKLM.
+     * @param keyPath The path of the key relative to the hive.
+     * @throws IOException On a transport error.
+     */
+    public void closeKey(final String hiveName, final String keyPath)
+        throws IOException {
+        final String canonicalizedKeyPath = canonicalize(keyPath);
+        if (canonicalizedKeyPath.isEmpty()) {
+            return;
+        }
+        final KeyPathKey cacheKey = new KeyPathKey(getHive(hiveName), canonicalizedKeyPath);
+        synchronized (lastWriteTimeCache) {
+            lastWriteTimeCache.remove(cacheKey);
+        }
+        synchronized (keyPathCache) {
+            final ContextHandle handle = keyPathCache.remove(cacheKey);
+            if (handle != null) {
+                transport.call(new BaseRegCloseKey(handle));
             }
         }
-        return true;
     }
 
-    public boolean doesValueExist(final String hiveName, final String keyPath, final String valueName)
+    /**
+     * Enumerate the subkeys of a key, reporting an error code returned by the server through the returned result
+     * rather than by throwing an {@link RPCException}.
+     *
+     * @param hiveName The name of the hive, e.g. HKLM.
+     * @param keyPath The path of the key relative to the hive.
+     * @return The result of the enumeration, which carries the subkeys on success.
+     * @throws IOException On a transport error.
+     */
+    public RegistryResult<List<RegistryKey>> tryGetSubKeys(final String hiveName, final String keyPath)
         throws IOException {
-        try {
-            getValue(hiveName, keyPath, valueName);
-        } catch (final RPCException exception) {
-            if (exception.hasErrorCode()) {
-                switch (exception.getErrorCode()) {
-                case ERROR_FILE_NOT_FOUND:
-                    return false;
-                default:
-                    throw exception;
-                }
+        final RegistryResult<ContextHandle> handle = openKeyResult(hiveName, keyPath);
+        if (!handle.isSuccess()) {
+            return RegistryResult.failure(handle);
+        }
+        return enumerateKeys(hiveName, keyPath, handle.getValue());
+    }
+
+    /**
+     * Read a value, reporting a key or value which does not exist through the returned result rather than by throwing
+     * an {@link RPCException}. Values are served from the value cache when this service has one.
+     *
+     * @param hiveName The name of the hive, e.g. HKLM.
+     * @param keyPath The path of the key relative to the hive.
+     * @param valueName The name of the value, or null for the default value.
+     * @return The result of the lookup, which carries the value on success.
+     * @throws IOException On a transport error.
+     */
+    public RegistryResult<RegistryValue> tryGetValue(
+        final String hiveName,
+        final String keyPath,
+        final String valueName)
+        throws IOException {
+        final String canonicalizedValueName = Strings.nullToEmpty(valueName);
+        final RegistryResult<ContextHandle> handle = openKeyResult(hiveName, keyPath);
+        if (!handle.isSuccess()) {
+            return RegistryResult.failure(handle);
+        }
+        if (valueCache == null) {
+            if (isValueMissing(hiveName, keyPath, canonicalizedValueName)) {
+                return RegistryResult.failure("BaseRegQueryValue", ERROR_FILE_NOT_FOUND.getErrorCode());
             }
+            final RegistryResult<RegistryValue> result = queryValueResult(handle.getValue(), canonicalizedValueName);
+            recordMissingValue(hiveName, keyPath, canonicalizedValueName, UNKNOWN_LAST_WRITE_TIME,
+                result.getReturnCode());
+            return result;
+        }
+        final RegistryResult<Long> lastWriteTime = getLastWriteTime(hiveName, keyPath, handle.getValue());
+        if (!lastWriteTime.isSuccess()) {
+            return RegistryResult.failure(lastWriteTime);
         }
+        final RegistryHive hive = RegistryHive.getRegistryHiveByName(hiveName);
+        final String canonicalizedKeyPath = canonicalize(keyPath);
+        final RegistryValue value =
+            valueCache.getValue(hive, canonicalizedKeyPath, canonicalizedValueName, lastWriteTime.getValue());
+        if (value != null) {
+            return RegistryResult.success(value);
+        }
+        if (isValueMissing(hiveName, keyPath, canonicalizedValueName)) {
+            return RegistryResult.failure("BaseRegQueryValue", ERROR_FILE_NOT_FOUND.getErrorCode());
+        }
+        // A write between BaseRegQueryInfoKey and BaseRegQueryValue caches a value which is newer than its last write
+        // time, which only causes it to be read again on the next revalidation.
+        final RegistryResult<RegistryValue> result = queryValueResult(handle.getValue(), canonicalizedValueName);
+        if (result.isSuccess()) {
+            valueCache.putValue(hive, canonicalizedKeyPath, lastWriteTime.getValue(), result.getValue());
+        } else {
+            recordMissingValue(hiveName, keyPath, canonicalizedValueName, lastWriteTime.getValue(),
+                result.getReturnCode());
+        }
+        return result;
+    }
+
+    private boolean exists(final RegistryResult<?> result)
+        throws RPCException {
+        if (result.is(ERROR_FILE_NOT_FOUND)) {
+            return false;
+        }
+        result.get();
         return true;
     }
 
@@ -112,15 +305,77 @@ public class RegistryService {
         if (returnCode != 0) {
             throw new RPCException("BaseRegQueryInfoKey", returnCode);
         }
-        return new RegistryKeyInfo(response.getSubKeys(), response.getMaxSubKeyLen(), response.getMaxClassLen(),
-            response.getValues(), response.getMaxValueNameLen(), response.getMaxValueLen(),
+        final RegistryKeyInfo keyInfo = new RegistryKeyInfo(response.getSubKeys(), response.getMaxSubKeyLen(),
+            response.getMaxClassLen(), response.getValues(), response.getMaxValueNameLen(), response.getMaxValueLen(),
             response.getSecurityDescriptor(), response.getLastWriteTime());
+        keyWritten(hiveName, canonicalize(keyPath), keyInfo.getLastWriteTime());
+        putLastWriteTime(hiveName, canonicalize(keyPath), keyInfo.getLastWriteTime());
+        return keyInfo;
+    }
+
+    /**
+     * Read the owner, group and DACL of a key. The SACL is not requested, as reading it requires the
+     * ACCESS_SYSTEM_SECURITY right which keys are not opened with.
+     *
+     * @param hiveName The name of the hive, e.g. HKLM.
+     * @param keyPath The path of the key relative to the hive.
+     * @return The security descriptor of the key, which is the same instance for every key with an identical
+     *         descriptor.
+     * @throws IOException On a transport error, or an error code from the server such as ERROR_ACCESS_DENIED when the
+     *         caller does not have READ_CONTROL access to the key.
+     */
+    public RegistryKeySecurity getKeySecurity(final String hiveName, final String keyPath)
+        throws IOException {
+        return getKeySecurity(hiveName, keyPath, DEFAULT_SECURITY_INFORMATION);
+    }
+
+    /**
+     * Read the security descriptor of a key. The descriptor is read into a buffer which is grown to the size reported
+     * by the server when it returns ERROR_INSUFFICIENT_BUFFER.
+     *
+     * @param hiveName The name of the hive, e.g. HKLM.
+     * @param keyPath The path of the key relative to the hive.
+     * @param securityInformation The parts of the security descriptor to read.
+     * @return The security descriptor of the key, which is the same instance for every key with an identical
+     *         descriptor.
+     * @throws IOException On a transport error, or an error code from the server.
+     */
+    public RegistryKeySecurity getKeySecurity(
+        final String hiveName,
+        final String keyPath,
+        final EnumSet<SecurityInformation> securityInformation)
+        throws IOException {
+        if (securityInformation == null || securityInformation.isEmpty()) {
+            throw new IllegalArgumentException("Security information is invalid: " + securityInformation);
+        }
+        final ContextHandle handle = openKey(hiveName, keyPath);
+        int size = INITIAL_SECURITY_DESCRIPTOR_SIZE;
+        for (;;) {
+            final BaseRegGetKeySecurityRequest request =
+                new BaseRegGetKeySecurityRequest(handle, securityInformation, size);
+            final BaseRegGetKeySecurityResponse response = transport.call(request);
+            final int returnCode = response.getReturnValue();
+            if (ERROR_SUCCESS.is(returnCode)) {
+                return RegistryKeySecurity.intern(response.getSecurityDescriptor());
+            } else if (!ERROR_INSUFFICIENT_BUFFER.is(returnCode) || size >= MAX_SECURITY_DESCRIPTOR_SIZE) {
+                throw new RPCException("BaseRegGetKeySecurity", returnCode);
+            }
+            size = Math.min(Math.max(response.getSecurityDescriptorSize(), size * 2), MAX_SECURITY_DESCRIPTOR_SIZE);
+        }
     }
 
     public List<RegistryKey> getSubKeys(final String hiveName, final String keyPath)
         throws IOException {
+        return enumerateKeys(hiveName, keyPath, openKey(hiveName, keyPath)).get();
+    }
+
+    private RegistryResult<List<RegistryKey>> enumerateKeys(
+        final String hiveName,
+        final String keyPath,
+        final ContextHandle handle)
+        throws IOException {
+        final String canonicalizedKeyPath = canonicalize(keyPath);
         final List<RegistryKey> keyNames = new LinkedList<>();
-        final ContextHandle handle = openKey(hiveName, keyPath);
         for (int index = 0;; index++) {
             final BaseRegEnumKeyRequest request =
                 new BaseRegEnumKeyRequest(handle, index, MAX_REGISTRY_KEY_NAME_SIZE, MAX_REGISTRY_KEY_CLASS_SIZE);
@@ -128,19 +383,70 @@ public class RegistryService {
             final int returnCode = response.getReturnValue();
 
             if (ERROR_SUCCESS.is(returnCode)) {
-                keyNames.add(new RegistryKey(response.getName(), response.getLastWriteTime()));
+                final RegistryKey key = new RegistryKey(response.getName(), response.getLastWriteTime());
+                if (negativeCache != null) {
+                    final String subKeyPath = canonicalizedKeyPath.isEmpty() ? key.getName().toLowerCase()
+                        : canonicalizedKeyPath + "\\" + key.getName().toLowerCase();
+                    keyWritten(hiveName, subKeyPath, key.getLastWriteTime().getWindowsTime());
+                }
+                keyNames.add(key);
             } else if (ERROR_NO_MORE_ITEMS.is(returnCode)) {
-                return Collections.unmodifiableList(new ArrayList<RegistryKey>(keyNames));
+                return RegistryResult.success(Collections.unmodifiableList(new ArrayList<RegistryKey>(keyNames)));
             } else {
-                throw new RPCException("BaseRegEnumKey", returnCode);
+                return RegistryResult.failure("BaseRegEnumKey", returnCode);
             }
         }
     }
 
     public List<RegistryValue> getValues(final String hiveName, final String keyPath)
         throws IOException {
-        final List<RegistryValue> values = new LinkedList<>();
+        if (valueCache == null) {
+            return enumerateValues(openKey(hiveName, keyPath));
+        }
+        final long lastWriteTime = getLastWriteTime(hiveName, keyPath, openKey(hiveName, keyPath)).get();
+        final RegistryHive hive = RegistryHive.getRegistryHiveByName(hiveName);
+        final String canonicalizedKeyPath = canonicalize(keyPath);
+        List<RegistryValue> values = valueCache.getValues(hive, canonicalizedKeyPath, lastWriteTime);
+        if (values == null) {
+            values = enumerateValues(openKey(hiveName, keyPath));
+            valueCache.putValues(hive, canonicalizedKeyPath, lastWriteTime, values);
+        }
+        return values;
+    }
+
+    /**
+     * Enumerate the names, types and data sizes of the values of a key without transferring their data. Each value is
+     * enumerated with a zero length data buffer, and its data size is taken from the size the server reports as
+     * required.
+     *
+     * @param hiveName The name of the hive, e.g. HKLM.
+     * @param keyPath The path of the key relative to the hive.
+     * @return The values of the key.
+     * @throws IOException On a transport error or an unexpected error code from the server.
+     */
+    public List<RegistryValueInfo> getValueInfos(final String hiveName, final String keyPath)
+        throws IOException {
+        final List<RegistryValueInfo> valueInfos = new ArrayList<>();
         final ContextHandle handle = openKey(hiveName, keyPath);
+        for (int index = 0;; index++) {
+            final BaseRegEnumValueRequest request =
+                new BaseRegEnumValueRequest(handle, index, MAX_REGISTRY_VALUE_NAME_SIZE, 0);
+            final BaseRegEnumValueResponse response = transport.call(request);
+            final int returnCode = response.getReturnValue();
+
+            if (ERROR_SUCCESS.is(returnCode) || ERROR_MORE_DATA.is(returnCode)) {
+                valueInfos.add(new RegistryValueInfo(response.getName(), response.getType(), response.getDataSize()));
+            } else if (ERROR_NO_MORE_ITEMS.is(returnCode)) {
+                return Collections.unmodifiableList(valueInfos);
+            } else {
+                throw new RPCException("BaseRegEnumValue", returnCode);
+            }
+        }
+    }
+
+    private List<RegistryValue> enumerateValues(final ContextHandle handle)
+        throws IOException {
+        final List<RegistryValue> values = new LinkedList<>();
         for (int index = 0;; index++) {
             final BaseRegEnumValueRequest request =
                 new BaseRegEnumValueRequest(handle, index, MAX_REGISTRY_VALUE_NAME_SIZE, MAX_REGISTRY_VALUE_DATA_SIZE);
@@ -148,7 +454,7 @@ public class RegistryService {
             final int returnCode = response.getReturnValue();
 
             if (ERROR_SUCCESS.is(returnCode)) {
-                values.add(new RegistryValue(response.getName(), response.getType(), response.getData()));
+                values.add(RegistryValue.wrap(response.getName(), response.getType(), response.getData()));
             } else if (ERROR_NO_MORE_ITEMS.is(returnCode)) {
                 return Collections.unmodifiableList(new ArrayList<RegistryValue>(values));
             } else {
@@ -157,23 +463,466 @@ public class RegistryService {
         }
     }
 
-    public RegistryValue getValue(final String hiveName, final String keyPath, final String valueName)
+    /**
+     * Read a set of named values from a single key. The values are requested in one BaseRegQueryMultipleValues2 call,
+     * which is retried once with the exact buffer size reported by the server if the initial buffer is too small. If
+     * the server rejects the method, or one of the values does not exist, the values are queried one at a time over
+     * the already opened key handle instead. When a {@link RegistryValueCache} is in use, only the values which are
+     * not cached for the key's current last write time are requested.
+     *
+     * @param hiveName The name of the hive, e.g. HKLM.
+     * @param keyPath The path of the key relative to the hive.
+     * @param valueNames The names of the values to read.
+     * @return The values which exist, in the order in which they were requested. Values which do not exist are
+     *         omitted.
+     * @throws IOException On a transport error or an unexpected error code from the server.
+     */
+    public List<RegistryValue> getValues(
+        final String hiveName,
+        final String keyPath,
+        final Collection<String> valueNames)
+        throws IOException {
+        if (valueNames == null) {
+            throw new IllegalArgumentException("Value names are invalid: " + valueNames);
+        }
+        final LinkedHashSet<String> canonicalizedValueNames = new LinkedHashSet<>();
+        for (final String valueName : valueNames) {
+            canonicalizedValueNames.add(Strings.nullToEmpty(valueName));
+        }
+        if (valueCache == null) {
+            final ContextHandle handle = openKey(hiveName, keyPath);
+            if (canonicalizedValueNames.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return queryValues(handle, new ArrayList<>(canonicalizedValueNames));
+        }
+        final long lastWriteTime = getLastWriteTime(hiveName, keyPath, openKey(hiveName, keyPath)).get();
+        final RegistryHive hive = RegistryHive.getRegistryHiveByName(hiveName);
+        final String canonicalizedKeyPath = canonicalize(keyPath);
+        final Map<String, RegistryValue> cachedValues = new HashMap<>();
+        final List<String> uncachedValueNames = new ArrayList<>();
+        for (final String valueName : canonicalizedValueNames) {
+            final RegistryValue value = valueCache.getValue(hive, canonicalizedKeyPath, valueName, lastWriteTime);
+            if (value == null) {
+                uncachedValueNames.add(valueName);
+            } else {
+                cachedValues.put(valueName, value);
+            }
+        }
+        if (!uncachedValueNames.isEmpty()) {
+            for (final RegistryValue value : queryValues(openKey(hiveName, keyPath), uncachedValueNames)) {
+                valueCache.putValue(hive, canonicalizedKeyPath, lastWriteTime, value);
+                cachedValues.put(value.getName(), value);
+            }
+        }
+        final List<RegistryValue> values = new ArrayList<>(cachedValues.size());
+        for (final String valueName : canonicalizedValueNames) {
+            if (cachedValues.containsKey(valueName)) {
+                values.add(cachedValues.get(valueName));
+            }
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * Read the type and data size of a value without transferring its data. The value is queried with a zero length
+     * data buffer, and its data size is taken from the size the server reports as required.
+     *
+     * @param hiveName The name of the hive, e.g. HKLM.
+     * @param keyPath The path of the key relative to the hive.
+     * @param valueName The name of the value, or null for the default value.
+     * @return The name, type and data size of the value.
+     * @throws IOException On a transport error, or an error code from the server such as ERROR_FILE_NOT_FOUND when the
+     *         value does not exist.
+     */
+    public RegistryValueInfo getValueInfo(final String hiveName, final String keyPath, final String valueName)
+        throws IOException {
+        return queryValueInfo(hiveName, keyPath, valueName).get();
+    }
+
+    private RegistryResult<RegistryValueInfo> queryValueInfo(
+        final String hiveName,
+        final String keyPath,
+        final String valueName)
         throws IOException {
         final String canonicalizedValueName = Strings.nullToEmpty(valueName);
-        final ContextHandle handle = openKey(hiveName, keyPath);
+        final RegistryResult<ContextHandle> handle = openKeyResult(hiveName, keyPath);
+        if (!handle.isSuccess()) {
+            return RegistryResult.failure(handle);
+        }
+        if (isValueMissing(hiveName, keyPath, canonicalizedValueName)) {
+            return RegistryResult.failure("BaseRegQueryValue", ERROR_FILE_NOT_FOUND.getErrorCode());
+        }
         final BaseRegQueryValueRequest request =
-            new BaseRegQueryValueRequest(handle, canonicalizedValueName, MAX_REGISTRY_VALUE_DATA_SIZE);
+            new BaseRegQueryValueRequest(handle.getValue(), canonicalizedValueName, 0);
         final BaseRegQueryValueResponse response = transport.call(request);
         final int returnCode = response.getReturnValue();
+        if (!ERROR_SUCCESS.is(returnCode) && !ERROR_MORE_DATA.is(returnCode)) {
+            recordMissingValue(hiveName, keyPath, canonicalizedValueName, UNKNOWN_LAST_WRITE_TIME, returnCode);
+            return RegistryResult.failure("BaseRegQueryValue", returnCode);
+        }
+        return RegistryResult.success(
+            new RegistryValueInfo(canonicalizedValueName, response.getType(), response.getDataSize()));
+    }
+
+    public RegistryValue getValue(final String hiveName, final String keyPath, final String valueName)
+        throws IOException {
+        return tryGetValue(hiveName, keyPath, valueName).get();
+    }
+
+    private RegistryResult<RegistryValue> queryValueResult(final ContextHandle handle, final String valueName)
+        throws IOException {
+        final BaseRegQueryValueRequest request =
+            new BaseRegQueryValueRequest(handle, valueName, MAX_REGISTRY_VALUE_DATA_SIZE);
+        final BaseRegQueryValueResponse response = transport.call(request);
+        final int returnCode = response.getReturnValue();
+        if (returnCode != 0) {
+            return RegistryResult.failure("BaseRegQueryValue", returnCode);
+        }
+        return RegistryResult.success(RegistryValue.wrap(valueName, response.getType(), response.getData()));
+    }
+
+    /**
+     * @return The last write time held for the key, or else the last write time read with BaseRegQueryInfoKey.
+     */
+    private RegistryResult<Long> getLastWriteTime(
+        final String hiveName,
+        final String keyPath,
+        final ContextHandle handle)
+        throws IOException {
+        final KeyPathKey cacheKey = new KeyPathKey(getHive(hiveName), canonicalize(keyPath));
+        synchronized (lastWriteTimeCache) {
+            final Long lastWriteTime = lastWriteTimeCache.get(cacheKey);
+            if (lastWriteTime != null) {
+                return RegistryResult.success(lastWriteTime);
+            }
+        }
+        return queryLastWriteTime(hiveName, keyPath, handle);
+    }
+
+    private RegistryResult<Long> queryLastWriteTime(
+        final String hiveName,
+        final String keyPath,
+        final ContextHandle handle)
+        throws IOException {
+        final BaseRegQueryInfoKeyRequest request = new BaseRegQueryInfoKeyRequest(handle);
+        final BaseRegQueryInfoKeyResponse response = transport.call(request);
+        final int returnCode = response.getReturnValue();
+        if (returnCode != 0) {
+            return RegistryResult.failure("BaseRegQueryInfoKey", returnCode);
+        }
+        final long lastWriteTime = response.getLastWriteTime();
+        keyWritten(hiveName, canonicalize(keyPath), lastWriteTime);
+        putLastWriteTime(hiveName, canonicalize(keyPath), lastWriteTime);
+        return RegistryResult.success(lastWriteTime);
+    }
+
+    /**
+     * Hold the last write time of an open key until it is closed. The hive root is never closed, so its last write
+     * time is not held.
+     */
+    private void putLastWriteTime(final String hiveName, final String canonicalizedKeyPath, final long lastWriteTime) {
+        if (valueCache != null && !canonicalizedKeyPath.isEmpty()) {
+            synchronized (lastWriteTimeCache) {
+                lastWriteTimeCache.put(new KeyPathKey(getHive(hiveName), canonicalizedKeyPath), lastWriteTime);
+            }
+        }
+    }
+
+    private boolean isValueMissing(final String hiveName, final String keyPath, final String valueName) {
+        if (negativeCache == null) {
+            return false;
+        }
+        final RegistryHive hive = RegistryHive.getRegistryHiveByName(hiveName);
+        return negativeCache.isValueMissing(hive, canonicalize(keyPath), valueName);
+    }
+
+    private void recordMissingValue(
+        final String hiveName,
+        final String keyPath,
+        final String valueName,
+        final long lastWriteTime,
+        final int returnCode) {
+        if (negativeCache != null && ERROR_FILE_NOT_FOUND.is(returnCode)) {
+            final RegistryHive hive = RegistryHive.getRegistryHiveByName(hiveName);
+            negativeCache.putMissingValue(hive, canonicalize(keyPath), valueName, lastWriteTime);
+        }
+    }
+
+    private void keyModified(final String hiveName, final String canonicalizedKeyPath) {
+        synchronized (lastWriteTimeCache) {
+            lastWriteTimeCache.remove(new KeyPathKey(getHive(hiveName), canonicalizedKeyPath));
+        }
+        if (negativeCache != null) {
+            final RegistryHive hive = RegistryHive.getRegistryHiveByName(hiveName);
+            negativeCache.keyModified(hive, canonicalizedKeyPath);
+        }
+    }
+
+    private void keyWritten(final String hiveName, final String canonicalizedKeyPath, final long lastWriteTime) {
+        if (negativeCache != null) {
+            final RegistryHive hive = RegistryHive.getRegistryHiveByName(hiveName);
+            negativeCache.keyWritten(hive, canonicalizedKeyPath, lastWriteTime);
+        }
+    }
+
+    /**
+     * @return The values which exist, in the order in which they were requested.
+     */
+    private List<RegistryValue> queryValues(final ContextHandle handle, final List<String> valueNames)
+        throws IOException {
+        if (!queryMultipleValuesUnsupported) {
+            final List<RegistryValue> values = queryMultipleValues(handle, valueNames);
+            if (values != null) {
+                return values;
+            }
+        }
+        return querySingleValues(handle, valueNames);
+    }
+
+    /**
+     * @return The requested values, or null if the caller should fall back to querying the values one at a time.
+     */
+    private List<RegistryValue> queryMultipleValues(final ContextHandle handle, final List<String> valueNames)
+        throws IOException {
+        int dataSize = INITIAL_MULTIPLE_VALUES_DATA_SIZE;
+        for (;;) {
+            final BaseRegQueryMultipleValues2Request request =
+                new BaseRegQueryMultipleValues2Request(handle, valueNames, dataSize);
+            final BaseRegQueryMultipleValues2Response response;
+            try {
+                response = transport.call(request);
+            } catch (final RPCException exception) {
+                // The server faulted the call; it does not implement BaseRegQueryMultipleValues2.
+                queryMultipleValuesUnsupported = true;
+                return null;
+            }
+            final int returnCode = response.getReturnValue();
+
+            if (ERROR_SUCCESS.is(returnCode)) {
+                final RegistryValueType[] types = response.getTypes();
+                final byte[][] data = response.getData();
+                final List<RegistryValue> values = new ArrayList<>(valueNames.size());
+                for (int index = 0; index < valueNames.size(); index++) {
+                    values.add(RegistryValue.wrap(valueNames.get(index), types[index], data[index]));
+                }
+                return Collections.unmodifiableList(values);
+            } else if (ERROR_MORE_DATA.is(returnCode)) {
+                final int requiredSize = response.getRequiredSize();
+                if (requiredSize <= dataSize || requiredSize > MAX_REGISTRY_VALUE_DATA_SIZE) {
+                    return null;
+                }
+                dataSize = requiredSize;
+            } else if (ERROR_CALL_NOT_IMPLEMENTED.is(returnCode) || ERROR_NOT_SUPPORTED.is(returnCode)
+                || ERROR_INVALID_FUNCTION.is(returnCode)) {
+                queryMultipleValuesUnsupported = true;
+                return null;
+            } else {
+                return null;
+            }
+        }
+    }
+
+    private List<RegistryValue> querySingleValues(final ContextHandle handle, final List<String> valueNames)
+        throws IOException {
+        final List<RegistryValue> values = new ArrayList<>(valueNames.size());
+        for (final String valueName : valueNames) {
+            final BaseRegQueryValueRequest request =
+                new BaseRegQueryValueRequest(handle, valueName, MAX_REGISTRY_VALUE_DATA_SIZE);
+            final BaseRegQueryValueResponse response = transport.call(request);
+            final int returnCode = response.getReturnValue();
+            if (ERROR_SUCCESS.is(returnCode)) {
+                values.add(RegistryValue.wrap(valueName, response.getType(), response.getData()));
+            } else if (!ERROR_FILE_NOT_FOUND.is(returnCode)) {
+                throw new RPCException("BaseRegQueryValue", returnCode);
+            }
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * Apply a batch of writes in order over this service's pipe. Keys are opened once and their handles are reused by
+     * later reads and writes, including the handle returned when a key is created. A write which fails does not stop
+     * the batch, so a value set under a key which could not be created fails with the error of opening that key.
+     *
+     * @param writes The writes to apply, in order.
+     * @return The result of each write, in the order of the writes.
+     * @throws IOException On a transport error.
+     */
+    public List<RegistryResult<Void>> write(final List<RegistryWrite> writes)
+        throws IOException {
+        if (writes == null || writes.contains(null)) {
+            throw new IllegalArgumentException("Registry writes are invalid: " + writes);
+        }
+        final List<RegistryResult<Void>> results = new ArrayList<>(writes.size());
+        for (final RegistryWrite write : writes) {
+            switch (write.getType()) {
+            case CREATE_KEY:
+                results.add(createKey(write.getHiveName(), write.getKeyPath()));
+                break;
+            case SET_VALUE:
+            case DELETE_VALUE:
+                results.add(writeValue(write));
+                break;
+            }
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+    private RegistryResult<Void> createKey(final String hiveName, final String keyPath)
+        throws IOException {
+        final String canonicalizedKeyPath = canonicalize(keyPath);
+        final RegistryResult<ContextHandle> hiveHandle = openHiveResult(hiveName);
+        if (!hiveHandle.isSuccess()) {
+            return RegistryResult.failure(hiveHandle);
+        }
+        final KeyPathKey cacheKey = new KeyPathKey(getHive(hiveName), canonicalizedKeyPath);
+        synchronized (keyPathCache) {
+            final BaseRegCreateKeyRequest request =
+                new BaseRegCreateKeyRequest(hiveHandle.getValue(), normalizeKeyPath(keyPath), 0, ACCESS_MASK);
+            final BaseRegCreateKeyResponse response = transport.call(request);
+            final int returnCode = response.getReturnValue();
+            if (returnCode != 0) {
+                return RegistryResult.failure("BaseRegCreateKey", returnCode);
+            }
+            keyModified(hiveName, canonicalizedKeyPath);
+            if (keyPathCache.containsKey(cacheKey)) {
+                transport.call(new BaseRegCloseKey(response.getHandle()));
+            } else {
+                keyPathCache.put(cacheKey, response.getHandle());
+            }
+            return RegistryResult.success(null);
+        }
+    }
+
+    private RegistryResult<Void> writeValue(final RegistryWrite write)
+        throws IOException {
+        final RegistryResult<ContextHandle> handle = openKeyResult(write.getHiveName(), write.getKeyPath());
+        if (!handle.isSuccess()) {
+            return RegistryResult.failure(handle);
+        }
+        final String opName;
+        final ReturnValueResponse response;
+        if (write.getType() == RegistryWrite.Type.SET_VALUE) {
+            opName = "BaseRegSetValue";
+            response = transport.call(new BaseRegSetValue(handle.getValue(), write.getValueName(),
+                write.getValueType().getTypeID(), write.getData()));
+        } else {
+            opName = "BaseRegDeleteValue";
+            response = transport.call(new BaseRegDeleteValue(handle.getValue(), write.getValueName()));
+        }
+        final int returnCode = response.getReturnValue();
+        if (returnCode != 0) {
+            return RegistryResult.failure(opName, returnCode);
+        }
+        // The value cache revalidates against the last write time of the key, which the write has changed.
+        keyModified(write.getHiveName(), canonicalize(write.getKeyPath()));
+        return RegistryResult.success(null);
+    }
+
+    /**
+     * Save a key, its subkeys and its values to a new file on the server in the registry file (regf) format. The
+     * caller must hold the SeBackupPrivilege on the server.
+     *
+     * @param hiveName The name of the hive, e.g. HKLM.
+     * @param keyPath The path of the key relative to the hive.
+     * @param filePath The path of the file on the server, which must not already exist. A relative path is resolved
+     *        against the working directory of the remote registry service, which is usually %SystemRoot%\System32.
+     * @throws IOException On a transport error or an error code from the server.
+     */
+    public void saveKey(final String hiveName, final String keyPath, final String filePath)
+        throws IOException {
+        if (filePath == null || filePath.isEmpty()) {
+            throw new IllegalArgumentException("File path is invalid: " + filePath);
+        }
+        final ContextHandle handle = openKey(hiveName, keyPath);
+        final BaseRegSaveKey request = new BaseRegSaveKey(handle, filePath);
+        final ReturnValueResponse response = transport.call(request);
+        final int returnCode = response.getReturnValue();
+        if (returnCode != 0) {
+            throw new RPCException("BaseRegSaveKey", returnCode);
+        }
+    }
+
+    /**
+     * Query HKEY_PERFORMANCE_DATA. The server reports ERROR_MORE_DATA without the required size when the buffer is too
+     * small, so the buffer is doubled until the data fits, up to 32 MB. The size which fit is used as the starting
+     * size of the next query, so repeated sampling does not pay for the growth again.
+     *
+     * @param valueName "Global" for all objects except costly ones, "Costly" for the costly objects, or a space
+     *        separated list of the title indexes of the objects to collect, e.g. "238 2".
+     * @return The PERF_DATA_BLOCK, which can be read with {@link com.rapid7.client.dcerpc.msrrp.perf.PerfDataParser}.
+     */
+    public byte[] getPerformanceData(final String valueName)
+        throws IOException {
+        if (valueName == null || valueName.isEmpty()) {
+            throw new IllegalArgumentException("Value name is invalid: " + valueName);
+        }
+        final ContextHandle handle = openHive(RegistryHive.HKEY_PERFORMANCE_DATA.getFullName());
+        int dataSize = performanceDataSize;
+        for (;;) {
+            final BaseRegQueryValueRequest request = new BaseRegQueryValueRequest(handle, valueName, dataSize);
+            final BaseRegQueryValueResponse response = transport.call(request);
+            final int returnCode = response.getReturnValue();
+            if (ERROR_MORE_DATA.is(returnCode) && dataSize < MAX_PERFORMANCE_DATA_SIZE) {
+                dataSize = Math.min(2 * dataSize, MAX_PERFORMANCE_DATA_SIZE);
+                continue;
+            }
+            if (returnCode != 0) {
+                throw new RPCException("BaseRegQueryValue", returnCode);
+            }
+            performanceDataSize = dataSize;
+            return response.getData();
+        }
+    }
+
+    /**
+     * Wait until the key changes. The call parks on the server until a change matching the filter occurs, so the
+     * transport of this service cannot be used for anything else in the meantime; use a service bound to a dedicated
+     * pipe, as {@link RegistryWatcher} does. Changes which occur between two calls are not reported. Once a change is
+     * reported, the cached values of every key are revalidated on their next read.
+     *
+     * @param hiveName The hive of the key.
+     * @param keyPath The path of the key.
+     * @param watchSubtree Whether changes in the subkeys of the key are reported as well as those of the key itself.
+     * @param notifyFilter The changes which are reported.
+     */
+    public void waitForChange(
+        final String hiveName,
+        final String keyPath,
+        final boolean watchSubtree,
+        final EnumSet<RegistryNotifyFilter> notifyFilter)
+        throws IOException {
+        if (notifyFilter == null || notifyFilter.isEmpty()) {
+            throw new IllegalArgumentException("Notify filter is invalid: " + notifyFilter);
+        }
+        final ContextHandle handle = openKey(hiveName, keyPath);
+        final BaseRegNotifyChangeKeyValue request = new BaseRegNotifyChangeKeyValue(handle, watchSubtree, notifyFilter);
+        final ReturnValueResponse response = transport.call(request);
+        final int returnCode = response.getReturnValue();
         if (returnCode != 0) {
-            throw new RPCException("BaseRegQueryValue", returnCode);
+            throw new RPCException("BaseRegNotifyChangeKeyValue", returnCode);
         }
-        return new RegistryValue(canonicalizedValueName, response.getType(), response.getData());
+        // The change may have written any key of the subtree, so no held last write time can be trusted.
+        synchronized (lastWriteTimeCache) {
+            lastWriteTimeCache.clear();
+        }
+    }
+
+    protected String canonicalize(final String keyPath) {
+        return canonicalizeKeyPath(keyPath);
+    }
+
+    static String canonicalizeKeyPath(final String keyPath) {
+        return normalizeKeyPath(keyPath).toLowerCase();
     }
 
-    protected String canonicalize(String keyPath) {
+    /**
+     * @param keyPath The path of a key relative to its hive.
+     * @return The path with repeated and trailing separators removed, in the case given by the caller.
+     */
+    static String normalizeKeyPath(String keyPath) {
         keyPath = Strings.nullToEmpty(keyPath);
-        keyPath = keyPath.toLowerCase();
         while (keyPath.contains("\\\\")) {
             keyPath = keyPath.replace("\\\\", "\\");
         }
@@ -185,51 +934,104 @@ public class RegistryService {
 
     protected ContextHandle openHive(final String hiveName)
         throws IOException {
-        if (hiveName == null) {
-            throw new IllegalArgumentException("Invalid hive: " + hiveName);
-        }
-        final RegistryHive hive = RegistryHive.getRegistryHiveByName(hiveName);
-        if (hive == null) {
-            throw new IllegalArgumentException("Unknown hive: " + hiveName);
-        }
+        return openHiveResult(hiveName).get();
+    }
+
+    private RegistryResult<ContextHandle> openHiveResult(final String hiveName)
+        throws IOException {
+        final RegistryHive hive = getHive(hiveName);
         synchronized (hiveCache) {
             if (hiveCache.containsKey(hive)) {
-                return hiveCache.get(hive);
+                return RegistryResult.success(hiveCache.get(hive));
             } else {
                 final short opNum = hive.getOpNum();
                 final HandleRequest request = new HandleRequest(opNum, ACCESS_MASK);
                 final HandleResponse response = transport.call(request);
                 final int returnCode = response.getReturnValue();
                 if (returnCode != 0) {
-                    throw new RPCException(hive.getOpName(), returnCode);
+                    return RegistryResult.failure(hive.getOpName(), returnCode);
                 }
                 final ContextHandle handle = response.getHandle();
                 hiveCache.put(hive, handle);
-                return handle;
+                return RegistryResult.success(handle);
             }
         }
     }
 
+    private static RegistryHive getHive(final String hiveName) {
+        if (hiveName == null) {
+            throw new IllegalArgumentException("Invalid hive: " + hiveName);
+        }
+        final RegistryHive hive = RegistryHive.getRegistryHiveByName(hiveName);
+        if (hive == null) {
+            throw new IllegalArgumentException("Unknown hive: " + hiveName);
+        }
+        return hive;
+    }
+
     protected ContextHandle openKey(final String hiveName, final String keyPath)
+        throws IOException {
+        return openKeyResult(hiveName, keyPath).get();
+    }
+
+    private RegistryResult<ContextHandle> openKeyResult(final String hiveName, final String keyPath)
         throws IOException {
         final String canonicalizedKeyPath = canonicalize(keyPath);
         if (canonicalizedKeyPath.isEmpty()) {
-            return openHive(hiveName);
+            return openHiveResult(hiveName);
         }
+        final RegistryHive hive = getHive(hiveName);
+        final KeyPathKey cacheKey = new KeyPathKey(hive, canonicalizedKeyPath);
         synchronized (keyPathCache) {
-            if (keyPathCache.containsKey(canonicalizedKeyPath)) {
-                return keyPathCache.get(canonicalizedKeyPath);
+            if (keyPathCache.containsKey(cacheKey)) {
+                return RegistryResult.success(keyPathCache.get(cacheKey));
             }
-            final ContextHandle hiveHandle = openHive(hiveName);
-            final BaseRegOpenKey request = new BaseRegOpenKey(hiveHandle, canonicalizedKeyPath, 0, ACCESS_MASK);
+            final RegistryResult<ContextHandle> hiveHandle = openHiveResult(hiveName);
+            if (!hiveHandle.isSuccess()) {
+                return hiveHandle;
+            }
+            if (negativeCache != null && negativeCache.isKeyMissing(hive, canonicalizedKeyPath)) {
+                return RegistryResult.failure("BaseRegOpenKey", ERROR_FILE_NOT_FOUND.getErrorCode());
+            }
+            final BaseRegOpenKey request =
+                new BaseRegOpenKey(hiveHandle.getValue(), canonicalizedKeyPath, 0, ACCESS_MASK);
             final HandleResponse response = transport.call(request);
             final int returnCode = response.getReturnValue();
             if (returnCode != 0) {
-                throw new RPCException("BaseRegOpenKey", returnCode);
+                if (negativeCache != null && ERROR_FILE_NOT_FOUND.is(returnCode)) {
+                    negativeCache.putMissingKey(hive, canonicalizedKeyPath);
+                }
+                return RegistryResult.failure("BaseRegOpenKey", returnCode);
             }
             final ContextHandle keyHandle = response.getHandle();
-            keyPathCache.put(canonicalizedKeyPath, keyHandle);
-            return keyHandle;
+            keyPathCache.put(cacheKey, keyHandle);
+            return RegistryResult.success(keyHandle);
+        }
+    }
+
+    private static class KeyPathKey {
+        private final RegistryHive hive;
+        private final String keyPath;
+
+        KeyPathKey(final RegistryHive hive, final String keyPath) {
+            this.hive = hive;
+            this.keyPath = keyPath;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hive, keyPath);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj == this) {
+                return true;
+            } else if (!(obj instanceof KeyPathKey)) {
+                return false;
+            }
+            final KeyPathKey other = (KeyPathKey) obj;
+            return hive == other.hive && Objects.equals(keyPath, other.keyPath);
         }
     }
 }
@@ -0,0 +1,239 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * A compact record of a registry tree: the path, last write time and subkey count of every key, and the name, type and
+ * a 64-bit hash of the data of every value. Key paths and value names are compared case-insensitively, as they are by
+ * the registry.<br>
+ * <br>
+ * A snapshot is persisted as a GZIP compressed stream by {@link #write(OutputStream)} and loaded again by
+ * {@link #read(InputStream)}.
+ */
+public class RegistrySnapshot {
+    private final static int MAGIC = 0x52524453;
+    private final static int VERSION = 1;
+    private final static HashFunction DATA_HASH = Hashing.murmur3_128();
+    private final NavigableMap<String, KeyEntry> keys = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    /** @return The number of keys in the snapshot. */
+    public int size() {
+        return keys.size();
+    }
+
+    /** @return The paths of the keys in the snapshot, relative to the hive. */
+    public Set<String> getKeyPaths() {
+        return Collections.unmodifiableSet(keys.keySet());
+    }
+
+    public boolean containsKey(final String keyPath) {
+        return keys.containsKey(keyPath);
+    }
+
+    public void write(final OutputStream outputStream)
+        throws IOException {
+        final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
+        final DataOutputStream dataOutputStream = new DataOutputStream(gzipOutputStream);
+        dataOutputStream.writeInt(MAGIC);
+        dataOutputStream.writeInt(VERSION);
+        dataOutputStream.writeInt(keys.size());
+        for (final Map.Entry<String, KeyEntry> key : keys.entrySet()) {
+            final KeyEntry keyEntry = key.getValue();
+            writeString(dataOutputStream, key.getKey());
+            dataOutputStream.writeLong(keyEntry.getLastWriteTime());
+            dataOutputStream.writeInt(keyEntry.getSubKeys());
+            dataOutputStream.writeInt(keyEntry.getValues().size());
+            for (final Map.Entry<String, ValueEntry> value : keyEntry.getValues().entrySet()) {
+                writeString(dataOutputStream, value.getKey());
+                dataOutputStream.writeInt(value.getValue().getType());
+                dataOutputStream.writeLong(value.getValue().getDataHash());
+            }
+        }
+        dataOutputStream.flush();
+        gzipOutputStream.finish();
+    }
+
+    public static RegistrySnapshot read(final InputStream inputStream)
+        throws IOException {
+        final DataInputStream dataInputStream = new DataInputStream(new GZIPInputStream(inputStream));
+        final int magic = dataInputStream.readInt();
+        if (magic != MAGIC) {
+            throw new IOException(String.format("Registry snapshot magic is invalid: 0x%08X", magic));
+        }
+        final int version = dataInputStream.readInt();
+        if (version != VERSION) {
+            throw new IOException("Registry snapshot version is not supported: " + version);
+        }
+        final RegistrySnapshot snapshot = new RegistrySnapshot();
+        final int keyCount = readCount(dataInputStream);
+        for (int keyIndex = 0; keyIndex < keyCount; keyIndex++) {
+            final String keyPath = readString(dataInputStream);
+            final long lastWriteTime = dataInputStream.readLong();
+            final int subKeys = dataInputStream.readInt();
+            final int valueCount = readCount(dataInputStream);
+            final Map<String, ValueEntry> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int valueIndex = 0; valueIndex < valueCount; valueIndex++) {
+                final String valueName = readString(dataInputStream);
+                values.put(valueName, new ValueEntry(dataInputStream.readInt(), dataInputStream.readLong()));
+            }
+            snapshot.putKey(keyPath, new KeyEntry(lastWriteTime, subKeys, values));
+        }
+        return snapshot;
+    }
+
+    KeyEntry getKey(final String keyPath) {
+        return keys.get(keyPath);
+    }
+
+    void putKey(final String keyPath, final KeyEntry keyEntry) {
+        keys.put(keyPath, keyEntry);
+    }
+
+    /**
+     * @return The keys below the given key, excluding the key itself.
+     */
+    NavigableMap<String, KeyEntry> getDescendants(final String keyPath) {
+        if (keyPath.isEmpty()) {
+            return keys.tailMap("", false);
+        }
+        // '\\' is immediately followed by ']', so this range holds exactly the paths starting with keyPath + "\\".
+        return keys.subMap(keyPath + "\\", true, keyPath + "]", false);
+    }
+
+    /**
+     * @return The paths of the direct subkeys of the given key, in case-insensitive order.
+     */
+    List<String> getSubKeyPaths(final String keyPath) {
+        final NavigableMap<String, KeyEntry> descendants = getDescendants(keyPath);
+        final int prefixLength = keyPath.isEmpty() ? 0 : keyPath.length() + 1;
+        final List<String> subKeyPaths = new ArrayList<>();
+        String path = descendants.isEmpty() ? null : descendants.firstKey();
+        while (path != null) {
+            final int index = path.indexOf('\\', prefixLength);
+            if (index < 0) {
+                subKeyPaths.add(path);
+                path = descendants.higherKey(path);
+            } else {
+                // Skip the rest of the subtree of the subkey, which sorts below the path of the subkey + "]".
+                path = descendants.ceilingKey(path.substring(0, index) + "]");
+            }
+        }
+        return subKeyPaths;
+    }
+
+    static ValueEntry newValueEntry(final RegistryValue value) {
+        final long dataHash = DATA_HASH.hashBytes(value.getData()).asLong();
+        return new ValueEntry(value.getType().getTypeID(), dataHash);
+    }
+
+    private static int readCount(final DataInputStream dataInputStream)
+        throws IOException {
+        final int count = dataInputStream.readInt();
+        if (count < 0) {
+            throw new IOException("Registry snapshot count is invalid: " + count);
+        }
+        return count;
+    }
+
+    private static void writeString(final DataOutputStream dataOutputStream, final String value)
+        throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        dataOutputStream.writeInt(bytes.length);
+        dataOutputStream.write(bytes);
+    }
+
+    private static String readString(final DataInputStream dataInputStream)
+        throws IOException {
+        final byte[] bytes = new byte[readCount(dataInputStream)];
+        dataInputStream.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static class KeyEntry {
+        private final long lastWriteTime;
+        private final int subKeys;
+        private final Map<String, ValueEntry> values;
+
+        KeyEntry(final long lastWriteTime, final int subKeys, final Map<String, ValueEntry> values) {
+            this.lastWriteTime = lastWriteTime;
+            this.subKeys = subKeys;
+            this.values = values;
+        }
+
+        long getLastWriteTime() {
+            return lastWriteTime;
+        }
+
+        int getSubKeys() {
+            return subKeys;
+        }
+
+        /** @return The values of the key by name, compared case-insensitively. */
+        Map<String, ValueEntry> getValues() {
+            return values;
+        }
+    }
+
+    static class ValueEntry {
+        private final int type;
+        private final long dataHash;
+
+        ValueEntry(final int type, final long dataHash) {
+            this.type = type;
+            this.dataHash = dataHash;
+        }
+
+        int getType() {
+            return type;
+        }
+
+        long getDataHash() {
+            return dataHash;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type + (int) (dataHash ^ dataHash >>> 32);
+        }
+
+        @Override
+        public boolean equals(final Object anObject) {
+            return anObject instanceof ValueEntry && type == ((ValueEntry) anObject).type
+                && dataHash == ((ValueEntry) anObject).dataHash;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import com.rapid7.client.dcerpc.msrrp.RegistryQueryPlan.KeyGroup;
+import com.rapid7.client.dcerpc.transport.PipeFanOut;
+
+/**
+ * Runs the same lookups in the hive of every user whose profile is loaded under HKEY_USERS. Lookups are written
+ * against HKEY_CURRENT_USER, and are made under HKEY_USERS\&lt;SID&gt; for each user. The loaded user hives are
+ * enumerated once, and the users are handed out to the winreg pipes so that several users are read at a time. The
+ * results of each user are passed to a {@link Listener} as soon as the user is complete, and the handles of the keys
+ * opened in the user's hive are closed.
+ */
+public class RegistryUserSweep {
+    /** Receives the results of each user. */
+    public interface Listener {
+        /**
+         * Called once per user, from the thread that read the user's hive. Calls are never concurrent.
+         *
+         * @param sid The SID of the user, as named under HKEY_USERS.
+         * @param results The result of each distinct lookup, keyed by the HKEY_CURRENT_USER lookup it was made for.
+         */
+        void userSwept(String sid, Map<RegistryQuery, RegistryResult<?>> results);
+    }
+
+    private final static String USER_SID_PREFIX = "S-1-5-21-";
+    private final static String CLASSES_SUFFIX = "_Classes";
+    private final List<RegistryService> services;
+
+    /**
+     * @param services One registry service per winreg pipe to the host. The services may share a value cache or a
+     *        negative cache.
+     */
+    public RegistryUserSweep(final List<RegistryService> services) {
+        if (services == null || services.isEmpty() || services.contains(null)) {
+            throw new IllegalArgumentException("Registry services are invalid: " + services);
+        }
+        this.services = Collections.unmodifiableList(new ArrayList<>(services));
+    }
+
+    /**
+     * @return The SIDs of the domain and local users whose hives are loaded under HKEY_USERS. Well known accounts and
+     *         the _Classes hives of the users are skipped.
+     * @throws IOException On a transport error.
+     */
+    public List<String> getUserSids()
+        throws IOException {
+        final List<String> sids = new ArrayList<>();
+        for (final RegistryKey key : services.get(0).getSubKeys(RegistryHive.HKEY_USERS.getFullName(), "")) {
+            final String name = key.getName();
+            if (name.regionMatches(true, 0, USER_SID_PREFIX, 0, USER_SID_PREFIX.length())
+                && !name.regionMatches(true, name.length() - CLASSES_SUFFIX.length(), CLASSES_SUFFIX, 0,
+                    CLASSES_SUFFIX.length())) {
+                sids.add(name);
+            }
+        }
+        return sids;
+    }
+
+    /**
+     * Runs the lookups for every user whose hive is loaded.
+     *
+     * @param queries The lookups to make for each user, against HKEY_CURRENT_USER.
+     * @param listener Receives the results of each user.
+     * @throws IOException On a transport error.
+     */
+    public void sweep(final Collection<RegistryQuery> queries, final Listener listener)
+        throws IOException {
+        sweep(getUserSids(), queries, listener);
+    }
+
+    /**
+     * Runs the lookups for the given users.
+     *
+     * @param sids The SIDs of the users, as named under HKEY_USERS.
+     * @param queries The lookups to make for each user, against HKEY_CURRENT_USER.
+     * @param listener Receives the results of each user.
+     * @throws IOException On a transport error.
+     */
+    public void sweep(final List<String> sids, final Collection<RegistryQuery> queries, final Listener listener)
+        throws IOException {
+        if (sids == null || sids.contains(null)) {
+            throw new IllegalArgumentException("SIDs are invalid: " + sids);
+        }
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener is invalid: " + listener);
+        }
+        final List<RegistryQuery> userQueries = new RegistryQueryPlan(queries).getQueries();
+        for (final RegistryQuery query : userQueries) {
+            if (query.getHive() != RegistryHive.HKEY_CURRENT_USER) {
+                throw new IllegalArgumentException("Query is invalid: " + query);
+            }
+        }
+        final Queue<String> pending = new ConcurrentLinkedQueue<>(sids);
+        new PipeFanOut<>(services).run(sids.size(), pending, "registry-user-sweep-%d",
+            new PipeFanOut.Task<RegistryService>() {
+                @Override
+                public void run(final RegistryService service)
+                    throws IOException {
+                    final RegistryQueryExecutor executor =
+                        new RegistryQueryExecutor(Collections.singletonList(service));
+                    String sid;
+                    while ((sid = pending.poll()) != null) {
+                        final List<RegistryQuery> sidQueries = new ArrayList<>(userQueries.size());
+                        for (final RegistryQuery query : userQueries) {
+                            sidQueries.add(query.under(RegistryHive.HKEY_USERS.getFullName(), sid));
+                        }
+                        final RegistryQueryPlan sidPlan = new RegistryQueryPlan(sidQueries);
+                        final Map<RegistryQuery, RegistryResult<?>> sidResults = executor.execute(sidPlan);
+                        final Map<RegistryQuery, RegistryResult<?>> results = new LinkedHashMap<>();
+                        for (int index = 0; index < userQueries.size(); index++) {
+                            results.put(userQueries.get(index), sidResults.get(sidQueries.get(index)));
+                        }
+                        synchronized (listener) {
+                            listener.userSwept(sid, Collections.unmodifiableMap(results));
+                        }
+                        for (final KeyGroup keyGroup : sidPlan.getKeyGroups()) {
+                            service.closeKey(keyGroup.getHive().getFullName(), keyGroup.getKeyPath());
+                        }
+                    }
+                }
+            });
+    }
+}
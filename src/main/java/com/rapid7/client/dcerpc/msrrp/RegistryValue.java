@@ -20,23 +20,31 @@ package com.rapid7.client.dcerpc.msrrp;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 import javax.activation.UnsupportedDataTypeException;
 import org.apache.commons.lang3.ArrayUtils;
 import org.bouncycastle.util.encoders.Hex;
 
+/**
+ * A registry value. The data is held in the little-endian form in which it is read from the registry, and the typed
+ * accessors decode it in place: {@link #getDataAsInt()} and {@link #getDataAsLong()} do not allocate, and the string
+ * comparisons {@link #isDataEqualTo(String)}, {@link #isDataEqualToIgnoreCase(String)} and
+ * {@link #multiStrContains(String)} compare the UTF-16 data with a string without decoding it.
+ */
 public class RegistryValue {
     private final String name;
     private final RegistryValueType type;
     private final byte[] data;
 
     public RegistryValue(final String name, final RegistryValueType type, final byte[] data)
+        throws IOException {
+        this(name, type, data, true);
+    }
+
+    private RegistryValue(final String name, final RegistryValueType type, final byte[] data, final boolean copy)
         throws IOException {
         if (name == null) {
             throw new IllegalArgumentException("Name is invalid: " + name);
@@ -50,9 +58,6 @@ public class RegistryValue {
             throw new IllegalArgumentException("Data is invalid: " + data);
         }
 
-        this.name = name;
-        this.type = type;
-
         switch (type) {
         case REG_DWORD:
         case REG_DWORD_BIG_ENDIAN:
@@ -78,15 +83,24 @@ public class RegistryValue {
         default:
         }
 
-        switch (type) {
-        case REG_DWORD:
-        case REG_QWORD:
-            this.data = Arrays.copyOf(data, data.length);
-            ArrayUtils.reverse(this.data);
-            break;
-        default:
-            this.data = Arrays.copyOf(data, data.length);
-        }
+        this.name = name;
+        this.type = type;
+        this.data = copy ? Arrays.copyOf(data, data.length) : data;
+    }
+
+    /**
+     * Create a value which uses the given array as its data rather than a copy of it, for data which was decoded into
+     * a new array and is not shared.
+     *
+     * @param name The name of the value.
+     * @param type The type of the value.
+     * @param data The data, as read from the registry. The array must not be modified afterwards.
+     * @return The value.
+     * @throws IOException If the length of the data is invalid for the type.
+     */
+    public static RegistryValue wrap(final String name, final RegistryValueType type, final byte[] data)
+        throws IOException {
+        return new RegistryValue(name, type, data, false);
     }
 
     public String getName() {
@@ -97,15 +111,38 @@ public class RegistryValue {
         return type;
     }
 
+    /**
+     * @return The data. The bytes of REG_DWORD and REG_QWORD values are in big-endian order, and are copied on each
+     *         call; use {@link #getDataAsInt()} or {@link #getDataAsLong()} to read them without a copy.
+     */
     public byte[] getData() {
+        switch (type) {
+        case REG_DWORD:
+        case REG_QWORD:
+            final byte[] bigEndianData = Arrays.copyOf(data, data.length);
+            ArrayUtils.reverse(bigEndianData);
+            return bigEndianData;
+        default:
+            return data;
+        }
+    }
+
+    /** @return The data as read from the registry, in little-endian order for REG_DWORD and REG_QWORD values. */
+    byte[] getRawData() {
         return data;
     }
 
+    /** @return The length of the data in bytes. */
+    public int getDataLength() {
+        return data.length;
+    }
+
     public int getDataAsInt() {
         switch (type) {
         case REG_DWORD:
+            return getIntLE(0);
         case REG_DWORD_BIG_ENDIAN:
-            return new BigInteger(1, data).intValue();
+            return (data[0] & 0xFF) << 24 | (data[1] & 0xFF) << 16 | (data[2] & 0xFF) << 8 | data[3] & 0xFF;
         default:
             throw new IllegalStateException();
         }
@@ -115,8 +152,9 @@ public class RegistryValue {
         switch (type) {
         case REG_DWORD:
         case REG_DWORD_BIG_ENDIAN:
+            return getDataAsInt() & 0xFFFFFFFFL;
         case REG_QWORD:
-            return new BigInteger(1, data).longValue();
+            return getIntLE(0) & 0xFFFFFFFFL | (long) getIntLE(4) << 32;
         default:
             throw new IllegalStateException();
         }
@@ -124,7 +162,7 @@ public class RegistryValue {
 
     public String getDataAsBinaryStr() {
         final StringBuilder text = new StringBuilder();
-        for (final byte byteValue : data) {
+        for (final byte byteValue : getData()) {
             for (int bitIndex = 7; bitIndex >= 0; bitIndex--) {
                 final int bitValue = byteValue >> bitIndex & 0x1;
                 text.append(bitValue);
@@ -134,29 +172,24 @@ public class RegistryValue {
     }
 
     public String getDataAsHexStr() {
-        return Hex.toHexString(data).toUpperCase();
+        return Hex.toHexString(getData()).toUpperCase();
     }
 
     public String[] getDataAsMultiStr()
         throws UnsupportedEncodingException {
         switch (type) {
         case REG_MULTI_SZ:
-            final StringBuilder element = new StringBuilder();
-            final List<String> elements = new LinkedList<>();
-            final ByteBuffer dataBuffer = ByteBuffer.wrap(data);
-            dataBuffer.order(ByteOrder.LITTLE_ENDIAN);
-            while (dataBuffer.hasRemaining()) {
-                final short shortValue = dataBuffer.getShort();
-                if (shortValue == 0) {
-                    elements.add(element.toString());
-                    element.setLength(0);
-                } else {
-                    element.append((char) shortValue);
+            final int length = data.length / 2;
+            final List<String> elements = new ArrayList<>();
+            int start = 0;
+            for (int index = 0; index < length; index++) {
+                if (getChar(index) == 0) {
+                    elements.add(getString(start, index));
+                    start = index + 1;
                 }
             }
-            if (0 < element.length()) {
-                elements.add(element.toString());
-                element.setLength(0);
+            if (start < length) {
+                elements.add(getString(start, length));
             }
             if (0 < elements.size()) {
                 final int nullIndex = elements.size() - 1;
@@ -188,16 +221,7 @@ public class RegistryValue {
         case REG_EXPAND_SZ:
         case REG_LINK:
         case REG_SZ:
-            final ByteBuffer dataBuffer = ByteBuffer.wrap(data);
-            dataBuffer.order(ByteOrder.LITTLE_ENDIAN);
-            while (dataBuffer.hasRemaining()) {
-                final short shortValue = dataBuffer.getShort();
-                if (shortValue == 0) {
-                    break;
-                }
-                repr.append((char) shortValue);
-            }
-            break;
+            return getString(0, getStringLength());
         case REG_MULTI_SZ:
             final StringBuilder multiRepr = new StringBuilder();
             for (final String element : getDataAsMultiStr()) {
@@ -223,6 +247,57 @@ public class RegistryValue {
         return repr.toString();
     }
 
+    /**
+     * @param string The string to compare with.
+     * @return True if the data of a REG_SZ, REG_EXPAND_SZ or REG_LINK value, up to its terminating null, is equal to
+     *         the string. The data is compared in place, without decoding it into a string.
+     */
+    public boolean isDataEqualTo(final String string) {
+        return regionMatches(0, getStringLength(), string, false);
+    }
+
+    /**
+     * @param string The string to compare with.
+     * @return True if the data of a REG_SZ, REG_EXPAND_SZ or REG_LINK value, up to its terminating null, is equal to
+     *         the string, ignoring case. The data is compared in place, without decoding it into a string.
+     */
+    public boolean isDataEqualToIgnoreCase(final String string) {
+        return regionMatches(0, getStringLength(), string, true);
+    }
+
+    /**
+     * @param element The string to look for.
+     * @return True if one of the strings of a REG_MULTI_SZ value is equal to the element. The data is compared in
+     *         place, without decoding it into strings.
+     */
+    public boolean multiStrContains(final String element) {
+        if (type != RegistryValueType.REG_MULTI_SZ) {
+            throw new IllegalStateException();
+        }
+        if (element == null) {
+            return false;
+        }
+        if (element.isEmpty()) {
+            // A trailing empty string is the terminator of the list rather than an element of it.
+            try {
+                return Arrays.asList(getDataAsMultiStr()).contains(element);
+            } catch (final UnsupportedEncodingException exception) {
+                return false;
+            }
+        }
+        final int length = data.length / 2;
+        int start = 0;
+        for (int index = 0; index <= length; index++) {
+            if (index == length || getChar(index) == 0) {
+                if ((index < length || start < length) && regionMatches(start, index, element, false)) {
+                    return true;
+                }
+                start = index + 1;
+            }
+        }
+        return false;
+    }
+
     @Override
     public String toString() {
         final StringBuilder result = new StringBuilder();
@@ -262,4 +337,56 @@ public class RegistryValue {
             && Objects.equals(type, ((RegistryValue) anObject).type)
             && Arrays.equals(data, ((RegistryValue) anObject).data);
     }
+
+    /**
+     * @return The number of characters before the first null of a REG_SZ, REG_EXPAND_SZ or REG_LINK value.
+     */
+    private int getStringLength() {
+        switch (type) {
+        case REG_EXPAND_SZ:
+        case REG_LINK:
+        case REG_SZ:
+            final int length = data.length / 2;
+            for (int index = 0; index < length; index++) {
+                if (getChar(index) == 0) {
+                    return index;
+                }
+            }
+            return length;
+        default:
+            throw new IllegalStateException();
+        }
+    }
+
+    private boolean regionMatches(final int start, final int end, final String string, final boolean ignoreCase) {
+        if (string == null || string.length() != end - start) {
+            return false;
+        }
+        for (int index = start; index < end; index++) {
+            final char c1 = getChar(index);
+            final char c2 = string.charAt(index - start);
+            if (c1 != c2 && (!ignoreCase || (Character.toUpperCase(c1) != Character.toUpperCase(c2)
+                && Character.toLowerCase(c1) != Character.toLowerCase(c2)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String getString(final int start, final int end) {
+        final char[] chars = new char[end - start];
+        for (int index = start; index < end; index++) {
+            chars[index - start] = getChar(index);
+        }
+        return new String(chars);
+    }
+
+    private char getChar(final int index) {
+        return (char) ((data[2 * index] & 0xFF) | (data[2 * index + 1] & 0xFF) << 8);
+    }
+
+    private int getIntLE(final int offset) {
+        return data[offset] & 0xFF | (data[offset + 1] & 0xFF) << 8 | (data[offset + 2] & 0xFF) << 16
+            | (data[offset + 3] & 0xFF) << 24;
+    }
 }
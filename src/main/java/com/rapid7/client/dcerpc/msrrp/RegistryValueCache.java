@@ -0,0 +1,189 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * A cache of registry values which is validated against the last write time of the key that holds them. Entries are
+ * keyed by (hive, key, value) and remember the last write time reported by BaseRegQueryInfoKey at the time they were
+ * read. A lookup only succeeds when the key's current last write time matches, so a consumer can revalidate every
+ * cached value of a key with one BaseRegQueryInfoKey call instead of re-reading each value.<br>
+ * <br>
+ * Entries expire a fixed time after they were written and are evicted once the approximate size of the cached names
+ * and data exceeds the configured maximum.
+ */
+public class RegistryValueCache {
+    private final static int ENTRY_OVERHEAD = 64;
+    private final Cache<CacheKey, CacheEntry> cache;
+
+    /**
+     * @param timeToLive The time after which an entry expires, regardless of the key's last write time.
+     * @param unit The unit of timeToLive.
+     * @param maximumSize The approximate number of bytes of value names and data which may be held by the cache.
+     */
+    public RegistryValueCache(final long timeToLive, final TimeUnit unit, final long maximumSize) {
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("Time to live is invalid: " + timeToLive);
+        }
+        if (unit == null) {
+            throw new IllegalArgumentException("Unit is invalid: " + unit);
+        }
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Maximum size is invalid: " + maximumSize);
+        }
+        cache = CacheBuilder.newBuilder().expireAfterWrite(timeToLive, unit).maximumWeight(maximumSize)
+            .weigher(new Weigher<CacheKey, CacheEntry>() {
+                @Override
+                public int weigh(final CacheKey key, final CacheEntry entry) {
+                    return entry.getWeight();
+                }
+            }).build();
+    }
+
+    /** @return The approximate number of entries in the cache. */
+    public long size() {
+        return cache.size();
+    }
+
+    /** Discard all entries in the cache. */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return The cached value, or null if it is not cached or the key has been written since it was cached. A value
+     *         which was cached as part of a full enumeration of the key is also returned.
+     */
+    RegistryValue getValue(
+        final RegistryHive hive,
+        final String keyPath,
+        final String valueName,
+        final long lastWriteTime) {
+        final List<RegistryValue> values = get(new CacheKey(hive, keyPath, valueName), lastWriteTime);
+        if (values != null) {
+            return values.get(0);
+        }
+        final List<RegistryValue> allValues = get(new CacheKey(hive, keyPath, null), lastWriteTime);
+        if (allValues != null) {
+            for (final RegistryValue value : allValues) {
+                if (value.getName().equals(valueName)) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The cached enumeration of all values of the key, or null if it is not cached or the key has been written
+     *         since it was cached.
+     */
+    List<RegistryValue> getValues(final RegistryHive hive, final String keyPath, final long lastWriteTime) {
+        return get(new CacheKey(hive, keyPath, null), lastWriteTime);
+    }
+
+    void putValue(final RegistryHive hive, final String keyPath, final long lastWriteTime, final RegistryValue value) {
+        cache.put(new CacheKey(hive, keyPath, value.getName()),
+            new CacheEntry(lastWriteTime, Collections.singletonList(value)));
+    }
+
+    void putValues(
+        final RegistryHive hive,
+        final String keyPath,
+        final long lastWriteTime,
+        final List<RegistryValue> values) {
+        cache.put(new CacheKey(hive, keyPath, null), new CacheEntry(lastWriteTime, values));
+    }
+
+    private List<RegistryValue> get(final CacheKey key, final long lastWriteTime) {
+        final CacheEntry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.getLastWriteTime() != lastWriteTime) {
+            cache.invalidate(key);
+            return null;
+        }
+        return entry.getValues();
+    }
+
+    private static class CacheKey {
+        private final RegistryHive hive;
+        private final String keyPath;
+        private final String valueName;
+
+        CacheKey(final RegistryHive hive, final String keyPath, final String valueName) {
+            this.hive = hive;
+            this.keyPath = keyPath;
+            this.valueName = valueName;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hive, keyPath, valueName);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj == this) {
+                return true;
+            } else if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) obj;
+            return hive == other.hive && Objects.equals(keyPath, other.keyPath)
+                && Objects.equals(valueName, other.valueName);
+        }
+    }
+
+    private static class CacheEntry {
+        private final long lastWriteTime;
+        private final List<RegistryValue> values;
+        private final int weight;
+
+        CacheEntry(final long lastWriteTime, final List<RegistryValue> values) {
+            this.lastWriteTime = lastWriteTime;
+            this.values = values;
+            long weight = ENTRY_OVERHEAD;
+            for (final RegistryValue value : values) {
+                weight += ENTRY_OVERHEAD + 2 * value.getName().length() + value.getDataLength();
+            }
+            this.weight = (int) Math.min(weight, Integer.MAX_VALUE);
+        }
+
+        long getLastWriteTime() {
+            return lastWriteTime;
+        }
+
+        List<RegistryValue> getValues() {
+            return values;
+        }
+
+        int getWeight() {
+            return weight;
+        }
+    }
+}
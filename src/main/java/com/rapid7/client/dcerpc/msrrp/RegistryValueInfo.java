@@ -0,0 +1,75 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import java.util.Objects;
+
+/**
+ * The name, type and data size of a registry value, read without transferring its data. The data of the value can be
+ * read on demand with {@link RegistryService#getValue(String, String, String)}.
+ */
+public class RegistryValueInfo {
+    private final String name;
+    private final RegistryValueType type;
+    private final int dataSize;
+
+    public RegistryValueInfo(final String name, final RegistryValueType type, final int dataSize) {
+        if (name == null) {
+            throw new IllegalArgumentException("Name is invalid: " + name);
+        }
+        if (type == null) {
+            throw new IllegalArgumentException("Type is invalid: " + type);
+        }
+        if (dataSize < 0) {
+            throw new IllegalArgumentException("Data size is invalid: " + dataSize);
+        }
+        this.name = name;
+        this.type = type;
+        this.dataSize = dataSize;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public RegistryValueType getType() {
+        return type;
+    }
+
+    /** @return The size in bytes of the data of the value. */
+    public int getDataSize() {
+        return dataSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s {type=%s, dataSize=%d}", name, type, dataSize);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, type, dataSize);
+    }
+
+    @Override
+    public boolean equals(final Object anObject) {
+        return anObject instanceof RegistryValueInfo && Objects.equals(name, ((RegistryValueInfo) anObject).name)
+            && type == ((RegistryValueInfo) anObject).type && dataSize == ((RegistryValueInfo) anObject).dataSize;
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The frontier of a depth-first {@link RegistryWalker} walk. For every level between the start key and the key being
+ * walked, the checkpoint holds the index and name of the last subkey entered at that level. The checkpoint therefore
+ * grows with the depth of the tree rather than with its size, and is bounded by the registry's limits of 512 levels
+ * and 255 characters per key name.
+ */
+class RegistryWalkCheckpoint {
+    private final static int MAGIC = 0x52525743;
+    private final static int VERSION = 1;
+    private final static int MAX_DEPTH = 512;
+    private final static int MAX_STRING_SIZE = 0x10000;
+    private final String hiveName;
+    private final String keyPath;
+    private final List<Level> levels;
+
+    RegistryWalkCheckpoint(final String hiveName, final String keyPath, final List<Level> levels) {
+        this.hiveName = hiveName;
+        this.keyPath = keyPath;
+        this.levels = Collections.unmodifiableList(new ArrayList<>(levels));
+    }
+
+    String getHiveName() {
+        return hiveName;
+    }
+
+    /** @return The path of the key at which the walk started, relative to the hive. */
+    String getKeyPath() {
+        return keyPath;
+    }
+
+    /** @return The levels from the start key down to the key being walked. */
+    List<Level> getLevels() {
+        return levels;
+    }
+
+    void write(final OutputStream outputStream)
+        throws IOException {
+        final DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+        dataOutputStream.writeInt(MAGIC);
+        dataOutputStream.writeInt(VERSION);
+        writeString(dataOutputStream, hiveName);
+        writeString(dataOutputStream, keyPath);
+        dataOutputStream.writeInt(levels.size());
+        for (final Level level : levels) {
+            dataOutputStream.writeInt(level.getNextIndex());
+            writeString(dataOutputStream, level.getLastSubKeyName());
+        }
+        dataOutputStream.flush();
+    }
+
+    static RegistryWalkCheckpoint read(final InputStream inputStream)
+        throws IOException {
+        final DataInputStream dataInputStream = new DataInputStream(inputStream);
+        final int magic = dataInputStream.readInt();
+        if (magic != MAGIC) {
+            throw new IOException(String.format("Registry walk checkpoint magic is invalid: 0x%08X", magic));
+        }
+        final int version = dataInputStream.readInt();
+        if (version != VERSION) {
+            throw new IOException("Registry walk checkpoint version is not supported: " + version);
+        }
+        final String hiveName = readString(dataInputStream);
+        final String keyPath = readString(dataInputStream);
+        final int depth = dataInputStream.readInt();
+        if (depth < 0 || depth > MAX_DEPTH) {
+            throw new IOException("Registry walk checkpoint depth is invalid: " + depth);
+        }
+        final List<Level> levels = new ArrayList<>(depth);
+        for (int index = 0; index < depth; index++) {
+            final int nextIndex = dataInputStream.readInt();
+            if (nextIndex < 0) {
+                throw new IOException("Registry walk checkpoint index is invalid: " + nextIndex);
+            }
+            levels.add(new Level(nextIndex, readString(dataInputStream)));
+        }
+        return new RegistryWalkCheckpoint(hiveName, keyPath, levels);
+    }
+
+    private static void writeString(final DataOutputStream dataOutputStream, final String value)
+        throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        dataOutputStream.writeInt(bytes.length);
+        dataOutputStream.write(bytes);
+    }
+
+    private static String readString(final DataInputStream dataInputStream)
+        throws IOException {
+        final int size = dataInputStream.readInt();
+        if (size < 0 || size > MAX_STRING_SIZE) {
+            throw new IOException("Registry walk checkpoint string size is invalid: " + size);
+        }
+        final byte[] bytes = new byte[size];
+        dataInputStream.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static class Level {
+        private final int nextIndex;
+        private final String lastSubKeyName;
+
+        Level(final int nextIndex, final String lastSubKeyName) {
+            this.nextIndex = nextIndex;
+            this.lastSubKeyName = lastSubKeyName;
+        }
+
+        /** @return The enumeration index of the next subkey to enter. */
+        int getNextIndex() {
+            return nextIndex;
+        }
+
+        /** @return The name of the last subkey entered, or an empty string when none has been entered. */
+        String getLastSubKeyName() {
+            return lastSubKeyName;
+        }
+    }
+}
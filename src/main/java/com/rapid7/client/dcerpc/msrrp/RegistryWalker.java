@@ -0,0 +1,266 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_ACCESS_DENIED;
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_FILE_NOT_FOUND;
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_KEY_DELETED;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import com.google.common.base.Strings;
+import com.rapid7.client.dcerpc.msrrp.RegistryWalkCheckpoint.Level;
+
+/**
+ * Walks a registry tree depth-first and periodically persists its frontier to a local checkpoint file, so a walk which
+ * fails part way, e.g. because the pipe was reset, can be resumed over a new connection instead of restarted. To
+ * resume, call {@link #walk(String, String, Visitor)} again with the same key and checkpoint file, typically with a
+ * new {@link RegistryService}.<br>
+ * <br>
+ * Keys visited before the last checkpoint was written are not visited again. Keys visited after it may be visited a
+ * second time, so visitors must tolerate repeated visits. Subkeys are resumed by name, so subkeys created or deleted
+ * while the walk was interrupted do not shift the walk. Keys which are deleted during the walk, or which cannot be read
+ * because access is denied, are skipped. The handle of each key is closed once its subkeys have been walked, so the
+ * walk holds at most one handle per level of the tree open on the server.
+ */
+public class RegistryWalker {
+    /** Receives every key of the walk, parents before their subkeys. */
+    public interface Visitor {
+        /**
+         * @param keyPath The path of the key, relative to the hive.
+         * @param subKeys The subkeys of the key.
+         * @throws IOException To abort the walk; a checkpoint is written and the key is visited again on resume.
+         */
+        void visitKey(String keyPath, List<RegistryKey> subKeys)
+            throws IOException;
+    }
+
+    private final static int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+    private final RegistryService registryService;
+    private final File checkpointFile;
+    private final int checkpointInterval;
+
+    public RegistryWalker(final RegistryService registryService, final File checkpointFile) {
+        this(registryService, checkpointFile, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * @param registryService The registry service to walk with.
+     * @param checkpointFile The local file to which the frontier is persisted.
+     * @param checkpointInterval The number of keys visited between checkpoints.
+     */
+    public RegistryWalker(
+        final RegistryService registryService,
+        final File checkpointFile,
+        final int checkpointInterval) {
+        if (registryService == null) {
+            throw new IllegalArgumentException("Registry service is invalid: " + registryService);
+        }
+        if (checkpointFile == null) {
+            throw new IllegalArgumentException("Checkpoint file is invalid: " + checkpointFile);
+        }
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval is invalid: " + checkpointInterval);
+        }
+        this.registryService = registryService;
+        this.checkpointFile = checkpointFile;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /** @return Whether a walk will resume from the checkpoint file rather than start from scratch. */
+    public boolean hasCheckpoint() {
+        return checkpointFile.isFile();
+    }
+
+    /**
+     * Walks the tree below and including the given key, resuming from the checkpoint file when it holds a checkpoint.
+     * The checkpoint file is written every checkpoint interval and when the walk fails, and is deleted once the walk
+     * completes.
+     *
+     * @param hiveName The name of the hive, e.g. HKLM.
+     * @param keyPath The path of the key at which to start the walk, relative to the hive.
+     * @param visitor Receives every key of the walk.
+     * @throws IOException On a transport error, an unexpected error code from the server, an error from the visitor, or
+     *         when the checkpoint file holds a checkpoint of another walk.
+     */
+    public void walk(final String hiveName, final String keyPath, final Visitor visitor)
+        throws IOException {
+        if (hiveName == null) {
+            throw new IllegalArgumentException("Invalid hive: " + hiveName);
+        }
+        if (visitor == null) {
+            throw new IllegalArgumentException("Visitor is invalid: " + visitor);
+        }
+        final String rootPath = normalize(keyPath);
+        final List<Frame> frames;
+        if (hasCheckpoint()) {
+            frames = restore(hiveName, rootPath);
+        } else {
+            frames = new ArrayList<>();
+            final List<RegistryKey> subKeys = getSubKeys(hiveName, rootPath);
+            if (subKeys != null) {
+                visitor.visitKey(rootPath, subKeys);
+                frames.add(new Frame(rootPath, subKeys));
+            }
+        }
+
+        int visited = 0;
+        try {
+            while (!frames.isEmpty()) {
+                final Frame frame = frames.get(frames.size() - 1);
+                if (frame.nextIndex >= frame.subKeys.size()) {
+                    frames.remove(frames.size() - 1);
+                    registryService.closeKey(hiveName, frame.keyPath);
+                    continue;
+                }
+                final String subKeyName = frame.subKeys.get(frame.nextIndex).getName();
+                final String subKeyPath = frame.keyPath.isEmpty() ? subKeyName : frame.keyPath + "\\" + subKeyName;
+                final List<RegistryKey> subKeys = getSubKeys(hiveName, subKeyPath);
+                if (subKeys != null) {
+                    visitor.visitKey(subKeyPath, subKeys);
+                }
+                // Only advance once the subkey has been visited, so a failure above retries it on resume.
+                frame.nextIndex++;
+                frame.lastSubKeyName = subKeyName;
+                if (subKeys != null) {
+                    frames.add(new Frame(subKeyPath, subKeys));
+                    if (++visited % checkpointInterval == 0) {
+                        writeCheckpoint(hiveName, rootPath, frames);
+                    }
+                }
+            }
+        } catch (final IOException | RuntimeException exception) {
+            try {
+                writeCheckpoint(hiveName, rootPath, frames);
+            } catch (final IOException checkpointException) {
+                exception.addSuppressed(checkpointException);
+            }
+            throw exception;
+        }
+        Files.deleteIfExists(checkpointFile.toPath());
+    }
+
+    private List<Frame> restore(final String hiveName, final String rootPath)
+        throws IOException {
+        final RegistryWalkCheckpoint checkpoint;
+        try (final InputStream inputStream = new FileInputStream(checkpointFile)) {
+            checkpoint = RegistryWalkCheckpoint.read(inputStream);
+        }
+        if (RegistryHive.getRegistryHiveByName(checkpoint.getHiveName()) != RegistryHive
+            .getRegistryHiveByName(hiveName) || !checkpoint.getKeyPath().equalsIgnoreCase(rootPath)) {
+            throw new IOException(String.format("Registry walk checkpoint %s is for %s\\%s", checkpointFile,
+                checkpoint.getHiveName(), checkpoint.getKeyPath()));
+        }
+        final List<Frame> frames = new ArrayList<>();
+        String keyPath = rootPath;
+        for (final Level level : checkpoint.getLevels()) {
+            final List<RegistryKey> subKeys = getSubKeys(hiveName, keyPath);
+            if (subKeys == null) {
+                // The key was deleted while the walk was interrupted; its parent has already moved past it.
+                break;
+            }
+            final Frame frame = new Frame(keyPath, subKeys);
+            frame.nextIndex = findNextIndex(subKeys, level.getNextIndex(), level.getLastSubKeyName());
+            frame.lastSubKeyName = level.getLastSubKeyName();
+            frames.add(frame);
+            if (frame.lastSubKeyName.isEmpty()) {
+                break;
+            }
+            keyPath = keyPath.isEmpty() ? frame.lastSubKeyName : keyPath + "\\" + frame.lastSubKeyName;
+        }
+        return frames;
+    }
+
+    private void writeCheckpoint(final String hiveName, final String rootPath, final List<Frame> frames)
+        throws IOException {
+        final List<Level> levels = new ArrayList<>(frames.size());
+        for (final Frame frame : frames) {
+            levels.add(new Level(frame.nextIndex, frame.lastSubKeyName));
+        }
+        // Write beside the checkpoint and rename over it, so a crash never leaves a partial checkpoint.
+        final File temporaryFile = new File(checkpointFile.getPath() + ".tmp");
+        try (final OutputStream outputStream = new FileOutputStream(temporaryFile)) {
+            new RegistryWalkCheckpoint(hiveName, rootPath, levels).write(outputStream);
+        }
+        Files.move(temporaryFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return The subkeys of the key, or null when the key was deleted or cannot be read.
+     */
+    private List<RegistryKey> getSubKeys(final String hiveName, final String keyPath)
+        throws IOException {
+        final RegistryResult<List<RegistryKey>> result = registryService.tryGetSubKeys(hiveName, keyPath);
+        if (result.is(ERROR_FILE_NOT_FOUND) || result.is(ERROR_KEY_DELETED) || result.is(ERROR_ACCESS_DENIED)) {
+            return null;
+        }
+        return result.get();
+    }
+
+    /**
+     * The registry enumerates subkeys in case-insensitive order, so when the subkey entered last is no longer at the
+     * recorded index, the walk continues with the first subkey which sorts after it.
+     */
+    private static int findNextIndex(final List<RegistryKey> subKeys, final int nextIndex, final String lastName) {
+        if (lastName.isEmpty()) {
+            return 0;
+        }
+        if (nextIndex > 0 && nextIndex <= subKeys.size()
+            && subKeys.get(nextIndex - 1).getName().equalsIgnoreCase(lastName)) {
+            return nextIndex;
+        }
+        for (int index = 0; index < subKeys.size(); index++) {
+            if (String.CASE_INSENSITIVE_ORDER.compare(subKeys.get(index).getName(), lastName) > 0) {
+                return index;
+            }
+        }
+        return subKeys.size();
+    }
+
+    private String normalize(String keyPath) {
+        keyPath = Strings.nullToEmpty(keyPath);
+        while (keyPath.contains("\\\\")) {
+            keyPath = keyPath.replace("\\\\", "\\");
+        }
+        while (keyPath.endsWith("\\")) {
+            keyPath = keyPath.substring(0, keyPath.length() - 1);
+        }
+        return keyPath;
+    }
+
+    private static class Frame {
+        private final String keyPath;
+        private final List<RegistryKey> subKeys;
+        private int nextIndex;
+        private String lastSubKeyName = "";
+
+        private Frame(final String keyPath, final List<RegistryKey> subKeys) {
+            this.keyPath = keyPath;
+            this.subKeys = subKeys;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.EnumSet;
+
+/**
+ * Delivers change events for a registry key without polling. The watcher parks a BaseRegNotifyChangeKeyValue call on
+ * the server and re-arms it each time it returns, so no traffic flows while the key is unchanged.<br>
+ * <br>
+ * Each parked call occupies its named pipe, so the watcher must be given a {@link RegistryService} whose transport is
+ * used for nothing else. The wait is bounded by the transact timeout of the SMB session the pipe was opened on; use a
+ * session configured with a long transact timeout, or treat a timeout reported to
+ * {@link Listener#watchFailed(String, String, IOException)} as a cue to rescan and watch again. To watch many keys on
+ * one pipe, watch a common ancestor with watchSubtree set and rescan the changed subtree, e.g. with
+ * {@link RegistryDiffScanner}. Changes made while the listener runs, before the call is re-armed, are not reported.
+ */
+public class RegistryWatcher implements Closeable {
+    /** Receives the events of a {@link RegistryWatcher}, on the watcher's thread. */
+    public interface Listener {
+        /** Called each time the watched key, or one of its subkeys when watching the subtree, changes. */
+        void keyChanged(String hiveName, String keyPath);
+
+        /** Called once if the watch fails, after which no more events are delivered. */
+        void watchFailed(String hiveName, String keyPath, IOException exception);
+    }
+
+    private final RegistryService registryService;
+    private final String hiveName;
+    private final String keyPath;
+    private final boolean watchSubtree;
+    private final EnumSet<RegistryNotifyFilter> notifyFilter;
+    private final Listener listener;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * @param registryService A registry service bound to a pipe dedicated to this watcher.
+     * @param hiveName The hive of the key.
+     * @param keyPath The path of the key.
+     * @param watchSubtree Whether changes in the subkeys of the key are reported as well as those of the key itself.
+     * @param notifyFilter The changes which are reported.
+     * @param listener The listener to which changes are delivered.
+     */
+    public RegistryWatcher(
+        final RegistryService registryService,
+        final String hiveName,
+        final String keyPath,
+        final boolean watchSubtree,
+        final EnumSet<RegistryNotifyFilter> notifyFilter,
+        final Listener listener) {
+        if (registryService == null) {
+            throw new IllegalArgumentException("Invalid registry service: " + registryService);
+        }
+        if (notifyFilter == null || notifyFilter.isEmpty()) {
+            throw new IllegalArgumentException("Notify filter is invalid: " + notifyFilter);
+        }
+        if (listener == null) {
+            throw new IllegalArgumentException("Invalid listener: " + listener);
+        }
+        this.registryService = registryService;
+        this.hiveName = hiveName;
+        this.keyPath = keyPath;
+        this.watchSubtree = watchSubtree;
+        this.notifyFilter = EnumSet.copyOf(notifyFilter);
+        this.listener = listener;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, String.format("RegistryWatcher %s\\%s", hiveName, keyPath));
+        thread.setDaemon(true);
+    }
+
+    /** Start watching. Events are delivered on a daemon thread owned by the watcher. */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Stop delivering events. A call which is parked on the server only returns on the next change or when its pipe is
+     * closed, so close the pipe to release the watcher's thread promptly.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+
+    private void watch() {
+        try {
+            while (!closed) {
+                registryService.waitForChange(hiveName, keyPath, watchSubtree, notifyFilter);
+                if (!closed) {
+                    listener.keyChanged(hiveName, keyPath);
+                }
+            }
+        } catch (final IOException exception) {
+            if (!closed) {
+                listener.watchFailed(hiveName, keyPath, exception);
+            }
+        }
+    }
+}
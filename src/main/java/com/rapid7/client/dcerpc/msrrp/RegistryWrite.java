@@ -0,0 +1,129 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import com.google.common.base.Strings;
+
+/**
+ * A single registry write, executed as part of a batch by {@link RegistryService#write(java.util.List)}.
+ */
+public class RegistryWrite {
+    /** The kind of write. */
+    public enum Type {
+        /** Create the key and any missing intermediate keys, or open the key if it exists. */
+        CREATE_KEY,
+        /** Create or replace a value of an existing key. */
+        SET_VALUE,
+        /** Remove a value of an existing key. */
+        DELETE_VALUE
+    }
+
+    private final Type type;
+    private final String hiveName;
+    private final String keyPath;
+    private final String valueName;
+    private final RegistryValueType valueType;
+    private final byte[] data;
+
+    private RegistryWrite(
+        final Type type,
+        final String hiveName,
+        final String keyPath,
+        final String valueName,
+        final RegistryValueType valueType,
+        final byte[] data) {
+        if (hiveName == null) {
+            throw new IllegalArgumentException("Invalid hive: " + hiveName);
+        }
+        this.type = type;
+        this.hiveName = hiveName;
+        this.keyPath = keyPath;
+        this.valueName = valueName;
+        this.valueType = valueType;
+        this.data = data;
+    }
+
+    /**
+     * @param hiveName The name of the hive, e.g. HKLM.
+     * @param keyPath The path of the key to create, relative to the hive.
+     */
+    public static RegistryWrite createKey(final String hiveName, final String keyPath) {
+        if (RegistryService.canonicalizeKeyPath(keyPath).isEmpty()) {
+            throw new IllegalArgumentException("Key path is invalid: " + keyPath);
+        }
+        return new RegistryWrite(Type.CREATE_KEY, hiveName, keyPath, null, null, null);
+    }
+
+    /**
+     * @param hiveName The name of the hive, e.g. HKLM.
+     * @param keyPath The path of the key which holds the value, relative to the hive.
+     * @param value The value to set. A value with an empty name sets the default value of the key.
+     */
+    public static RegistryWrite setValue(final String hiveName, final String keyPath, final RegistryValue value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value is invalid: " + value);
+        }
+        return new RegistryWrite(Type.SET_VALUE, hiveName, keyPath, value.getName(), value.getType(),
+            value.getRawData());
+    }
+
+    /**
+     * @param hiveName The name of the hive, e.g. HKLM.
+     * @param keyPath The path of the key which holds the value, relative to the hive.
+     * @param valueName The name of the value to remove, or null for the default value.
+     */
+    public static RegistryWrite deleteValue(final String hiveName, final String keyPath, final String valueName) {
+        return new RegistryWrite(Type.DELETE_VALUE, hiveName, keyPath, Strings.nullToEmpty(valueName), null, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getHiveName() {
+        return hiveName;
+    }
+
+    public String getKeyPath() {
+        return keyPath;
+    }
+
+    /** @return The name of the value, or null when creating a key. */
+    public String getValueName() {
+        return valueName;
+    }
+
+    /** @return The type of the value to set, or null unless setting a value. */
+    public RegistryValueType getValueType() {
+        return valueType;
+    }
+
+    /** @return The data of the value to set, or null unless setting a value. */
+    public byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        if (valueName == null) {
+            return String.format("%s %s\\%s", type, hiveName, keyPath);
+        }
+        return String.format("%s %s\\%s {value=%s}", type, hiveName, keyPath, valueName);
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.protocol.commons.EnumWithValue.EnumUtils;
+import com.rapid7.client.dcerpc.io.PacketOutput;
+import com.rapid7.client.dcerpc.messages.RequestCall;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+/**
+ * <b>3.1.5.7 BaseRegCreateKey (Opnum 6)</b><br>
+ * <br>
+ * The BaseRegCreateKey method is called by the client. In response, the server creates the specified registry key and
+ * returns a handle to the newly created key. If the key already exists in the registry, a handle to the existing key is
+ * opened and returned.
+ *
+ * <pre>
+ * error_status_t BaseRegCreateKey(
+ *    [in] RPC_HKEY hKey,
+ *    [in] PRRP_UNICODE_STRING lpSubKey,
+ *    [in] PRRP_UNICODE_STRING lpClass,
+ *    [in] DWORD dwOptions,
+ *    [in] REGSAM samDesired,
+ *    [in, unique] PRPC_SECURITY_ATTRIBUTES lpSecurityAttributes,
+ *    [out] PRPC_HKEY phkResult,
+ *    [in, out, unique] LPDWORD lpdwDisposition
+ * );
+ * </pre>
+ *
+ * hKey: A handle to a key that MUST have been opened previously by using one of the open methods that are specified in
+ * section 3.1.5: OpenClassesRoot, OpenCurrentUser, OpenLocalMachine, OpenPerformanceData, OpenUsers, BaseRegCreateKey,
+ * BaseRegOpenKey, OpenCurrentConfig, OpenPerformanceText, OpenPerformanceNlsText.<br>
+ * <br>
+ * lpSubKey: A pointer to an RRP_UNICODE_STRING structure that MUST contain the name of the key (as specified in section
+ * 3.1.1.1) to create. The name of the key specified by the lpSubKey parameter MUST be a subkey of the key that is
+ * identified by hKey. Intermediate keys which do not exist are created as well.<br>
+ * <br>
+ * lpClass: A pointer to an RRP_UNICODE_STRING structure that specifies the class of the key.<br>
+ * <br>
+ * dwOptions: Registry key options, e.g. 0x00000000 for a non-volatile key or 0x00000001 for a volatile key.<br>
+ * <br>
+ * samDesired: A bit field that describes the requested security access for the key.<br>
+ * <br>
+ * lpSecurityAttributes: A pointer to an RPC_SECURITY_ATTRIBUTES structure for the new subkey. If this parameter is
+ * NULL, the key gets a default security descriptor.<br>
+ * <br>
+ * phkResult: A pointer to an RPC context handle for the root key.<br>
+ * <br>
+ * lpdwDisposition: Disposition information: REG_CREATED_NEW_KEY (0x00000001) when the key did not exist and was
+ * created, or REG_OPENED_EXISTING_KEY (0x00000002) when the key existed and was opened without being changed.<br>
+ * <br>
+ * Return Values: The method returns 0 (ERROR_SUCCESS) to indicate success; otherwise, it returns a nonzero error code,
+ * as specified in {@link com.rapid7.client.dcerpc.mserref.SystemErrorCode} in [MS-ERREF].<br>
+ * <br>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * Remote Registry Service, CreateKey
+ *     Operation: CreateKey (6)
+ *     [Response in frame: 120]
+ *     Pointer to Handle (policy_handle)
+ *         Policy Handle: OpenHKLM(&lt;...&gt;)
+ *             Handle: 0000000032daf234b77c86409d29efe60d326683
+ *     Pointer to Name (winreg_String)
+ *         Name: Software\Vendor
+ *     Pointer to Keyclass (winreg_String)
+ *         Keyclass
+ *     Options: 0x00000000: (No values set)
+ *     Access Mask: 0x02000000
+ *     NULL Pointer: Pointer to Secdesc (winreg_SecBuf)
+ *     Pointer to Action Taken (winreg_CreateAction)
+ *         Referent ID: 0x00020004
+ *         Action Taken: REG_ACTION_NONE (0)
+ * </pre>
+ */
+public class BaseRegCreateKeyRequest extends RequestCall<BaseRegCreateKeyResponse> {
+    /** A handle to a key that MUST have been opened previously by using one of the open methods. */
+    private final ContextHandle hKey;
+    /** The name of the key to create, relative to hKey. */
+    private final String subKey;
+    /** Registry key options, e.g. 0x00000001 for a volatile key. */
+    private final int options;
+    /** The requested security access for the handle to the key. */
+    private final EnumSet<AccessMask> accessMask;
+
+    /**
+     * The BaseRegCreateKey method is called by the client. In response, the server creates the specified registry key
+     * and returns a handle to the newly created key. If the key already exists in the registry, a handle to the
+     * existing key is opened and returned.
+     *
+     * @param hKey A handle to a key that MUST have been opened previously by using one of the open methods.
+     * @param subKey The name of the key to create, relative to hKey.
+     * @param options Registry key options, e.g. 0x00000001 for a volatile key.
+     * @param accessMask The requested security access for the handle to the key.
+     */
+    public BaseRegCreateKeyRequest(
+        final ContextHandle hKey,
+        final String subKey,
+        final int options,
+        final EnumSet<AccessMask> accessMask) {
+        super((short) 6);
+
+        this.hKey = hKey;
+        this.subKey = subKey;
+        this.options = options;
+        this.accessMask = accessMask;
+    }
+
+    @Override
+    public BaseRegCreateKeyResponse getResponseObject() {
+        return new BaseRegCreateKeyResponse();
+    }
+
+    @Override
+    public void marshal(final PacketOutput packetOut)
+        throws IOException {
+        // Remote Registry Service, CreateKey
+        //      Operation: CreateKey (6)
+        //      Pointer to Handle (policy_handle)
+        //          Policy Handle: OpenHKLM(<...>)
+        //              Handle: 0000000032daf234b77c86409d29efe60d326683
+        //      Pointer to Name (winreg_String)
+        //          Name: Software\Vendor
+        //              Name Len: 32
+        //              Name Size: 32
+        //              Name
+        //                  Referent ID: 0x00020000
+        //                  Max Count: 16
+        //                  Offset: 0
+        //                  Actual Count: 16
+        //                  Name: Software\Vendor
+        //      Pointer to Keyclass (winreg_String)
+        //          Keyclass
+        //              Name Len: 0
+        //              Name Size: 0
+        //              NULL Pointer: Name
+        //      Options: 0x00000000: (No values set)
+        //      Access Mask: 0x02000000
+        //      NULL Pointer: Pointer to Secdesc (winreg_SecBuf)
+        //      Pointer to Action Taken (winreg_CreateAction)
+        //          Referent ID: 0x00020004
+        //          Action Taken: REG_ACTION_NONE (0)
+        packetOut.write(hKey.getBytes());
+        packetOut.writeStringBuffer(subKey, true);
+        packetOut.writeStringBuffer(null, false);
+        packetOut.writeInt(options);
+        packetOut.writeInt((int) EnumUtils.toLong(accessMask));
+        packetOut.writeNull();
+        packetOut.writeIntRef(0);
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import java.io.IOException;
+import com.rapid7.client.dcerpc.io.PacketInput;
+import com.rapid7.client.dcerpc.messages.RequestResponse;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+/**
+ * <b>Example:</b>
+ *
+ * <pre>
+ * Remote Registry Service, CreateKey
+ *     Operation: CreateKey (6)
+ *     [Request in frame: 119]
+ *     Pointer to New Handle (policy_handle)
+ *         Policy Handle: CreateKey(Software\Vendor)
+ *             Handle: 00000000a5a4c7e7e5e3b54a9c5b1a6c7b1d4e2f
+ *     Pointer to Action Taken (winreg_CreateAction)
+ *         Referent ID: 0x00020000
+ *         Action Taken: REG_CREATED_NEW_KEY (1)
+ *     Windows Error: WERR_OK (0x00000000)
+ * </pre>
+ */
+public class BaseRegCreateKeyResponse extends RequestResponse {
+    /** The key did not exist and was created. */
+    public final static int REG_CREATED_NEW_KEY = 0x00000001;
+    /** The key existed and was opened without being changed. */
+    public final static int REG_OPENED_EXISTING_KEY = 0x00000002;
+    private final ContextHandle handle = new ContextHandle();
+    private int disposition;
+    private int returnValue;
+
+    /** @return The handle to the created or opened key. */
+    public ContextHandle getHandle() {
+        return handle;
+    }
+
+    /**
+     * @return {@link #REG_CREATED_NEW_KEY} or {@link #REG_OPENED_EXISTING_KEY}, or 0 if the server did not return the
+     *         disposition.
+     */
+    public int getDisposition() {
+        return disposition;
+    }
+
+    /**
+     * @return The method returns 0 (ERROR_SUCCESS) to indicate success; otherwise, it returns a nonzero error code, as
+     *         specified in [MS-ERREF] section 2.2.
+     */
+    public int getReturnValue() {
+        return returnValue;
+    }
+
+    @Override
+    public void unmarshal(final PacketInput packetIn)
+        throws IOException {
+        // Remote Registry Service, CreateKey
+        //      Operation: CreateKey (6)
+        //      [Request in frame: 119]
+        //      Pointer to New Handle (policy_handle)
+        //          Policy Handle: CreateKey(Software\Vendor)
+        //              Handle: 00000000a5a4c7e7e5e3b54a9c5b1a6c7b1d4e2f
+        //      Pointer to Action Taken (winreg_CreateAction)
+        //          Referent ID: 0x00020000
+        //          Action Taken: REG_CREATED_NEW_KEY (1)
+        //      Windows Error: WERR_OK (0x00000000)
+        final byte[] handleBytes = new byte[handle.getLength()];
+        packetIn.readFully(handleBytes);
+        handle.setBytes(handleBytes);
+        final Integer disposition = packetIn.readIntRef();
+        this.disposition = disposition != null ? disposition : 0;
+        returnValue = packetIn.readInt();
+    }
+}
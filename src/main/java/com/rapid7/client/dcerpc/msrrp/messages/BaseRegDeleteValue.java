@@ -0,0 +1,125 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import java.io.IOException;
+import com.rapid7.client.dcerpc.io.PacketOutput;
+import com.rapid7.client.dcerpc.messages.RequestCall;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+/**
+ * <b>3.1.5.9 BaseRegDeleteValue (Opnum 8)</b><br>
+ * <br>
+ * The BaseRegDeleteValue method is called by the client. In response, the server removes a named value from the
+ * specified registry key.
+ *
+ * <pre>
+ * error_status_t BaseRegDeleteValue(
+ *    [in] RPC_HKEY hKey,
+ *    [in] PRRP_UNICODE_STRING lpValueName
+ * );
+ * </pre>
+ *
+ * hKey: A handle to a key that MUST have been opened previously by using one of the open methods that are specified in
+ * section 3.1.5: OpenClassesRoot, OpenCurrentUser, OpenLocalMachine, OpenPerformanceData, OpenUsers, BaseRegCreateKey,
+ * BaseRegOpenKey, OpenCurrentConfig, OpenPerformanceText, OpenPerformanceNlsText.<br>
+ * <br>
+ * lpValueName: A pointer to an RRP_UNICODE_STRING structure that contains the name of the value (as specified in
+ * section 3.1.1.5) to remove. An empty name removes the default value.<br>
+ * <br>
+ * Return Values: The method returns 0 (ERROR_SUCCESS) to indicate success; otherwise, it returns a nonzero error code,
+ * as specified in {@link com.rapid7.client.dcerpc.mserref.SystemErrorCode} in [MS-ERREF]. The most common error codes
+ * are listed in the following table.<br>
+ * <br>
+ * <table border="1" summary="">
+ * <tr>
+ * <td>Return value/code</td>
+ * <td>Description</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_ACCESS_DENIED (0x00000005)</td>
+ * <td>The caller does not have KEY_SET_VALUE access rights.</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_FILE_NOT_FOUND (0x00000002)</td>
+ * <td>The value specified by lpValueName does not exist.</td>
+ * </tr>
+ * </table>
+ * <br>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * Remote Registry Service, DeleteValue
+ *     Operation: DeleteValue (8)
+ *     [Response in frame: 130]
+ *     Pointer to Handle (policy_handle)
+ *         Policy Handle: CreateKey(Software\Vendor)
+ *             Handle: 00000000a5a4c7e7e5e3b54a9c5b1a6c7b1d4e2f
+ *     Pointer to Value (winreg_String)
+ *         Value: Version
+ * </pre>
+ */
+public class BaseRegDeleteValue extends RequestCall<ReturnValueResponse> {
+    /** A handle to a key that MUST have been opened previously by using one of the open methods. */
+    private final ContextHandle hKey;
+    /** The name of the value to remove, which is empty for the default value. */
+    private final String valueName;
+
+    /**
+     * The BaseRegDeleteValue method is called by the client. In response, the server removes a named value from the
+     * specified registry key.
+     *
+     * @param hKey A handle to a key that MUST have been opened previously by using one of the open methods.
+     * @param valueName The name of the value to remove, which is empty for the default value.
+     */
+    public BaseRegDeleteValue(final ContextHandle hKey, final String valueName) {
+        super((short) 8);
+
+        this.hKey = hKey;
+        this.valueName = valueName;
+    }
+
+    @Override
+    public ReturnValueResponse getResponseObject() {
+        return new ReturnValueResponse();
+    }
+
+    @Override
+    public void marshal(final PacketOutput packetOut)
+        throws IOException {
+        // Remote Registry Service, DeleteValue
+        //      Operation: DeleteValue (8)
+        //      [Response in frame: 130]
+        //      Pointer to Handle (policy_handle)
+        //          Policy Handle: CreateKey(Software\Vendor)
+        //              Handle: 00000000a5a4c7e7e5e3b54a9c5b1a6c7b1d4e2f
+        //      Pointer to Value (winreg_String)
+        //          Value: Version
+        //              Name Len: 16
+        //              Name Size: 16
+        //              Value
+        //                  Referent ID: 0x00020000
+        //                  Max Count: 8
+        //                  Offset: 0
+        //                  Actual Count: 8
+        //                  Value: Version
+        packetOut.write(hKey.getBytes());
+        packetOut.writeStringBuffer(valueName, true);
+    }
+}
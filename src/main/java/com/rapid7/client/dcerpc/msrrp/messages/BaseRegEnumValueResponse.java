@@ -18,6 +18,7 @@
  */
 package com.rapid7.client.dcerpc.msrrp.messages;
 
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_MORE_DATA;
 import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_SUCCESS;
 import java.io.IOException;
 import com.rapid7.client.dcerpc.io.PacketInput;
@@ -76,6 +77,7 @@ public class BaseRegEnumValueResponse extends RequestResponse {
     private String name;
     private RegistryValueType type;
     private byte[] data;
+    private int dataSize;
     private int returnValue;
 
     /** @return The retrieved value name. */
@@ -93,6 +95,14 @@ public class BaseRegEnumValueResponse extends RequestResponse {
         return data;
     }
 
+    /**
+     * @return The size in bytes of the data of the value entry. When the buffer provided is too small to hold the data,
+     *         the method returns ERROR_MORE_DATA and this is the size of the buffer required.
+     */
+    public int getDataSize() {
+        return dataSize;
+    }
+
     /**
      * @return The method returns 0 (ERROR_SUCCESS) to indicate success; otherwise, it returns a nonzero error code, as
      *         specified in {@link com.rapid7.client.dcerpc.mserref.SystemErrorCode} in [MS-ERREF]. The most common
@@ -201,7 +211,7 @@ public class BaseRegEnumValueResponse extends RequestResponse {
         final int type = packetIn.readIntRef();
         final byte[] data = packetIn.readByteArrayRef();
 
-        packetIn.readIntRef();
+        final Integer dataSize = packetIn.readIntRef();
         packetIn.readIntRef();
 
         returnValue = packetIn.readInt();
@@ -210,10 +220,17 @@ public class BaseRegEnumValueResponse extends RequestResponse {
             this.name = name;
             this.type = RegistryValueType.getRegistryValueType(type);
             this.data = data;
+            this.dataSize = dataSize != null ? dataSize : 0;
+        } else if (ERROR_MORE_DATA.is(returnValue)) {
+            this.name = name;
+            this.type = RegistryValueType.getRegistryValueType(type);
+            this.data = null;
+            this.dataSize = dataSize != null ? dataSize : 0;
         } else {
             this.name = null;
             this.type = null;
             this.data = null;
+            this.dataSize = 0;
         }
     }
 }
@@ -0,0 +1,178 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import java.io.IOException;
+import java.util.Set;
+import com.hierynomus.msdtyp.SecurityInformation;
+import com.hierynomus.protocol.commons.EnumWithValue.EnumUtils;
+import com.rapid7.client.dcerpc.io.PacketOutput;
+import com.rapid7.client.dcerpc.messages.RequestCall;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+/**
+ * <b>3.1.5.13 BaseRegGetKeySecurity (Opnum 12)</b><br>
+ * <br>
+ * The BaseRegGetKeySecurity method is called by the client. In response, the server returns a copy of the security
+ * descriptor that protects the specified open registry key.
+ *
+ * <pre>
+ * error_status_t BaseRegGetKeySecurity(
+ *    [in] RPC_HKEY hKey,
+ *    [in] SECURITY_INFORMATION SecurityInformation,
+ *    [in] PRPC_SECURITY_DESCRIPTOR pRpcSecurityDescriptorIn,
+ *    [out] PRPC_SECURITY_DESCRIPTOR pRpcSecurityDescriptorOut
+ * );
+ * </pre>
+ *
+ * hKey: A handle to a key that MUST have been opened previously by using one of the open methods that are specified in
+ * section 3.1.5: OpenClassesRoot, OpenCurrentUser, OpenLocalMachine, OpenPerformanceData, OpenUsers, BaseRegCreateKey,
+ * BaseRegOpenKey, OpenCurrentConfig, OpenPerformanceText, OpenPerformanceNlsText.<br>
+ * <br>
+ * SecurityInformation: The information needed to determine the type of security that is returned in
+ * pRpcSecurityDescriptorOut. The SECURITY_INFORMATION bit flags are defined in [MS-DTYP] section 2.4.7.<br>
+ * <br>
+ * pRpcSecurityDescriptorIn: A pointer to a buffer containing a security descriptor. The client MUST provide a
+ * non-NULL lpSecurityDescriptor whose cbInSecurityDescriptor is the size of the buffer which the server may return.<br>
+ * <br>
+ * pRpcSecurityDescriptorOut: A pointer to a buffer to which the requested security descriptor is written, in
+ * self-relative format.<br>
+ * <br>
+ * Return Values: The method returns 0 (ERROR_SUCCESS) to indicate success; otherwise, it returns a nonzero error code,
+ * as specified in {@link com.rapid7.client.dcerpc.mserref.SystemErrorCode} in [MS-ERREF]. The most common error codes
+ * are listed in the following table.<br>
+ * <br>
+ * <table border="1" summary="">
+ * <tr>
+ * <td>Return value/code</td>
+ * <td>Description</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_ACCESS_DENIED (0x00000005)</td>
+ * <td>The caller does not have READ_CONTROL access rights, or ACCESS_SYSTEM_SECURITY access rights when the SACL is
+ * requested.</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_INSUFFICIENT_BUFFER (0x0000007A)</td>
+ * <td>The buffer provided by pRpcSecurityDescriptorIn is too small to hold the security descriptor.</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_WRITE_PROTECT (0x00000013)</td>
+ * <td>A read or write operation was attempted to a volume after it was dismounted. The server can no longer service
+ * registry requests because server shutdown has been initiated.</td>
+ * </tr>
+ * </table>
+ * <br>
+ * <br>
+ * <b>Server Operations</b><br>
+ * <br>
+ * The server MUST return the security descriptor of the key specified by hKey, containing the parts selected by
+ * SecurityInformation. If the size of the security descriptor is larger than cbInSecurityDescriptor, the server MUST
+ * return ERROR_INSUFFICIENT_BUFFER and set cbInSecurityDescriptor of pRpcSecurityDescriptorOut to the size required.
+ * <br>
+ * <br>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * Remote Registry Service, GetKeySecurity
+ *     Operation: GetKeySecurity (12)
+ *     [Response in frame: 1093]
+ *     Pointer to Handle (policy_handle)
+ *         Policy Handle: OpenKey(SOFTWARE\Microsoft)
+ *             Handle: 0000000058e0a2a8c4f7c4459a5c4fd1e1d8c1f6
+ *     Sec Info: 0x00000007
+ *     Pointer to Sd (KeySecurityData)
+ *         Sd
+ *             Pointer to Data (uint8)
+ *                 Referent ID: 0x00020000
+ *                 Max Count: 4096
+ *                 Offset: 0
+ *                 Actual Count: 0
+ *             Size: 4096
+ *             Len: 0
+ * </pre>
+ *
+ * @see <a href="https://msdn.microsoft.com/en-us/library/cc244921.aspx">3.1.5.13 BaseRegGetKeySecurity (Opnum
+ *      12)</a>
+ */
+public class BaseRegGetKeySecurityRequest extends RequestCall<BaseRegGetKeySecurityResponse> {
+    /**
+     * A handle to a key that MUST have been opened previously by using one of the open methods: OpenClassesRoot,
+     * OpenCurrentUser, OpenLocalMachine, OpenPerformanceData, OpenUsers, BaseRegCreateKey, BaseRegOpenKey,
+     * OpenCurrentConfig, OpenPerformanceText, OpenPerformanceNlsText.
+     */
+    private final ContextHandle hKey;
+    /** The parts of the security descriptor to return. */
+    private final Set<SecurityInformation> securityInformation;
+    /** The maximum number of bytes to accept for the security descriptor. */
+    private final int securityDescriptorLen;
+
+    /**
+     * The BaseRegGetKeySecurity method is called by the client. In response, the server returns a copy of the security
+     * descriptor that protects the specified open registry key.
+     *
+     * @param hKey A handle to a key that MUST have been opened previously by using one of the open methods:
+     *        OpenClassesRoot, OpenCurrentUser, OpenLocalMachine, OpenPerformanceData, OpenUsers, BaseRegCreateKey,
+     *        BaseRegOpenKey, OpenCurrentConfig, OpenPerformanceText, OpenPerformanceNlsText.
+     * @param securityInformation The parts of the security descriptor to return.
+     * @param securityDescriptorLen The maximum number of bytes to accept for the security descriptor.
+     */
+    public BaseRegGetKeySecurityRequest(
+        final ContextHandle hKey,
+        final Set<SecurityInformation> securityInformation,
+        final int securityDescriptorLen) {
+        super((short) 12);
+
+        this.hKey = hKey;
+        this.securityInformation = securityInformation;
+        this.securityDescriptorLen = securityDescriptorLen;
+    }
+
+    @Override
+    public BaseRegGetKeySecurityResponse getResponseObject() {
+        return new BaseRegGetKeySecurityResponse();
+    }
+
+    @Override
+    public void marshal(final PacketOutput packetOut)
+        throws IOException {
+        // Remote Registry Service, GetKeySecurity
+        //      Operation: GetKeySecurity (12)
+        //      [Response in frame: 1093]
+        //      Pointer to Handle (policy_handle)
+        //          Policy Handle: OpenKey(SOFTWARE\Microsoft)
+        //              Handle: 0000000058e0a2a8c4f7c4459a5c4fd1e1d8c1f6
+        //      Sec Info: 0x00000007
+        //      Pointer to Sd (KeySecurityData)
+        //          Sd
+        //              Pointer to Data (uint8)
+        //                  Referent ID: 0x00020000
+        //                  Max Count: 4096
+        //                  Offset: 0
+        //                  Actual Count: 0
+        //              Size: 4096
+        //              Len: 0
+        packetOut.write(hKey.getBytes());
+        packetOut.writeInt((int) EnumUtils.toLong(securityInformation));
+        packetOut.writeReferentID();
+        packetOut.writeInt(securityDescriptorLen);
+        packetOut.writeInt(0);
+        packetOut.writeEmptyArray(securityDescriptorLen);
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_SUCCESS;
+import java.io.IOException;
+import java.util.Arrays;
+import com.rapid7.client.dcerpc.io.PacketInput;
+import com.rapid7.client.dcerpc.messages.RequestResponse;
+
+/**
+ * <b>Example:</b>
+ *
+ * <pre>
+ * Remote Registry Service, GetKeySecurity
+ *     Operation: GetKeySecurity (12)
+ *     [Request in frame: 1092]
+ *     Pointer to Sd (KeySecurityData)
+ *         Sd
+ *             Pointer to Data (uint8)
+ *                 Referent ID: 0x00020000
+ *                 Max Count: 4096
+ *                 Offset: 0
+ *                 Actual Count: 20
+ *                 Data: 01
+ *                 ...
+ *             Size: 4096
+ *             Len: 20
+ *     Windows Error: WERR_OK (0x00000000)
+ * </pre>
+ */
+public class BaseRegGetKeySecurityResponse extends RequestResponse {
+    private byte[] securityDescriptor;
+    private int securityDescriptorSize;
+    private int returnValue;
+
+    /** @return The security descriptor of the key in self-relative format, or null if the method failed. */
+    public byte[] getSecurityDescriptor() {
+        return securityDescriptor;
+    }
+
+    /**
+     * @return The size in bytes of the buffer. When the buffer provided is too small to hold the security descriptor,
+     *         the method returns ERROR_INSUFFICIENT_BUFFER and this is the size of the buffer required.
+     */
+    public int getSecurityDescriptorSize() {
+        return securityDescriptorSize;
+    }
+
+    /**
+     * @return The method returns 0 (ERROR_SUCCESS) to indicate success; otherwise, it returns a nonzero error code, as
+     *         specified in {@link com.rapid7.client.dcerpc.mserref.SystemErrorCode} in [MS-ERREF]. The most common
+     *         error codes are listed in the following table.
+     *         <table border="1" summary="">
+     *         <tr>
+     *         <td>Return value/code</td>
+     *         <td>Description</td>
+     *         </tr>
+     *         <tr>
+     *         <td>ERROR_ACCESS_DENIED (0x00000005)</td>
+     *         <td>The caller does not have READ_CONTROL access rights.</td>
+     *         </tr>
+     *         <tr>
+     *         <td>ERROR_INSUFFICIENT_BUFFER (0x0000007A)</td>
+     *         <td>The buffer provided is too small to hold the security descriptor.</td>
+     *         </tr>
+     *         </table>
+     */
+    public int getReturnValue() {
+        return returnValue;
+    }
+
+    @Override
+    public void unmarshal(final PacketInput packetIn)
+        throws IOException {
+        // Remote Registry Service, GetKeySecurity
+        //      Operation: GetKeySecurity (12)
+        //      [Request in frame: 1092]
+        //      Pointer to Sd (KeySecurityData)
+        //          Sd
+        //              Pointer to Data (uint8)
+        //                  Referent ID: 0x00020000
+        //                  Max Count: 4096
+        //                  Offset: 0
+        //                  Actual Count: 20
+        //              Size: 4096
+        //              Len: 20
+        //      Windows Error: WERR_OK (0x00000000)
+        final int referentID = packetIn.readReferentID();
+        final int size = packetIn.readInt();
+        final int length = packetIn.readInt();
+        final byte[] data;
+        if (referentID != 0) {
+            data = packetIn.readByteArray();
+            packetIn.align();
+        } else {
+            data = null;
+        }
+
+        returnValue = packetIn.readInt();
+        securityDescriptorSize = size;
+
+        if (ERROR_SUCCESS.is(returnValue) && data != null) {
+            securityDescriptor = data.length > length ? Arrays.copyOf(data, length) : data;
+        } else {
+            securityDescriptor = null;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import com.hierynomus.protocol.commons.EnumWithValue.EnumUtils;
+import com.rapid7.client.dcerpc.io.PacketOutput;
+import com.rapid7.client.dcerpc.messages.RequestCall;
+import com.rapid7.client.dcerpc.msrrp.RegistryNotifyFilter;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+/**
+ * <b>3.1.5.14 BaseRegNotifyChangeKeyValue (Opnum 14)</b><br>
+ * <br>
+ * The BaseRegNotifyChangeKeyValue method is called by the client. In response, the server returns when the specified
+ * key or its subkeys have changed. The call does not complete until a change occurs, so it occupies the named pipe on
+ * which it is made until then.
+ *
+ * <pre>
+ * error_status_t BaseRegNotifyChangeKeyValue(
+ *    [in] RPC_HKEY hKey,
+ *    [in] BOOLEAN bWatchSubtree,
+ *    [in] DWORD dwNotifyFilter,
+ *    [in] BOOLEAN fAsynchronous,
+ *    [in] PRRP_UNICODE_STRING lpName,
+ *    [in] PRRP_UNICODE_STRING lpClass,
+ *    [in] DWORD dwUnused
+ * );
+ * </pre>
+ *
+ * hKey: A handle to a key that MUST have been opened previously by using one of the open methods that are specified in
+ * section 3.1.5: OpenClassesRoot, OpenCurrentUser, OpenLocalMachine, OpenPerformanceData, OpenUsers, BaseRegCreateKey,
+ * BaseRegOpenKey, OpenCurrentConfig, OpenPerformanceText, OpenPerformanceNlsText.<br>
+ * <br>
+ * bWatchSubtree: A flag that indicates whether to report changes in the specified key and all of its subkeys or only in
+ * the specified key. If this parameter is TRUE, the server reports changes in the key and its subkeys. If the parameter
+ * is FALSE, the server reports changes only in the key.<br>
+ * <br>
+ * dwNotifyFilter: A value that specifies the changes that cause the method to return, as a combination of
+ * {@link RegistryNotifyFilter} values.<br>
+ * <br>
+ * fAsynchronous: MUST be FALSE. Asynchronous notification is not supported over RPC.<br>
+ * <br>
+ * lpName: MUST be an empty string.<br>
+ * <br>
+ * lpClass: MUST be an empty string.<br>
+ * <br>
+ * dwUnused: Not used.<br>
+ * <br>
+ * Return Values: The method returns 0 (ERROR_SUCCESS) to indicate success; otherwise, it returns a nonzero error code,
+ * as specified in {@link com.rapid7.client.dcerpc.mserref.SystemErrorCode} in [MS-ERREF]. The most common error codes
+ * are listed in the following table.<br>
+ * <br>
+ * <table border="1" summary="">
+ * <tr>
+ * <td>Return value/code</td>
+ * <td>Description</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_ACCESS_DENIED (0x00000005)</td>
+ * <td>The caller does not have KEY_NOTIFY access rights.</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_KEY_DELETED (0x000003FA)</td>
+ * <td>The key was marked for deletion while the call was waiting.</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_WRITE_PROTECT (0x00000013)</td>
+ * <td>A read or write operation was attempted to a volume after it was dismounted. The server can no longer service
+ * registry requests because server shutdown has been initiated.</td>
+ * </tr>
+ * </table>
+ * <br>
+ * <br>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * Remote Registry Service, NotifyChangeKeyValue
+ *     Operation: NotifyChangeKeyValue (14)
+ *     [Response in frame: 412]
+ *     Pointer to Handle (policy_handle)
+ *         Policy Handle: OpenKey(SOFTWARE\Policies)
+ *             Handle: 00000000b1ba3ee6c6cb6b40a91e7a3e4c6ba25e
+ *     Watch Subtree: 1
+ *     Notify Filter: 0x00000005
+ *     Unknown: 0
+ *     String1
+ *         Name Len: 0
+ *         Name Size: 0
+ *         NULL Pointer: Name
+ *     String2
+ *         Name Len: 0
+ *         Name Size: 0
+ *         NULL Pointer: Name
+ *     Unknown2: 0
+ * </pre>
+ */
+public class BaseRegNotifyChangeKeyValue extends RequestCall<ReturnValueResponse> {
+    /**
+     * A handle to a key that MUST have been opened previously by using one of the open methods: OpenClassesRoot,
+     * OpenCurrentUser, OpenLocalMachine, OpenPerformanceData, OpenUsers, BaseRegCreateKey, BaseRegOpenKey,
+     * OpenCurrentConfig, OpenPerformanceText, OpenPerformanceNlsText.
+     */
+    private final ContextHandle hKey;
+    /** Whether to report changes in the subkeys of the key as well as the key itself. */
+    private final boolean watchSubtree;
+    /** The changes that cause the method to return. */
+    private final EnumSet<RegistryNotifyFilter> notifyFilter;
+
+    /**
+     * The BaseRegNotifyChangeKeyValue method is called by the client. In response, the server returns when the
+     * specified key or its subkeys have changed.
+     *
+     * @param hKey A handle to a key that MUST have been opened previously by using one of the open methods:
+     *        OpenClassesRoot, OpenCurrentUser, OpenLocalMachine, OpenPerformanceData, OpenUsers, BaseRegCreateKey,
+     *        BaseRegOpenKey, OpenCurrentConfig, OpenPerformanceText, OpenPerformanceNlsText.
+     * @param watchSubtree Whether to report changes in the subkeys of the key as well as the key itself.
+     * @param notifyFilter The changes that cause the method to return.
+     */
+    public BaseRegNotifyChangeKeyValue(
+        final ContextHandle hKey,
+        final boolean watchSubtree,
+        final EnumSet<RegistryNotifyFilter> notifyFilter) {
+        super((short) 14);
+
+        this.hKey = hKey;
+        this.watchSubtree = watchSubtree;
+        this.notifyFilter = notifyFilter;
+    }
+
+    @Override
+    public ReturnValueResponse getResponseObject() {
+        return new ReturnValueResponse();
+    }
+
+    @Override
+    public void marshal(final PacketOutput packetOut)
+        throws IOException {
+        // Remote Registry Service, NotifyChangeKeyValue
+        //      Operation: NotifyChangeKeyValue (14)
+        //      [Response in frame: 412]
+        //      Pointer to Handle (policy_handle)
+        //          Policy Handle: OpenKey(SOFTWARE\Policies)
+        //              Handle: 00000000b1ba3ee6c6cb6b40a91e7a3e4c6ba25e
+        //      Watch Subtree: 1
+        //      Notify Filter: 0x00000005
+        //      Unknown: 0
+        //      String1
+        //          Name Len: 0
+        //          Name Size: 0
+        //          NULL Pointer: Name
+        //      String2
+        //          Name Len: 0
+        //          Name Size: 0
+        //          NULL Pointer: Name
+        //      Unknown2: 0
+        packetOut.write(hKey.getBytes());
+        packetOut.writeBoolean(watchSubtree);
+        packetOut.align();
+        packetOut.writeInt((int) EnumUtils.toLong(notifyFilter));
+        // fAsynchronous
+        packetOut.writeBoolean(false);
+        packetOut.align();
+        // lpName and lpClass
+        for (int index = 0; index < 2; index++) {
+            packetOut.writeShort(0);
+            packetOut.writeShort(0);
+            packetOut.writeNull();
+        }
+        // dwUnused
+        packetOut.writeInt(0);
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import java.io.IOException;
+import java.util.List;
+import com.rapid7.client.dcerpc.io.PacketOutput;
+import com.rapid7.client.dcerpc.messages.RequestCall;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+/**
+ * <b>3.1.5.23 BaseRegQueryMultipleValues2 (Opnum 34)</b><br>
+ * <br>
+ * The BaseRegQueryMultipleValues2 method is called by the client. In response, the server returns the type and data
+ * for a set of value names that are associated with the specified registry key.
+ *
+ * <pre>
+ * error_status_t BaseRegQueryMultipleValues2(
+ *    [in] RPC_HKEY hKey,
+ *    [in, size_is(num_vals), length_is(num_vals)] PRVALENT val_listIn,
+ *    [out, size_is(num_vals), length_is(num_vals)] PRVALENT val_listOut,
+ *    [in] DWORD num_vals,
+ *    [in, out, unique, size_is(*ldwTotsize), length_is(*ldwTotsize)] char* lpvalueBuf,
+ *    [in] DWORD* ldwTotsize,
+ *    [out] DWORD* ldwRequiredSize
+ * );
+ * </pre>
+ *
+ * hKey: A handle to a key that MUST have been opened previously by using one of the open methods that are specified in
+ * section 3.1.5: {@link OpenClassesRoot}, {@link OpenCurrentUser}, {@link OpenLocalMachine},
+ * {@link OpenPerformanceData}, {@link OpenUsers}, BaseRegCreateKey, {@link BaseRegOpenKey}, {@link OpenCurrentConfig},
+ * {@link OpenPerformanceText}, {@link OpenPerformanceNlsText}.<br>
+ * <br>
+ * val_listIn: A pointer to an array of RVALENT structures, one for each value to be queried. This parameter is a list
+ * of the value names to be queried.<br>
+ * <br>
+ * val_listOut: A pointer to an array of RVALENT structures, one for each value to be queried that contains the
+ * returned type and the offset and length of the data within lpvalueBuf.<br>
+ * <br>
+ * num_vals: The size in number of values of the val_listIn and val_listOut arrays.<br>
+ * <br>
+ * lpvalueBuf: A pointer to a buffer that contains the data for all returned values.<br>
+ * <br>
+ * ldwTotsize: MUST be set to the size in bytes of the buffer pointed to by lpvalueBuf.<br>
+ * <br>
+ * ldwRequiredSize: If the function returns ERROR_MORE_DATA, MUST be set to the buffer size, in bytes, that is required
+ * to hold all of the requested data.<br>
+ * <br>
+ * Return Values: The method returns 0 (ERROR_SUCCESS) to indicate success; otherwise, it returns a nonzero error code,
+ * as specified in {@link com.rapid7.client.dcerpc.mserref.SystemErrorCode} in [MS-ERREF]. The most common error codes
+ * are listed in the following table.<br>
+ * <br>
+ * <table border="1" summary="">
+ * <tr>
+ * <td>Return value/code</td>
+ * <td>Description</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_ACCESS_DENIED (0x00000005)</td>
+ * <td>The caller does not have KEY_QUERY_VALUE access rights.</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_FILE_NOT_FOUND (0x00000002)</td>
+ * <td>One or more of the values specified by val_listIn were not found.</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_INVALID_PARAMETER (0x00000057)</td>
+ * <td>A parameter is incorrect.</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_MORE_DATA (0x000000EA)</td>
+ * <td>The size of the buffer is not large enough to hold the requested data.</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_WRITE_PROTECT (0x00000013)</td>
+ * <td>A read or write operation was attempted to a volume after it was dismounted. The server can no longer service
+ * registry requests because server shutdown has been initiated.</td>
+ * </tr>
+ * </table>
+ * <br>
+ * <b>Server Operations</b><br>
+ * <br>
+ * If the size of the buffer provided by the client is not large enough to hold all of the requested data, the server
+ * MUST return ERROR_MORE_DATA and MUST set ldwRequiredSize to the number of bytes required, which allows the client to
+ * retry the call with a buffer of exactly the required size.
+ */
+public class BaseRegQueryMultipleValues2Request extends RequestCall<BaseRegQueryMultipleValues2Response> {
+    /**
+     * A handle to a key that MUST have been opened previously by using one of the open methods that are specified in
+     * section 3.1.5: {@link OpenClassesRoot}, {@link OpenCurrentUser}, {@link OpenLocalMachine},
+     * {@link OpenPerformanceData}, {@link OpenUsers}, BaseRegCreateKey, {@link BaseRegOpenKey},
+     * {@link OpenCurrentConfig}, {@link OpenPerformanceText}, {@link OpenPerformanceNlsText}.
+     */
+    private final ContextHandle hKey;
+    /** The names of the values to be queried. */
+    private final List<String> valueNames;
+    /** The size in bytes of the buffer offered for the value data. */
+    private final int totalSize;
+
+    /**
+     * The BaseRegQueryMultipleValues2 method is called by the client. In response, the server returns the type and
+     * data for a set of value names that are associated with the specified registry key.
+     *
+     * @param hKey A handle to a key that MUST have been opened previously by using one of the open methods that are
+     *        specified in section 3.1.5: {@link OpenClassesRoot}, {@link OpenCurrentUser}, {@link OpenLocalMachine},
+     *        {@link OpenPerformanceData}, {@link OpenUsers}, BaseRegCreateKey, {@link BaseRegOpenKey},
+     *        {@link OpenCurrentConfig}, {@link OpenPerformanceText}, {@link OpenPerformanceNlsText}.
+     * @param valueNames The names of the values to be queried.
+     * @param totalSize The size in bytes of the buffer offered for the value data.
+     */
+    public BaseRegQueryMultipleValues2Request(
+        final ContextHandle hKey,
+        final List<String> valueNames,
+        final int totalSize) {
+        super((short) 34);
+        this.hKey = hKey;
+        this.valueNames = valueNames;
+        this.totalSize = totalSize;
+    }
+
+    @Override
+    public BaseRegQueryMultipleValues2Response getResponseObject() {
+        return new BaseRegQueryMultipleValues2Response();
+    }
+
+    @Override
+    public void marshal(final PacketOutput packetOut)
+        throws IOException {
+        // Remote Registry Service, QueryMultipleValues2
+        //      Operation: QueryMultipleValues2 (34)
+        //      Pointer to Handle (policy_handle)
+        //      Pointer to Values In (QueryMultipleValue)
+        //          Max Count: 2
+        //          Offset: 0
+        //          Actual Count: 2
+        //          Values In
+        //              Pointer to Ve Valuename (winreg_ValNameBuf)
+        //              Ve Valuelen: 0
+        //              Ve Valueptr: 0
+        //              Ve Type: 0
+        //          ...
+        //      Num Values: 2
+        //      Pointer to Buffer (uint8)
+        //      Pointer to Offered (uint32)
+        packetOut.write(hKey.getBytes());
+        packetOut.writeInt(valueNames.size());
+        packetOut.writeInt(0);
+        packetOut.writeInt(valueNames.size());
+        for (int index = 0; index < valueNames.size(); index++) {
+            packetOut.writeReferentID();
+            packetOut.writeInt(0);
+            packetOut.writeInt(0);
+            packetOut.writeInt(0);
+        }
+        for (final String valueName : valueNames) {
+            packetOut.writeStringBuffer(valueName, true);
+        }
+        packetOut.writeInt(valueNames.size());
+        if (totalSize > 0) {
+            packetOut.writeReferentID();
+            packetOut.writeInt(totalSize);
+            packetOut.writeInt(0);
+            packetOut.writeInt(totalSize);
+            packetOut.write(new byte[totalSize]);
+            packetOut.align();
+        } else {
+            packetOut.writeNull();
+        }
+        packetOut.writeInt(totalSize);
+    }
+}
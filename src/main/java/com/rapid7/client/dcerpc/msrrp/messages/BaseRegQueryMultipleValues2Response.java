@@ -0,0 +1,161 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_SUCCESS;
+import java.io.IOException;
+import java.util.Arrays;
+import com.rapid7.client.dcerpc.io.PacketInput;
+import com.rapid7.client.dcerpc.messages.RequestResponse;
+import com.rapid7.client.dcerpc.msrrp.RegistryValueType;
+
+/**
+ * <b>Example:</b>
+ *
+ * <pre>
+ * Remote Registry Service, QueryMultipleValues2
+ *     Operation: QueryMultipleValues2 (34)
+ *     Pointer to Values Out (QueryMultipleValue)
+ *         Max Count: 1
+ *         Offset: 0
+ *         Actual Count: 1
+ *         Values Out
+ *             Pointer to Ve Valuename (winreg_ValNameBuf)
+ *                 Referent ID: 0x00020000
+ *             Ve Valuelen: 8
+ *             Ve Valueptr: 0
+ *             Ve Type: REG_SZ (1)
+ *         Ve Valuename
+ *             Length: 30
+ *             Size: 30
+ *             Pointer to Name (uint16)
+ *                 Referent ID: 0x00020004
+ *                 Max Count: 15
+ *                 Offset: 0
+ *                 Actual Count: 15
+ *                 Name: CurrentVersion
+ *     Pointer to Buffer (uint8)
+ *         Referent ID: 0x00020008
+ *         Max Count: 8
+ *         Offset: 0
+ *         Actual Count: 8
+ *         Buffer: 360002e0033000000
+ *     Pointer to Needed (uint32)
+ *         Needed: 8
+ *     Windows Error: WERR_OK (0x00000000)
+ * </pre>
+ */
+public class BaseRegQueryMultipleValues2Response extends RequestResponse {
+    private RegistryValueType[] types;
+    private byte[][] data;
+    private int requiredSize;
+    private int returnValue;
+
+    /** @return The {@link RegistryValueType} of each value, in the order in which the values were requested. */
+    public RegistryValueType[] getTypes() {
+        return types;
+    }
+
+    /** @return The data of each value entry, in the order in which the values were requested. */
+    public byte[][] getData() {
+        return data;
+    }
+
+    /**
+     * @return If the method returns ERROR_MORE_DATA, the buffer size, in bytes, that is required to hold all of the
+     *         requested data.
+     */
+    public int getRequiredSize() {
+        return requiredSize;
+    }
+
+    /**
+     * @return The method returns 0 (ERROR_SUCCESS) to indicate success; otherwise, it returns a nonzero error code, as
+     *         specified in {@link com.rapid7.client.dcerpc.mserref.SystemErrorCode} in [MS-ERREF]. The most common
+     *         error codes are listed in the following table.
+     *         <table border="1" summary="">
+     *         <tr>
+     *         <td>Return value/code</td>
+     *         <td>Description</td>
+     *         </tr>
+     *         <tr>
+     *         <td>ERROR_ACCESS_DENIED (0x00000005)</td>
+     *         <td>The caller does not have KEY_QUERY_VALUE access rights.</td>
+     *         </tr>
+     *         <tr>
+     *         <td>ERROR_FILE_NOT_FOUND (0x00000002)</td>
+     *         <td>One or more of the values specified by val_listIn were not found.</td>
+     *         </tr>
+     *         <tr>
+     *         <td>ERROR_INVALID_PARAMETER (0x00000057)</td>
+     *         <td>A parameter is incorrect.</td>
+     *         </tr>
+     *         <tr>
+     *         <td>ERROR_MORE_DATA (0x000000EA)</td>
+     *         <td>The size of the buffer is not large enough to hold the requested data.</td>
+     *         </tr>
+     *         </table>
+     */
+    public int getReturnValue() {
+        return returnValue;
+    }
+
+    @Override
+    public void unmarshal(final PacketInput packetIn)
+        throws IOException {
+        packetIn.readInt(); // Maximum count
+        packetIn.readInt(); // Offset
+        final int count = packetIn.readInt();
+        final int[] nameRefs = new int[count];
+        final int[] lengths = new int[count];
+        final int[] offsets = new int[count];
+        final int[] typeIDs = new int[count];
+        for (int index = 0; index < count; index++) {
+            nameRefs[index] = packetIn.readReferentID();
+            lengths[index] = packetIn.readInt();
+            offsets[index] = packetIn.readInt();
+            typeIDs[index] = packetIn.readInt();
+        }
+        for (int index = 0; index < count; index++) {
+            if (nameRefs[index] != 0) {
+                packetIn.readStringBuf(true);
+            }
+        }
+        final byte[] bufferRef = packetIn.readByteArrayRef();
+        final byte[] buffer = bufferRef != null ? bufferRef : new byte[0];
+        requiredSize = packetIn.readInt();
+        returnValue = packetIn.readInt();
+
+        if (ERROR_SUCCESS.is(returnValue)) {
+            types = new RegistryValueType[count];
+            data = new byte[count][];
+            for (int index = 0; index < count; index++) {
+                if (offsets[index] < 0 || lengths[index] < 0 || buffer.length < offsets[index] + lengths[index]) {
+                    throw new IOException(String.format("Value %d data is out of bounds: offset=%d, length=%d", index,
+                        offsets[index], lengths[index]));
+                }
+                types[index] = RegistryValueType.getRegistryValueType(typeIDs[index]);
+                data[index] = Arrays.copyOfRange(buffer, offsets[index], offsets[index] + lengths[index]);
+            }
+        } else {
+            types = null;
+            data = null;
+        }
+    }
+}
@@ -18,6 +18,7 @@
  */
 package com.rapid7.client.dcerpc.msrrp.messages;
 
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_MORE_DATA;
 import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_SUCCESS;
 import java.io.IOException;
 import com.rapid7.client.dcerpc.io.PacketInput;
@@ -59,6 +60,7 @@ import com.rapid7.client.dcerpc.msrrp.RegistryValueType;
 public class BaseRegQueryValueResponse extends RequestResponse {
     private RegistryValueType type;
     private byte[] data;
+    private int dataSize;
     private int returnValue;
 
     /** @return The {@link RegistryValueType} of the value. */
@@ -71,6 +73,14 @@ public class BaseRegQueryValueResponse extends RequestResponse {
         return data;
     }
 
+    /**
+     * @return The size in bytes of the data of the value entry. When the buffer provided is too small to hold the data,
+     *         the method returns ERROR_MORE_DATA and this is the size of the buffer required.
+     */
+    public int getDataSize() {
+        return dataSize;
+    }
+
     /**
      * @return The method returns 0 (ERROR_SUCCESS) to indicate success; otherwise, it returns a nonzero error code, as
      *         specified in {@link com.rapid7.client.dcerpc.mserref.SystemErrorCode} in [MS-ERREF]. The most common
@@ -139,7 +149,7 @@ public class BaseRegQueryValueResponse extends RequestResponse {
         //      Windows Error: WERR_OK (0x00000000)
         final int type = packetIn.readIntRef();
         final byte[] data = packetIn.readByteArrayRef();
-        packetIn.readIntRef();
+        final Integer dataSize = packetIn.readIntRef();
         packetIn.readIntRef();
 
         returnValue = packetIn.readInt();
@@ -147,9 +157,15 @@ public class BaseRegQueryValueResponse extends RequestResponse {
         if (ERROR_SUCCESS.is(returnValue)) {
             this.type = RegistryValueType.getRegistryValueType(type);
             this.data = data;
+            this.dataSize = dataSize != null ? dataSize : 0;
+        } else if (ERROR_MORE_DATA.is(returnValue)) {
+            this.type = RegistryValueType.getRegistryValueType(type);
+            this.data = null;
+            this.dataSize = dataSize != null ? dataSize : 0;
         } else {
             this.type = null;
             this.data = null;
+            this.dataSize = 0;
         }
     }
 }
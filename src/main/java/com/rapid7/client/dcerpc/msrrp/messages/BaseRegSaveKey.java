@@ -0,0 +1,151 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import java.io.IOException;
+import com.rapid7.client.dcerpc.io.PacketOutput;
+import com.rapid7.client.dcerpc.messages.RequestCall;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+/**
+ * <b>3.1.5.20 BaseRegSaveKey (Opnum 20)</b><br>
+ * <br>
+ * The BaseRegSaveKey method is called by the client. In response, the server saves the specified key, subkeys, and
+ * values to a new file.
+ *
+ * <pre>
+ * error_status_t BaseRegSaveKey(
+ *    [in] RPC_HKEY hKey,
+ *    [in] PRRP_UNICODE_STRING lpFile,
+ *    [in, unique] PRPC_SECURITY_ATTRIBUTES pSecurityAttributes
+ * );
+ * </pre>
+ *
+ * hKey: A handle to a key that MUST have been opened previously by using one of the open methods that are specified in
+ * section 3.1.5: OpenClassesRoot, OpenCurrentUser, OpenLocalMachine, OpenPerformanceData, OpenUsers, BaseRegCreateKey,
+ * BaseRegOpenKey, OpenCurrentConfig, OpenPerformanceText, OpenPerformanceNlsText.<br>
+ * <br>
+ * lpFile: A pointer to an RRP_UNICODE_STRING structure that contains the name of the file in which the specified key
+ * and subkeys are saved. The format of the file name is implementation-specific. If the file name is relative, it is
+ * resolved against the working directory of the server.<br>
+ * <br>
+ * pSecurityAttributes: A pointer to an RPC_SECURITY_ATTRIBUTES structure for the file. If this parameter is NULL, the
+ * file gets a default security descriptor.<br>
+ * <br>
+ * Return Values: The method returns 0 (ERROR_SUCCESS) to indicate success; otherwise, it returns a nonzero error code,
+ * as specified in {@link com.rapid7.client.dcerpc.mserref.SystemErrorCode} in [MS-ERREF]. The most common error codes
+ * are listed in the following table.<br>
+ * <br>
+ * <table border="1" summary="">
+ * <tr>
+ * <td>Return value/code</td>
+ * <td>Description</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_ACCESS_DENIED (0x00000005)</td>
+ * <td>The caller does not have the SeBackupPrivilege.</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_ALREADY_EXISTS (0x000000B7)</td>
+ * <td>The file specified by lpFile already exists.</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_WRITE_PROTECT (0x00000013)</td>
+ * <td>A read or write operation was attempted to a volume after it was dismounted. The server can no longer service
+ * registry requests because server shutdown has been initiated.</td>
+ * </tr>
+ * </table>
+ * <br>
+ * <br>
+ * <b>Server Operations</b><br>
+ * <br>
+ * The server MUST save the key, its subkeys and its values to the file in the server-specific registry file format.
+ * The server MUST fail the method and return ERROR_ALREADY_EXISTS if the file specified by lpFile already exists. The
+ * caller MUST have the SeBackupPrivilege enabled on the server.<br>
+ * <br>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * Remote Registry Service, SaveKey
+ *     Operation: SaveKey (20)
+ *     [Response in frame: 2063]
+ *     Pointer to Handle (policy_handle)
+ *         Policy Handle: OpenKey(SYSTEM\Select)
+ *             Handle: 000000003bc4e4c6ed08b24f97d3a8bd09a0fd4e
+ *     Pointer to Filename (winreg_String)
+ *         Filename: ..\Temp\select.hiv
+ *     NULL Pointer: Pointer to Sec Attrib (KeySecurityAttribute)
+ * </pre>
+ */
+public class BaseRegSaveKey extends RequestCall<ReturnValueResponse> {
+    /**
+     * A handle to a key that MUST have been opened previously by using one of the open methods: OpenClassesRoot,
+     * OpenCurrentUser, OpenLocalMachine, OpenPerformanceData, OpenUsers, BaseRegCreateKey, BaseRegOpenKey,
+     * OpenCurrentConfig, OpenPerformanceText, OpenPerformanceNlsText.
+     */
+    private final ContextHandle hKey;
+    /** The name of the file in which the specified key and subkeys are saved. */
+    private final String file;
+
+    /**
+     * The BaseRegSaveKey method is called by the client. In response, the server saves the specified key, subkeys, and
+     * values to a new file.
+     *
+     * @param hKey A handle to a key that MUST have been opened previously by using one of the open methods:
+     *        OpenClassesRoot, OpenCurrentUser, OpenLocalMachine, OpenPerformanceData, OpenUsers, BaseRegCreateKey,
+     *        BaseRegOpenKey, OpenCurrentConfig, OpenPerformanceText, OpenPerformanceNlsText.
+     * @param file The name of the file in which the specified key and subkeys are saved.
+     */
+    public BaseRegSaveKey(final ContextHandle hKey, final String file) {
+        super((short) 20);
+
+        this.hKey = hKey;
+        this.file = file;
+    }
+
+    @Override
+    public ReturnValueResponse getResponseObject() {
+        return new ReturnValueResponse();
+    }
+
+    @Override
+    public void marshal(final PacketOutput packetOut)
+        throws IOException {
+        // Remote Registry Service, SaveKey
+        //      Operation: SaveKey (20)
+        //      [Response in frame: 2063]
+        //      Pointer to Handle (policy_handle)
+        //          Policy Handle: OpenKey(SYSTEM\Select)
+        //              Handle: 000000003bc4e4c6ed08b24f97d3a8bd09a0fd4e
+        //      Pointer to Filename (winreg_String)
+        //          Filename: ..\Temp\select.hiv
+        //              Name Len: 38
+        //              Name Size: 38
+        //              Filename
+        //                  Referent ID: 0x00020000
+        //                  Max Count: 19
+        //                  Offset: 0
+        //                  Actual Count: 19
+        //                  Filename: ..\Temp\select.hiv
+        //      NULL Pointer: Pointer to Sec Attrib (KeySecurityAttribute)
+        packetOut.write(hKey.getBytes());
+        packetOut.writeStringBuffer(file, true);
+        packetOut.writeNull();
+    }
+}
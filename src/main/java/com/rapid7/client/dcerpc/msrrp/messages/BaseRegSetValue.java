@@ -0,0 +1,158 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import java.io.IOException;
+import com.rapid7.client.dcerpc.io.PacketOutput;
+import com.rapid7.client.dcerpc.messages.RequestCall;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+/**
+ * <b>3.1.5.22 BaseRegSetValue (Opnum 22)</b><br>
+ * <br>
+ * The BaseRegSetValue method is called by the client. In response, the server sets the data for the specified value of
+ * a registry key.
+ *
+ * <pre>
+ * error_status_t BaseRegSetValue(
+ *    [in] RPC_HKEY hKey,
+ *    [in] PRRP_UNICODE_STRING lpValueName,
+ *    [in] DWORD dwType,
+ *    [in, size_is(cbData)] LPBYTE lpData,
+ *    [in] DWORD cbData
+ * );
+ * </pre>
+ *
+ * hKey: A handle to a key that MUST have been opened previously by using one of the open methods that are specified in
+ * section 3.1.5: OpenClassesRoot, OpenCurrentUser, OpenLocalMachine, OpenPerformanceData, OpenUsers, BaseRegCreateKey,
+ * BaseRegOpenKey, OpenCurrentConfig, OpenPerformanceText, OpenPerformanceNlsText.<br>
+ * <br>
+ * lpValueName: A pointer to an RRP_UNICODE_STRING structure that contains the name of the value (as specified in
+ * section 3.1.1.5) to set. If the value does not exist, it is created. An empty name sets the default value.<br>
+ * <br>
+ * dwType: The type of data to be stored.<br>
+ * <br>
+ * lpData: A pointer to a buffer that contains the data to set for the value entry.<br>
+ * <br>
+ * cbData: The length in bytes of the information to be stored.<br>
+ * <br>
+ * Return Values: The method returns 0 (ERROR_SUCCESS) to indicate success; otherwise, it returns a nonzero error code,
+ * as specified in {@link com.rapid7.client.dcerpc.mserref.SystemErrorCode} in [MS-ERREF]. The most common error codes
+ * are listed in the following table.<br>
+ * <br>
+ * <table border="1" summary="">
+ * <tr>
+ * <td>Return value/code</td>
+ * <td>Description</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_ACCESS_DENIED (0x00000005)</td>
+ * <td>The caller does not have KEY_SET_VALUE access rights.</td>
+ * </tr>
+ * <tr>
+ * <td>ERROR_WRITE_PROTECT (0x00000013)</td>
+ * <td>A read or write operation was attempted to a volume after it was dismounted. The server can no longer service
+ * registry requests because server shutdown has been initiated.</td>
+ * </tr>
+ * </table>
+ * <br>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * Remote Registry Service, SetValue
+ *     Operation: SetValue (22)
+ *     [Response in frame: 126]
+ *     Pointer to Handle (policy_handle)
+ *         Policy Handle: CreateKey(Software\Vendor)
+ *             Handle: 00000000a5a4c7e7e5e3b54a9c5b1a6c7b1d4e2f
+ *     Pointer to Name (winreg_String)
+ *         Name: Version
+ *     Type: REG_SZ (1)
+ *     Pointer to Data (uint8)
+ *         Max Count: 8
+ *         Data: 31002e0030000000
+ *     Size: 8
+ * </pre>
+ */
+public class BaseRegSetValue extends RequestCall<ReturnValueResponse> {
+    /** A handle to a key that MUST have been opened previously by using one of the open methods. */
+    private final ContextHandle hKey;
+    /** The name of the value to set, which is empty for the default value. */
+    private final String valueName;
+    /** The type of data to be stored. */
+    private final int type;
+    /** The data to set for the value entry. */
+    private final byte[] data;
+
+    /**
+     * The BaseRegSetValue method is called by the client. In response, the server sets the data for the specified
+     * value of a registry key.
+     *
+     * @param hKey A handle to a key that MUST have been opened previously by using one of the open methods.
+     * @param valueName The name of the value to set, which is empty for the default value.
+     * @param type The type of data to be stored.
+     * @param data The data to set for the value entry.
+     */
+    public BaseRegSetValue(final ContextHandle hKey, final String valueName, final int type, final byte[] data) {
+        super((short) 22);
+
+        this.hKey = hKey;
+        this.valueName = valueName;
+        this.type = type;
+        this.data = data;
+    }
+
+    @Override
+    public ReturnValueResponse getResponseObject() {
+        return new ReturnValueResponse();
+    }
+
+    @Override
+    public void marshal(final PacketOutput packetOut)
+        throws IOException {
+        // Remote Registry Service, SetValue
+        //      Operation: SetValue (22)
+        //      [Response in frame: 126]
+        //      Pointer to Handle (policy_handle)
+        //          Policy Handle: CreateKey(Software\Vendor)
+        //              Handle: 00000000a5a4c7e7e5e3b54a9c5b1a6c7b1d4e2f
+        //      Pointer to Name (winreg_String)
+        //          Name: Version
+        //              Name Len: 16
+        //              Name Size: 16
+        //              Name
+        //                  Referent ID: 0x00020000
+        //                  Max Count: 8
+        //                  Offset: 0
+        //                  Actual Count: 8
+        //                  Name: Version
+        //      Type: REG_SZ (1)
+        //      Pointer to Data (uint8)
+        //          Max Count: 8
+        //          Data: 31002e0030000000
+        //      Size: 8
+        packetOut.write(hKey.getBytes());
+        packetOut.writeStringBuffer(valueName, true);
+        packetOut.writeInt(type);
+        packetOut.writeInt(data.length);
+        packetOut.write(data);
+        packetOut.align();
+        packetOut.writeInt(data.length);
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.perf;
+
+/**
+ * The definition of a counter of a performance object.
+ *
+ * <pre>
+ * typedef struct _PERF_COUNTER_DEFINITION {
+ *   DWORD ByteLength;
+ *   DWORD CounterNameTitleIndex;
+ *   DWORD CounterNameTitle;
+ *   DWORD CounterHelpTitleIndex;
+ *   DWORD CounterHelpTitle;
+ *   LONG  DefaultScale;
+ *   DWORD DetailLevel;
+ *   DWORD CounterType;
+ *   DWORD CounterSize;
+ *   DWORD CounterOffset;
+ * } PERF_COUNTER_DEFINITION;
+ * </pre>
+ *
+ * The counter type is a bit field which describes how the raw value is sized, calculated and displayed, as defined in
+ * winperf.h.
+ *
+ * @see <a href="https://msdn.microsoft.com/en-us/library/windows/desktop/aa373150(v=vs.85).aspx">
+ *      PERF_COUNTER_DEFINITION</a>
+ */
+public class PerfCounterDefinition {
+    final static int PERF_TYPE_MASK = 0x00000C00;
+    final static int PERF_TYPE_COUNTER = 0x00000400;
+    final static int PERF_CALC_MASK = 0x00070000;
+    final static int PERF_COUNTER_VALUE = 0x00000000;
+    final static int PERF_COUNTER_RATE = 0x00010000;
+    final static int PERF_COUNTER_FRACTION = 0x00020000;
+    final static int PERF_COUNTER_BASE = 0x00030000;
+    final static int PERF_COUNTER_ELAPSED = 0x00040000;
+    final static int PERF_COUNTER_QUEUELEN = 0x00050000;
+    final static int PERF_TIMER_MASK = 0x00300000;
+    final static int PERF_TIMER_100NS = 0x00100000;
+    final static int PERF_OBJECT_TIMER = 0x00200000;
+    final static int PERF_DELTA_COUNTER = 0x00400000;
+    final static int PERF_INVERSE_COUNTER = 0x01000000;
+    final static int PERF_DISPLAY_MASK = 0xF0000000;
+    final static int PERF_DISPLAY_PERCENT = 0x20000000;
+    final static int PERF_DISPLAY_SECONDS = 0x30000000;
+    private final int counterNameTitleIndex;
+    private final int defaultScale;
+    private final int detailLevel;
+    private final int counterType;
+    private final int counterSize;
+    private final int counterOffset;
+
+    public PerfCounterDefinition(
+        final int counterNameTitleIndex,
+        final int defaultScale,
+        final int detailLevel,
+        final int counterType,
+        final int counterSize,
+        final int counterOffset) {
+        this.counterNameTitleIndex = counterNameTitleIndex;
+        this.defaultScale = defaultScale;
+        this.detailLevel = detailLevel;
+        this.counterType = counterType;
+        this.counterSize = counterSize;
+        this.counterOffset = counterOffset;
+    }
+
+    /** @return The index of the name of the counter in the title database, e.g. 6 for % Processor Time. */
+    public int getCounterNameTitleIndex() {
+        return counterNameTitleIndex;
+    }
+
+    /** @return The power of 10 by which the value is scaled for display. */
+    public int getDefaultScale() {
+        return defaultScale;
+    }
+
+    /** @return The level of knowledge which the counter is intended for, e.g. 100 (novice). */
+    public int getDetailLevel() {
+        return detailLevel;
+    }
+
+    /** @return The counter type, e.g. 0x21510500 (PERF_100NSEC_TIMER_INV). */
+    public int getCounterType() {
+        return counterType;
+    }
+
+    /** @return The size of the raw value, in bytes. */
+    public int getCounterSize() {
+        return counterSize;
+    }
+
+    /** @return The offset of the raw value from the start of the counter block. */
+    public int getCounterOffset() {
+        return counterOffset;
+    }
+
+    /** @return True if the raw value is a 32 or 64-bit number, rather than text or a variable length structure. */
+    public boolean isNumeric() {
+        return counterSize == 4 || counterSize == 8;
+    }
+
+    /** @return True if the counter is the denominator of the counter which precedes it, rather than a counter. */
+    public boolean isBase() {
+        return (counterType & PERF_TYPE_MASK) == PERF_TYPE_COUNTER
+            && (counterType & PERF_CALC_MASK) == PERF_COUNTER_BASE;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d {counterType=0x%08X}", counterNameTitleIndex, counterType);
+    }
+}
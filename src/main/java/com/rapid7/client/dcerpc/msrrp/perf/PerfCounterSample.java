@@ -0,0 +1,83 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.perf;
+
+/**
+ * The value of a counter computed by a {@link PerfDataSampler}, in the units in which Performance Monitor displays it,
+ * e.g. a percentage for % Processor Time or a rate per second for Context Switches/sec.
+ */
+public class PerfCounterSample {
+    private final int objectNameTitleIndex;
+    private final String instanceName;
+    private final int counterNameTitleIndex;
+    private final int counterType;
+    private final long rawValue;
+    private final double value;
+
+    public PerfCounterSample(
+        final int objectNameTitleIndex,
+        final String instanceName,
+        final int counterNameTitleIndex,
+        final int counterType,
+        final long rawValue,
+        final double value) {
+        this.objectNameTitleIndex = objectNameTitleIndex;
+        this.instanceName = instanceName;
+        this.counterNameTitleIndex = counterNameTitleIndex;
+        this.counterType = counterType;
+        this.rawValue = rawValue;
+        this.value = value;
+    }
+
+    /** @return The title index of the object of the counter. */
+    public int getObjectNameTitleIndex() {
+        return objectNameTitleIndex;
+    }
+
+    /** @return The name of the instance of the counter, or null if the object has no instances. */
+    public String getInstanceName() {
+        return instanceName;
+    }
+
+    /** @return The title index of the counter. */
+    public int getCounterNameTitleIndex() {
+        return counterNameTitleIndex;
+    }
+
+    /** @return The counter type, which determines how the value was computed. */
+    public int getCounterType() {
+        return counterType;
+    }
+
+    /** @return The raw value of the counter in the latest sample. */
+    public long getRawValue() {
+        return rawValue;
+    }
+
+    /** @return The computed value of the counter. */
+    public double getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d\\%s\\%d = %s", objectNameTitleIndex, instanceName == null ? "" : instanceName,
+            counterNameTitleIndex, value);
+    }
+}
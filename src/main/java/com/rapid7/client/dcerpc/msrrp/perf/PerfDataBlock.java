@@ -0,0 +1,105 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.perf;
+
+/**
+ * The header of the performance data returned for HKEY_PERFORMANCE_DATA.
+ *
+ * <pre>
+ * typedef struct _PERF_DATA_BLOCK {
+ *   WCHAR         Signature[4];
+ *   DWORD         LittleEndian;
+ *   DWORD         Version;
+ *   DWORD         Revision;
+ *   DWORD         TotalByteLength;
+ *   DWORD         HeaderLength;
+ *   DWORD         NumObjectTypes;
+ *   LONG          DefaultObject;
+ *   SYSTEMTIME    SystemTime;
+ *   LARGE_INTEGER PerfTime;
+ *   LARGE_INTEGER PerfFreq;
+ *   LARGE_INTEGER PerfTime100nSec;
+ *   DWORD         SystemNameLength;
+ *   DWORD         SystemNameOffset;
+ * } PERF_DATA_BLOCK;
+ * </pre>
+ *
+ * @see <a href="https://msdn.microsoft.com/en-us/library/windows/desktop/aa373157(v=vs.85).aspx">PERF_DATA_BLOCK</a>
+ */
+public class PerfDataBlock {
+    private final int version;
+    private final int revision;
+    private final int numObjectTypes;
+    private final long perfTime;
+    private final long perfFreq;
+    private final long perfTime100nSec;
+    private final String systemName;
+
+    public PerfDataBlock(
+        final int version,
+        final int revision,
+        final int numObjectTypes,
+        final long perfTime,
+        final long perfFreq,
+        final long perfTime100nSec,
+        final String systemName) {
+        this.version = version;
+        this.revision = revision;
+        this.numObjectTypes = numObjectTypes;
+        this.perfTime = perfTime;
+        this.perfFreq = perfFreq;
+        this.perfTime100nSec = perfTime100nSec;
+        this.systemName = systemName;
+    }
+
+    /** @return The version of the performance structures. */
+    public int getVersion() {
+        return version;
+    }
+
+    /** @return The revision of the performance structures. */
+    public int getRevision() {
+        return revision;
+    }
+
+    /** @return The number of object types in the block. */
+    public int getNumObjectTypes() {
+        return numObjectTypes;
+    }
+
+    /** @return The value of the high-resolution performance counter when the data was collected, in counts. */
+    public long getPerfTime() {
+        return perfTime;
+    }
+
+    /** @return The frequency of the high-resolution performance counter, in counts per second. */
+    public long getPerfFreq() {
+        return perfFreq;
+    }
+
+    /** @return The time when the data was collected, in 100 nanosecond units. */
+    public long getPerfTime100nSec() {
+        return perfTime100nSec;
+    }
+
+    /** @return The name of the system from which the data was collected. */
+    public String getSystemName() {
+        return systemName;
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.perf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the PERF_DATA_BLOCK returned for HKEY_PERFORMANCE_DATA in a single pass, handing each object and the raw
+ * counter values of each of its instances to a {@link Visitor} as they are reached. No tree of the whole block is
+ * built, and the objects which the visitor skips are not decoded beyond their header.
+ *
+ * @see <a href="https://msdn.microsoft.com/en-us/library/windows/desktop/aa373178(v=vs.85).aspx">Performance Data
+ *      Format</a>
+ */
+public class PerfDataParser {
+    /** Receives the contents of a PERF_DATA_BLOCK, in order. */
+    public interface Visitor {
+        void visitBlock(PerfDataBlock block);
+
+        /**
+         * @return True to visit the counters of the object, or false to skip it.
+         */
+        boolean visitObject(PerfObjectType object);
+
+        /**
+         * @param object The object.
+         * @param instance The instance, or null if the object has no instances.
+         * @param values The raw values of the counters, in the order of {@link PerfObjectType#getCounters()}. The
+         *        values of counters which are not numeric are 0. The array is reused for the next instance.
+         */
+        void visitCounters(PerfObjectType object, PerfInstanceDefinition instance, long[] values);
+    }
+
+    private final static String SIGNATURE = "PERF";
+    private final static int PERF_OBJECT_TYPE_SIZE = 64;
+    private final static int PERF_COUNTER_DEFINITION_SIZE = 40;
+    private final static int PERF_INSTANCE_DEFINITION_SIZE = 24;
+    private final ByteBuffer buffer;
+
+    private PerfDataParser(final byte[] data) {
+        buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @param data The PERF_DATA_BLOCK.
+     * @param visitor The visitor to which its contents are handed.
+     * @throws IOException If the data is not a well formed PERF_DATA_BLOCK.
+     */
+    public static void parse(final byte[] data, final Visitor visitor)
+        throws IOException {
+        if (data == null) {
+            throw new IllegalArgumentException("Data is invalid: " + data);
+        }
+        if (visitor == null) {
+            throw new IllegalArgumentException("Visitor is invalid: " + visitor);
+        }
+        new PerfDataParser(data).parse(visitor);
+    }
+
+    private void parse(final Visitor visitor)
+        throws IOException {
+        final String signature = getString(0, 8);
+        if (!SIGNATURE.equals(signature)) {
+            throw new IOException("Performance data signature is invalid: " + signature);
+        }
+        final int totalByteLength = getInt(20);
+        final int headerLength = getInt(24);
+        final int numObjectTypes = getInt(28);
+        final int systemNameLength = getInt(80);
+        final int systemNameOffset = getInt(84);
+        final PerfDataBlock block = new PerfDataBlock(getInt(12), getInt(16), numObjectTypes, getLong(56), getLong(64),
+            getLong(72), trimNull(getString(systemNameOffset, systemNameLength)));
+        visitor.visitBlock(block);
+
+        final int end = Math.min(totalByteLength, buffer.capacity());
+        int object = headerLength;
+        for (int index = 0; index < numObjectTypes && object < end; index++) {
+            final int objectLength = getInt(object);
+            if (objectLength < PERF_OBJECT_TYPE_SIZE) {
+                throw new IOException("Performance object length is invalid at offset " + object + ": " + objectLength);
+            }
+            parseObject(object, objectLength, visitor);
+            object += objectLength;
+        }
+    }
+
+    private void parseObject(final int object, final int objectLength, final Visitor visitor)
+        throws IOException {
+        final int definitionLength = getInt(object + 4);
+        final int headerLength = getInt(object + 8);
+        final int numCounters = getInt(object + 32);
+        final int numInstances = getInt(object + 40);
+        // Check the counts against the lengths they span before allocating, so a corrupt count cannot exhaust the heap.
+        if (numCounters < 0 || numCounters > ((long) definitionLength - headerLength) / PERF_COUNTER_DEFINITION_SIZE) {
+            throw new IOException("Performance counter count is invalid at offset " + object + ": " + numCounters);
+        }
+        if (numInstances != PerfObjectType.PERF_NO_INSTANCES
+            && (numInstances < 0 || numInstances > objectLength / PERF_INSTANCE_DEFINITION_SIZE)) {
+            throw new IOException("Performance instance count is invalid at offset " + object + ": " + numInstances);
+        }
+        final List<PerfCounterDefinition> counters = new ArrayList<>(numCounters);
+        int counter = object + headerLength;
+        for (int index = 0; index < numCounters; index++) {
+            final int counterLength = getInt(counter);
+            if (counterLength < PERF_COUNTER_DEFINITION_SIZE) {
+                throw new IOException("Performance counter length is invalid at offset " + counter + ": "
+                    + counterLength);
+            }
+            counters.add(new PerfCounterDefinition(getInt(counter + 4), getInt(counter + 20), getInt(counter + 24),
+                getInt(counter + 28), getInt(counter + 32), getInt(counter + 36)));
+            counter += counterLength;
+        }
+        final PerfObjectType objectType = new PerfObjectType(getInt(object + 12), getInt(object + 28), numInstances,
+            getLong(object + 48), getLong(object + 56), Collections.unmodifiableList(counters));
+        if (!visitor.visitObject(objectType)) {
+            return;
+        }
+
+        final long[] values = new long[numCounters];
+        if (numInstances == PerfObjectType.PERF_NO_INSTANCES) {
+            readCounterBlock(object + definitionLength, counters, values);
+            visitor.visitCounters(objectType, null, values);
+            return;
+        }
+        int instance = object + definitionLength;
+        for (int index = 0; index < numInstances; index++) {
+            final int instanceLength = getInt(instance);
+            if (instanceLength < PERF_INSTANCE_DEFINITION_SIZE) {
+                throw new IOException("Performance instance length is invalid at offset " + instance + ": "
+                    + instanceLength);
+            }
+            final String name = trimNull(getString(instance + getInt(instance + 16), getInt(instance + 20)));
+            final PerfInstanceDefinition instanceDefinition =
+                new PerfInstanceDefinition(name, getInt(instance + 12), getInt(instance + 4), getInt(instance + 8));
+            final int counterBlock = instance + instanceLength;
+            readCounterBlock(counterBlock, counters, values);
+            visitor.visitCounters(objectType, instanceDefinition, values);
+            instance = counterBlock + getInt(counterBlock);
+        }
+    }
+
+    private void readCounterBlock(
+        final int counterBlock,
+        final List<PerfCounterDefinition> counters,
+        final long[] values)
+        throws IOException {
+        final int counterBlockLength = getInt(counterBlock);
+        for (int index = 0; index < values.length; index++) {
+            final PerfCounterDefinition counter = counters.get(index);
+            final int offset = counter.getCounterOffset();
+            if (!counter.isNumeric() || offset < 0 || offset + counter.getCounterSize() > counterBlockLength) {
+                values[index] = 0;
+            } else if (counter.getCounterSize() == 4) {
+                values[index] = getInt(counterBlock + offset) & 0xFFFFFFFFL;
+            } else {
+                values[index] = getLong(counterBlock + offset);
+            }
+        }
+    }
+
+    private int getInt(final int position)
+        throws IOException {
+        checkRange(position, 4);
+        return buffer.getInt(position);
+    }
+
+    private long getLong(final int position)
+        throws IOException {
+        checkRange(position, 8);
+        return buffer.getLong(position);
+    }
+
+    private String getString(final int position, final int length)
+        throws IOException {
+        checkRange(position, length);
+        return new String(buffer.array(), position, length & ~1, StandardCharsets.UTF_16LE);
+    }
+
+    private void checkRange(final int position, final int length)
+        throws IOException {
+        if (position < 0 || length < 0 || (long) position + length > buffer.capacity()) {
+            throw new IOException("Performance data is truncated at offset " + position + " (+" + length + ")");
+        }
+    }
+
+    private static String trimNull(final String string) {
+        final int end = string.indexOf('\0');
+        return end < 0 ? string : string.substring(0, end);
+    }
+}
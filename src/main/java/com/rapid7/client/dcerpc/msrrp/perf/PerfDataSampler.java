@@ -0,0 +1,268 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.perf;
+
+import static com.rapid7.client.dcerpc.msrrp.perf.PerfCounterDefinition.PERF_CALC_MASK;
+import static com.rapid7.client.dcerpc.msrrp.perf.PerfCounterDefinition.PERF_COUNTER_ELAPSED;
+import static com.rapid7.client.dcerpc.msrrp.perf.PerfCounterDefinition.PERF_COUNTER_FRACTION;
+import static com.rapid7.client.dcerpc.msrrp.perf.PerfCounterDefinition.PERF_COUNTER_QUEUELEN;
+import static com.rapid7.client.dcerpc.msrrp.perf.PerfCounterDefinition.PERF_COUNTER_RATE;
+import static com.rapid7.client.dcerpc.msrrp.perf.PerfCounterDefinition.PERF_COUNTER_VALUE;
+import static com.rapid7.client.dcerpc.msrrp.perf.PerfCounterDefinition.PERF_DELTA_COUNTER;
+import static com.rapid7.client.dcerpc.msrrp.perf.PerfCounterDefinition.PERF_DISPLAY_MASK;
+import static com.rapid7.client.dcerpc.msrrp.perf.PerfCounterDefinition.PERF_DISPLAY_PERCENT;
+import static com.rapid7.client.dcerpc.msrrp.perf.PerfCounterDefinition.PERF_DISPLAY_SECONDS;
+import static com.rapid7.client.dcerpc.msrrp.perf.PerfCounterDefinition.PERF_INVERSE_COUNTER;
+import static com.rapid7.client.dcerpc.msrrp.perf.PerfCounterDefinition.PERF_OBJECT_TIMER;
+import static com.rapid7.client.dcerpc.msrrp.perf.PerfCounterDefinition.PERF_TIMER_100NS;
+import static com.rapid7.client.dcerpc.msrrp.perf.PerfCounterDefinition.PERF_TIMER_MASK;
+import static com.rapid7.client.dcerpc.msrrp.perf.PerfCounterDefinition.PERF_TYPE_COUNTER;
+import static com.rapid7.client.dcerpc.msrrp.perf.PerfCounterDefinition.PERF_TYPE_MASK;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.rapid7.client.dcerpc.msrrp.RegistryService;
+
+/**
+ * Collects performance counters from HKEY_PERFORMANCE_DATA and computes their values between consecutive samples, in
+ * the way Performance Monitor does. Only the raw values of the previous sample are kept, not the data it was read
+ * from.<br>
+ * <br>
+ * Counters whose value depends on the previous sample, such as rates and timer percentages, are omitted from the first
+ * sample and from samples in which the time has not advanced. Counters of types which are not recognized are reported
+ * with their raw value.
+ */
+public class PerfDataSampler {
+    private final static long PERF_TIMER_100NS_FREQ = 10000000L;
+    private final RegistryService registryService;
+    private final String valueName;
+    private Map<CounterKey, long[]> previousValues = new HashMap<>();
+    private Map<Integer, Long> previousObjectTimes = new HashMap<>();
+    private PerfDataBlock previousBlock;
+
+    /**
+     * @param registryService The registry service from which the performance data is read.
+     * @param valueName The objects to collect: "Global", "Costly", or a space separated list of object title indexes.
+     */
+    public PerfDataSampler(final RegistryService registryService, final String valueName) {
+        if (registryService == null) {
+            throw new IllegalArgumentException("Invalid registry service: " + registryService);
+        }
+        if (valueName == null || valueName.isEmpty()) {
+            throw new IllegalArgumentException("Value name is invalid: " + valueName);
+        }
+        this.registryService = registryService;
+        this.valueName = valueName;
+    }
+
+    /**
+     * @return The values of the counters which can be computed from this sample and the previous one.
+     */
+    public synchronized List<PerfCounterSample> sample()
+        throws IOException {
+        final byte[] data = registryService.getPerformanceData(valueName);
+        final SampleVisitor visitor = new SampleVisitor();
+        PerfDataParser.parse(data, visitor);
+        previousValues = visitor.values;
+        previousObjectTimes = visitor.objectTimes;
+        previousBlock = visitor.block;
+        return visitor.samples;
+    }
+
+    /** Forget the previous sample, so that the next sample only reports counters which do not need one. */
+    public synchronized void reset() {
+        previousValues = new HashMap<>();
+        previousObjectTimes = new HashMap<>();
+        previousBlock = null;
+    }
+
+    /**
+     * @return The value of the counter, or null if it cannot be computed.
+     */
+    private Double compute(
+        final PerfDataBlock block,
+        final PerfObjectType object,
+        final PerfCounterDefinition counter,
+        final long value,
+        final long base,
+        final long[] previous) {
+        final int type = counter.getCounterType();
+        if ((type & PERF_TYPE_MASK) != PERF_TYPE_COUNTER) {
+            return (double) value;
+        }
+        final boolean percent = (type & PERF_DISPLAY_MASK) == PERF_DISPLAY_PERCENT;
+        switch (type & PERF_CALC_MASK) {
+        case PERF_COUNTER_VALUE:
+            if ((type & PERF_DELTA_COUNTER) == 0) {
+                return (double) value;
+            }
+            return previous == null ? null : (double) (value - previous[0]);
+        case PERF_COUNTER_RATE:
+        case PERF_COUNTER_QUEUELEN:
+            if (previous == null) {
+                return null;
+            }
+            final long elapsed;
+            final long frequency;
+            switch (type & PERF_TIMER_MASK) {
+            case PERF_TIMER_100NS:
+                elapsed = block.getPerfTime100nSec() - previousBlock.getPerfTime100nSec();
+                frequency = PERF_TIMER_100NS_FREQ;
+                break;
+            case PERF_OBJECT_TIMER:
+                final Long previousObjectTime = previousObjectTimes.get(object.getObjectNameTitleIndex());
+                elapsed = previousObjectTime == null ? 0 : object.getPerfTime() - previousObjectTime;
+                frequency = object.getPerfFreq();
+                break;
+            default:
+                elapsed = block.getPerfTime() - previousBlock.getPerfTime();
+                frequency = block.getPerfFreq();
+            }
+            if (elapsed <= 0) {
+                return null;
+            }
+            final long delta = value - previous[0];
+            if (percent) {
+                final double fraction = (double) delta / elapsed;
+                return 100 * ((type & PERF_INVERSE_COUNTER) == 0 ? fraction : 1 - fraction);
+            }
+            if ((type & PERF_CALC_MASK) == PERF_COUNTER_QUEUELEN) {
+                return (double) delta / elapsed;
+            }
+            return (double) delta * frequency / elapsed;
+        case PERF_COUNTER_FRACTION:
+            if (percent && (type & PERF_DELTA_COUNTER) == 0) {
+                return base == 0 ? null : 100.0 * value / base;
+            }
+            if (previous == null || base == previous[1]) {
+                return null;
+            }
+            final double ratio = (double) (value - previous[0]) / (base - previous[1]);
+            if (percent) {
+                return 100 * ratio;
+            }
+            if ((type & PERF_DISPLAY_MASK) == PERF_DISPLAY_SECONDS) {
+                return block.getPerfFreq() == 0 ? null : ratio / block.getPerfFreq();
+            }
+            return ratio;
+        case PERF_COUNTER_ELAPSED:
+            final PerfObjectType timer = (type & PERF_TIMER_MASK) == PERF_OBJECT_TIMER ? object : null;
+            final long perfTime = timer == null ? block.getPerfTime() : timer.getPerfTime();
+            final long perfFreq = timer == null ? block.getPerfFreq() : timer.getPerfFreq();
+            return perfFreq == 0 ? null : (double) (perfTime - value) / perfFreq;
+        default:
+            return (double) value;
+        }
+    }
+
+    private class SampleVisitor implements PerfDataParser.Visitor {
+        private final Map<CounterKey, long[]> values = new HashMap<>();
+        private final Map<Integer, Long> objectTimes = new HashMap<>();
+        private final Map<String, Integer> instanceOrdinals = new HashMap<>();
+        private final List<PerfCounterSample> samples = new ArrayList<>();
+        private PerfDataBlock block;
+
+        @Override
+        public void visitBlock(final PerfDataBlock block) {
+            this.block = block;
+        }
+
+        @Override
+        public boolean visitObject(final PerfObjectType object) {
+            objectTimes.put(object.getObjectNameTitleIndex(), object.getPerfTime());
+            instanceOrdinals.clear();
+            return true;
+        }
+
+        @Override
+        public void visitCounters(
+            final PerfObjectType object,
+            final PerfInstanceDefinition instance,
+            final long[] counterValues) {
+            final String instanceName = instance == null ? null : instance.getName();
+            final int uniqueID = instance == null ? PerfInstanceDefinition.PERF_NO_UNIQUE_ID : instance.getUniqueID();
+            // Instances without a unique identifier may share a name, e.g. several svchost processes.
+            int ordinal = 0;
+            if (instanceName != null && uniqueID == PerfInstanceDefinition.PERF_NO_UNIQUE_ID) {
+                final Integer previousOrdinal = instanceOrdinals.get(instanceName);
+                ordinal = previousOrdinal == null ? 0 : previousOrdinal + 1;
+                instanceOrdinals.put(instanceName, ordinal);
+            }
+            final List<PerfCounterDefinition> counters = object.getCounters();
+            for (int index = 0; index < counters.size(); index++) {
+                final PerfCounterDefinition counter = counters.get(index);
+                if (counter.isBase() || !counter.isNumeric()) {
+                    continue;
+                }
+                final long value = counterValues[index];
+                final boolean hasBase = index + 1 < counters.size() && counters.get(index + 1).isBase();
+                final long base = hasBase ? counterValues[index + 1] : 0;
+                final CounterKey key =
+                    new CounterKey(object.getObjectNameTitleIndex(), instanceName, uniqueID, ordinal, index);
+                values.put(key, new long[] {value, base});
+                final long[] previous = previousBlock == null ? null : previousValues.get(key);
+                final Double computed = compute(block, object, counter, value, base, previous);
+                if (computed != null) {
+                    samples.add(new PerfCounterSample(object.getObjectNameTitleIndex(), instanceName,
+                        counter.getCounterNameTitleIndex(), counter.getCounterType(), value, computed));
+                }
+            }
+        }
+    }
+
+    private static class CounterKey {
+        private final int objectNameTitleIndex;
+        private final String instanceName;
+        private final int uniqueID;
+        private final int ordinal;
+        private final int counterIndex;
+
+        private CounterKey(
+            final int objectNameTitleIndex,
+            final String instanceName,
+            final int uniqueID,
+            final int ordinal,
+            final int counterIndex) {
+            this.objectNameTitleIndex = objectNameTitleIndex;
+            this.instanceName = instanceName;
+            this.uniqueID = uniqueID;
+            this.ordinal = ordinal;
+            this.counterIndex = counterIndex;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((((objectNameTitleIndex * 31) + (instanceName == null ? 0 : instanceName.hashCode())) * 31
+                + uniqueID) * 31 + ordinal) * 31 + counterIndex;
+        }
+
+        @Override
+        public boolean equals(final Object anObject) {
+            if (!(anObject instanceof CounterKey)) {
+                return false;
+            }
+            final CounterKey other = (CounterKey) anObject;
+            return objectNameTitleIndex == other.objectNameTitleIndex && uniqueID == other.uniqueID
+                && ordinal == other.ordinal && counterIndex == other.counterIndex
+                && (instanceName == null ? other.instanceName == null : instanceName.equals(other.instanceName));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.perf;
+
+/**
+ * An instance of a performance object, e.g. a processor or a process.
+ *
+ * <pre>
+ * typedef struct _PERF_INSTANCE_DEFINITION {
+ *   DWORD ByteLength;
+ *   DWORD ParentObjectTitleIndex;
+ *   DWORD ParentObjectInstance;
+ *   LONG  UniqueID;
+ *   DWORD NameOffset;
+ *   DWORD NameLength;
+ * } PERF_INSTANCE_DEFINITION;
+ * </pre>
+ *
+ * @see <a href="https://msdn.microsoft.com/en-us/library/windows/desktop/aa373159(v=vs.85).aspx">
+ *      PERF_INSTANCE_DEFINITION</a>
+ */
+public class PerfInstanceDefinition {
+    /** The value of UniqueID for an instance which is identified by its name. */
+    public final static int PERF_NO_UNIQUE_ID = -1;
+    private final String name;
+    private final int uniqueID;
+    private final int parentObjectTitleIndex;
+    private final int parentObjectInstance;
+
+    public PerfInstanceDefinition(
+        final String name,
+        final int uniqueID,
+        final int parentObjectTitleIndex,
+        final int parentObjectInstance) {
+        this.name = name;
+        this.uniqueID = uniqueID;
+        this.parentObjectTitleIndex = parentObjectTitleIndex;
+        this.parentObjectInstance = parentObjectInstance;
+    }
+
+    /** @return The name of the instance, e.g. "_Total". */
+    public String getName() {
+        return name;
+    }
+
+    /** @return The unique identifier of the instance, or {@link #PERF_NO_UNIQUE_ID}. */
+    public int getUniqueID() {
+        return uniqueID;
+    }
+
+    /** @return The title index of the parent object, or 0 if the instance has no parent. */
+    public int getParentObjectTitleIndex() {
+        return parentObjectTitleIndex;
+    }
+
+    /** @return The index of the parent instance among the instances of the parent object. */
+    public int getParentObjectInstance() {
+        return parentObjectInstance;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.perf;
+
+import java.util.List;
+
+/**
+ * A performance object and the definitions of its counters.
+ *
+ * <pre>
+ * typedef struct _PERF_OBJECT_TYPE {
+ *   DWORD         TotalByteLength;
+ *   DWORD         DefinitionLength;
+ *   DWORD         HeaderLength;
+ *   DWORD         ObjectNameTitleIndex;
+ *   DWORD         ObjectNameTitle;
+ *   DWORD         ObjectHelpTitleIndex;
+ *   DWORD         ObjectHelpTitle;
+ *   DWORD         DetailLevel;
+ *   DWORD         NumCounters;
+ *   LONG          DefaultCounter;
+ *   LONG          NumInstances;
+ *   DWORD         CodePage;
+ *   LARGE_INTEGER PerfTime;
+ *   LARGE_INTEGER PerfFreq;
+ * } PERF_OBJECT_TYPE;
+ * </pre>
+ *
+ * @see <a href="https://msdn.microsoft.com/en-us/library/windows/desktop/aa373160(v=vs.85).aspx">PERF_OBJECT_TYPE</a>
+ */
+public class PerfObjectType {
+    /** The value of NumInstances for an object which has a single set of counters and no instances. */
+    public final static int PERF_NO_INSTANCES = -1;
+    private final int objectNameTitleIndex;
+    private final int detailLevel;
+    private final int numInstances;
+    private final long perfTime;
+    private final long perfFreq;
+    private final List<PerfCounterDefinition> counters;
+
+    public PerfObjectType(
+        final int objectNameTitleIndex,
+        final int detailLevel,
+        final int numInstances,
+        final long perfTime,
+        final long perfFreq,
+        final List<PerfCounterDefinition> counters) {
+        this.objectNameTitleIndex = objectNameTitleIndex;
+        this.detailLevel = detailLevel;
+        this.numInstances = numInstances;
+        this.perfTime = perfTime;
+        this.perfFreq = perfFreq;
+        this.counters = counters;
+    }
+
+    /** @return The index of the name of the object in the title database, e.g. 238 for Processor. */
+    public int getObjectNameTitleIndex() {
+        return objectNameTitleIndex;
+    }
+
+    /** @return The level of knowledge which the object is intended for, e.g. 100 (novice). */
+    public int getDetailLevel() {
+        return detailLevel;
+    }
+
+    /** @return The number of instances of the object, or {@link #PERF_NO_INSTANCES}. */
+    public int getNumInstances() {
+        return numInstances;
+    }
+
+    /** @return The time when the object was sampled, in units of {@link #getPerfFreq()}. */
+    public long getPerfTime() {
+        return perfTime;
+    }
+
+    /** @return The frequency of {@link #getPerfTime()}, in counts per second. */
+    public long getPerfFreq() {
+        return perfFreq;
+    }
+
+    /** @return The definitions of the counters of the object, in the order in which their values are reported. */
+    public List<PerfCounterDefinition> getCounters() {
+        return counters;
+    }
+}
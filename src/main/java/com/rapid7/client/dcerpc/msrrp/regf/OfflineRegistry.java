@@ -0,0 +1,162 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.regf;
+
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_FILE_NOT_FOUND;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.google.common.base.Strings;
+import com.rapid7.client.dcerpc.RPCException;
+import com.rapid7.client.dcerpc.msrrp.RegistryKey;
+import com.rapid7.client.dcerpc.msrrp.RegistryKeyInfo;
+import com.rapid7.client.dcerpc.msrrp.RegistryValue;
+
+/**
+ * Answers registry queries from a saved hive rather than a live host, with the same results as
+ * {@link com.rapid7.client.dcerpc.msrrp.RegistryService} for the keys under the root of the hive. Key paths are
+ * relative to the root key of the hive. Keys and values which do not exist fail with the same
+ * {@link RPCException}s, with an error code of ERROR_FILE_NOT_FOUND, so that code written against the live service
+ * handles them in the same way.<br>
+ * <br>
+ * Key nodes are indexed by path as they are resolved, so repeated queries against the same key do not walk the hive
+ * again, and subkeys are found through the name hashes in the hive's hash leaves.
+ */
+public class OfflineRegistry {
+    private final Map<String, RegfKey> keyPathCache = new HashMap<>();
+    private final RegfHive hive;
+
+    public OfflineRegistry(final RegfHive hive) {
+        if (hive == null) {
+            throw new IllegalArgumentException("Invalid hive: " + hive);
+        }
+        this.hive = hive;
+    }
+
+    /**
+     * @param file The hive file, which is memory-mapped.
+     * @return A registry which answers queries from the hive file.
+     * @throws IOException If the file cannot be mapped or does not hold a regf hive.
+     */
+    public static OfflineRegistry open(final File file)
+        throws IOException {
+        return new OfflineRegistry(RegfHive.map(file));
+    }
+
+    public boolean doesKeyExist(final String keyPath)
+        throws IOException {
+        return findKey(keyPath) != null;
+    }
+
+    public boolean doesValueExist(final String keyPath, final String valueName)
+        throws IOException {
+        return openKey(keyPath).getValue(Strings.nullToEmpty(valueName)) != null;
+    }
+
+    public RegistryKeyInfo getKeyInfo(final String keyPath)
+        throws IOException {
+        return openKey(keyPath).getKeyInfo();
+    }
+
+    public List<RegistryKey> getSubKeys(final String keyPath)
+        throws IOException {
+        final List<RegfKey> subKeys = openKey(keyPath).getSubKeys();
+        final List<RegistryKey> keys = new ArrayList<>(subKeys.size());
+        for (final RegfKey subKey : subKeys) {
+            keys.add(subKey.toRegistryKey());
+        }
+        return keys;
+    }
+
+    public List<RegistryValue> getValues(final String keyPath)
+        throws IOException {
+        return new ArrayList<>(openKey(keyPath).getValues());
+    }
+
+    public RegistryValue getValue(final String keyPath, final String valueName)
+        throws IOException {
+        final RegistryValue value = openKey(keyPath).getValue(Strings.nullToEmpty(valueName));
+        if (value == null) {
+            throw new RPCException("BaseRegQueryValue", ERROR_FILE_NOT_FOUND.getErrorCode());
+        }
+        return value;
+    }
+
+    protected String canonicalize(String keyPath) {
+        keyPath = Strings.nullToEmpty(keyPath);
+        keyPath = keyPath.toLowerCase();
+        while (keyPath.contains("\\\\")) {
+            keyPath = keyPath.replace("\\\\", "\\");
+        }
+        if (keyPath.startsWith("\\")) {
+            keyPath = keyPath.substring(1);
+        }
+        if (keyPath.endsWith("\\")) {
+            keyPath = keyPath.substring(0, keyPath.length() - 1);
+        }
+        return keyPath;
+    }
+
+    protected RegfKey openKey(final String keyPath)
+        throws IOException {
+        final RegfKey key = findKey(keyPath);
+        if (key == null) {
+            throw new RPCException("BaseRegOpenKey", ERROR_FILE_NOT_FOUND.getErrorCode());
+        }
+        return key;
+    }
+
+    /**
+     * @return The key, or null if it does not exist. The key is resolved from its nearest indexed ancestor.
+     */
+    private RegfKey findKey(final String keyPath)
+        throws IOException {
+        final String canonicalizedKeyPath = canonicalize(keyPath);
+        synchronized (keyPathCache) {
+            return findCanonicalizedKey(canonicalizedKeyPath);
+        }
+    }
+
+    private RegfKey findCanonicalizedKey(final String canonicalizedKeyPath)
+        throws IOException {
+        RegfKey key = keyPathCache.get(canonicalizedKeyPath);
+        if (key != null) {
+            return key;
+        }
+        if (canonicalizedKeyPath.isEmpty()) {
+            key = hive.getRootKey();
+        } else {
+            final int separator = canonicalizedKeyPath.lastIndexOf('\\');
+            final RegfKey parent =
+                findCanonicalizedKey(separator < 0 ? "" : canonicalizedKeyPath.substring(0, separator));
+            if (parent == null) {
+                return null;
+            }
+            key = parent.getSubKey(canonicalizedKeyPath.substring(separator + 1));
+            if (key == null) {
+                return null;
+            }
+        }
+        keyPathCache.put(canonicalizedKeyPath, key);
+        return key;
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.regf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import org.apache.commons.io.IOUtils;
+import com.google.common.base.Strings;
+
+/**
+ * A registry hive in the Windows registry file (regf) format, as written by BaseRegSaveKey or found in the
+ * %SystemRoot%\System32\config directory. The hive is read from a buffer holding the whole file; keys and values are
+ * decoded on demand as the tree is navigated from {@link #getRootKey()}.<br>
+ * <br>
+ * The file starts with a 4096 byte base block which holds the offset of the root key node. The base block is followed
+ * by hive bins, which are divided into cells. Every offset in the file other than those in the base block is the
+ * offset of a cell relative to the start of the first hive bin. A cell starts with its 32-bit size, which is negative
+ * when the cell is allocated.
+ */
+public class RegfHive {
+    private final static int BASE_BLOCK_SIZE = 4096;
+    private final static int REGF_SIGNATURE = 0x66676572;
+    private final static int MAJOR_VERSION_OFFSET = 20;
+    private final static int MINOR_VERSION_OFFSET = 24;
+    private final static int ROOT_CELL_OFFSET = 36;
+    private final ByteBuffer buffer;
+    private final int minorVersion;
+    private final int rootCellOffset;
+
+    /**
+     * @param buffer The contents of the hive file, from its position to its limit. The buffer is not modified and may
+     *        be shared.
+     * @throws IOException If the buffer does not hold a regf hive.
+     */
+    public RegfHive(final ByteBuffer buffer)
+        throws IOException {
+        if (buffer == null) {
+            throw new IllegalArgumentException("Buffer is invalid: " + buffer);
+        }
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (this.buffer.capacity() < BASE_BLOCK_SIZE) {
+            throw new IOException("Hive is truncated: " + this.buffer.capacity() + " bytes");
+        }
+        final int signature = this.buffer.getInt(0);
+        if (signature != REGF_SIGNATURE) {
+            throw new IOException(String.format("Hive signature is invalid: 0x%08X", signature));
+        }
+        final int majorVersion = this.buffer.getInt(MAJOR_VERSION_OFFSET);
+        if (majorVersion != 1) {
+            throw new IOException("Hive version is not supported: " + majorVersion);
+        }
+        minorVersion = this.buffer.getInt(MINOR_VERSION_OFFSET);
+        rootCellOffset = this.buffer.getInt(ROOT_CELL_OFFSET);
+    }
+
+    /**
+     * @param inputStream A stream holding the hive file, which is read to its end.
+     * @return The hive.
+     * @throws IOException If the stream cannot be read or does not hold a regf hive.
+     */
+    public static RegfHive read(final InputStream inputStream)
+        throws IOException {
+        return new RegfHive(ByteBuffer.wrap(IOUtils.toByteArray(inputStream)));
+    }
+
+    /**
+     * Map a hive file into memory. Keys and values are decoded directly from the mapped pages, so only the parts of
+     * the file which are navigated are read from disk and the file is never copied onto the heap.
+     *
+     * @param file The hive file. The mapping remains valid after the file is closed, until the hive is garbage
+     *        collected.
+     * @return The hive.
+     * @throws IOException If the file cannot be mapped or does not hold a regf hive.
+     */
+    public static RegfHive map(final File file)
+        throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("File is invalid: " + file);
+        }
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new RegfHive(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /** @return The minor version of the hive format, e.g. 5 for hives written by Windows XP and later. */
+    public int getMinorVersion() {
+        return minorVersion;
+    }
+
+    /** @return The key at the root of the hive, which is the key that was saved. */
+    public RegfKey getRootKey()
+        throws IOException {
+        return new RegfKey(this, rootCellOffset);
+    }
+
+    /**
+     * @param keyPath The path of the key relative to the root key. Names are compared case-insensitively.
+     * @return The key, or null if it does not exist.
+     */
+    public RegfKey getKey(final String keyPath)
+        throws IOException {
+        RegfKey key = getRootKey();
+        for (final String name : Strings.nullToEmpty(keyPath).split("\\\\")) {
+            if (name.isEmpty()) {
+                continue;
+            }
+            key = key.getSubKey(name);
+            if (key == null) {
+                return null;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * @return The position in the buffer of the data of the allocated cell at the given offset.
+     * @throws IOException If the offset does not refer to an allocated cell within the hive.
+     */
+    int getCell(final int cellOffset)
+        throws IOException {
+        final long position = (long) BASE_BLOCK_SIZE + cellOffset;
+        if (cellOffset < 0 || position + 4 > buffer.capacity()) {
+            throw new IOException("Hive cell offset is invalid: " + cellOffset);
+        }
+        final int size = buffer.getInt((int) position);
+        if (size >= 0 || position - size > buffer.capacity()) {
+            throw new IOException("Hive cell size is invalid at offset " + cellOffset + ": " + size);
+        }
+        return (int) position + 4;
+    }
+
+    /** @return The number of bytes of data in the allocated cell at the given offset. */
+    int getCellSize(final int cellOffset)
+        throws IOException {
+        return -buffer.getInt(getCell(cellOffset) - 4) - 4;
+    }
+
+    int getShort(final int position)
+        throws IOException {
+        checkRange(position, 2);
+        return buffer.getShort(position) & 0xFFFF;
+    }
+
+    int getInt(final int position)
+        throws IOException {
+        checkRange(position, 4);
+        return buffer.getInt(position);
+    }
+
+    long getLong(final int position)
+        throws IOException {
+        checkRange(position, 8);
+        return buffer.getLong(position);
+    }
+
+    byte[] getBytes(final int position, final int length)
+        throws IOException {
+        checkRange(position, length);
+        final ByteBuffer slice = buffer.duplicate();
+        final byte[] bytes = new byte[length];
+        slice.position(position);
+        slice.get(bytes);
+        return bytes;
+    }
+
+    private void checkRange(final int position, final int length)
+        throws IOException {
+        if (position < 0 || length < 0 || (long) position + length > buffer.capacity()) {
+            throw new IOException("Hive offset is invalid: " + position + " (+" + length + ")");
+        }
+    }
+}
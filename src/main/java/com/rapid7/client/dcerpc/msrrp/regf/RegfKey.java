@@ -0,0 +1,414 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.regf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import com.rapid7.client.dcerpc.msrrp.RegistryKey;
+import com.rapid7.client.dcerpc.msrrp.RegistryKeyInfo;
+import com.rapid7.client.dcerpc.msrrp.RegistryValue;
+import com.rapid7.client.dcerpc.msrrp.RegistryValueType;
+import com.rapid7.client.dcerpc.objects.FileTime;
+
+/**
+ * A key node (nk cell) in a {@link RegfHive}. The fixed fields of the key node are decoded when the key is created;
+ * its subkeys and values are decoded each time they are requested.
+ */
+public class RegfKey {
+    private final static int NK_SIGNATURE = 0x6B6E;
+    private final static int VK_SIGNATURE = 0x6B76;
+    private final static int SK_SIGNATURE = 0x6B73;
+    private final static int LF_SIGNATURE = 0x666C;
+    private final static int LH_SIGNATURE = 0x686C;
+    private final static int LI_SIGNATURE = 0x696C;
+    private final static int RI_SIGNATURE = 0x6972;
+    private final static int DB_SIGNATURE = 0x6264;
+    private final static int KEY_COMP_NAME = 0x0020;
+    private final static int VALUE_COMP_NAME = 0x0001;
+    private final static int DATA_INLINE = 0x80000000;
+    private final static int BIG_DATA_SEGMENT_SIZE = 16344;
+    private final static int NO_CELL = -1;
+    private final static Charset COMP_NAME_CHARSET = StandardCharsets.ISO_8859_1;
+    private final RegfHive hive;
+    private final String name;
+    private final long lastWriteTime;
+    private final int subKeys;
+    private final int subKeyListOffset;
+    private final int values;
+    private final int valueListOffset;
+    private final int securityOffset;
+    private final int maxSubKeyLen;
+    private final int maxClassLen;
+    private final int maxValueNameLen;
+    private final int maxValueLen;
+
+    RegfKey(final RegfHive hive, final int cellOffset)
+        throws IOException {
+        this.hive = hive;
+        final int cell = hive.getCell(cellOffset);
+        final int signature = hive.getShort(cell);
+        if (signature != NK_SIGNATURE) {
+            throw new IOException(String.format("Key node signature is invalid at offset %d: 0x%04X", cellOffset,
+                signature));
+        }
+        final int flags = hive.getShort(cell + 2);
+        lastWriteTime = hive.getLong(cell + 4);
+        subKeys = hive.getInt(cell + 20);
+        subKeyListOffset = hive.getInt(cell + 28);
+        values = hive.getInt(cell + 36);
+        valueListOffset = hive.getInt(cell + 40);
+        securityOffset = hive.getInt(cell + 44);
+        // The upper bits of the maximum subkey name length hold virtualization and user flags.
+        maxSubKeyLen = (hive.getInt(cell + 52) & 0xFFFF) / 2;
+        maxClassLen = hive.getInt(cell + 56) / 2;
+        maxValueNameLen = hive.getInt(cell + 60) / 2;
+        maxValueLen = hive.getInt(cell + 64);
+        final int nameLength = hive.getShort(cell + 72);
+        name = decodeName(hive.getBytes(cell + 76, nameLength), (flags & KEY_COMP_NAME) != 0);
+    }
+
+    /** @return The name of the key. */
+    public String getName() {
+        return name;
+    }
+
+    /** @return The time when the key was last written. */
+    public FileTime getLastWriteTime() {
+        return new FileTime(lastWriteTime);
+    }
+
+    /** @return The number of subkeys of the key. */
+    public int getSubKeyCount() {
+        return subKeys;
+    }
+
+    /** @return The number of values of the key. */
+    public int getValueCount() {
+        return values;
+    }
+
+    /** @return The key in the model used by {@link com.rapid7.client.dcerpc.msrrp.RegistryService}. */
+    public RegistryKey toRegistryKey() {
+        return new RegistryKey(name, getLastWriteTime());
+    }
+
+    /**
+     * @return The key information in the model used by {@link com.rapid7.client.dcerpc.msrrp.RegistryService}. Name
+     *         lengths are in characters and the maximum value length is in bytes.
+     */
+    public RegistryKeyInfo getKeyInfo()
+        throws IOException {
+        return new RegistryKeyInfo(subKeys, maxSubKeyLen, maxClassLen, values, maxValueNameLen, maxValueLen,
+            getSecurityDescriptorSize(), lastWriteTime);
+    }
+
+    public List<RegfKey> getSubKeys()
+        throws IOException {
+        if (subKeys == 0 || subKeyListOffset == NO_CELL) {
+            return Collections.emptyList();
+        }
+        if (subKeys < 0) {
+            throw new IOException("Subkey count is invalid: " + subKeys);
+        }
+        // The list is not sized by the subkey count, which is only bounded by the sizes of the lists it spans.
+        final List<Integer> cellOffsets = new ArrayList<>();
+        addSubKeyCellOffsets(subKeyListOffset, cellOffsets, true);
+        final List<RegfKey> keys = new ArrayList<>(cellOffsets.size());
+        for (final int cellOffset : cellOffsets) {
+            keys.add(new RegfKey(hive, cellOffset));
+        }
+        return Collections.unmodifiableList(keys);
+    }
+
+    /**
+     * Find a subkey without decoding its siblings. Hash leaves (lh) hold a hash of each subkey name, so only the key
+     * nodes whose hash matches are decoded.
+     *
+     * @param subKeyName The name of the subkey, compared case-insensitively.
+     * @return The subkey, or null if it does not exist.
+     */
+    public RegfKey getSubKey(final String subKeyName)
+        throws IOException {
+        if (subKeyName == null || subKeys == 0 || subKeyListOffset == NO_CELL) {
+            return null;
+        }
+        return findSubKey(subKeyListOffset, subKeyName, hashName(subKeyName), true);
+    }
+
+    /**
+     * @return The values of the key. Values of a type which is not a {@link RegistryValueType} are omitted.
+     */
+    public List<RegistryValue> getValues()
+        throws IOException {
+        if (values == 0 || valueListOffset == NO_CELL) {
+            return Collections.emptyList();
+        }
+        final int valueList = getValueList();
+        final List<RegistryValue> registryValues = new ArrayList<>(values);
+        for (int index = 0; index < values; index++) {
+            final RegistryValue value = decodeValue(hive.getInt(valueList + 4 * index), null);
+            if (value != null) {
+                registryValues.add(value);
+            }
+        }
+        return Collections.unmodifiableList(registryValues);
+    }
+
+    /**
+     * @param valueName The name of the value, compared case-insensitively. The empty string names the default value.
+     * @return The value, or null if it does not exist or is of a type which is not a {@link RegistryValueType}.
+     */
+    public RegistryValue getValue(final String valueName)
+        throws IOException {
+        if (values == 0 || valueListOffset == NO_CELL) {
+            return null;
+        }
+        final int valueList = getValueList();
+        for (int index = 0; index < values; index++) {
+            final RegistryValue value = decodeValue(hive.getInt(valueList + 4 * index), valueName);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s {lastWriteTime=%s}", name, getLastWriteTime());
+    }
+
+    private void addSubKeyCellOffsets(
+        final int listOffset,
+        final List<Integer> cellOffsets,
+        final boolean allowIndexRoot)
+        throws IOException {
+        final int list = hive.getCell(listOffset);
+        final int signature = hive.getShort(list);
+        final int count = hive.getShort(list + 2);
+        checkSubKeyListCount(listOffset, signature, count);
+        switch (signature) {
+        case LF_SIGNATURE:
+        case LH_SIGNATURE:
+            // Each element is a key node offset followed by a name hint or hash.
+            for (int index = 0; index < count; index++) {
+                cellOffsets.add(hive.getInt(list + 4 + 8 * index));
+            }
+            break;
+        case LI_SIGNATURE:
+            for (int index = 0; index < count; index++) {
+                cellOffsets.add(hive.getInt(list + 4 + 4 * index));
+            }
+            break;
+        case RI_SIGNATURE:
+            // An index root refers to subkey lists, which may not themselves be index roots.
+            if (!allowIndexRoot) {
+                throw new IOException("Nested index root at offset " + listOffset);
+            }
+            for (int index = 0; index < count; index++) {
+                addSubKeyCellOffsets(hive.getInt(list + 4 + 4 * index), cellOffsets, false);
+            }
+            break;
+        default:
+            throw new IOException(String.format("Subkey list signature is invalid at offset %d: 0x%04X", listOffset,
+                signature));
+        }
+    }
+
+    private RegfKey findSubKey(
+        final int listOffset,
+        final String subKeyName,
+        final Integer hash,
+        final boolean allowIndexRoot)
+        throws IOException {
+        final int list = hive.getCell(listOffset);
+        final int signature = hive.getShort(list);
+        final int count = hive.getShort(list + 2);
+        checkSubKeyListCount(listOffset, signature, count);
+        switch (signature) {
+        case LH_SIGNATURE:
+        case LF_SIGNATURE:
+        case LI_SIGNATURE:
+            final int elementSize = signature == LI_SIGNATURE ? 4 : 8;
+            for (int index = 0; index < count; index++) {
+                final int element = list + 4 + elementSize * index;
+                if (signature == LH_SIGNATURE && hash != null && hive.getInt(element + 4) != hash) {
+                    continue;
+                }
+                final RegfKey subKey = new RegfKey(hive, hive.getInt(element));
+                if (subKey.getName().equalsIgnoreCase(subKeyName)) {
+                    return subKey;
+                }
+            }
+            return null;
+        case RI_SIGNATURE:
+            if (!allowIndexRoot) {
+                throw new IOException("Nested index root at offset " + listOffset);
+            }
+            for (int index = 0; index < count; index++) {
+                final RegfKey subKey = findSubKey(hive.getInt(list + 4 + 4 * index), subKeyName, hash, false);
+                if (subKey != null) {
+                    return subKey;
+                }
+            }
+            return null;
+        default:
+            throw new IOException(String.format("Subkey list signature is invalid at offset %d: 0x%04X", listOffset,
+                signature));
+        }
+    }
+
+    /**
+     * @return The position of the value list, whose cell holds one cell offset per value.
+     * @throws IOException When the value count exceeds the size of the value list.
+     */
+    private int getValueList()
+        throws IOException {
+        final int valueList = hive.getCell(valueListOffset);
+        if (values < 0 || values > hive.getCellSize(valueListOffset) / 4) {
+            throw new IOException("Value count is invalid at offset " + valueListOffset + ": " + values);
+        }
+        return valueList;
+    }
+
+    /**
+     * @throws IOException When the subkey list is too small to hold its count of elements. Elements of fast leaves (lf)
+     *         and hash leaves (lh) are 8 bytes; those of index leaves (li) and index roots (ri) are 4 bytes.
+     */
+    private void checkSubKeyListCount(final int listOffset, final int signature, final int count)
+        throws IOException {
+        final int elementSize = signature == LF_SIGNATURE || signature == LH_SIGNATURE ? 8 : 4;
+        if (count > (hive.getCellSize(listOffset) - 4) / elementSize) {
+            throw new IOException("Subkey list count is invalid at offset " + listOffset + ": " + count);
+        }
+    }
+
+    /**
+     * @return The value, or null if its name does not match or its type is not a {@link RegistryValueType}.
+     */
+    private RegistryValue decodeValue(final int cellOffset, final String valueName)
+        throws IOException {
+        final int cell = hive.getCell(cellOffset);
+        final int signature = hive.getShort(cell);
+        if (signature != VK_SIGNATURE) {
+            throw new IOException(String.format("Value key signature is invalid at offset %d: 0x%04X", cellOffset,
+                signature));
+        }
+        final int nameLength = hive.getShort(cell + 2);
+        final int flags = hive.getShort(cell + 16);
+        final String name = decodeName(hive.getBytes(cell + 20, nameLength), (flags & VALUE_COMP_NAME) != 0);
+        if (valueName != null && !name.equalsIgnoreCase(valueName)) {
+            return null;
+        }
+        final RegistryValueType type = RegistryValueType.getRegistryValueType(hive.getInt(cell + 12));
+        if (type == null) {
+            return null;
+        }
+        return RegistryValue.wrap(name, type, decodeData(cell));
+    }
+
+    private byte[] decodeData(final int valueCell)
+        throws IOException {
+        final int dataSize = hive.getInt(valueCell + 4);
+        final int dataOffset = hive.getInt(valueCell + 8);
+        if ((dataSize & DATA_INLINE) != 0) {
+            // Data of up to 4 bytes is held in the data offset field.
+            final int length = dataSize & ~DATA_INLINE;
+            if (length > 4) {
+                throw new IOException("Inline value data size is invalid: " + length);
+            }
+            return hive.getBytes(valueCell + 8, length);
+        }
+        if (dataSize == 0) {
+            return new byte[0];
+        }
+        final int dataCell = hive.getCell(dataOffset);
+        if (dataSize > BIG_DATA_SEGMENT_SIZE && hive.getMinorVersion() > 3 && hive.getShort(dataCell) == DB_SIGNATURE) {
+            return decodeBigData(dataCell, dataSize);
+        }
+        if (dataSize > hive.getCellSize(dataOffset)) {
+            throw new IOException("Value data size is invalid at offset " + dataOffset + ": " + dataSize);
+        }
+        return hive.getBytes(dataCell, dataSize);
+    }
+
+    private byte[] decodeBigData(final int bigDataCell, final int dataSize)
+        throws IOException {
+        final int segments = hive.getShort(bigDataCell + 2);
+        final int segmentListOffset = hive.getInt(bigDataCell + 4);
+        final int segmentList = hive.getCell(segmentListOffset);
+        if (segments > hive.getCellSize(segmentListOffset) / 4) {
+            throw new IOException("Value data segment count is invalid at offset " + segmentListOffset + ": "
+                + segments);
+        }
+        if (dataSize > segments * BIG_DATA_SEGMENT_SIZE) {
+            throw new IOException("Value data size exceeds its " + segments + " segments: " + dataSize);
+        }
+        final ByteArrayOutputStream data = new ByteArrayOutputStream(dataSize);
+        for (int index = 0; index < segments && data.size() < dataSize; index++) {
+            final int segmentOffset = hive.getInt(segmentList + 4 * index);
+            final int length = Math.min(BIG_DATA_SEGMENT_SIZE, dataSize - data.size());
+            if (length > hive.getCellSize(segmentOffset)) {
+                throw new IOException("Value data segment size is invalid at offset " + segmentOffset);
+            }
+            data.write(hive.getBytes(hive.getCell(segmentOffset), length));
+        }
+        if (data.size() != dataSize) {
+            throw new IOException("Value data is truncated: " + data.size() + " of " + dataSize + " bytes");
+        }
+        return data.toByteArray();
+    }
+
+    private int getSecurityDescriptorSize()
+        throws IOException {
+        if (securityOffset == NO_CELL) {
+            return 0;
+        }
+        final int cell = hive.getCell(securityOffset);
+        if (hive.getShort(cell) != SK_SIGNATURE) {
+            return 0;
+        }
+        return hive.getInt(cell + 16);
+    }
+
+    /**
+     * @return The hash stored in hash leaves for the name, or null if the name has characters outside of ASCII, whose
+     *         upper case form Windows may compute differently.
+     */
+    private static Integer hashName(final String name) {
+        int hash = 0;
+        for (int index = 0; index < name.length(); index++) {
+            final char c = name.charAt(index);
+            if (c > 0x7F) {
+                return null;
+            }
+            hash = 37 * hash + Character.toUpperCase(c);
+        }
+        return hash;
+    }
+
+    private static String decodeName(final byte[] bytes, final boolean compressed) {
+        return new String(bytes, compressed ? COMP_NAME_CHARSET : StandardCharsets.UTF_16LE);
+    }
+}
@@ -20,16 +20,34 @@ package com.rapid7.client.dcerpc.mssrvs;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import org.apache.commons.lang3.mutable.MutableInt;
+import java.util.Map;
+import java.util.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.hierynomus.protocol.transport.TransportException;
 import com.rapid7.client.dcerpc.RPCException;
 import com.rapid7.client.dcerpc.mserref.SystemErrorCode;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetConnectionInfo0;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetConnectionInfo1;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetFileInfo2;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetFileInfo3;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetSessionInfo0;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetSessionInfo10;
 import com.rapid7.client.dcerpc.mssrvs.messages.NetShareInfo0;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetShareInfo1;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetShareInfo2;
 import com.rapid7.client.dcerpc.mssrvs.messages.NetprPathCanonicalizeRequest;
 import com.rapid7.client.dcerpc.mssrvs.messages.NetprPathCanonicalizeResponse;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetrConnectionEnumRequest;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetrConnectionEnumResponse;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetrFileEnumRequest;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetrFileEnumResponse;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetrSessionEnumRequest;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetrSessionEnumResponse;
 import com.rapid7.client.dcerpc.mssrvs.messages.NetrShareEnumRequest;
 import com.rapid7.client.dcerpc.mssrvs.messages.NetrShareEnumResponse;
 import com.rapid7.client.dcerpc.transport.RPCTransport;
@@ -42,52 +60,336 @@ import com.rapid7.client.dcerpc.transport.RPCTransport;
  * @see <a href="https://msdn.microsoft.com/en-us/library/cc247080.aspx">[MS-SRVS]: Server Service Remote Protocol</a>
  */
 public class ServerService {
+    private final static int MAX_CANONICALIZED_NAMES = 10000;
     private final RPCTransport transport;
+    // Bounded, as a scan may canonicalize any number of distinct paths. The cache is thread-safe on its own.
+    private final Cache<CanonicalizeKey, String> canonicalizedNameCache =
+        CacheBuilder.newBuilder().maximumSize(MAX_CANONICALIZED_NAMES).build();
 
     public ServerService(final RPCTransport transport) {
         this.transport = transport;
     }
 
+    /**
+     * Receives each share as the {@link NetrShareEnumResponse} page containing it is decoded.
+     */
+    public interface ShareVisitor {
+        void visitShare(NetShareInfo0 share)
+            throws IOException;
+    }
+
+    /**
+     * Receives each session as the {@link NetrSessionEnumResponse} page containing it is decoded.
+     */
+    public interface SessionVisitor {
+        void visitSession(NetSessionInfo0 session)
+            throws IOException;
+    }
+
+    /**
+     * Receives each connection as the {@link NetrConnectionEnumResponse} page containing it is decoded.
+     */
+    public interface ConnectionVisitor {
+        void visitConnection(NetConnectionInfo0 connection)
+            throws IOException;
+    }
+
+    /**
+     * Receives each open file as the {@link NetrFileEnumResponse} page containing it is decoded.
+     */
+    public interface FileVisitor {
+        void visitFile(NetFileInfo2 file)
+            throws IOException;
+    }
+
     public List<NetShareInfo0> getShares()
         throws IOException {
-        final List<NetShareInfo0> shares = new LinkedList<>();
-        final MutableInt resumeHandle = new MutableInt();
-        for (;;) {
-            final NetrShareEnumRequest request = new NetrShareEnumRequest(2, resumeHandle.getValue());
+        final List<NetShareInfo0> shares = new ArrayList<>();
+        getShares(2, NetrShareEnumRequest.MAX_BUFFER_SIZE, new ShareVisitor() {
+            @Override
+            public void visitShare(final NetShareInfo0 share) {
+                shares.add(share);
+            }
+        });
+        return Collections.unmodifiableList(shares);
+    }
+
+    /**
+     * Enumerates the shares of the server page by page, handing each share to the visitor as soon as its page has
+     * been decoded rather than accumulating the whole share list. Smaller preferred maximum lengths bound the size of
+     * each response at the cost of more round trips.
+     *
+     * @param level The share info level, 1 ({@link NetShareInfo1}) or 2 ({@link NetShareInfo2}).
+     * @param preferredMaximumLength The preferred maximum length, in bytes, of each page, or
+     *        {@link NetrShareEnumRequest#MAX_PREFERRED_LENGTH} to request all shares at once.
+     * @param visitor Receives each share in server order.
+     * @throws IOException If the enumeration fails, or the visitor throws.
+     */
+    public void getShares(final int level, final int preferredMaximumLength, final ShareVisitor visitor)
+        throws IOException {
+        if (level != 1 && level != 2) {
+            throw new IllegalArgumentException("Level is invalid: " + level);
+        }
+        checkPreferredMaximumLength(preferredMaximumLength);
+        Integer resumeHandle = 0;
+        do {
+            final NetrShareEnumRequest request = new NetrShareEnumRequest(level, resumeHandle, preferredMaximumLength);
             final NetrShareEnumResponse response = transport.call(request);
-            final int returnCode = response.getReturnValue();
-            if (SystemErrorCode.ERROR_SUCCESS.is(returnCode) || SystemErrorCode.ERROR_MORE_DATA.is(returnCode)) {
-                final List<NetShareInfo0> responseShares = response.getShares();
-                if (SystemErrorCode.ERROR_SUCCESS.is(returnCode)) {
-                    shares.addAll(responseShares);
-                    break;
-                } else {
-                    if (responseShares.isEmpty()) {
-                        throw new TransportException("NetrShareEnum shares empty.");
-                    }
-                    final Integer responseResumeHandle = response.getResumeHandle();
-                    if (responseResumeHandle == resumeHandle.getValue()) {
-                        throw new TransportException("NetrShareEnum resume handle not updated.");
-                    }
-                    if (responseResumeHandle == null) {
-                        throw new TransportException("NetrShareEnum resume handle null.");
-                    }
-                    shares.addAll(responseShares);
-                    resumeHandle.setValue(responseResumeHandle);
-                }
-            } else {
-                throw new RPCException("NetrShareEnum", response.getReturnValue());
+            final List<NetShareInfo0> shares = response.getShares();
+            resumeHandle = nextResumeHandle("NetrShareEnum", "shares", response.getReturnValue(),
+                shares, response.getResumeHandle(), resumeHandle);
+            for (final NetShareInfo0 share : shares) {
+                visitor.visitShare(share);
+            }
+        } while (resumeHandle != null);
+    }
+
+    /**
+     * Enumerates the sessions established on the server page by page, handing each session to the visitor as soon as
+     * its page has been decoded.
+     *
+     * @param clientName The computer whose sessions are returned, or null for all computers.
+     * @param userName The user whose sessions are returned, or null for all users.
+     * @param level The session info level, 0 ({@link NetSessionInfo0}) or 10 ({@link NetSessionInfo10}).
+     * @param preferredMaximumLength The preferred maximum length, in bytes, of each page, or
+     *        {@link NetrShareEnumRequest#MAX_PREFERRED_LENGTH} to request all sessions at once.
+     * @param visitor Receives each session in server order.
+     * @throws IOException If the enumeration fails, or the visitor throws.
+     */
+    public void getSessions(
+        final String clientName,
+        final String userName,
+        final int level,
+        final int preferredMaximumLength,
+        final SessionVisitor visitor)
+        throws IOException {
+        if (level != 0 && level != 10) {
+            throw new IllegalArgumentException("Level is invalid: " + level);
+        }
+        checkPreferredMaximumLength(preferredMaximumLength);
+        Integer resumeHandle = 0;
+        do {
+            final NetrSessionEnumRequest request =
+                new NetrSessionEnumRequest(clientName, userName, level, resumeHandle, preferredMaximumLength);
+            final NetrSessionEnumResponse response = transport.call(request);
+            final List<NetSessionInfo0> sessions = response.getEntries();
+            resumeHandle = nextResumeHandle("NetrSessionEnum", "sessions", response.getReturnValue(),
+                sessions, response.getResumeHandle(), resumeHandle);
+            for (final NetSessionInfo0 session : sessions) {
+                visitor.visitSession(session);
+            }
+        } while (resumeHandle != null);
+    }
+
+    /**
+     * Enumerates the tree connects to a share, or from a client computer, page by page, handing each connection to
+     * the visitor as soon as its page has been decoded.
+     *
+     * @param qualifier The share name, or the client computer name prefixed with "\\".
+     * @param level The connection info level, 0 ({@link NetConnectionInfo0}) or 1 ({@link NetConnectionInfo1}).
+     * @param preferredMaximumLength The preferred maximum length, in bytes, of each page, or
+     *        {@link NetrShareEnumRequest#MAX_PREFERRED_LENGTH} to request all connections at once.
+     * @param visitor Receives each connection in server order.
+     * @throws IOException If the enumeration fails, or the visitor throws.
+     */
+    public void getConnections(
+        final String qualifier,
+        final int level,
+        final int preferredMaximumLength,
+        final ConnectionVisitor visitor)
+        throws IOException {
+        if (qualifier == null || qualifier.isEmpty()) {
+            throw new IllegalArgumentException("Qualifier is invalid: " + qualifier);
+        }
+        if (level != 0 && level != 1) {
+            throw new IllegalArgumentException("Level is invalid: " + level);
+        }
+        checkPreferredMaximumLength(preferredMaximumLength);
+        Integer resumeHandle = 0;
+        do {
+            final NetrConnectionEnumRequest request =
+                new NetrConnectionEnumRequest(qualifier, level, resumeHandle, preferredMaximumLength);
+            final NetrConnectionEnumResponse response = transport.call(request);
+            final List<NetConnectionInfo0> connections = response.getEntries();
+            resumeHandle = nextResumeHandle("NetrConnectionEnum", "connections", response.getReturnValue(),
+                connections, response.getResumeHandle(), resumeHandle);
+            for (final NetConnectionInfo0 connection : connections) {
+                visitor.visitConnection(connection);
+            }
+        } while (resumeHandle != null);
+    }
+
+    /**
+     * Enumerates the files open on the server page by page, handing each file to the visitor as soon as its page has
+     * been decoded. Level 2 transfers only the file identifiers, which keeps pages small on busy file servers.
+     *
+     * @param basePath The path prefix of the open files that are returned, or null for all files.
+     * @param userName The user whose open files are returned, or null for all users.
+     * @param level The file info level, 2 ({@link NetFileInfo2}) or 3 ({@link NetFileInfo3}).
+     * @param preferredMaximumLength The preferred maximum length, in bytes, of each page, or
+     *        {@link NetrShareEnumRequest#MAX_PREFERRED_LENGTH} to request all open files at once.
+     * @param visitor Receives each open file in server order.
+     * @throws IOException If the enumeration fails, or the visitor throws.
+     */
+    public void getOpenFiles(
+        final String basePath,
+        final String userName,
+        final int level,
+        final int preferredMaximumLength,
+        final FileVisitor visitor)
+        throws IOException {
+        if (level != 2 && level != 3) {
+            throw new IllegalArgumentException("Level is invalid: " + level);
+        }
+        checkPreferredMaximumLength(preferredMaximumLength);
+        Integer resumeHandle = 0;
+        do {
+            final NetrFileEnumRequest request =
+                new NetrFileEnumRequest(basePath, userName, level, resumeHandle, preferredMaximumLength);
+            final NetrFileEnumResponse response = transport.call(request);
+            final List<NetFileInfo2> files = response.getEntries();
+            resumeHandle = nextResumeHandle("NetrFileEnum", "files", response.getReturnValue(),
+                files, response.getResumeHandle(), resumeHandle);
+            for (final NetFileInfo2 file : files) {
+                visitor.visitFile(file);
             }
+        } while (resumeHandle != null);
+    }
+
+    private static void checkPreferredMaximumLength(final int preferredMaximumLength) {
+        if (preferredMaximumLength <= 0 && preferredMaximumLength != NetrShareEnumRequest.MAX_PREFERRED_LENGTH) {
+            throw new IllegalArgumentException("Preferred maximum length is invalid: " + preferredMaximumLength);
+        }
+    }
+
+    /**
+     * @return The resume handle of the next page, or null if the enumeration is complete.
+     */
+    private static Integer nextResumeHandle(
+        final String opName,
+        final String entriesName,
+        final int returnCode,
+        final List<?> entries,
+        final Integer responseResumeHandle,
+        final int resumeHandle)
+        throws IOException {
+        if (SystemErrorCode.ERROR_SUCCESS.is(returnCode)) {
+            return null;
+        } else if (SystemErrorCode.ERROR_MORE_DATA.is(returnCode)) {
+            if (entries.isEmpty()) {
+                throw new TransportException(String.format("%s %s empty.", opName, entriesName));
+            }
+            if (responseResumeHandle == null) {
+                throw new TransportException(opName + " resume handle null.");
+            }
+            if (responseResumeHandle == resumeHandle) {
+                throw new TransportException(opName + " resume handle not updated.");
+            }
+            return responseResumeHandle;
+        } else {
+            throw new RPCException(opName, returnCode);
         }
-        return Collections.unmodifiableList(new ArrayList<>(shares));
     }
 
     public String getCanonicalizedName(String serverName, String pathName, String prefix, int outBufLength, int pathType, int flags)
         throws IOException
     {
+        final CanonicalizeKey key = new CanonicalizeKey(pathName, prefix, outBufLength, pathType, flags);
+        final String canonicalizedName = canonicalizedNameCache.getIfPresent(key);
+        if (canonicalizedName != null) {
+            return canonicalizedName;
+        }
         final NetprPathCanonicalizeRequest
             request = new NetprPathCanonicalizeRequest(serverName, pathName, outBufLength, prefix, pathType, flags);
         NetprPathCanonicalizeResponse response = transport.call(request);
+        if (SystemErrorCode.ERROR_SUCCESS.is(response.getReturnCode())) {
+            canonicalizedNameCache.put(key, response.getCanonicalizedPath());
+        }
         return response.getCanonicalizedPath();
     }
+
+    /**
+     * Canonicalize many paths with the same prefix, path type and flags. Each distinct path is sent to the server
+     * once, one after another over this service's pipe, and paths canonicalized before by this service with the same
+     * arguments are answered from its cache without a round trip. The cache holds the most recent
+     * {@value #MAX_CANONICALIZED_NAMES} paths.
+     *
+     * @param serverName The server name sent with each request, or null.
+     * @param pathNames The paths to canonicalize, which may contain duplicates.
+     * @param prefix The prefix prepended to each path.
+     * @param outBufLength The length, in bytes, of the output buffer of each request.
+     * @param pathType The {@link NetprPathType} of the paths, or 0 to have the server determine it.
+     * @param flags The canonicalization flags.
+     * @return The canonicalized path of each distinct path, in the order the paths were given.
+     * @throws RPCException If the server fails to canonicalize any of the paths.
+     * @throws IOException On a transport error.
+     */
+    public Map<String, String> getCanonicalizedNames(
+        final String serverName,
+        final Collection<String> pathNames,
+        final String prefix,
+        final int outBufLength,
+        final int pathType,
+        final int flags)
+        throws IOException {
+        if (pathNames == null || pathNames.contains(null)) {
+            throw new IllegalArgumentException("Path names are invalid: " + pathNames);
+        }
+        final Map<String, String> canonicalizedNames = new LinkedHashMap<>();
+        for (final String pathName : pathNames) {
+            if (canonicalizedNames.containsKey(pathName)) {
+                continue;
+            }
+            final CanonicalizeKey key = new CanonicalizeKey(pathName, prefix, outBufLength, pathType, flags);
+            String canonicalizedName = canonicalizedNameCache.getIfPresent(key);
+            if (canonicalizedName == null) {
+                final NetprPathCanonicalizeRequest request =
+                    new NetprPathCanonicalizeRequest(serverName, pathName, outBufLength, prefix, pathType, flags);
+                final NetprPathCanonicalizeResponse response = transport.call(request);
+                if (!SystemErrorCode.ERROR_SUCCESS.is(response.getReturnCode())) {
+                    throw new RPCException("NetprPathCanonicalize", response.getReturnCode());
+                }
+                canonicalizedName = response.getCanonicalizedPath();
+                canonicalizedNameCache.put(key, canonicalizedName);
+            }
+            canonicalizedNames.put(pathName, canonicalizedName);
+        }
+        return canonicalizedNames;
+    }
+
+    private static class CanonicalizeKey {
+        private final String pathName;
+        private final String prefix;
+        private final int outBufLength;
+        private final int pathType;
+        private final int flags;
+
+        CanonicalizeKey(
+            final String pathName,
+            final String prefix,
+            final int outBufLength,
+            final int pathType,
+            final int flags) {
+            this.pathName = pathName;
+            this.prefix = prefix;
+            this.outBufLength = outBufLength;
+            this.pathType = pathType;
+            this.flags = flags;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pathName, prefix, outBufLength, pathType, flags);
+        }
+
+        @Override
+        public boolean equals(final Object anObject) {
+            if (!(anObject instanceof CanonicalizeKey)) {
+                return false;
+            }
+            final CanonicalizeKey other = (CanonicalizeKey) anObject;
+            return Objects.equals(other.pathName, pathName) && Objects.equals(other.prefix, prefix)
+                && other.outBufLength == outBufLength && other.pathType == pathType && other.flags == flags;
+        }
+    }
 }
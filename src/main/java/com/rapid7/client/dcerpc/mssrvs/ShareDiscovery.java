@@ -0,0 +1,422 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mssrvs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import com.google.common.io.BaseEncoding;
+import com.google.common.net.InetAddresses;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.auth.AuthenticationContext;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.session.Session;
+import com.rapid7.client.dcerpc.RPCException;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetShareInfo0;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetrShareEnumRequest;
+import com.rapid7.client.dcerpc.transport.RPCTransport;
+import com.rapid7.client.dcerpc.transport.SMBTransportFactories;
+import com.rapid7.helper.smbj.io.SMB2Exception;
+
+/**
+ * Enumerates the level 1 shares of many hosts at once. Each host gets its own SMB session and srvsvc pipe, which are
+ * closed as soon as the host is done. At most maxConcurrency hosts are worked on at a time, and at most
+ * maxConcurrencyPerSubnet of them share an IPv4 /24 or IPv6 /64 subnet; hosts given by name are each their own subnet.
+ * Hosts are interleaved across subnets up front so that workers rarely wait on a subnet limit.<br>
+ * <br>
+ * Every attempt against a host is bounded by the timeout: when it expires the session is closed and the worker
+ * interrupted. Timeouts and transport failures are retried; failures the host answered (RPC and SMB status errors,
+ * such as access denied or a logon failure) are not, so that bad credentials are not replayed against a host. The
+ * result of each host, with the time spent connecting, binding and enumerating, is passed to a {@link Listener} as
+ * soon as the host is complete.
+ */
+public class ShareDiscovery {
+    /** Receives the result of each host. */
+    public interface Listener {
+        /**
+         * Called once per host, from the worker that discovered the host. Calls are never concurrent.
+         *
+         * @param result The shares of the host, or the reason they could not be enumerated.
+         */
+        void hostDiscovered(ShareDiscoveryResult result);
+    }
+
+    /** Opens and closes the SMB session and srvsvc transport of a host. */
+    interface Connector {
+        Session connect(String host)
+            throws IOException;
+
+        RPCTransport bind(Session session)
+            throws IOException;
+
+        void close(Session session);
+    }
+
+    private final static int IPV4_SUBNET_PREFIX_BYTES = 3;
+    private final static int IPV6_SUBNET_PREFIX_BYTES = 8;
+    private final Connector connector;
+    private final int maxConcurrency;
+    private final int maxConcurrencyPerSubnet;
+    private final long timeoutMillis;
+    private final int retries;
+
+    /**
+     * @param client The SMB client the sessions are opened with. Its configuration supplies the socket and transact
+     *        timeouts of the individual SMB requests.
+     * @param credentials The credentials every host is authenticated with.
+     * @param maxConcurrency The maximum number of hosts worked on at a time.
+     * @param maxConcurrencyPerSubnet The maximum number of hosts in the same subnet worked on at a time.
+     * @param timeout The maximum duration of each attempt against a host.
+     * @param unit The unit of the timeout.
+     * @param retries The number of times a host is retried after a timeout or transport failure.
+     */
+    public ShareDiscovery(
+        final SMBClient client,
+        final AuthenticationContext credentials,
+        final int maxConcurrency,
+        final int maxConcurrencyPerSubnet,
+        final long timeout,
+        final TimeUnit unit,
+        final int retries) {
+        this(newSMBConnector(client, credentials), maxConcurrency, maxConcurrencyPerSubnet, timeout, unit, retries);
+    }
+
+    ShareDiscovery(
+        final Connector connector,
+        final int maxConcurrency,
+        final int maxConcurrencyPerSubnet,
+        final long timeout,
+        final TimeUnit unit,
+        final int retries) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Maximum concurrency is invalid: " + maxConcurrency);
+        }
+        if (maxConcurrencyPerSubnet <= 0) {
+            throw new IllegalArgumentException("Maximum concurrency per subnet is invalid: " + maxConcurrencyPerSubnet);
+        }
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Timeout is invalid: " + timeout);
+        }
+        if (unit == null) {
+            throw new IllegalArgumentException("Unit is invalid: " + unit);
+        }
+        if (retries < 0) {
+            throw new IllegalArgumentException("Retries are invalid: " + retries);
+        }
+        this.connector = connector;
+        this.maxConcurrency = maxConcurrency;
+        this.maxConcurrencyPerSubnet = maxConcurrencyPerSubnet;
+        this.timeoutMillis = Math.max(1, unit.toMillis(timeout));
+        this.retries = retries;
+    }
+
+    /**
+     * Discover the shares of the hosts, blocking until every host is complete. Duplicate hosts are discovered once.
+     *
+     * @param hosts The host names or addresses.
+     * @param listener Receives the result of each host as soon as it is complete.
+     * @throws IOException If the listener throws, or the calling thread is interrupted. No further hosts are started.
+     */
+    public void discover(final Collection<String> hosts, final Listener listener)
+        throws IOException {
+        if (hosts == null || hosts.contains(null) || hosts.contains("")) {
+            throw new IllegalArgumentException("Hosts are invalid: " + hosts);
+        }
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener is invalid: " + listener);
+        }
+        final Queue<String> queue = new ConcurrentLinkedQueue<>(interleaveBySubnet(hosts));
+        if (queue.isEmpty()) {
+            return;
+        }
+        final ConcurrentMap<String, Semaphore> subnetPermits = new ConcurrentHashMap<>();
+        final int workers = Math.min(maxConcurrency, queue.size());
+        final ExecutorService executor = Executors.newFixedThreadPool(workers,
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("share-discovery-%d").build());
+        final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("share-discovery-watchdog-%d").build());
+        try {
+            final List<Future<Void>> futures = new ArrayList<>(workers);
+            for (int worker = 0; worker < workers; worker++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call()
+                        throws InterruptedException {
+                        for (String host = queue.poll(); host != null; host = queue.poll()) {
+                            final Semaphore permits = getSubnetPermits(subnetPermits, host);
+                            permits.acquire();
+                            final ShareDiscoveryResult result;
+                            try {
+                                result = discoverHost(host, watchdog);
+                            } finally {
+                                permits.release();
+                            }
+                            synchronized (listener) {
+                                listener.hostDiscovered(result);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (final ExecutionException e) {
+                    queue.clear();
+                    throw new IOException(e.getCause());
+                }
+            }
+        } catch (final InterruptedException e) {
+            queue.clear();
+            executor.shutdownNow();
+            final InterruptedIOException iioException = new InterruptedIOException();
+            iioException.addSuppressed(e);
+            throw iioException;
+        } finally {
+            executor.shutdown();
+            watchdog.shutdownNow();
+        }
+    }
+
+    private ShareDiscoveryResult discoverHost(final String host, final ScheduledExecutorService watchdog) {
+        final long start = System.nanoTime();
+        for (int attempt = 1;; attempt++) {
+            final HostAttempt hostAttempt = new HostAttempt(host);
+            final ScheduledFuture<?> timeout = watchdog.schedule(hostAttempt, timeoutMillis, TimeUnit.MILLISECONDS);
+            List<NetShareInfo0> shares = null;
+            IOException failure = null;
+            boolean retryable = true;
+            try {
+                shares = hostAttempt.discover();
+            } catch (final RPCException | SMB2Exception e) {
+                failure = e;
+                retryable = false;
+            } catch (final SMBApiException e) {
+                failure = new IOException(e);
+                retryable = false;
+            } catch (final IOException e) {
+                failure = e;
+            } catch (final Exception e) {
+                failure = new IOException(e);
+            } finally {
+                timeout.cancel(false);
+                hostAttempt.close();
+            }
+            if (hostAttempt.isTimedOut()) {
+                // The watchdog interrupted this worker; the interrupt is meant for the attempt alone.
+                Thread.interrupted();
+                failure = new InterruptedIOException(String.format("%s timed out after %d ms.", host, timeoutMillis));
+                retryable = true;
+                shares = null;
+            }
+            if (failure == null || !retryable || attempt > retries) {
+                return new ShareDiscoveryResult(host, shares, failure, attempt, hostAttempt.connectNanos,
+                    hostAttempt.bindNanos, hostAttempt.enumerateNanos, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * One attempt against a host. The attempt is run by a worker and timed out by the watchdog, whichever of the two
+     * finishes it first wins.
+     */
+    private class HostAttempt implements Runnable {
+        private final String host;
+        private final Thread worker = Thread.currentThread();
+        private boolean finished;
+        private boolean timedOut;
+        private volatile Session session;
+        private long connectNanos = -1;
+        private long bindNanos = -1;
+        private long enumerateNanos = -1;
+
+        HostAttempt(final String host) {
+            this.host = host;
+        }
+
+        List<NetShareInfo0> discover()
+            throws IOException {
+            long start = System.nanoTime();
+            session = connector.connect(host);
+            connectNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final ServerService serverService = new ServerService(connector.bind(session));
+            bindNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final List<NetShareInfo0> shares = new ArrayList<>();
+            serverService.getShares(1, NetrShareEnumRequest.MAX_BUFFER_SIZE, new ServerService.ShareVisitor() {
+                @Override
+                public void visitShare(final NetShareInfo0 share) {
+                    shares.add(share);
+                }
+            });
+            enumerateNanos = System.nanoTime() - start;
+            return shares;
+        }
+
+        /** Times the attempt out: the session is closed to fail any pending SMB I/O, and the worker interrupted. */
+        @Override
+        public synchronized void run() {
+            if (!finished) {
+                finished = true;
+                timedOut = true;
+                closeSession();
+                worker.interrupt();
+            }
+        }
+
+        /** Finishes the attempt from the worker. */
+        synchronized void close() {
+            finished = true;
+            closeSession();
+        }
+
+        synchronized boolean isTimedOut() {
+            return timedOut;
+        }
+
+        private void closeSession() {
+            final Session session = this.session;
+            this.session = null;
+            if (session != null) {
+                connector.close(session);
+            }
+        }
+    }
+
+    private Semaphore getSubnetPermits(final ConcurrentMap<String, Semaphore> subnetPermits, final String host) {
+        final String subnet = getSubnet(host);
+        final Semaphore permits = subnetPermits.get(subnet);
+        if (permits != null) {
+            return permits;
+        }
+        final Semaphore newPermits = new Semaphore(maxConcurrencyPerSubnet);
+        final Semaphore existingPermits = subnetPermits.putIfAbsent(subnet, newPermits);
+        return existingPermits != null ? existingPermits : newPermits;
+    }
+
+    /**
+     * @return The /24 of an IPv4 address, the /64 of an IPv6 address, or the lower case host name.
+     */
+    static String getSubnet(final String host) {
+        if (InetAddresses.isInetAddress(host)) {
+            final byte[] address = InetAddresses.forString(host).getAddress();
+            final int prefixBytes = address.length == 4 ? IPV4_SUBNET_PREFIX_BYTES : IPV6_SUBNET_PREFIX_BYTES;
+            return BaseEncoding.base16().lowerCase().encode(address, 0, prefixBytes) + "/" + prefixBytes * 8;
+        }
+        return host.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return The distinct hosts, ordered round robin across their subnets.
+     */
+    static List<String> interleaveBySubnet(final Collection<String> hosts) {
+        final Map<String, Queue<String>> subnets = new LinkedHashMap<>();
+        final Set<String> distinctHosts = new LinkedHashSet<>(hosts);
+        for (final String host : distinctHosts) {
+            final String subnet = getSubnet(host);
+            Queue<String> subnetHosts = subnets.get(subnet);
+            if (subnetHosts == null) {
+                subnetHosts = new LinkedList<>();
+                subnets.put(subnet, subnetHosts);
+            }
+            subnetHosts.add(host);
+        }
+        final List<String> interleaved = new ArrayList<>(distinctHosts.size());
+        while (!subnets.isEmpty()) {
+            final Iterator<Queue<String>> iterator = subnets.values().iterator();
+            while (iterator.hasNext()) {
+                final Queue<String> subnetHosts = iterator.next();
+                interleaved.add(subnetHosts.remove());
+                if (subnetHosts.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+        }
+        return interleaved;
+    }
+
+    private static Connector newSMBConnector(final SMBClient client, final AuthenticationContext credentials) {
+        if (client == null) {
+            throw new IllegalArgumentException("Client is invalid: " + client);
+        }
+        if (credentials == null) {
+            throw new IllegalArgumentException("Credentials are invalid: " + credentials);
+        }
+        return new Connector() {
+            @Override
+            public Session connect(final String host)
+                throws IOException {
+                final Connection connection = client.connect(host);
+                try {
+                    return connection.authenticate(credentials);
+                } catch (final RuntimeException e) {
+                    closeConnection(connection);
+                    throw e;
+                }
+            }
+
+            @Override
+            public RPCTransport bind(final Session session)
+                throws IOException {
+                return SMBTransportFactories.SRVSVC.getTransport(session);
+            }
+
+            @Override
+            public void close(final Session session) {
+                closeConnection(session.getConnection());
+            }
+
+            private void closeConnection(final Connection connection) {
+                try {
+                    connection.close();
+                } catch (final Exception e) {
+                    // The host is finished with either way; a failed close leaves nothing to retry.
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mssrvs;
+
+import java.io.IOException;
+import java.util.List;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetShareInfo0;
+
+/**
+ * The outcome of discovering the shares of one host with {@link ShareDiscovery}. The timings are those of the last
+ * attempt made against the host.
+ */
+public class ShareDiscoveryResult {
+    private final String host;
+    private final List<NetShareInfo0> shares;
+    private final IOException failure;
+    private final int attempts;
+    private final long connectNanos;
+    private final long bindNanos;
+    private final long enumerateNanos;
+    private final long elapsedNanos;
+
+    public ShareDiscoveryResult(
+        final String host,
+        final List<NetShareInfo0> shares,
+        final IOException failure,
+        final int attempts,
+        final long connectNanos,
+        final long bindNanos,
+        final long enumerateNanos,
+        final long elapsedNanos) {
+        this.host = host;
+        this.shares = shares;
+        this.failure = failure;
+        this.attempts = attempts;
+        this.connectNanos = connectNanos;
+        this.bindNanos = bindNanos;
+        this.enumerateNanos = enumerateNanos;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /** @return The host, as it was passed to {@link ShareDiscovery}. */
+    public String getHost() {
+        return host;
+    }
+
+    /** @return The level 1 shares of the host, or null if the host failed. */
+    public List<NetShareInfo0> getShares() {
+        return shares;
+    }
+
+    /** @return The failure of the last attempt, or null if the shares were enumerated. */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /** @return The number of attempts made against the host. */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /** @return The time spent connecting and authenticating, or -1 if the last attempt did not complete it. */
+    public long getConnectNanos() {
+        return connectNanos;
+    }
+
+    /** @return The time spent opening and binding the srvsvc pipe, or -1 if the last attempt did not complete it. */
+    public long getBindNanos() {
+        return bindNanos;
+    }
+
+    /** @return The time spent enumerating the shares, or -1 if the last attempt did not complete it. */
+    public long getEnumerateNanos() {
+        return enumerateNanos;
+    }
+
+    /** @return The time spent on the host across all attempts. */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("host=%s, shares=%s, failure=%s, attempts=%d", host, shares, failure, attempts);
+    }
+}
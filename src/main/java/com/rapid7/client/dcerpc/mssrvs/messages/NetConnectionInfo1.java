@@ -0,0 +1,97 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mssrvs.messages;
+
+import java.util.Objects;
+
+/**
+ * CONNECTION_INFO_1: the identifier, share type, open file count, user count, age in seconds, user and share or
+ * client name of a connection.
+ */
+public class NetConnectionInfo1 extends NetConnectionInfo0 {
+    private final int type;
+    private final int opens;
+    private final int users;
+    private final int time;
+    private final String userName;
+    private final String netName;
+
+    public NetConnectionInfo1(
+        final int id,
+        final int type,
+        final int opens,
+        final int users,
+        final int time,
+        final String userName,
+        final String netName) {
+        super(id);
+        this.type = type;
+        this.opens = opens;
+        this.users = users;
+        this.time = time;
+        this.userName = userName;
+        this.netName = netName;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public int getOpens() {
+        return opens;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public int getTime() {
+        return time;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    /** @return The share name, or the client computer name when enumerating connections to a share. */
+    public String getNetName() {
+        return netName;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s, type=%d, opens=%d, users=%d, time=%d, userName=%s, netName=%s", super.toString(),
+            type, opens, users, time, userName, netName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), type, opens, users, time, userName, netName);
+    }
+
+    @Override
+    public boolean equals(final Object anObject) {
+        if (!super.equals(anObject) || !(anObject instanceof NetConnectionInfo1)) {
+            return false;
+        }
+        final NetConnectionInfo1 other = (NetConnectionInfo1) anObject;
+        return other.type == type && other.opens == opens && other.users == users && other.time == time
+            && Objects.equals(other.userName, userName) && Objects.equals(other.netName, netName);
+    }
+}
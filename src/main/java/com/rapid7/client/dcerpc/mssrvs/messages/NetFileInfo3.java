@@ -0,0 +1,81 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mssrvs.messages;
+
+import java.util.Objects;
+
+/**
+ * FILE_INFO_3: the identifier, access permissions, lock count, path and user of an open file.
+ */
+public class NetFileInfo3 extends NetFileInfo2 {
+    private final int permissions;
+    private final int locks;
+    private final String pathName;
+    private final String userName;
+
+    public NetFileInfo3(
+        final int id,
+        final int permissions,
+        final int locks,
+        final String pathName,
+        final String userName) {
+        super(id);
+        this.permissions = permissions;
+        this.locks = locks;
+        this.pathName = pathName;
+        this.userName = userName;
+    }
+
+    public int getPermissions() {
+        return permissions;
+    }
+
+    public int getLocks() {
+        return locks;
+    }
+
+    public String getPathName() {
+        return pathName;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s, permissions=%d, locks=%d, pathName=%s, userName=%s", super.toString(), permissions,
+            locks, pathName, userName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), permissions, locks, pathName, userName);
+    }
+
+    @Override
+    public boolean equals(final Object anObject) {
+        if (!super.equals(anObject) || !(anObject instanceof NetFileInfo3)) {
+            return false;
+        }
+        final NetFileInfo3 other = (NetFileInfo3) anObject;
+        return other.permissions == permissions && other.locks == locks && Objects.equals(other.pathName, pathName)
+            && Objects.equals(other.userName, userName);
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mssrvs.messages;
+
+import java.util.Objects;
+
+/**
+ * SESSION_INFO_0: the name of the computer that established the session.
+ */
+public class NetSessionInfo0 {
+    private final String clientName;
+
+    public NetSessionInfo0(final String clientName) {
+        this.clientName = clientName;
+    }
+
+    public String getClientName() {
+        return clientName;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("clientName=%s", clientName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(clientName);
+    }
+
+    @Override
+    public boolean equals(final Object anObject) {
+        return anObject instanceof NetSessionInfo0
+            && Objects.equals(((NetSessionInfo0) anObject).clientName, clientName);
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mssrvs.messages;
+
+import java.util.Objects;
+
+/**
+ * SESSION_INFO_10: the client, the user and the active and idle times, in seconds, of a session.
+ */
+public class NetSessionInfo10 extends NetSessionInfo0 {
+    private final String userName;
+    private final int time;
+    private final int idleTime;
+
+    public NetSessionInfo10(final String clientName, final String userName, final int time, final int idleTime) {
+        super(clientName);
+        this.userName = userName;
+        this.time = time;
+        this.idleTime = idleTime;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public int getTime() {
+        return time;
+    }
+
+    public int getIdleTime() {
+        return idleTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s, userName=%s, time=%d, idleTime=%d", super.toString(), userName, time, idleTime);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), userName, time, idleTime);
+    }
+
+    @Override
+    public boolean equals(final Object anObject) {
+        return super.equals(anObject) && anObject instanceof NetSessionInfo10
+            && Objects.equals(((NetSessionInfo10) anObject).userName, userName)
+            && ((NetSessionInfo10) anObject).time == time
+            && ((NetSessionInfo10) anObject).idleTime == idleTime;
+    }
+}
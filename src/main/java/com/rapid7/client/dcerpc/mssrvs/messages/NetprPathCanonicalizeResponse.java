@@ -60,6 +60,11 @@ public class NetprPathCanonicalizeResponse extends RequestResponse
         return SystemErrorCode.getErrorCode(returnValue);
     }
 
+    /** @return The raw return value, which {@link #getReturnValue()} maps to null when it is not a known code. */
+    public int getReturnCode() {
+        return returnValue;
+    }
+
     private String readChars(final PacketInput packetIn)
             throws IOException {
         final StringBuffer result;
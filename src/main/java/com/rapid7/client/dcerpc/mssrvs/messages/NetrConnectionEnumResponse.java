@@ -0,0 +1,66 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mssrvs.messages;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import com.hierynomus.protocol.transport.TransportException;
+import com.rapid7.client.dcerpc.io.PacketInput;
+
+/**
+ * Decodes CONNECTION_INFO_0 ({@link NetConnectionInfo0}) and CONNECTION_INFO_1 ({@link NetConnectionInfo1})
+ * containers.
+ */
+public class NetrConnectionEnumResponse extends NetrEnumResponse<NetConnectionInfo0> {
+    @Override
+    protected List<NetConnectionInfo0> readEntries(final PacketInput packetIn, final int level, final int count)
+        throws IOException {
+        final List<NetConnectionInfo0> connections = new ArrayList<>(count);
+        switch (level) {
+        case 0: {
+            final int[] ids = packetIn.readIntColumns(count, 1)[0];
+            for (int index = 0; index < count; index++) {
+                connections.add(new NetConnectionInfo0(ids[index]));
+            }
+            break;
+        }
+        case 1: {
+            final int[][] columns = packetIn.readIntColumns(count, 7);
+            final int[] ids = columns[0];
+            final int[] types = columns[1];
+            final int[] opens = columns[2];
+            final int[] users = columns[3];
+            final int[] times = columns[4];
+            final int[] userNameRefs = columns[5];
+            final int[] netNameRefs = columns[6];
+            for (int index = 0; index < count; index++) {
+                final String userName = userNameRefs[index] == 0 ? null : packetIn.readString(true);
+                final String netName = netNameRefs[index] == 0 ? null : packetIn.readString(true);
+                connections.add(new NetConnectionInfo1(ids[index], types[index], opens[index], users[index],
+                    times[index], userName, netName));
+            }
+            break;
+        }
+        default:
+            throw new TransportException("Unsupported connection info container.");
+        }
+        return connections;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mssrvs.messages;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import com.hierynomus.protocol.transport.TransportException;
+import com.rapid7.client.dcerpc.io.PacketInput;
+import com.rapid7.client.dcerpc.messages.RequestResponse;
+
+/**
+ * Common response layout of the resumable srvsvc enumeration methods (NetrShareEnum, NetrSessionEnum,
+ * NetrConnectionEnum and NetrFileEnum):
+ *
+ * <pre>
+ * [in, out] LP*_ENUM_STRUCT InfoStruct,
+ * [out] DWORD* TotalEntries,
+ * [in, out, unique] DWORD* ResumeHandle
+ * </pre>
+ *
+ * The InfoStruct carries the level, a union discriminant and a pointer to a container of EntriesRead fixed size
+ * structures followed by their deferred strings. Subclasses decode the entries of each level they support straight
+ * into their records.
+ *
+ * @param <T> The record type of the entries.
+ */
+public abstract class NetrEnumResponse<T> extends RequestResponse {
+    private int level;
+    private List<T> entries;
+    private int totalEntries;
+    private Integer resumeHandle;
+    private int returnValue;
+
+    /** @return The level of the returned entries. */
+    public int getLevel() {
+        return level;
+    }
+
+    /** @return The entries returned in this response, in server order. */
+    public List<T> getEntries() {
+        return entries;
+    }
+
+    /** @return The total number of entries that could have been enumerated from the current resume position. */
+    public int getTotalEntries() {
+        return totalEntries;
+    }
+
+    /** @return The handle used to continue the enumeration, or null if none was returned. */
+    public Integer getResumeHandle() {
+        return resumeHandle;
+    }
+
+    public int getReturnValue() {
+        return returnValue;
+    }
+
+    @Override
+    public void unmarshal(final PacketInput packetIn)
+        throws IOException {
+        entries = Collections.emptyList();
+        level = packetIn.readInt();
+        packetIn.readInt(); // Union discriminant
+
+        if (0 != packetIn.readReferentID()) {
+            final int count = packetIn.readInt();
+            if (0 != packetIn.readReferentID()) {
+                packetIn.readInt(); // Maximum count
+                // Each entry holds at least one 32-bit member, which bounds the count by the rest of the stub.
+                if (count < 0 || count > packetIn.available() / 4) {
+                    throw new TransportException("Invalid entry count: " + count);
+                }
+                entries = readEntries(packetIn, level, count);
+            }
+        }
+
+        totalEntries = packetIn.readInt();
+        resumeHandle = packetIn.readIntRef();
+        returnValue = packetIn.readInt();
+    }
+
+    /**
+     * Decode the conformant array of entries, fixed size parts first and deferred strings after.
+     *
+     * @param packetIn The stub positioned at the first entry.
+     * @param level The level of the entries.
+     * @param count The number of entries.
+     * @return The decoded entries.
+     * @throws IOException If the level is not supported or the stub is malformed.
+     */
+    protected abstract List<T> readEntries(PacketInput packetIn, int level, int count)
+        throws IOException;
+}
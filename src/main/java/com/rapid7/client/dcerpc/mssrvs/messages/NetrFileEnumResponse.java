@@ -0,0 +1,62 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mssrvs.messages;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import com.hierynomus.protocol.transport.TransportException;
+import com.rapid7.client.dcerpc.io.PacketInput;
+
+/**
+ * Decodes FILE_INFO_2 ({@link NetFileInfo2}) and FILE_INFO_3 ({@link NetFileInfo3}) containers.
+ */
+public class NetrFileEnumResponse extends NetrEnumResponse<NetFileInfo2> {
+    @Override
+    protected List<NetFileInfo2> readEntries(final PacketInput packetIn, final int level, final int count)
+        throws IOException {
+        final List<NetFileInfo2> files = new ArrayList<>(count);
+        switch (level) {
+        case 2: {
+            final int[] ids = packetIn.readIntColumns(count, 1)[0];
+            for (int index = 0; index < count; index++) {
+                files.add(new NetFileInfo2(ids[index]));
+            }
+            break;
+        }
+        case 3: {
+            final int[][] columns = packetIn.readIntColumns(count, 5);
+            final int[] ids = columns[0];
+            final int[] permissions = columns[1];
+            final int[] locks = columns[2];
+            final int[] pathNameRefs = columns[3];
+            final int[] userNameRefs = columns[4];
+            for (int index = 0; index < count; index++) {
+                final String pathName = pathNameRefs[index] == 0 ? null : packetIn.readString(true);
+                final String userName = userNameRefs[index] == 0 ? null : packetIn.readString(true);
+                files.add(new NetFileInfo3(ids[index], permissions[index], locks[index], pathName, userName));
+            }
+            break;
+        }
+        default:
+            throw new TransportException("Unsupported file info container.");
+        }
+        return files;
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mssrvs.messages;
+
+import java.io.IOException;
+import com.rapid7.client.dcerpc.io.PacketOutput;
+import com.rapid7.client.dcerpc.messages.RequestCall;
+import com.rapid7.client.dcerpc.mssrvs.NetrOpCode;
+
+/**
+ * <b>3.1.4.5 NetrSessionEnum (Opnum 12)</b><br>
+ * The NetrSessionEnum method MUST return information about sessions that are established on a server or return an error
+ * code.
+ *
+ * <pre>
+ * NET_API_STATUS NetrSessionEnum(
+ *    [in, string, unique] SRVSVC_HANDLE ServerName,
+ *    [in, string, unique] WCHAR* ClientName,
+ *    [in, string, unique] WCHAR* UserName,
+ *    [in, out] PSESSION_ENUM_STRUCT InfoStruct,
+ *    [in] DWORD PreferedMaximumLength,
+ *    [out] DWORD* TotalEntries,
+ *    [in, out, unique] DWORD* ResumeHandle
+ * );
+ * </pre>
+ *
+ * ClientName: Optional name of the computer whose sessions are returned, or null for all computers.<br>
+ * <br>
+ * UserName: Optional name of the user whose sessions are returned, or null for all users.<br>
+ * <br>
+ * PreferedMaximumLength: Specifies the preferred maximum length, in bytes, of the returned data. If the specified value
+ * is MAX_PREFERRED_LENGTH, the method MUST attempt to return all entries.<br>
+ * <br>
+ * ResumeHandle: A pointer to a value that contains a handle, which is used to continue an existing session search.
+ * The handle MUST be zero on the first call and remain unchanged for subsequent calls. If this parameter is not NULL
+ * and the method returns ERROR_MORE_DATA, this parameter receives a nonzero value that can be passed in subsequent
+ * calls to this method to continue with the enumeration.
+ *
+ * @see <a href="https://msdn.microsoft.com/en-us/library/cc247273.aspx">3.1.4.5 NetrSessionEnum (Opnum 12)</a>
+ */
+public class NetrSessionEnumRequest extends RequestCall<NetrSessionEnumResponse> {
+    /**
+     * Optional name of the computer whose sessions are returned, or null for all computers.
+     */
+    private final String clientName;
+
+    /**
+     * Optional name of the user whose sessions are returned, or null for all users.
+     */
+    private final String userName;
+
+    /**
+     * The level of the returned structures.
+     */
+    private final int level;
+
+    /**
+     * The handle used to continue an existing enumeration, zero or null on the first call.
+     */
+    private final Integer resumeHandle;
+
+    /**
+     * Specifies the preferred maximum length, in bytes, of the returned data.
+     */
+    private final int preferredMaximumLength;
+
+    /**
+     * The NetrSessionEnum method MUST return information about sessions that are established on a server or return an
+     * error code.
+     *
+     * @param clientName Optional name of the computer whose sessions are returned, or null for all computers.
+     * @param userName Optional name of the user whose sessions are returned, or null for all users.
+     * @param level The level of the returned structures.
+     * @param resumeHandle The handle used to continue an existing enumeration, zero or null on the first call.
+     * @param preferredMaximumLength The preferred maximum length, in bytes, of the returned data, or
+     *        {@link NetrShareEnumRequest#MAX_PREFERRED_LENGTH}.
+     */
+    public NetrSessionEnumRequest(
+        final String clientName,
+        final String userName,
+        final int level,
+        final Integer resumeHandle,
+        final int preferredMaximumLength) {
+        super(NetrOpCode.NetrSessionEnum.getOpCode());
+        this.clientName = clientName;
+        this.userName = userName;
+        this.level = level;
+        this.resumeHandle = resumeHandle;
+        this.preferredMaximumLength = preferredMaximumLength;
+    }
+
+    @Override
+    public NetrSessionEnumResponse getResponseObject() {
+        return new NetrSessionEnumResponse();
+    }
+
+    @Override
+    public void marshal(final PacketOutput stubOut)
+        throws IOException {
+        stubOut.writeNull();
+        stubOut.writeStringRef(clientName, true);
+        stubOut.writeStringRef(userName, true);
+        stubOut.writeInt(level);
+        stubOut.writeInt(level);
+        stubOut.writeReferentID();
+        stubOut.writeInt(0);
+        stubOut.writeNull();
+        stubOut.writeInt(preferredMaximumLength);
+        stubOut.writeIntRef(resumeHandle);
+    }
+}
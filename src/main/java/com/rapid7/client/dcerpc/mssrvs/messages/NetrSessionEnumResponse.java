@@ -0,0 +1,63 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mssrvs.messages;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import com.hierynomus.protocol.transport.TransportException;
+import com.rapid7.client.dcerpc.io.PacketInput;
+
+/**
+ * Decodes SESSION_INFO_0 ({@link NetSessionInfo0}) and SESSION_INFO_10 ({@link NetSessionInfo10}) containers.
+ */
+public class NetrSessionEnumResponse extends NetrEnumResponse<NetSessionInfo0> {
+    @Override
+    protected List<NetSessionInfo0> readEntries(final PacketInput packetIn, final int level, final int count)
+        throws IOException {
+        final List<NetSessionInfo0> sessions = new ArrayList<>(count);
+        switch (level) {
+        case 0: {
+            final int[] clientNameRefs = packetIn.readIntColumns(count, 1)[0];
+            for (int index = 0; index < count; index++) {
+                final String clientName = clientNameRefs[index] == 0 ? null : packetIn.readString(true);
+                sessions.add(new NetSessionInfo0(clientName));
+            }
+            break;
+        }
+        case 10: {
+            final int[][] columns = packetIn.readIntColumns(count, 4);
+            final int[] clientNameRefs = columns[0];
+            final int[] userNameRefs = columns[1];
+            final int[] times = columns[2];
+            final int[] idleTimes = columns[3];
+            for (int index = 0; index < count; index++) {
+                final String clientName = clientNameRefs[index] == 0 ? null : packetIn.readString(true);
+                final String userName = userNameRefs[index] == 0 ? null : packetIn.readString(true);
+                sessions.add(new NetSessionInfo10(clientName, userName, times[index], idleTimes[index]));
+            }
+            break;
+        }
+        default:
+            throw new TransportException("Unsupported session info container.");
+        }
+        return sessions;
+    }
+
+}
@@ -233,7 +233,7 @@ public class NetrShareEnumRequest extends RequestCall<NetrShareEnumResponse> {
      * Specifies the preferred maximum length, in bytes, of the returned data. If the specified value is
      * MAX_PREFERRED_LENGTH, the method MUST attempt to return all entries.
      */
-    private final static int MAX_BUFFER_SIZE = 1048576;
+    public final static int MAX_BUFFER_SIZE = 1048576;
 
     /**
      * The InfoStruct parameter has a Level member. The valid values of Level are 0, 1, 2, 501, 502, and 503. If the
@@ -251,6 +251,12 @@ public class NetrShareEnumRequest extends RequestCall<NetrShareEnumResponse> {
      */
     private final Integer resumeHandle;
 
+    /**
+     * Specifies the preferred maximum length, in bytes, of the returned data. If the specified value is
+     * MAX_PREFERRED_LENGTH, the method MUST attempt to return all entries.
+     */
+    private final int preferredMaximumLength;
+
     /**
      * The NetrShareEnum method retrieves information about each shared resource on a server.
      *
@@ -264,9 +270,25 @@ public class NetrShareEnumRequest extends RequestCall<NetrShareEnumResponse> {
      *        subsequent calls to this method to continue with the enumeration in ShareList.
      */
     public NetrShareEnumRequest(final int level, final Integer resumeHandle) {
+        this(level, resumeHandle, MAX_BUFFER_SIZE);
+    }
+
+    /**
+     * The NetrShareEnum method retrieves information about each shared resource on a server.
+     *
+     * @param level The InfoStruct parameter has a Level member. The valid values of Level are 0, 1, 2, 501, 502, and
+     *        503. If the Level member is not equal to one of the valid values, the server MUST fail the call with an
+     *        ERROR_INVALID_LEVEL error code.
+     * @param resumeHandle A pointer to a value that contains a handle, which is used to continue an existing share
+     *        search in ShareList. The handle MUST be zero on the first call and remain unchanged for subsequent calls.
+     * @param preferredMaximumLength Specifies the preferred maximum length, in bytes, of the returned data. If the
+     *        specified value is MAX_PREFERRED_LENGTH, the method MUST attempt to return all entries.
+     */
+    public NetrShareEnumRequest(final int level, final Integer resumeHandle, final int preferredMaximumLength) {
         super(NetrOpCode.NetrShareEnum.getOpCode());
         this.level = level;
         this.resumeHandle = resumeHandle;
+        this.preferredMaximumLength = preferredMaximumLength;
     }
 
     @Override
@@ -283,7 +305,7 @@ public class NetrShareEnumRequest extends RequestCall<NetrShareEnumResponse> {
         stubOut.writeReferentID();
         stubOut.writeInt(0);
         stubOut.writeNull();
-        stubOut.writeInt(MAX_BUFFER_SIZE);
+        stubOut.writeInt(preferredMaximumLength);
         stubOut.writeIntRef(resumeHandle);
     }
 }
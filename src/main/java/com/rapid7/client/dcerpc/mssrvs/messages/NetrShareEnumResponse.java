@@ -19,11 +19,10 @@
 package com.rapid7.client.dcerpc.mssrvs.messages;
 
 import java.io.IOException;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import com.hierynomus.protocol.transport.TransportException;
 import com.rapid7.client.dcerpc.io.PacketInput;
-import com.rapid7.client.dcerpc.messages.RequestResponse;
 
 /**
  * <br>
@@ -93,108 +92,55 @@ import com.rapid7.client.dcerpc.messages.RequestResponse;
  *     Windows Error: WERR_OK (0x00000000)
  * </pre>
  */
-public class NetrShareEnumResponse extends RequestResponse {
-    private int level;
-    private List<NetShareInfo0> shares;
-    private int shareCount;
-    private Integer resumeHandle;
-    private int returnValue;
-
-    public int getLevel() {
-        return level;
-    }
-
+public class NetrShareEnumResponse extends NetrEnumResponse<NetShareInfo0> {
     public List<NetShareInfo0> getShares() {
-        return shares;
+        return getEntries();
     }
 
     public int getShareCount() {
-        return shareCount;
-    }
-
-    public Integer getResumeHandle() {
-        return resumeHandle;
-    }
-
-    public int getReturnValue() {
-        return returnValue;
+        return getTotalEntries();
     }
 
     @Override
-    public void unmarshal(final PacketInput packetIn)
+    protected List<NetShareInfo0> readEntries(final PacketInput packetIn, final int level, final int count)
         throws IOException {
-        shares = new LinkedList<>();
-        level = packetIn.readInt();
-        packetIn.readInt();
-
+        final List<NetShareInfo0> shares = new ArrayList<>(count);
         switch (level) {
-        case 1:
-            if (0 != packetIn.readReferentID()) {
-                final int count = packetIn.readInt();
-                if (0 != packetIn.readReferentID()) {
-                    final List<Integer> nameRefs = new LinkedList<>();
-                    final List<Integer> types = new LinkedList<>();
-                    final List<Integer> commentRefs = new LinkedList<>();
-                    packetIn.readInt(); // Maximum count
-                    for (int index = 0; index < count; index++) {
-                        nameRefs.add(packetIn.readReferentID());
-                        types.add(packetIn.readInt());
-                        commentRefs.add(packetIn.readReferentID());
-                    }
-                    for (int index = 0; index < count; index++) {
-                        final String name = nameRefs.get(index) == 0 ? null : packetIn.readString(true);
-                        final int type = types.get(index);
-                        final String comment = commentRefs.get(index) == 0 ? null : packetIn.readString(true);
-                        shares.add(new NetShareInfo1(name, type, comment));
-                    }
-                }
+        case 1: {
+            final int[][] columns = packetIn.readIntColumns(count, 3);
+            final int[] nameRefs = columns[0];
+            final int[] types = columns[1];
+            final int[] commentRefs = columns[2];
+            for (int index = 0; index < count; index++) {
+                final String name = nameRefs[index] == 0 ? null : packetIn.readString(true);
+                final String comment = commentRefs[index] == 0 ? null : packetIn.readString(true);
+                shares.add(new NetShareInfo1(name, types[index], comment));
             }
             break;
-        case 2:
-            if (0 != packetIn.readReferentID()) {
-                final int count = packetIn.readInt();
-                if (0 != packetIn.readReferentID()) {
-                    final List<Integer> nameRefs = new LinkedList<>();
-                    final List<Integer> types = new LinkedList<>();
-                    final List<Integer> commentRefs = new LinkedList<>();
-                    final List<Integer> permissions = new LinkedList<>();
-                    final List<Integer> maximumUsers = new LinkedList<>();
-                    final List<Integer> currentUsers = new LinkedList<>();
-                    final List<Integer> pathRefs = new LinkedList<>();
-                    final List<Integer> passwordRefs = new LinkedList<>();
-                    packetIn.readInt(); // Maximum count
-                    for (int index = 0; index < count; index++) {
-                        nameRefs.add(packetIn.readReferentID());
-                        types.add(packetIn.readInt());
-                        commentRefs.add(packetIn.readReferentID());
-                        permissions.add(packetIn.readInt());
-                        maximumUsers.add(packetIn.readInt());
-                        currentUsers.add(packetIn.readInt());
-                        pathRefs.add(packetIn.readReferentID());
-                        passwordRefs.add(packetIn.readReferentID());
-                    }
-                    for (int index = 0; index < count; index++) {
-                        final String name = nameRefs.get(index) == 0 ? null : packetIn.readString(true);
-                        final int type = types.get(index);
-                        final String comment = commentRefs.get(index) == 0 ? null : packetIn.readString(true);
-                        final int permission = permissions.get(index);
-                        final int maximumUser = maximumUsers.get(index);
-                        final int currentUser = currentUsers.get(index);
-                        final String path = pathRefs.get(index) == 0 ? null : packetIn.readString(true);
-                        final String password = passwordRefs.get(index) == 0 ? null : packetIn.readString(true);
-                        final NetShareInfo2 shareInfo = new NetShareInfo2(name, type, comment, permission, maximumUser,
-                            currentUser, path, password);
-                        shares.add(shareInfo);
-                    }
-                }
+        }
+        case 2: {
+            final int[][] columns = packetIn.readIntColumns(count, 8);
+            final int[] nameRefs = columns[0];
+            final int[] types = columns[1];
+            final int[] commentRefs = columns[2];
+            final int[] permissions = columns[3];
+            final int[] maximumUsers = columns[4];
+            final int[] currentUsers = columns[5];
+            final int[] pathRefs = columns[6];
+            final int[] passwordRefs = columns[7];
+            for (int index = 0; index < count; index++) {
+                final String name = nameRefs[index] == 0 ? null : packetIn.readString(true);
+                final String comment = commentRefs[index] == 0 ? null : packetIn.readString(true);
+                final String path = pathRefs[index] == 0 ? null : packetIn.readString(true);
+                final String password = passwordRefs[index] == 0 ? null : packetIn.readString(true);
+                shares.add(new NetShareInfo2(name, types[index], comment, permissions[index], maximumUsers[index],
+                    currentUsers[index], path, password));
             }
             break;
+        }
         default:
             throw new TransportException("Unsupported share info container.");
         }
-
-        shareCount = packetIn.readInt();
-        resumeHandle = packetIn.readIntRef();
-        returnValue = packetIn.readInt();
+        return shares;
     }
 }
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.transport;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Spreads work over a bounded set of pipes to one host. Each pipe is served by its own service, e.g. a
+ * {@link com.rapid7.client.dcerpc.msrrp.RegistryService}, as a pipe makes one call at a time. The work items are held
+ * in a queue which the pipes drain together, so each pipe always has a call in flight.
+ *
+ * @param <S> The type of the service which makes calls over one pipe.
+ */
+public class PipeFanOut<S> {
+    /** Work performed on one pipe, which drains a queue shared with the other pipes. */
+    public interface Task<S> {
+        void run(S service)
+            throws IOException;
+    }
+
+    private final List<S> services;
+
+    /**
+     * @param services One service per pipe to the host.
+     */
+    public PipeFanOut(final List<S> services) {
+        if (services == null || services.isEmpty() || services.contains(null)) {
+            throw new IllegalArgumentException("Services are invalid: " + services);
+        }
+        this.services = Collections.unmodifiableList(new ArrayList<>(services));
+    }
+
+    /**
+     * Runs the task on up to one pipe per work item, the first on the calling thread and the others on a daemon thread
+     * each. When a task fails, the shared queue is cleared so the other pipes stop after the call they are making, as
+     * interrupting a call would leave its pipe unusable, and the first failure is thrown.
+     *
+     * @param workItems The number of work items, which bounds the number of pipes used.
+     * @param queue The queue of work items drained by the task.
+     * @param threadNameFormat The name format of the threads, e.g. "registry-query-%d".
+     * @param task The work performed on each pipe.
+     * @throws IOException The first failure of a task.
+     */
+    public void run(final int workItems, final Queue<?> queue, final String threadNameFormat, final Task<S> task)
+        throws IOException {
+        final int pipes = Math.max(1, Math.min(services.size(), workItems));
+        if (pipes == 1) {
+            task.run(services.get(0));
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(pipes - 1,
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat(threadNameFormat).build());
+        try {
+            final List<Future<Void>> futures = new ArrayList<>(pipes - 1);
+            for (final S service : services.subList(1, pipes)) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call()
+                        throws IOException {
+                        task.run(service);
+                        return null;
+                    }
+                }));
+            }
+            IOException exception = null;
+            try {
+                task.run(services.get(0));
+            } catch (final IOException | RuntimeException e) {
+                queue.clear();
+                exception = e instanceof IOException ? (IOException) e : new IOException(e);
+            }
+            for (final Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (final ExecutionException e) {
+                    queue.clear();
+                    if (exception == null) {
+                        exception = e.getCause() instanceof IOException ? (IOException) e.getCause()
+                            : new IOException(e.getCause());
+                    }
+                } catch (final InterruptedException e) {
+                    final InterruptedIOException iioException = new InterruptedIOException();
+                    iioException.addSuppressed(e);
+                    throw iioException;
+                }
+            }
+            if (exception != null) {
+                throw exception;
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -21,12 +21,15 @@ package com.rapid7.client.dcerpc.transport;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.lang3.mutable.MutableInt;
 import com.rapid7.client.dcerpc.Interface;
+import com.rapid7.client.dcerpc.PDUType;
 import com.rapid7.client.dcerpc.PFCFlag;
+import com.rapid7.client.dcerpc.RPCException;
 import com.rapid7.client.dcerpc.io.PacketInput;
 import com.rapid7.client.dcerpc.io.PacketOutput;
 import com.rapid7.client.dcerpc.io.Transport;
@@ -40,6 +43,7 @@ import com.rapid7.client.dcerpc.messages.Response;
 public abstract class RPCTransport implements Transport {
     protected final static int DEFAULT_MAX_XMIT_FRAG = 16384;
     protected final static int DEFAULT_MAX_RECV_FRAG = 16384;
+    private final static int REQUEST_HEADER_LENGTH = 24;
     private final AtomicInteger callID = new AtomicInteger();
     private int maxXmitFrag = DEFAULT_MAX_XMIT_FRAG;
     private int maxRecvFrag = DEFAULT_MAX_RECV_FRAG;
@@ -74,17 +78,23 @@ public abstract class RPCTransport implements Transport {
 
     public <T extends RequestResponse> T call(final RequestCall<T> call)
         throws IOException {
-        final ByteArrayOutputStream requestPacketOutputStream = new ByteArrayOutputStream();
-        final PacketOutput requestPacketOut = new PacketOutput(requestPacketOutputStream);
-        final Request request = new Request();
-
-        request.setCallID(getCallID());
-        request.setPFCFlags(EnumSet.of(PFCFlag.FIRST_FRAGMENT, PFCFlag.LAST_FRAGMENT));
-        request.setOpNum(call.getOpNum());
-        request.setStub(call.getStub());
-        request.marshal(requestPacketOut);
-
-        final byte[] packetOutBytes = requestPacketOutputStream.toByteArray();
+        final short opNum = call.getOpNum();
+        final byte[] stub = call.getStub();
+        final int callID = getCallID();
+        // Stubs which do not fit in one fragment are sent in 8-octet aligned fragments of the largest size the server
+        // accepts. Only the last fragment is transacted, as the server only responds once it has the whole request.
+        final int maxFragmentStubLength = Math.max(8, (getMaxRecvFrag() - REQUEST_HEADER_LENGTH) & ~7);
+        int offset = 0;
+        while (stub.length - offset > maxFragmentStubLength) {
+            final EnumSet<PFCFlag> pfcFlags =
+                offset == 0 ? EnumSet.of(PFCFlag.FIRST_FRAGMENT) : EnumSet.noneOf(PFCFlag.class);
+            write(marshalRequest(callID, opNum, pfcFlags, stub, offset, maxFragmentStubLength));
+            offset += maxFragmentStubLength;
+        }
+        final EnumSet<PFCFlag> lastPFCFlags = offset == 0
+            ? EnumSet.of(PFCFlag.FIRST_FRAGMENT, PFCFlag.LAST_FRAGMENT) : EnumSet.of(PFCFlag.LAST_FRAGMENT);
+        final byte[] packetOutBytes =
+            marshalRequest(callID, opNum, lastPFCFlags, stub, offset, stub.length - offset);
         final byte[] packetInBytes = new byte[getMaxXmitFrag()];
         final MutableInt packetInByteLength = new MutableInt();
 
@@ -99,6 +109,13 @@ public abstract class RPCTransport implements Transport {
             final PacketInput packetIn = new PacketInput(packetInputStream);
 
             response.unmarshal(packetIn);
+
+            if (PDUType.FAULT.equals(response.getPDUType())) {
+                // The fault PDU body starts with the 32-bit NCA status code.
+                final PacketInput faultIn = new PacketInput(new ByteArrayInputStream(response.getStub()));
+                throw new RPCException(String.format("Request (opnum %d)", opNum), faultIn.readInt());
+            }
+
             responseStubOutputStream.write(response.getStub());
 
             final Set<PFCFlag> pfcFlags = response.getPFCFlags();
@@ -119,6 +136,32 @@ public abstract class RPCTransport implements Transport {
         return result;
     }
 
+    private byte[] marshalRequest(
+        final int callID,
+        final short opNum,
+        final EnumSet<PFCFlag> pfcFlags,
+        final byte[] stub,
+        final int offset,
+        final int length)
+        throws IOException {
+        final ByteArrayOutputStream requestPacketOutputStream = new ByteArrayOutputStream();
+        final PacketOutput requestPacketOut = new PacketOutput(requestPacketOutputStream);
+        final Request request = new Request();
+
+        request.setCallID(callID);
+        request.setPFCFlags(pfcFlags);
+        request.setOpNum(opNum);
+        if (offset == 0 && length == stub.length) {
+            request.setStub(stub);
+        } else {
+            request.setStub(Arrays.copyOfRange(stub, offset, offset + length));
+            request.setAllocHint(stub.length - offset);
+        }
+        request.marshal(requestPacketOut);
+
+        return requestPacketOutputStream.toByteArray();
+    }
+
     protected int getCallID() {
         return callID.getAndIncrement();
     }
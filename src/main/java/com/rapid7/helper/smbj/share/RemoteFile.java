@@ -0,0 +1,118 @@
+package com.rapid7.helper.smbj.share;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.Queue;
+import java.util.concurrent.Future;
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.mssmb2.SMB2CreateOptions;
+import com.hierynomus.mssmb2.SMB2FileId;
+import com.hierynomus.mssmb2.SMB2ImpersonationLevel;
+import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.mssmb2.messages.SMB2Close;
+import com.hierynomus.mssmb2.messages.SMB2CreateRequest;
+import com.hierynomus.mssmb2.messages.SMB2CreateResponse;
+import com.hierynomus.mssmb2.messages.SMB2ReadRequest;
+import com.hierynomus.mssmb2.messages.SMB2ReadResponse;
+import com.hierynomus.smbj.session.Session;
+import com.hierynomus.smbj.share.Share;
+import com.rapid7.helper.smbj.io.SMB2Exception;
+import com.rapid7.helper.smbj.io.SMB2SessionMessage;
+
+/**
+ * A file on a disk share which is opened for reading. The file is read with several SMB2 READ requests outstanding at
+ * once, each as large as the negotiated maximum read size, so that a large file is transferred without waiting a round
+ * trip per read.
+ */
+public class RemoteFile extends SMB2SessionMessage implements Closeable {
+    private final static int READ_AHEAD = 4;
+    private final static EnumSet<NtStatus> CREATE_SUCCESS = EnumSet.of(NtStatus.STATUS_SUCCESS);
+    private final static EnumSet<NtStatus> CLOSE_SUCCESS = EnumSet.of(NtStatus.STATUS_SUCCESS);
+    private final Share share;
+    private final SMB2FileId fileID;
+    private final int readBufferSize;
+
+    /**
+     * @param session The session which is connected to the share.
+     * @param share The disk share.
+     * @param path The path of the file relative to the share.
+     * @param deleteOnClose If true, the file is deleted when it is closed.
+     */
+    public RemoteFile(final Session session, final Share share, final String path, final boolean deleteOnClose)
+        throws IOException {
+        super(session);
+
+        this.share = share;
+
+        final EnumSet<AccessMask> accessMask = deleteOnClose ? EnumSet.of(AccessMask.GENERIC_READ, AccessMask.DELETE)
+            : EnumSet.of(AccessMask.GENERIC_READ);
+        final EnumSet<SMB2CreateOptions> createOptions = deleteOnClose
+            ? EnumSet.of(SMB2CreateOptions.FILE_NON_DIRECTORY_FILE, SMB2CreateOptions.FILE_DELETE_ON_CLOSE)
+            : EnumSet.of(SMB2CreateOptions.FILE_NON_DIRECTORY_FILE);
+        final SMB2CreateRequest createRequest = new SMB2CreateRequest(getDialect(), getSessionID(),
+            share.getTreeConnect().getTreeId(), SMB2ImpersonationLevel.Impersonation, accessMask, null,
+            EnumSet.of(SMB2ShareAccess.FILE_SHARE_READ, SMB2ShareAccess.FILE_SHARE_DELETE),
+            SMB2CreateDisposition.FILE_OPEN, createOptions, path);
+        final SMB2CreateResponse createResponse = sendAndRead(createRequest, CREATE_SUCCESS);
+
+        fileID = createResponse.getFileId();
+        readBufferSize = Math.min(session.getConnection().getConfig().getReadBufferSize(),
+            session.getConnection().getNegotiatedProtocol().getMaxReadSize());
+    }
+
+    /**
+     * Read the file from the start to the end of file.
+     *
+     * @param outputStream The stream to which the contents of the file are written.
+     * @return The number of bytes read.
+     */
+    public long read(final OutputStream outputStream)
+        throws IOException {
+        final Queue<Future<SMB2ReadResponse>> reads = new ArrayDeque<>(READ_AHEAD);
+        long offset = 0;
+        long length = 0;
+        boolean endOfFile = false;
+
+        for (int index = 0; index < READ_AHEAD; index++) {
+            reads.add(this.<SMB2ReadResponse> send(newReadRequest(offset)));
+            offset += readBufferSize;
+        }
+        while (!reads.isEmpty()) {
+            final SMB2ReadResponse response = read(reads.remove());
+            final NtStatus status = response.getHeader().getStatus();
+            if (status.equals(NtStatus.STATUS_END_OF_FILE)) {
+                endOfFile = true;
+            } else if (!status.equals(NtStatus.STATUS_SUCCESS)) {
+                throw new SMB2Exception(response.getHeader(), "expected=" + EnumSet.of(NtStatus.STATUS_SUCCESS));
+            } else if (!endOfFile) {
+                final byte[] data = response.getData();
+                outputStream.write(data);
+                length += data.length;
+                endOfFile = data.length < readBufferSize;
+            }
+            if (!endOfFile) {
+                reads.add(this.<SMB2ReadResponse> send(newReadRequest(offset)));
+                offset += readBufferSize;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+        final SMB2Close closeRequest =
+            new SMB2Close(getDialect(), getSessionID(), share.getTreeConnect().getTreeId(), fileID);
+        sendAndRead(closeRequest, CLOSE_SUCCESS);
+    }
+
+    private SMB2ReadRequest newReadRequest(final long offset) {
+        return new SMB2ReadRequest(getDialect(), fileID, getSessionID(), share.getTreeConnect().getTreeId(), offset,
+            readBufferSize);
+    }
+}
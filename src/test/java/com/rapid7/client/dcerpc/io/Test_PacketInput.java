@@ -22,11 +22,17 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import org.bouncycastle.util.encoders.Hex;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 
 public class Test_PacketInput {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
     @Test
     public void readIntRef()
         throws IOException {
@@ -152,6 +158,74 @@ public class Test_PacketInput {
             getPacketInput("0000000100000000000000010000000001000000010000003F000000").readStringBufRef(true));
     }
 
+    @Test
+    public void readIntColumns()
+        throws IOException {
+        final PacketInput packetIn = getPacketInput("010000000200000003000000040000000500000006000000FF");
+        final int[][] columns = packetIn.readIntColumns(2, 3);
+        assertArrayEquals(new int[] { 1, 4 }, columns[0]);
+        assertArrayEquals(new int[] { 2, 5 }, columns[1]);
+        assertArrayEquals(new int[] { 3, 6 }, columns[2]);
+        assertEquals(24, packetIn.getCount());
+    }
+
+    @Test
+    public void readIntColumnsEmpty()
+        throws IOException {
+        final int[][] columns = getPacketInput("").readIntColumns(0, 2);
+        assertEquals(2, columns.length);
+        assertEquals(0, columns[0].length);
+    }
+
+    @Test
+    public void readIntColumnsInvalidCount()
+        throws IOException {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Invalid count: -1");
+        getPacketInput("").readIntColumns(-1, 2);
+    }
+
+    @Test
+    public void readIntColumnsCountExceedsStub()
+        throws IOException {
+        thrown.expect(EOFException.class);
+        thrown.expectMessage("Array of 34359738352 bytes exceeds the 24 bytes left in the stub.");
+        getPacketInput("010000000200000003000000040000000500000006000000").readIntColumns(Integer.MAX_VALUE, 4);
+    }
+
+    @Test
+    public void readStringCountExceedsStub()
+        throws IOException {
+        thrown.expect(EOFException.class);
+        thrown.expectMessage("String of 1073741823 characters at offset 0 exceeds the 4 bytes left in the stub.");
+        getPacketInput("0000000000000000FFFFFF3F3F000000").readString(true);
+    }
+
+    @Test
+    public void readStringOffsetExceedsStub()
+        throws IOException {
+        thrown.expect(EOFException.class);
+        thrown.expectMessage("String of 1 characters at offset 1073741823 exceeds the 4 bytes left in the stub.");
+        getPacketInput("00000000FFFFFF3F010000003F000000").readString(true);
+    }
+
+    @Test
+    public void readStringNegativeCount()
+        throws IOException {
+        thrown.expect(IOException.class);
+        thrown.expectMessage("String offset 0 or length -1073741824 is invalid.");
+        getPacketInput("0000000000000000000000C03F000000").readString(true);
+    }
+
+    @Test
+    public void readStringSupplementary()
+        throws IOException {
+        // U+1F600 as a UTF-16 surrogate pair, null terminated, with padding to the next 4 byte boundary
+        final PacketInput packetIn = getPacketInput("0300000000000000030000003DD800DE00000000");
+        assertEquals("\uD83D\uDE00", packetIn.readString(true));
+        assertEquals(20, packetIn.getCount());
+    }
+
     private PacketInput getPacketInput(final String hexString) {
         final byte[] inputStreamBytes = Hex.decode(hexString);
         final ByteArrayInputStream inputStream = new ByteArrayInputStream(inputStreamBytes);
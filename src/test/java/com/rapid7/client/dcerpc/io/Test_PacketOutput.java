@@ -109,6 +109,15 @@ public class Test_PacketOutput {
         assertEquals("00000000", Hex.toHexString(outputStream.toByteArray()).toUpperCase());
     }
 
+    @Test
+    public void writeStringRef_nullString()
+        throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final PacketOutput packetOut = new PacketOutput(outputStream);
+        packetOut.writeStringRef(null, true);
+        assertEquals("00000000", Hex.toHexString(outputStream.toByteArray()).toUpperCase());
+    }
+
     @Test
     public void writeStringRef()
         throws IOException {
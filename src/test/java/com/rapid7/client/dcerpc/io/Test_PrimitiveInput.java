@@ -332,6 +332,46 @@ public class Test_PrimitiveInput {
         assertEquals(-1, getPacketInput("FFFFFFFFFFFFFFFF").readLong());
     }
 
+    @Test
+    public void readInts()
+        throws IOException {
+        final PacketInput packetIn = getPacketInput("01000000FFFFFFFF0000008002");
+        final int[] values = new int[4];
+        packetIn.readInts(values, 1, 3);
+        assertArrayEquals(new int[] { 0, 1, -1, Integer.MIN_VALUE }, values);
+        assertEquals(12, packetIn.getCount());
+    }
+
+    @Test
+    public void readIntsMultipleBuffers()
+        throws IOException {
+        final int[] expected = new int[5000];
+        final StringBuilder hex = new StringBuilder();
+        for (int index = 0; index < expected.length; index++) {
+            expected[index] = index * 65599;
+            hex.append(Hex.toHexString(new byte[] { (byte) expected[index], (byte) (expected[index] >> 8),
+                (byte) (expected[index] >> 16), (byte) (expected[index] >> 24) }));
+        }
+        final int[] values = new int[expected.length];
+        getPacketInput(hex.toString()).readInts(values, 0, values.length);
+        assertArrayEquals(expected, values);
+    }
+
+    @Test
+    public void readIntsEOF()
+        throws IOException {
+        thrown.expect(EOFException.class);
+        getPacketInput("0100000002").readInts(new int[2], 0, 2);
+    }
+
+    @Test
+    public void readLongs()
+        throws IOException {
+        final long[] values = new long[2];
+        getPacketInput("0100000000000000FFFFFFFFFFFFFFFF").readLongs(values, 0, 2);
+        assertArrayEquals(new long[] { 1, -1 }, values);
+    }
+
     private PacketInput getPacketInput(final String hexString) {
         final byte[] inputStreamBytes = Hex.decode(hexString);
         final ByteArrayInputStream inputStream = new ByteArrayInputStream(inputStreamBytes);
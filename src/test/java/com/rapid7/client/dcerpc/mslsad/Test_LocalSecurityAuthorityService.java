@@ -0,0 +1,433 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.msdtyp.SID;
+import com.rapid7.client.dcerpc.RPCException;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarClosePolicyRpcRequest;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarClosePolicyRpcResponse;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupAcctPrivsRpcRequest;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupAcctPrivsRpcResponse;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupNames3Request;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupNames3Response;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupSids2Request;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupSids2Response;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupSidsWithAcctPrivRpcRequest;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupSidsWithAcctPrivRpcResponse;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarOpenPolicy2Request;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarQueryInformationPolicyRequest;
+import com.rapid7.client.dcerpc.mslsad.messages.PolicyAuditEventsInformationResponse;
+import com.rapid7.client.dcerpc.mslsad.objects.SidNameUse;
+import com.rapid7.client.dcerpc.msrrp.messages.HandleResponse;
+import com.rapid7.client.dcerpc.transport.RPCTransport;
+
+public class Test_LocalSecurityAuthorityService {
+    private final static String ACCOUNT_SID = "S-1-5-32-544";
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void getLookupAcctPrivsReusesPolicyHandle()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse openResponse = handleResponse("0000000000112233445566778899aabbccddeeff", 0);
+        final LsarLookupAcctPrivsRpcResponse lookupResponse = privsResponse(0, "SeBackupPrivilege");
+
+        when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(openResponse);
+        when(transport.call(isA(LsarLookupAcctPrivsRpcRequest.class))).thenReturn(lookupResponse);
+
+        final LocalSecurityAuthorityService service = new LocalSecurityAuthorityService(transport);
+
+        assertArrayEquals(new String[] {"SeBackupPrivilege"}, service.getLookupAcctPrivs(ACCOUNT_SID));
+        assertArrayEquals(new String[] {"SeBackupPrivilege"}, service.getLookupAcctPrivs(ACCOUNT_SID));
+        assertSame(openResponse.getHandle(), service.getPolicyHandle(EnumSet.of(AccessMask.MAXIMUM_ALLOWED)));
+
+        verify(transport, times(1)).call(isA(LsarOpenPolicy2Request.class));
+        verify(transport, times(2)).call(isA(LsarLookupAcctPrivsRpcRequest.class));
+    }
+
+    @Test
+    public void getLookupAcctPrivsReopensInvalidHandle()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse staleResponse = handleResponse("0000000000112233445566778899aabbccddeeff", 0);
+        final HandleResponse freshResponse = handleResponse("00000000ffeeddccbbaa99887766554433221100", 0);
+        final LsarLookupAcctPrivsRpcResponse invalidResponse = privsResponse(0xC0000008);
+        final LsarLookupAcctPrivsRpcResponse lookupResponse = privsResponse(0, "SeBackupPrivilege");
+
+        when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(staleResponse, freshResponse);
+        when(transport.call(isA(LsarLookupAcctPrivsRpcRequest.class))).thenReturn(invalidResponse, lookupResponse);
+
+        final LocalSecurityAuthorityService service = new LocalSecurityAuthorityService(transport);
+
+        assertArrayEquals(new String[] {"SeBackupPrivilege"}, service.getLookupAcctPrivs(ACCOUNT_SID));
+        assertSame(freshResponse.getHandle(), service.getPolicyHandle(EnumSet.of(AccessMask.MAXIMUM_ALLOWED)));
+
+        verify(transport, times(2)).call(isA(LsarOpenPolicy2Request.class));
+    }
+
+    @Test
+    public void getLookupAcctPrivsInvalidHandleTwice()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse openResponse = handleResponse("0000000000112233445566778899aabbccddeeff", 0);
+        final LsarLookupAcctPrivsRpcResponse invalidResponse = privsResponse(0xC0000008);
+
+        when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(openResponse);
+        when(transport.call(isA(LsarLookupAcctPrivsRpcRequest.class))).thenReturn(invalidResponse);
+
+        final LocalSecurityAuthorityService service = new LocalSecurityAuthorityService(transport);
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("LsarEnumerateAccountRights returned error code: -1073741816");
+
+        service.getLookupAcctPrivs(ACCOUNT_SID);
+    }
+
+    @Test
+    public void getLookupAcctPrivsNone()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse openResponse = handleResponse("0000000000112233445566778899aabbccddeeff", 0);
+        final LsarLookupAcctPrivsRpcResponse lookupResponse = privsResponse(0xC0000034);
+
+        when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(openResponse);
+        when(transport.call(isA(LsarLookupAcctPrivsRpcRequest.class))).thenReturn(lookupResponse);
+
+        assertNull(new LocalSecurityAuthorityService(transport).getLookupAcctPrivs(ACCOUNT_SID));
+    }
+
+    @Test
+    public void getLookupAcctPrivsAccessDenied()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse openResponse = handleResponse("0000000000112233445566778899aabbccddeeff", 0);
+        final LsarLookupAcctPrivsRpcResponse lookupResponse = privsResponse(0xC0000022);
+
+        when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(openResponse);
+        when(transport.call(isA(LsarLookupAcctPrivsRpcRequest.class))).thenReturn(lookupResponse);
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("LsarEnumerateAccountRights returned error code: -1073741790");
+
+        new LocalSecurityAuthorityService(transport).getLookupAcctPrivs(ACCOUNT_SID);
+    }
+
+    @Test
+    public void getAuditPolicyAccessDenied()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse openResponse = handleResponse("0000000000112233445566778899aabbccddeeff", 0);
+        final PolicyAuditEventsInformationResponse queryResponse = new PolicyAuditEventsInformationResponse();
+        queryResponse.fromHexString("00000000220000c0");
+
+        when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(openResponse);
+        when(transport.call(isA(LsarQueryInformationPolicyRequest.class))).thenReturn(queryResponse);
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("LsarQueryInformationPolicy returned error code: -1073741790");
+
+        new LocalSecurityAuthorityService(transport).getAuditPolicy();
+    }
+
+    @Test
+    public void enumerateAccountsWithPrivilegeNone()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse openResponse = handleResponse("0000000000112233445566778899aabbccddeeff", 0);
+        final LsarLookupSidsWithAcctPrivRpcResponse noMoreEntries = sidsResponse(0x8000001A);
+        final LsarLookupSidsWithAcctPrivRpcResponse noSuchPrivilege = sidsResponse(0xC0000060);
+
+        when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(openResponse);
+        when(transport.call(isA(LsarLookupSidsWithAcctPrivRpcRequest.class))).thenReturn(noMoreEntries,
+            noSuchPrivilege);
+
+        final LocalSecurityAuthorityService service = new LocalSecurityAuthorityService(transport);
+
+        assertNull(service.enumerateAccountsWithPrivilege("SeBackupPrivilege"));
+        assertNull(service.enumerateAccountsWithPrivilege("SeUnknownPrivilege"));
+    }
+
+    @Test
+    public void enumerateAccountsWithPrivilegeAccessDenied()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse openResponse = handleResponse("0000000000112233445566778899aabbccddeeff", 0);
+        final LsarLookupSidsWithAcctPrivRpcResponse enumResponse = sidsResponse(0xC0000022);
+
+        when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(openResponse);
+        when(transport.call(isA(LsarLookupSidsWithAcctPrivRpcRequest.class))).thenReturn(enumResponse);
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("LsarEnumerateAccountsWithUserRight returned error code: -1073741790");
+
+        new LocalSecurityAuthorityService(transport).enumerateAccountsWithPrivilege("SeBackupPrivilege");
+    }
+
+    @Test
+    public void getAccountPrivileges()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse openResponse = handleResponse("0000000000112233445566778899aabbccddeeff", 0);
+        final LsarLookupAcctPrivsRpcResponse firstResponse =
+            privsResponse(0, new String("SeBackupPrivilege"), new String("SeDebugPrivilege"));
+        final LsarLookupAcctPrivsRpcResponse notFoundResponse = privsResponse(0xC0000034);
+        final LsarLookupAcctPrivsRpcResponse lastResponse = privsResponse(0, new String("SeBackupPrivilege"));
+
+        when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(openResponse);
+        when(transport.call(isA(LsarLookupAcctPrivsRpcRequest.class)))
+            .thenReturn(firstResponse, notFoundResponse, lastResponse);
+
+        final LocalSecurityAuthorityService service = new LocalSecurityAuthorityService(transport);
+        final Map<String, AccountPrivileges> results = service.getAccountPrivileges(
+            Arrays.asList(ACCOUNT_SID, "S-1-5-21-1-2-3-1001", ACCOUNT_SID, "S-1-5-32-551"));
+
+        assertEquals(Arrays.asList(ACCOUNT_SID, "S-1-5-21-1-2-3-1001", "S-1-5-32-551"),
+            new ArrayList<>(results.keySet()));
+        assertEquals(Arrays.asList("SeBackupPrivilege", "SeDebugPrivilege"),
+            results.get(ACCOUNT_SID).getPrivilegeNames());
+        final AccountPrivileges notFound = results.get("S-1-5-21-1-2-3-1001");
+        assertFalse(notFound.isSuccess());
+        assertTrue(notFound.isNotFound());
+        assertEquals(Collections.emptyList(), notFound.getPrivilegeNames());
+        assertSame(results.get(ACCOUNT_SID).getPrivilegeNames().get(0),
+            results.get("S-1-5-32-551").getPrivilegeNames().get(0));
+
+        verify(transport, times(1)).call(isA(LsarOpenPolicy2Request.class));
+        verify(transport, times(3)).call(isA(LsarLookupAcctPrivsRpcRequest.class));
+    }
+
+    @Test
+    public void getAccountPrivilegesInvalidSids()
+        throws IOException {
+        final LocalSecurityAuthorityService service = new LocalSecurityAuthorityService(mock(RPCTransport.class));
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("SIDs are invalid: [null]");
+
+        service.getAccountPrivileges(Collections.<String> singletonList(null));
+    }
+
+    @Test
+    public void lookupSidsWellKnown()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final LocalSecurityAuthorityService service = new LocalSecurityAuthorityService(transport);
+
+        final Map<SID, AccountName> results =
+            service.lookupSids(Arrays.asList(SID.fromString("S-1-5-18"), SID.fromString("S-1-5-32-544")));
+
+        assertEquals("NT AUTHORITY\\SYSTEM", results.get(SID.fromString("S-1-5-18")).getFullName());
+        assertEquals("BUILTIN\\Administrators", results.get(SID.fromString("S-1-5-32-544")).getFullName());
+        verifyZeroInteractions(transport);
+    }
+
+    @Test
+    public void lookupSidsSharedCache()
+        throws IOException {
+        final SID domainSid = SID.fromString("S-1-5-21-3623811015-1-2");
+        final SID administrator = SID.fromString("S-1-5-21-3623811015-1-2-500");
+        final SID unknown = SID.fromString("S-1-5-21-3623811015-1-2-1001");
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse openResponse = handleResponse("0000000000112233445566778899aabbccddeeff", 0);
+        final LsarLookupSids2Response lookupResponse = mock(LsarLookupSids2Response.class);
+        when(lookupResponse.getDomainNames()).thenReturn(new String[] {new String("CORP")});
+        when(lookupResponse.getDomainSids()).thenReturn(new SID[] {domainSid});
+        when(lookupResponse.getUses()).thenReturn(new int[] {1, 8});
+        when(lookupResponse.getNames()).thenReturn(new String[] {"Administrator", null});
+        when(lookupResponse.getDomainIndexes()).thenReturn(new int[] {0, -1});
+        when(lookupResponse.getReturnValue()).thenReturn(0x107);
+        when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(openResponse);
+        when(transport.call(isA(LsarLookupSids2Request.class))).thenReturn(lookupResponse);
+        final SidNameCache cache = new SidNameCache(1, TimeUnit.HOURS, 1000);
+
+        final Map<SID, AccountName> results = new LocalSecurityAuthorityService(transport, cache)
+            .lookupSids(Arrays.asList(administrator, SID.fromString("S-1-1-0"), unknown, administrator));
+
+        assertEquals(Arrays.asList(administrator, SID.fromString("S-1-1-0"), unknown),
+            new ArrayList<>(results.keySet()));
+        assertEquals("CORP\\Administrator", results.get(administrator).getFullName());
+        assertEquals(SidNameUse.SID_TYPE_USER, results.get(administrator).getUse());
+        assertEquals("Everyone", results.get(SID.fromString("S-1-1-0")).getFullName());
+        assertFalse(results.get(unknown).isMapped());
+        assertNull(results.get(unknown).getName());
+
+        // A service connected to another host of the domain is answered from the cache.
+        final RPCTransport otherTransport = mock(RPCTransport.class);
+        final Map<SID, AccountName> otherResults = new LocalSecurityAuthorityService(otherTransport, cache)
+            .lookupSids(Arrays.asList(administrator, domainSid));
+
+        assertSame(results.get(administrator), otherResults.get(administrator));
+        assertEquals(SidNameUse.SID_TYPE_DOMAIN, otherResults.get(domainSid).getUse());
+        assertSame(results.get(administrator).getDomainName(), otherResults.get(domainSid).getDomainName());
+        verifyZeroInteractions(otherTransport);
+        verify(transport, times(1)).call(isA(LsarLookupSids2Request.class));
+    }
+
+    @Test
+    public void lookupSidsAccessDenied()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse openResponse = handleResponse("0000000000112233445566778899aabbccddeeff", 0);
+        final LsarLookupSids2Response lookupResponse = mock(LsarLookupSids2Response.class);
+        when(lookupResponse.getReturnValue()).thenReturn(0xC0000022);
+        when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(openResponse);
+        when(transport.call(isA(LsarLookupSids2Request.class))).thenReturn(lookupResponse);
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("LsarLookupSids2 returned error code: -1073741790");
+
+        new LocalSecurityAuthorityService(transport).lookupSids(
+            Collections.singletonList(SID.fromString("S-1-5-21-1-2-3-500")));
+    }
+
+    @Test
+    public void lookupNamesChunked()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse openResponse = handleResponse("0000000000112233445566778899aabbccddeeff", 0);
+        final LsarLookupNames3Response firstResponse = namesResponse(LsarLookupNames3Request.MAX_NAMES);
+        final LsarLookupNames3Response secondResponse = namesResponse(1);
+        when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(openResponse);
+        when(transport.call(isA(LsarLookupNames3Request.class))).thenReturn(firstResponse, secondResponse);
+        final List<String> names = new ArrayList<>();
+        names.add("NT AUTHORITY\\SYSTEM");
+        for (int i = 0; i <= LsarLookupNames3Request.MAX_NAMES; i++) {
+            names.add("CORP\\user" + i);
+        }
+
+        final Map<String, AccountName> results = new LocalSecurityAuthorityService(transport).lookupNames(names);
+
+        assertEquals(names, new ArrayList<>(results.keySet()));
+        assertEquals(SID.fromString("S-1-5-18"), results.get("NT AUTHORITY\\SYSTEM").getSid());
+        final AccountName lastUser = results.get("CORP\\user" + LsarLookupNames3Request.MAX_NAMES);
+        assertEquals(SID.fromString("S-1-5-21-1-2-3-1000"), lastUser.getSid());
+        assertEquals("CORP\\user" + LsarLookupNames3Request.MAX_NAMES, lastUser.getFullName());
+        verify(transport, times(2)).call(isA(LsarLookupNames3Request.class));
+    }
+
+    @Test
+    public void getPolicyHandleOpenFails()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse openResponse = handleResponse("0000000000000000000000000000000000000000", 0xC0000022);
+
+        when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(openResponse);
+
+        final LocalSecurityAuthorityService service = new LocalSecurityAuthorityService(transport);
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("LsarOpenPolicy2 returned error code: -1073741790");
+
+        service.getPolicyHandle(EnumSet.of(AccessMask.MAXIMUM_ALLOWED));
+    }
+
+    @Test
+    public void getPolicyHandleInvalidAccess()
+        throws IOException {
+        final LocalSecurityAuthorityService service = new LocalSecurityAuthorityService(mock(RPCTransport.class));
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Desired access is invalid: []");
+
+        service.getPolicyHandle(EnumSet.noneOf(AccessMask.class));
+    }
+
+    @Test
+    public void closeClosesCachedHandles()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse readResponse = handleResponse("0000000000112233445566778899aabbccddeeff", 0);
+        final HandleResponse maximumResponse = handleResponse("00000000ffeeddccbbaa99887766554433221100", 0);
+
+        when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(readResponse, maximumResponse);
+        when(transport.call(isA(LsarClosePolicyRpcRequest.class))).thenReturn(new LsarClosePolicyRpcResponse());
+
+        final LocalSecurityAuthorityService service = new LocalSecurityAuthorityService(transport);
+
+        service.getPolicyHandle(EnumSet.of(AccessMask.GENERIC_READ));
+        service.getPolicyHandle(EnumSet.of(AccessMask.MAXIMUM_ALLOWED));
+        service.close();
+        service.close();
+
+        verify(transport, times(2)).call(isA(LsarClosePolicyRpcRequest.class));
+    }
+
+    static HandleResponse handleResponse(final String handle, final int returnValue)
+        throws IOException {
+        final HandleResponse response = new HandleResponse();
+        response.fromHexString(handle + String.format("%08x", Integer.reverseBytes(returnValue)));
+        return response;
+    }
+
+    static LsarLookupAcctPrivsRpcResponse privsResponse(final int returnValue, final String... privNames) {
+        final LsarLookupAcctPrivsRpcResponse response = mock(LsarLookupAcctPrivsRpcResponse.class);
+        when(response.getReturnValue()).thenReturn(returnValue);
+        when(response.getPrivNames()).thenReturn(privNames.length == 0 ? null : privNames);
+        return response;
+    }
+
+    private static LsarLookupSidsWithAcctPrivRpcResponse sidsResponse(final int returnValue) {
+        final LsarLookupSidsWithAcctPrivRpcResponse response = mock(LsarLookupSidsWithAcctPrivRpcResponse.class);
+        when(response.getReturnValue()).thenReturn(returnValue);
+        return response;
+    }
+
+    private static LsarLookupNames3Response namesResponse(final int count) {
+        final int[] uses = new int[count];
+        final SID[] sids = new SID[count];
+        final int[] domainIndexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            uses[i] = SidNameUse.SID_TYPE_USER.getValue();
+            sids[i] = SID.fromString("S-1-5-21-1-2-3-" + (1000 + i));
+        }
+        final LsarLookupNames3Response response = mock(LsarLookupNames3Response.class);
+        when(response.getDomainNames()).thenReturn(new String[] {"CORP"});
+        when(response.getDomainSids()).thenReturn(new SID[] {SID.fromString("S-1-5-21-1-2-3")});
+        when(response.getUses()).thenReturn(uses);
+        when(response.getSids()).thenReturn(sids);
+        when(response.getDomainIndexes()).thenReturn(domainIndexes);
+        return response;
+    }
+}
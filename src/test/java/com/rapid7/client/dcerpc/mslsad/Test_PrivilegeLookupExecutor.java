@@ -0,0 +1,166 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad;
+
+import static com.rapid7.client.dcerpc.mslsad.Test_LocalSecurityAuthorityService.handleResponse;
+import static com.rapid7.client.dcerpc.mslsad.Test_LocalSecurityAuthorityService.privsResponse;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import com.hierynomus.msdtyp.SID;
+import com.rapid7.client.dcerpc.RPCException;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupAcctPrivsRpcRequest;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupAcctPrivsRpcResponse;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupSidsWithAcctPrivRpcRequest;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarLookupSidsWithAcctPrivRpcResponse;
+import com.rapid7.client.dcerpc.mslsad.messages.LsarOpenPolicy2Request;
+import com.rapid7.client.dcerpc.msrrp.messages.HandleResponse;
+import com.rapid7.client.dcerpc.transport.RPCTransport;
+
+public class Test_PrivilegeLookupExecutor {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void getAccountPrivileges()
+        throws IOException {
+        final List<LocalSecurityAuthorityService> services = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final RPCTransport transport = mock(RPCTransport.class);
+            final HandleResponse openResponse = handleResponse("0000000000112233445566778899aabbccddeeff", 0);
+            final LsarLookupAcctPrivsRpcResponse lookupResponse = privsResponse(0, "SeBackupPrivilege");
+            when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(openResponse);
+            when(transport.call(isA(LsarLookupAcctPrivsRpcRequest.class))).thenReturn(lookupResponse);
+            services.add(new LocalSecurityAuthorityService(transport));
+        }
+        final List<String> sids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            sids.add("S-1-5-21-1-2-3-" + (1000 + i));
+        }
+
+        final Map<String, AccountPrivileges> results =
+            new PrivilegeLookupExecutor(services).getAccountPrivileges(sids);
+
+        assertEquals(sids, new ArrayList<>(results.keySet()));
+        for (final String sid : sids) {
+            assertEquals(sid, results.get(sid).getSid());
+            assertEquals(Collections.singletonList("SeBackupPrivilege"), results.get(sid).getPrivilegeNames());
+        }
+    }
+
+    @Test
+    public void getAccountPrivilegesPipeFails()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        when(transport.call(isA(LsarOpenPolicy2Request.class))).thenThrow(new IOException("Pipe closed"));
+        final LocalSecurityAuthorityService service = new LocalSecurityAuthorityService(transport);
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Pipe closed");
+
+        new PrivilegeLookupExecutor(Arrays.asList(service, service)).getAccountPrivileges(
+            Arrays.asList("S-1-5-32-544", "S-1-5-32-545"));
+    }
+
+    @Test
+    public void getPrivilegeMatrix()
+        throws IOException {
+        final List<LocalSecurityAuthorityService> services = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            final RPCTransport transport = mock(RPCTransport.class);
+            final HandleResponse openResponse = handleResponse("0000000000112233445566778899aabbccddeeff", 0);
+            final LsarLookupSidsWithAcctPrivRpcResponse lookupResponse =
+                sidsResponse(0, SID.fromString("S-1-5-32-544"), SID.fromString("S-1-5-32-551"));
+            when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(openResponse);
+            when(transport.call(isA(LsarLookupSidsWithAcctPrivRpcRequest.class))).thenReturn(lookupResponse);
+            services.add(new LocalSecurityAuthorityService(transport));
+        }
+
+        final PrivilegeMatrix matrix = new PrivilegeLookupExecutor(services).getPrivilegeMatrix();
+
+        assertEquals(PrivilegeMatrix.USER_RIGHTS, matrix.getUserRights());
+        assertEquals(Arrays.asList(SID.fromString("S-1-5-32-544"), SID.fromString("S-1-5-32-551")),
+            matrix.getSids());
+        assertEquals(PrivilegeMatrix.USER_RIGHTS, matrix.getUserRights(SID.fromString("S-1-5-32-551")));
+    }
+
+    @Test
+    public void getPrivilegeMatrixNoAccounts()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse openResponse = handleResponse("0000000000112233445566778899aabbccddeeff", 0);
+        final LsarLookupSidsWithAcctPrivRpcResponse backupResponse = sidsResponse(0, SID.fromString("S-1-5-32-551"));
+        final LsarLookupSidsWithAcctPrivRpcResponse noMoreEntriesResponse = sidsResponse(0x8000001A);
+        final LsarLookupSidsWithAcctPrivRpcResponse noSuchPrivilegeResponse = sidsResponse(0xC0000060);
+        when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(openResponse);
+        when(transport.call(isA(LsarLookupSidsWithAcctPrivRpcRequest.class)))
+            .thenReturn(backupResponse, noMoreEntriesResponse, noSuchPrivilegeResponse);
+        final LocalSecurityAuthorityService service = new LocalSecurityAuthorityService(transport);
+
+        final PrivilegeMatrix matrix = new PrivilegeLookupExecutor(Collections.singletonList(service))
+            .getPrivilegeMatrix(Arrays.asList("SeBackupPrivilege", "SeDebugPrivilege", "SeBackupPrivilege",
+                "SeUnknownPrivilege"));
+
+        assertEquals(Arrays.asList("SeBackupPrivilege", "SeDebugPrivilege", "SeUnknownPrivilege"),
+            matrix.getUserRights());
+        assertEquals(Collections.singletonList(SID.fromString("S-1-5-32-551")), matrix.getSids());
+        assertEquals(Collections.emptyList(), matrix.getAccounts("SeDebugPrivilege"));
+    }
+
+    @Test
+    public void getPrivilegeMatrixAccessDenied()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse openResponse = handleResponse("0000000000112233445566778899aabbccddeeff", 0);
+        final LsarLookupSidsWithAcctPrivRpcResponse deniedResponse = sidsResponse(0xC0000022);
+        when(transport.call(isA(LsarOpenPolicy2Request.class))).thenReturn(openResponse);
+        when(transport.call(isA(LsarLookupSidsWithAcctPrivRpcRequest.class))).thenReturn(deniedResponse);
+        final LocalSecurityAuthorityService service = new LocalSecurityAuthorityService(transport);
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("LsarEnumerateAccountsWithUserRight returned error code: -1073741790");
+
+        service.getPrivilegeMatrix();
+    }
+
+    @Test
+    public void invalidServices() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Local security authority services are invalid: []");
+
+        new PrivilegeLookupExecutor(Collections.<LocalSecurityAuthorityService> emptyList());
+    }
+
+    private static LsarLookupSidsWithAcctPrivRpcResponse sidsResponse(final int returnValue, final SID... sids) {
+        final LsarLookupSidsWithAcctPrivRpcResponse response = mock(LsarLookupSidsWithAcctPrivRpcResponse.class);
+        when(response.getReturnValue()).thenReturn(returnValue);
+        when(response.getSids()).thenReturn(sids.length == 0 ? null : sids);
+        return response;
+    }
+}
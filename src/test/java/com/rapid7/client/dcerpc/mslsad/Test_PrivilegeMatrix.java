@@ -0,0 +1,75 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import org.junit.Test;
+import com.hierynomus.msdtyp.SID;
+
+public class Test_PrivilegeMatrix {
+    private final static SID ADMINISTRATORS = SID.fromString("S-1-5-32-544");
+    private final static SID BACKUP_OPERATORS = SID.fromString("S-1-5-32-551");
+    private final static SID EVERYONE = SID.fromString("S-1-1-0");
+
+    @Test
+    public void matrix() {
+        final PrivilegeMatrix matrix = new PrivilegeMatrix(
+            Arrays.asList("SeBackupPrivilege", "SeDebugPrivilege", "SeNetworkLogonRight"),
+            Arrays.asList(new SID[] {ADMINISTRATORS, BACKUP_OPERATORS}, new SID[] {SID.fromString("S-1-5-32-544")},
+                new SID[] {EVERYONE, ADMINISTRATORS}));
+
+        assertEquals(Arrays.asList(ADMINISTRATORS, BACKUP_OPERATORS, EVERYONE), matrix.getSids());
+        assertEquals(Arrays.asList("SeBackupPrivilege", "SeDebugPrivilege", "SeNetworkLogonRight"),
+            matrix.getUserRights(ADMINISTRATORS));
+        assertEquals(Collections.singletonList("SeBackupPrivilege"), matrix.getUserRights(BACKUP_OPERATORS));
+
+        final BitSet bits = new BitSet();
+        bits.set(0, 3);
+        assertEquals(bits, matrix.getUserRightBits(ADMINISTRATORS));
+        assertTrue(matrix.hasUserRight(EVERYONE, "SeNetworkLogonRight"));
+        assertFalse(matrix.hasUserRight(EVERYONE, "SeBackupPrivilege"));
+        assertFalse(matrix.hasUserRight(EVERYONE, "SeUnknownPrivilege"));
+        assertEquals(Arrays.asList(ADMINISTRATORS, EVERYONE), matrix.getAccounts("SeNetworkLogonRight"));
+        assertEquals(Collections.emptyList(), matrix.getAccounts("SeUnknownPrivilege"));
+    }
+
+    @Test
+    public void matrixUnknownSid() {
+        final PrivilegeMatrix matrix = new PrivilegeMatrix(Collections.singletonList("SeBackupPrivilege"),
+            Collections.singletonList(new SID[] {ADMINISTRATORS}));
+
+        assertEquals(new BitSet(), matrix.getUserRightBits(EVERYONE));
+        assertEquals(Collections.emptyList(), matrix.getUserRights(EVERYONE));
+    }
+
+    @Test
+    public void userRightBitsIsCopy() {
+        final PrivilegeMatrix matrix = new PrivilegeMatrix(Collections.singletonList("SeBackupPrivilege"),
+            Collections.singletonList(new SID[] {ADMINISTRATORS}));
+
+        matrix.getUserRightBits(ADMINISTRATORS).clear();
+
+        assertTrue(matrix.hasUserRight(ADMINISTRATORS, "SeBackupPrivilege"));
+    }
+}
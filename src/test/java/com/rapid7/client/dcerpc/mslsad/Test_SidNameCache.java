@@ -0,0 +1,86 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import com.hierynomus.msdtyp.SID;
+import com.rapid7.client.dcerpc.mslsad.objects.SidNameUse;
+
+public class Test_SidNameCache {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private final SidNameCache cache = new SidNameCache(1, TimeUnit.HOURS, 10);
+
+    @Test
+    public void put() {
+        final AccountName accountName = new AccountName(SID.fromString("S-1-5-21-1-2-3-500"), "CORP", "Administrator",
+            SidNameUse.SID_TYPE_USER);
+
+        cache.put(accountName);
+
+        assertSame(accountName, cache.get(SID.fromString("S-1-5-21-1-2-3-500")));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void putUnmapped() {
+        cache.put(new AccountName(SID.fromString("S-1-5-21-1-2-3-1001"), null, null, SidNameUse.SID_TYPE_UNKNOWN));
+
+        assertNull(cache.get(SID.fromString("S-1-5-21-1-2-3-1001")));
+    }
+
+    @Test
+    public void putDomain() {
+        final String domainName = new String("CORP");
+
+        assertSame(domainName, cache.putDomain(SID.fromString("S-1-5-21-1-2-3"), domainName));
+        assertSame(domainName, cache.putDomain(SID.fromString("S-1-5-21-1-2-3"), new String("CORP")));
+        assertEquals("CORP2", cache.putDomain(SID.fromString("S-1-5-21-1-2-3"), "CORP2"));
+
+        final AccountName domain = cache.get(SID.fromString("S-1-5-21-1-2-3"));
+        assertEquals("CORP2", domain.getFullName());
+        assertEquals(SidNameUse.SID_TYPE_DOMAIN, domain.getUse());
+
+        cache.invalidateAll();
+        assertNull(cache.get(SID.fromString("S-1-5-21-1-2-3")));
+    }
+
+    @Test
+    public void invalidTimeToLive() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Time to live is invalid: 0");
+
+        new SidNameCache(0, TimeUnit.HOURS, 10);
+    }
+
+    @Test
+    public void invalidMaximumSize() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Maximum size is invalid: 0");
+
+        new SidNameCache(1, TimeUnit.HOURS, 0);
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+import com.hierynomus.msdtyp.SID;
+import com.rapid7.client.dcerpc.mslsad.objects.SidNameUse;
+
+public class Test_WellKnownSids {
+    @Test
+    public void getAccountNameBySid() {
+        final AccountName administrators = WellKnownSids.getAccountName(SID.fromString("S-1-5-32-544"));
+
+        assertEquals("BUILTIN", administrators.getDomainName());
+        assertEquals("Administrators", administrators.getName());
+        assertEquals(SidNameUse.SID_TYPE_ALIAS, administrators.getUse());
+        assertEquals("BUILTIN", WellKnownSids.getAccountName(SID.fromString("S-1-5-32")).getFullName());
+        assertNull(WellKnownSids.getAccountName(SID.fromString("S-1-5-21-1-2-3-500")));
+    }
+
+    @Test
+    public void getAccountNameByName() {
+        final AccountName system = WellKnownSids.getAccountName(SID.fromString("S-1-5-18"));
+
+        assertSame(system, WellKnownSids.getAccountName("NT AUTHORITY\\SYSTEM"));
+        assertSame(system, WellKnownSids.getAccountName("system"));
+        assertEquals(SID.fromString("S-1-1-0"), WellKnownSids.getAccountName("everyone").getSid());
+        assertNull(WellKnownSids.getAccountName("CORP\\Administrator"));
+        assertNull(WellKnownSids.getAccountName((String) null));
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad.messages;
+
+import static org.bouncycastle.util.encoders.Hex.toHexString;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import com.hierynomus.msdtyp.SID;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+public class Test_LsarLookupNames3 {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private final LsarLookupNames3Request request = new LsarLookupNames3Request(
+        new ContextHandle("0000000000112233445566778899aabbccddeeff"), new String[] {"CORP\\alice", "bob"});
+
+    @Test
+    public void getOpNum() {
+        assertEquals(68, request.getOpNum());
+    }
+
+    @Test
+    public void getStub()
+        throws IOException {
+        assertEquals(
+            "0000000000112233445566778899aabbccddeeff0200000002000000140014000000020006000600040002000a000000000000000a00000043004f00520050005c0061006c0069006300650003000000000000000300000062006f0062000000000000000000000001000000000000000000000001000000",
+            toHexString(request.getStub()));
+    }
+
+    @Test
+    public void tooManyNames() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Names are invalid: 1001");
+
+        new LsarLookupNames3Request(new ContextHandle(), new String[LsarLookupNames3Request.MAX_NAMES + 1]);
+    }
+
+    @Test
+    public void unmarshal()
+        throws IOException {
+        final LsarLookupNames3Response response = request.getResponseObject();
+        response.fromHexString(
+            "000002000100000004000200200000000100000008000a00080002000c00020004000000000000000400000043004f005200500004000000010400000000000515000000c7f7fed70100000002000000020000001000020002000000010000001400020000000000000000000800000000000000ffffffff0000000005000000010500000000000515000000c7f7fed70100000002000000f40100000100000007010000");
+
+        assertArrayEquals(new String[] {"CORP"}, response.getDomainNames());
+        assertArrayEquals(new SID[] {SID.fromString("S-1-5-21-3623811015-1-2")}, response.getDomainSids());
+        assertArrayEquals(new int[] {1, 8}, response.getUses());
+        assertArrayEquals(new SID[] {SID.fromString("S-1-5-21-3623811015-1-2-500"), null}, response.getSids());
+        assertArrayEquals(new int[] {0, -1}, response.getDomainIndexes());
+        assertEquals(1, response.getMappedCount());
+        assertEquals(0x107, response.getReturnValue());
+    }
+}
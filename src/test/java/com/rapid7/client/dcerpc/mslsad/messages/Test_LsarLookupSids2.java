@@ -0,0 +1,98 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mslsad.messages;
+
+import static org.bouncycastle.util.encoders.Hex.toHexString;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import com.hierynomus.msdtyp.SID;
+import com.hierynomus.protocol.transport.TransportException;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+public class Test_LsarLookupSids2 {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private final LsarLookupSids2Request request =
+        new LsarLookupSids2Request(new ContextHandle("0000000000112233445566778899aabbccddeeff"),
+            new SID[] {SID.fromString("S-1-5-21-3623811015-1-2-500"), SID.fromString("S-1-5-32-544")});
+
+    @Test
+    public void getOpNum() {
+        assertEquals(57, request.getOpNum());
+    }
+
+    @Test
+    public void getStub()
+        throws IOException {
+        assertEquals(
+            "0000000000112233445566778899aabbccddeeff020000000000020002000000040002000800020005000000010500000000000515000000c7f7fed70100000002000000f40100000200000001020000000000052000000020020000000000000000000001000000000000000000000001000000",
+            toHexString(request.getStub()));
+    }
+
+    @Test
+    public void tooManySids() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("SIDs are invalid: 20481");
+
+        new LsarLookupSids2Request(new ContextHandle(), new SID[LsarLookupSids2Request.MAX_SIDS + 1]);
+    }
+
+    @Test
+    public void unmarshal()
+        throws IOException {
+        final LsarLookupSids2Response response = request.getResponseObject();
+        response.fromHexString(
+            "000002000100000004000200200000000100000008000a00080002000c00020004000000000000000400000043004f005200500004000000010400000000000515000000c7f7fed70100000002000000020000001000020002000000010000001a001a00140002000000000000000000080000000000000000000000ffffffff000000000d000000000000000d000000410064006d0069006e006900730074007200610074006f00720000000100000007010000");
+
+        assertArrayEquals(new String[] {"CORP"}, response.getDomainNames());
+        assertArrayEquals(new SID[] {SID.fromString("S-1-5-21-3623811015-1-2")}, response.getDomainSids());
+        assertArrayEquals(new int[] {1, 8}, response.getUses());
+        assertArrayEquals(new String[] {"Administrator", null}, response.getNames());
+        assertArrayEquals(new int[] {0, -1}, response.getDomainIndexes());
+        assertEquals(1, response.getMappedCount());
+        assertEquals(0x107, response.getReturnValue());
+    }
+
+    @Test
+    public void unmarshalNoneMapped()
+        throws IOException {
+        final LsarLookupSids2Response response = request.getResponseObject();
+        response.fromHexString("00000000000000000000000000000000730000c0");
+
+        assertEquals(0, response.getDomainNames().length);
+        assertEquals(0, response.getUses().length);
+        assertEquals(0, response.getMappedCount());
+        assertEquals(0xC0000073, response.getReturnValue());
+    }
+
+    @Test
+    public void unmarshalCountExceedsStub()
+        throws IOException {
+        thrown.expect(TransportException.class);
+        thrown.expectMessage("Invalid entry count: 2147483647");
+
+        final LsarLookupSids2Response response = request.getResponseObject();
+        response.fromHexString("00000000ffffff7f00000200ffffff7f0000000000000000");
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class Test_RegistryChange {
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorNullType() {
+        new RegistryChange(null, "key", null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorNullKeyPath() {
+        new RegistryChange(RegistryChange.Type.ADDED, null, null);
+    }
+
+    @Test
+    public void getters() {
+        final RegistryChange change = new RegistryChange(RegistryChange.Type.CHANGED, "key", "value");
+        assertEquals(RegistryChange.Type.CHANGED, change.getType());
+        assertEquals("key", change.getKeyPath());
+        assertEquals("value", change.getValueName());
+        assertNull(new RegistryChange(RegistryChange.Type.CHANGED, "key", null).getValueName());
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals("ADDED key", new RegistryChange(RegistryChange.Type.ADDED, "key", null).toString());
+        assertEquals("REMOVED key {value=value}",
+            new RegistryChange(RegistryChange.Type.REMOVED, "key", "value").toString());
+    }
+
+    @Test
+    public void testEquals() {
+        final RegistryChange change1 = new RegistryChange(RegistryChange.Type.ADDED, "key", "value");
+        final RegistryChange change2 = new RegistryChange(RegistryChange.Type.ADDED, "key", "value");
+        final RegistryChange change3 = new RegistryChange(RegistryChange.Type.REMOVED, "key", "value");
+        final RegistryChange change4 = new RegistryChange(RegistryChange.Type.ADDED, "key", null);
+
+        assertEquals(change1, change2);
+        assertEquals(change1.hashCode(), change2.hashCode());
+        assertNotEquals(change1, change3);
+        assertNotEquals(change1, change4);
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_ACCESS_DENIED;
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_KEY_DELETED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import org.mockito.InOrder;
+import com.rapid7.client.dcerpc.RPCException;
+import com.rapid7.client.dcerpc.objects.FileTime;
+
+public class Test_RegistryDiffScanner {
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorNullRegistryService() {
+        new RegistryDiffScanner(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void scanNullSnapshot()
+        throws IOException {
+        new RegistryDiffScanner(mock(RegistryService.class)).scan("HKLM", "Software", null);
+    }
+
+    @Test
+    public void scan()
+        throws IOException {
+        final RegistryService registryService = mock(RegistryService.class);
+        final RegistryDiffScanner scanner = new RegistryDiffScanner(registryService);
+
+        when(registryService.getKeyInfo("HKLM", "Software")).thenReturn(keyInfo(1l, 2)).thenReturn(keyInfo(2l, 2));
+        when(registryService.getValues("HKLM", "Software"))
+            .thenReturn(Arrays.asList(value("v1", 1), value("v2", 2)))
+            .thenReturn(Arrays.asList(value("v1", 1), value("v2", 3), value("v3", 4)));
+        when(registryService.getSubKeys("HKLM", "Software")).thenReturn(Arrays.asList(key("A"), key("B")))
+            .thenReturn(Arrays.asList(key("a"), key("C")));
+        when(registryService.getKeyInfo("HKLM", "Software\\A")).thenReturn(keyInfo(1l, 0));
+        when(registryService.getValues("HKLM", "Software\\A")).thenReturn(Arrays.asList(value("x", 1)));
+        when(registryService.getSubKeys("HKLM", "Software\\A")).thenReturn(Collections.<RegistryKey>emptyList());
+        when(registryService.getKeyInfo("HKLM", "Software\\a")).thenReturn(keyInfo(1l, 0));
+        when(registryService.getKeyInfo("HKLM", "Software\\B")).thenReturn(keyInfo(1l, 0));
+        when(registryService.getValues("HKLM", "Software\\B")).thenReturn(Collections.<RegistryValue>emptyList());
+        when(registryService.getSubKeys("HKLM", "Software\\B")).thenReturn(Collections.<RegistryKey>emptyList());
+        when(registryService.getKeyInfo("HKLM", "Software\\C")).thenReturn(keyInfo(2l, 0));
+        when(registryService.getValues("HKLM", "Software\\C")).thenReturn(Collections.<RegistryValue>emptyList());
+        when(registryService.getSubKeys("HKLM", "Software\\C")).thenReturn(Collections.<RegistryKey>emptyList());
+
+        final RegistryDiff fullDiff = scanner.scan("HKLM", "Software\\", new RegistrySnapshot());
+
+        assertEquals(Arrays.asList(added("Software", null), added("Software\\A", null), added("Software\\B", null)),
+            fullDiff.getKeyChanges());
+        assertEquals(Arrays.asList(added("Software", "v1"), added("Software", "v2"), added("Software\\A", "x")),
+            fullDiff.getValueChanges());
+        assertEquals(3, fullDiff.getSnapshot().size());
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        fullDiff.getSnapshot().write(outputStream);
+        final RegistrySnapshot previous = RegistrySnapshot.read(new ByteArrayInputStream(outputStream.toByteArray()));
+
+        final RegistryDiff diff = scanner.scan("HKLM", "Software", previous);
+
+        assertEquals(Arrays.asList(new RegistryChange(RegistryChange.Type.CHANGED, "Software", null),
+            new RegistryChange(RegistryChange.Type.REMOVED, "Software\\B", null), added("Software\\C", null)),
+            diff.getKeyChanges());
+        assertEquals(Arrays.asList(new RegistryChange(RegistryChange.Type.CHANGED, "Software", "v2"),
+            added("Software", "v3")), diff.getValueChanges());
+        assertEquals(3, diff.getSnapshot().size());
+        assertTrue(diff.getSnapshot().containsKey("Software\\A"));
+
+        // The unchanged key is only checked with BaseRegQueryInfoKey on the second scan.
+        verify(registryService, times(1)).getValues("HKLM", "Software\\A");
+        verify(registryService, never()).getValues("HKLM", "Software\\a");
+        verify(registryService, never()).getSubKeys("HKLM", "Software\\a");
+    }
+
+    @Test
+    public void scanBelowUnchangedKeys()
+        throws IOException {
+        final RegistryService registryService = mock(RegistryService.class);
+        final RegistryDiffScanner scanner = new RegistryDiffScanner(registryService);
+
+        when(registryService.getKeyInfo("HKLM", "Software")).thenReturn(keyInfo(1l, 1));
+        when(registryService.getValues("HKLM", "Software")).thenReturn(Collections.<RegistryValue>emptyList());
+        when(registryService.getSubKeys("HKLM", "Software")).thenReturn(Arrays.asList(key("A")));
+        when(registryService.getKeyInfo("HKLM", "Software\\A")).thenReturn(keyInfo(1l, 1));
+        when(registryService.getValues("HKLM", "Software\\A")).thenReturn(Collections.<RegistryValue>emptyList());
+        when(registryService.getSubKeys("HKLM", "Software\\A")).thenReturn(Arrays.asList(key("B")));
+        when(registryService.getKeyInfo("HKLM", "Software\\A\\B")).thenReturn(keyInfo(1l, 0))
+            .thenReturn(keyInfo(2l, 0));
+        when(registryService.getValues("HKLM", "Software\\A\\B")).thenReturn(Arrays.asList(value("v", 1)))
+            .thenReturn(Arrays.asList(value("v", 2)));
+        when(registryService.getSubKeys("HKLM", "Software\\A\\B")).thenReturn(Collections.<RegistryKey>emptyList());
+
+        final RegistrySnapshot previous = scanner.scan("HKLM", "Software", new RegistrySnapshot()).getSnapshot();
+        final RegistryDiff diff = scanner.scan("HKLM", "Software", previous);
+
+        assertEquals(Arrays.asList(new RegistryChange(RegistryChange.Type.CHANGED, "Software\\A\\B", null)),
+            diff.getKeyChanges());
+        assertEquals(Arrays.asList(new RegistryChange(RegistryChange.Type.CHANGED, "Software\\A\\B", "v")),
+            diff.getValueChanges());
+        assertEquals(3, diff.getSnapshot().size());
+
+        // The unchanged keys are checked, but their values and subkeys are not read again.
+        verify(registryService, times(1)).getValues("HKLM", "Software");
+        verify(registryService, times(1)).getSubKeys("HKLM", "Software\\A");
+        verify(registryService, times(2)).getValues("HKLM", "Software\\A\\B");
+    }
+
+    @Test
+    public void scanWhenAccessDenied()
+        throws IOException {
+        final RegistryService registryService = mock(RegistryService.class);
+        final RegistryDiffScanner scanner = new RegistryDiffScanner(registryService);
+        final RegistrySnapshot previous = new RegistrySnapshot();
+        previous.putKey("Software",
+            new RegistrySnapshot.KeyEntry(1l, 0, Collections.<String, RegistrySnapshot.ValueEntry>emptyMap()));
+
+        when(registryService.getKeyInfo("HKLM", "Software"))
+            .thenThrow(new RPCException("BaseRegOpenKey", ERROR_ACCESS_DENIED.getErrorCode()));
+
+        final RegistryDiff diff = scanner.scan("HKLM", "Software", previous);
+
+        assertTrue(diff.isEmpty());
+        assertTrue(diff.getSnapshot().containsKey("Software"));
+    }
+
+    @Test
+    public void scanClosesKeys()
+        throws IOException {
+        final RegistryService registryService = mock(RegistryService.class);
+        final RegistryDiffScanner scanner = new RegistryDiffScanner(registryService);
+
+        when(registryService.getKeyInfo("HKLM", "Software")).thenReturn(keyInfo(1l, 3));
+        when(registryService.getValues("HKLM", "Software")).thenReturn(Collections.<RegistryValue>emptyList());
+        when(registryService.getSubKeys("HKLM", "Software")).thenReturn(Arrays.asList(key("A"), key("B"), key("C")));
+        when(registryService.getKeyInfo("HKLM", "Software\\A")).thenReturn(keyInfo(1l, 0));
+        when(registryService.getValues("HKLM", "Software\\A")).thenReturn(Collections.<RegistryValue>emptyList());
+        when(registryService.getSubKeys("HKLM", "Software\\A")).thenReturn(Collections.<RegistryKey>emptyList());
+        when(registryService.getKeyInfo("HKLM", "Software\\B"))
+            .thenThrow(new RPCException("BaseRegOpenKey", ERROR_ACCESS_DENIED.getErrorCode()));
+        when(registryService.getValues("HKLM", "Software\\C"))
+            .thenThrow(new RPCException("BaseRegEnumValue", ERROR_KEY_DELETED.getErrorCode()));
+        when(registryService.getKeyInfo("HKLM", "Software\\C")).thenReturn(keyInfo(1l, 0));
+
+        scanner.scan("HKLM", "Software", new RegistrySnapshot());
+
+        // Each key is closed once it is scanned, whether or not it could be read.
+        final InOrder inOrder = inOrder(registryService);
+        inOrder.verify(registryService).closeKey("HKLM", "Software");
+        inOrder.verify(registryService).getKeyInfo("HKLM", "Software\\A");
+        inOrder.verify(registryService).closeKey("HKLM", "Software\\A");
+        inOrder.verify(registryService).getKeyInfo("HKLM", "Software\\B");
+        inOrder.verify(registryService).closeKey("HKLM", "Software\\B");
+        inOrder.verify(registryService).getKeyInfo("HKLM", "Software\\C");
+        inOrder.verify(registryService).closeKey("HKLM", "Software\\C");
+    }
+
+    private static RegistryKeyInfo keyInfo(final long lastWriteTime, final int subKeys) {
+        return new RegistryKeyInfo(subKeys, 0, 0, 0, 0, 0, 0, lastWriteTime);
+    }
+
+    private static RegistryKey key(final String name) {
+        return new RegistryKey(name, new FileTime(116444736000000000l));
+    }
+
+    private static RegistryValue value(final String name, final int data)
+        throws IOException {
+        return new RegistryValue(name, RegistryValueType.REG_DWORD, new byte[] { (byte) data, 0x00, 0x00, 0x00 });
+    }
+
+    private static RegistryChange added(final String keyPath, final String valueName) {
+        return new RegistryChange(RegistryChange.Type.ADDED, keyPath, valueName);
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import com.hierynomus.smbj.session.Session;
+import com.hierynomus.smbj.share.DiskShare;
+
+public class Test_RegistryHiveExporter {
+    @Test
+    public void exportDeletesFileOnFailure()
+        throws IOException {
+        final RegistryService registryService = mock(RegistryService.class);
+        final Session session = mock(Session.class);
+        final DiskShare share = mock(DiskShare.class);
+        final IllegalStateException exception = new IllegalStateException("Tree connect failed");
+        when(session.connectShare(anyString())).thenThrow(exception).thenReturn(share);
+
+        try {
+            new RegistryHiveExporter(registryService, session).export("HKLM", "SAM", new ByteArrayOutputStream());
+            fail("Expected the export to fail");
+        } catch (final IllegalStateException e) {
+            assertEquals(exception, e);
+        }
+
+        // The file saved to ..\Temp is deleted through Temp on ADMIN$.
+        final ArgumentCaptor<String> serverPath = ArgumentCaptor.forClass(String.class);
+        final ArgumentCaptor<String> sharePath = ArgumentCaptor.forClass(String.class);
+        verify(registryService).saveKey(anyString(), anyString(), serverPath.capture());
+        verify(share).rm(sharePath.capture());
+        verify(share).close();
+        assertTrue(serverPath.getValue().startsWith("..\\Temp\\rrp-"));
+        assertEquals(serverPath.getValue().substring(3), sharePath.getValue());
+    }
+}
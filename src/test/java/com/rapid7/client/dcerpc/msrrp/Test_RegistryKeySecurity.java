@@ -0,0 +1,101 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import java.io.IOException;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.Test;
+import com.hierynomus.msdtyp.SID;
+import com.hierynomus.msdtyp.SecurityDescriptor;
+
+public class Test_RegistryKeySecurity {
+    // O:BAG:SYD:(A;;KA;;;SY)
+    private final static byte[] SECURITY_DESCRIPTOR = Hex.decode("010004801400000024000000000000003000000001020000"
+        + "000000052000000020020000010100000000000512000000" + "02001c000100000000001400"
+        + "3f000f00010100000000000512000000");
+
+    @Test
+    public void valueOf()
+        throws IOException {
+        final RegistryKeySecurity security = RegistryKeySecurity.valueOf(SECURITY_DESCRIPTOR);
+
+        assertEquals(SID.fromString("S-1-5-32-544"), security.getOwnerSid());
+        assertEquals(SID.fromString("S-1-5-18"), security.getGroupSid());
+        assertEquals(1, security.getDacl().getAces().size());
+        assertEquals(SID.fromString("S-1-5-18"), security.getDacl().getAces().get(0).getSid());
+        assertEquals(0xF003F, security.getDacl().getAces().get(0).getAccessMask());
+        assertNull(security.getSacl());
+        assertEquals(true, security.getControl().contains(SecurityDescriptor.Control.DP));
+        assertEquals(76, security.getSize());
+        assertArrayEquals(SECURITY_DESCRIPTOR, security.getBytes());
+    }
+
+    @Test
+    public void valueOfIsInterned()
+        throws IOException {
+        final RegistryKeySecurity security1 = RegistryKeySecurity.valueOf(SECURITY_DESCRIPTOR);
+        final RegistryKeySecurity security2 = RegistryKeySecurity.valueOf(SECURITY_DESCRIPTOR.clone());
+
+        assertSame(security1, security2);
+    }
+
+    @Test
+    public void valueOfIsCopied()
+        throws IOException {
+        final byte[] securityDescriptor = SECURITY_DESCRIPTOR.clone();
+        final RegistryKeySecurity security = RegistryKeySecurity.valueOf(securityDescriptor);
+
+        securityDescriptor[0] = 0;
+        security.getBytes()[0] = 0;
+
+        assertArrayEquals(SECURITY_DESCRIPTOR, security.getBytes());
+    }
+
+    @Test
+    public void equalsAndHashCode()
+        throws IOException {
+        final byte[] otherDescriptor = SECURITY_DESCRIPTOR.clone();
+        // Grant KEY_READ instead of KEY_ALL_ACCESS.
+        otherDescriptor[60] = 0x19;
+        otherDescriptor[62] = 0x02;
+        final RegistryKeySecurity security = RegistryKeySecurity.valueOf(SECURITY_DESCRIPTOR);
+        final RegistryKeySecurity other = RegistryKeySecurity.valueOf(otherDescriptor);
+
+        assertEquals(0x20019, other.getDacl().getAces().get(0).getAccessMask());
+        assertNotEquals(security, other);
+        assertEquals(security.hashCode(), RegistryKeySecurity.valueOf(SECURITY_DESCRIPTOR).hashCode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void valueOfNull()
+        throws IOException {
+        RegistryKeySecurity.valueOf(null);
+    }
+
+    @Test(expected = IOException.class)
+    public void valueOfMalformed()
+        throws IOException {
+        RegistryKeySecurity.valueOf(new byte[] { 0x01, 0x00, 0x04 });
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import static com.rapid7.client.dcerpc.msrrp.RegistryHive.HKEY_CURRENT_USER;
+import static com.rapid7.client.dcerpc.msrrp.RegistryHive.HKEY_LOCAL_MACHINE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class Test_RegistryNegativeCache {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void constructorInvalidTimeToLive() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Time to live is invalid: 0");
+
+        new RegistryNegativeCache(0, TimeUnit.SECONDS, 1024);
+    }
+
+    @Test
+    public void constructorNullUnit() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Unit is invalid: null");
+
+        new RegistryNegativeCache(1, null, 1024);
+    }
+
+    @Test
+    public void constructorInvalidMaximumSize() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Maximum size is invalid: 0");
+
+        new RegistryNegativeCache(1, TimeUnit.SECONDS, 0);
+    }
+
+    @Test
+    public void isKeyMissing() {
+        final RegistryNegativeCache cache = new RegistryNegativeCache(1, TimeUnit.HOURS, 1024);
+
+        cache.putMissingKey(HKEY_LOCAL_MACHINE, "software\\vendor\\product");
+
+        assertTrue(cache.isKeyMissing(HKEY_LOCAL_MACHINE, "software\\vendor\\product"));
+        assertTrue(cache.isKeyMissing(HKEY_LOCAL_MACHINE, "software\\vendor\\product\\1.0"));
+        assertFalse(cache.isKeyMissing(HKEY_LOCAL_MACHINE, "software\\vendor"));
+        assertFalse(cache.isKeyMissing(HKEY_LOCAL_MACHINE, "software\\vendor\\product2"));
+        assertFalse(cache.isKeyMissing(HKEY_LOCAL_MACHINE, "software\\vendor2\\product"));
+        assertFalse(cache.isKeyMissing(HKEY_CURRENT_USER, "software\\vendor\\product"));
+    }
+
+    @Test
+    public void isKeyMissingAtRoot() {
+        final RegistryNegativeCache cache = new RegistryNegativeCache(1, TimeUnit.HOURS, 1024);
+
+        cache.putMissingKey(HKEY_LOCAL_MACHINE, "vendor");
+
+        assertTrue(cache.isKeyMissing(HKEY_LOCAL_MACHINE, "vendor"));
+        assertTrue(cache.isKeyMissing(HKEY_LOCAL_MACHINE, "vendor\\product"));
+        assertFalse(cache.isKeyMissing(HKEY_LOCAL_MACHINE, "software\\vendor"));
+    }
+
+    @Test
+    public void isValueMissing() {
+        final RegistryNegativeCache cache = new RegistryNegativeCache(1, TimeUnit.HOURS, 1024);
+
+        cache.putMissingValue(HKEY_LOCAL_MACHINE, "software\\vendor", "Version", 1l);
+        cache.putMissingKey(HKEY_LOCAL_MACHINE, "software\\other");
+
+        assertTrue(cache.isValueMissing(HKEY_LOCAL_MACHINE, "software\\vendor", "version"));
+        assertTrue(cache.isValueMissing(HKEY_LOCAL_MACHINE, "software\\vendor", "VERSION"));
+        assertFalse(cache.isValueMissing(HKEY_LOCAL_MACHINE, "software\\vendor", "path"));
+        assertTrue(cache.isValueMissing(HKEY_LOCAL_MACHINE, "software\\other", "path"));
+        assertFalse(cache.isValueMissing(HKEY_LOCAL_MACHINE, "", "path"));
+    }
+
+    @Test
+    public void keyWritten() {
+        final RegistryNegativeCache cache = new RegistryNegativeCache(1, TimeUnit.HOURS, 1024);
+
+        cache.putMissingValue(HKEY_LOCAL_MACHINE, "software\\vendor", "version", 1l);
+        cache.putMissingValue(HKEY_LOCAL_MACHINE, "software\\vendor", "path", 1l);
+
+        cache.keyWritten(HKEY_LOCAL_MACHINE, "software\\vendor", 1l);
+        assertTrue(cache.isValueMissing(HKEY_LOCAL_MACHINE, "software\\vendor", "version"));
+
+        cache.keyWritten(HKEY_LOCAL_MACHINE, "software\\vendor", 2l);
+        assertFalse(cache.isValueMissing(HKEY_LOCAL_MACHINE, "software\\vendor", "version"));
+        assertFalse(cache.isValueMissing(HKEY_LOCAL_MACHINE, "software\\vendor", "path"));
+    }
+
+    @Test
+    public void keyWrittenWhenLastWriteTimeUnknown() {
+        final RegistryNegativeCache cache = new RegistryNegativeCache(1, TimeUnit.HOURS, 1024);
+
+        cache.putMissingKey(HKEY_LOCAL_MACHINE, "software\\vendor");
+        cache.keyWritten(HKEY_LOCAL_MACHINE, "software\\other", 1l);
+        assertTrue(cache.isKeyMissing(HKEY_LOCAL_MACHINE, "software\\vendor"));
+
+        cache.keyWritten(HKEY_LOCAL_MACHINE, "software", 1l);
+        assertFalse(cache.isKeyMissing(HKEY_LOCAL_MACHINE, "software\\vendor"));
+    }
+
+    @Test
+    public void putMissingValueWithNewerLastWriteTime() {
+        final RegistryNegativeCache cache = new RegistryNegativeCache(1, TimeUnit.HOURS, 1024);
+
+        cache.putMissingValue(HKEY_LOCAL_MACHINE, "key", "value1", 1l);
+        cache.putMissingValue(HKEY_LOCAL_MACHINE, "key", "value2", -1l);
+        cache.putMissingValue(HKEY_LOCAL_MACHINE, "key", "value3", 2l);
+
+        assertFalse(cache.isValueMissing(HKEY_LOCAL_MACHINE, "key", "value1"));
+        assertFalse(cache.isValueMissing(HKEY_LOCAL_MACHINE, "key", "value2"));
+        assertTrue(cache.isValueMissing(HKEY_LOCAL_MACHINE, "key", "value3"));
+    }
+
+    @Test
+    public void maximumSize() {
+        final RegistryNegativeCache cache = new RegistryNegativeCache(1, TimeUnit.HOURS, 2);
+
+        cache.putMissingKey(HKEY_LOCAL_MACHINE, "a\\key");
+        cache.putMissingKey(HKEY_LOCAL_MACHINE, "b\\key");
+        cache.putMissingKey(HKEY_LOCAL_MACHINE, "c\\key");
+
+        assertTrue(cache.size() <= 2);
+    }
+
+    @Test
+    public void invalidateAll() {
+        final RegistryNegativeCache cache = new RegistryNegativeCache(1, TimeUnit.HOURS, 1024);
+
+        cache.putMissingKey(HKEY_LOCAL_MACHINE, "software\\vendor");
+        assertEquals(1, cache.size());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertFalse(cache.isKeyMissing(HKEY_LOCAL_MACHINE, "software\\vendor"));
+    }
+
+    @Test
+    public void keyModified() {
+        final RegistryNegativeCache cache = new RegistryNegativeCache(1, TimeUnit.HOURS, 100);
+        cache.putMissingKey(HKEY_LOCAL_MACHINE, "software\\vendor");
+        cache.putMissingValue(HKEY_LOCAL_MACHINE, "software", "path", 1);
+        cache.putMissingKey(HKEY_LOCAL_MACHINE, "system\\select");
+
+        cache.keyModified(HKEY_LOCAL_MACHINE, "software\\vendor\\product");
+
+        assertFalse(cache.isKeyMissing(HKEY_LOCAL_MACHINE, "software\\vendor"));
+        assertFalse(cache.isValueMissing(HKEY_LOCAL_MACHINE, "software", "path"));
+        assertTrue(cache.isKeyMissing(HKEY_LOCAL_MACHINE, "system\\select"));
+    }
+}
@@ -0,0 +1,243 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_ACCESS_DENIED;
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_FILE_NOT_FOUND;
+import static org.bouncycastle.util.encoders.Hex.toHexString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+import com.rapid7.client.dcerpc.RPCException;
+import com.rapid7.client.dcerpc.messages.RequestCall;
+import com.rapid7.client.dcerpc.msrrp.messages.HandleResponse;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+import com.rapid7.client.dcerpc.transport.RPCTransport;
+
+public class Test_RegistryQueryExecutor {
+    private final static String HKLM = "HKEY_LOCAL_MACHINE";
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void constructorInvalidServices() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Registry services are invalid: []");
+
+        new RegistryQueryExecutor(Collections.<RegistryService>emptyList());
+    }
+
+    @Test
+    public void execute()
+        throws IOException {
+        final RegistryValue version =
+            new RegistryValue("Version", RegistryValueType.REG_SZ, "1.0\0".getBytes("UTF-16LE"));
+        final RegistryService service = mock(RegistryService.class);
+        when(service.tryOpenKey(HKLM, "software\\vendor")).thenReturn(RegistryResult.<Void>success(null));
+        when(service.getValues(eq(HKLM), eq("software\\vendor"), anyCollectionOf(String.class)))
+            .thenReturn(Arrays.asList(version));
+
+        final RegistryQuery keyExists = RegistryQuery.keyExists("HKLM", "Software\\Vendor");
+        final RegistryQuery value = RegistryQuery.value("HKLM", "Software\\Vendor", "Version");
+        final RegistryQuery valueExists = RegistryQuery.valueExists("HKLM", "Software\\Vendor", "Path");
+        final RegistryQuery missingValue = RegistryQuery.value("HKLM", "software\\vendor", "Path");
+        final Map<RegistryQuery, RegistryResult<?>> results = new RegistryQueryExecutor(Arrays.asList(service))
+            .execute(Arrays.asList(keyExists, value, valueExists, missingValue, value));
+
+        assertEquals(Arrays.asList(keyExists, value, valueExists, missingValue), new ArrayList<>(results.keySet()));
+        assertEquals(true, results.get(keyExists).get());
+        assertEquals(version, results.get(value).get());
+        assertEquals(false, results.get(valueExists).get());
+        assertTrue(results.get(missingValue).is(ERROR_FILE_NOT_FOUND));
+        assertEquals("BaseRegQueryValue", results.get(missingValue).getOpName());
+
+        // The key is opened once, and its values are read in one batch.
+        verify(service, times(1)).tryOpenKey(anyString(), anyString());
+        verify(service, times(1))
+            .getValues(HKLM, "software\\vendor", new LinkedHashSet<>(Arrays.asList("Version", "Path")));
+    }
+
+    @Test
+    public void executeMissingAncestor()
+        throws IOException {
+        final RegistryService service = mock(RegistryService.class);
+        when(service.tryOpenKey(HKLM, "software\\vendor"))
+            .thenReturn(RegistryResult.<Void>failure("BaseRegOpenKey", ERROR_FILE_NOT_FOUND.getErrorCode()));
+
+        final RegistryQuery product = RegistryQuery.value("HKLM", "Software\\Vendor\\Product", "Version");
+        final RegistryQuery productExists = RegistryQuery.valueExists("HKLM", "Software\\Vendor\\Product", "Version");
+        final RegistryQuery vendor = RegistryQuery.keyExists("HKLM", "Software\\Vendor");
+        final Map<RegistryQuery, RegistryResult<?>> results =
+            new RegistryQueryExecutor(Arrays.asList(service)).execute(Arrays.asList(product, productExists, vendor));
+
+        assertEquals(false, results.get(vendor).get());
+        assertEquals(false, results.get(productExists).get());
+        assertTrue(results.get(product).is(ERROR_FILE_NOT_FOUND));
+        assertEquals("BaseRegOpenKey", results.get(product).getOpName());
+
+        verify(service, times(1)).tryOpenKey(anyString(), anyString());
+        verify(service, never()).getValues(anyString(), anyString(), anyCollectionOf(String.class));
+    }
+
+    @Test
+    public void executeKeyAccessDenied()
+        throws IOException {
+        final RegistryService service = mock(RegistryService.class);
+        when(service.tryOpenKey(HKLM, "sam\\sam"))
+            .thenReturn(RegistryResult.<Void>failure("BaseRegOpenKey", ERROR_ACCESS_DENIED.getErrorCode()));
+
+        final RegistryQuery keyExists = RegistryQuery.keyExists("HKLM", "SAM\\SAM");
+        final RegistryQuery subKeys = RegistryQuery.subKeys("HKLM", "SAM\\SAM");
+        final Map<RegistryQuery, RegistryResult<?>> results =
+            new RegistryQueryExecutor(Arrays.asList(service)).execute(Arrays.asList(keyExists, subKeys));
+
+        assertTrue(results.get(keyExists).is(ERROR_ACCESS_DENIED));
+        assertTrue(results.get(subKeys).is(ERROR_ACCESS_DENIED));
+    }
+
+    @Test
+    public void executeSubKeysAndValues()
+        throws IOException {
+        final RegistryService service = mock(RegistryService.class);
+        final List<RegistryKey> subKeys = Collections.emptyList();
+        when(service.tryOpenKey(HKLM, "key")).thenReturn(RegistryResult.<Void>success(null));
+        when(service.tryGetSubKeys(HKLM, "key")).thenReturn(RegistryResult.success(subKeys));
+        when(service.getValues(HKLM, "key")).thenThrow(new RPCException("BaseRegEnumValue", 5));
+
+        final RegistryQuery subKeysQuery = RegistryQuery.subKeys("HKLM", "key");
+        final RegistryQuery valuesQuery = RegistryQuery.values("HKLM", "key");
+        final Map<RegistryQuery, RegistryResult<?>> results =
+            new RegistryQueryExecutor(Arrays.asList(service)).execute(Arrays.asList(subKeysQuery, valuesQuery));
+
+        assertEquals(subKeys, results.get(subKeysQuery).get());
+        assertTrue(results.get(valuesQuery).is(ERROR_ACCESS_DENIED));
+        assertEquals("BaseRegEnumValue", results.get(valuesQuery).getOpName());
+    }
+
+    @Test
+    public void executeMixedHives()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hklmResponse = handleResponse("000000001111111111111111111111111111111a");
+        final HandleResponse hklmKeyResponse = handleResponse("000000001111111111111111111111111111111b");
+        final HandleResponse hkcuResponse = handleResponse("000000002222222222222222222222222222222a");
+        final HandleResponse hkcuKeyResponse = handleResponse("000000002222222222222222222222222222222b");
+        when(transport.call(any(RequestCall.class))).thenReturn(hklmResponse).thenReturn(hklmKeyResponse)
+            .thenReturn(hkcuResponse).thenReturn(hkcuKeyResponse);
+
+        final RegistryQuery hklmKey = RegistryQuery.keyExists("HKLM", "Software\\Vendor");
+        final RegistryQuery hkcuKey = RegistryQuery.keyExists("HKCU", "Software\\Vendor");
+        final Map<RegistryQuery, RegistryResult<?>> results =
+            new RegistryQueryExecutor(Arrays.asList(new RegistryService(transport)))
+                .execute(Arrays.asList(hklmKey, hkcuKey));
+
+        assertEquals(true, results.get(hklmKey).get());
+        assertEquals(true, results.get(hkcuKey).get());
+
+        // The same path in another hive is opened from that hive rather than taken from the handle cache.
+        final ArgumentCaptor<RequestCall> requests = ArgumentCaptor.forClass(RequestCall.class);
+        verify(transport, times(4)).call(requests.capture());
+        assertEquals(15, requests.getAllValues().get(1).getOpNum());
+        assertTrue(toHexString(requests.getAllValues().get(1).getStub())
+            .startsWith("000000001111111111111111111111111111111a"));
+        assertEquals(15, requests.getAllValues().get(3).getOpNum());
+        assertTrue(toHexString(requests.getAllValues().get(3).getStub())
+            .startsWith("000000002222222222222222222222222222222a"));
+    }
+
+    @Test
+    public void executeAcrossPipes()
+        throws IOException {
+        final List<RegistryService> services = new ArrayList<>();
+        final List<RegistryQuery> queries = new ArrayList<>();
+        for (int index = 0; index < 3; index++) {
+            final RegistryService service = mock(RegistryService.class);
+            when(service.tryOpenKey(anyString(), anyString())).thenReturn(RegistryResult.<Void>success(null));
+            services.add(service);
+        }
+        for (int index = 0; index < 50; index++) {
+            queries.add(RegistryQuery.keyExists("HKLM", "key" + index));
+        }
+
+        final Map<RegistryQuery, RegistryResult<?>> results = new RegistryQueryExecutor(services).execute(queries);
+
+        assertEquals(queries, new ArrayList<>(results.keySet()));
+        for (final RegistryResult<?> result : results.values()) {
+            assertEquals(true, result.get());
+        }
+        int opened = 0;
+        for (final RegistryService service : services) {
+            opened += mockingDetails(service).getInvocations().size();
+        }
+        assertEquals(50, opened);
+    }
+
+    @Test
+    public void executeTransportError()
+        throws IOException {
+        final RegistryService service1 = mock(RegistryService.class);
+        final RegistryService service2 = mock(RegistryService.class);
+        when(service1.tryOpenKey(anyString(), anyString())).thenThrow(new IOException("Pipe closed"));
+        when(service2.tryOpenKey(anyString(), anyString())).thenThrow(new IOException("Pipe closed"));
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Pipe closed");
+
+        new RegistryQueryExecutor(Arrays.asList(service1, service2)).execute(
+            Arrays.asList(RegistryQuery.keyExists("HKLM", "key1"), RegistryQuery.keyExists("HKLM", "key2")));
+    }
+
+    @Test
+    public void executeEmpty()
+        throws IOException {
+        final RegistryService service = mock(RegistryService.class);
+
+        assertTrue(new RegistryQueryExecutor(Arrays.asList(service)).execute(new ArrayList<RegistryQuery>())
+            .isEmpty());
+        verify(service, never()).tryOpenKey(anyString(), anyString());
+    }
+
+    private static HandleResponse handleResponse(final String handle) {
+        final HandleResponse response = mock(HandleResponse.class);
+        when(response.getReturnValue()).thenReturn(0);
+        when(response.getHandle()).thenReturn(new ContextHandle(handle));
+        return response;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import com.rapid7.client.dcerpc.msrrp.RegistryQueryPlan.KeyGroup;
+
+public class Test_RegistryQueryPlan {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void constructorNullQueries() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Queries are invalid: null");
+
+        new RegistryQueryPlan(null);
+    }
+
+    @Test
+    public void constructorNullQuery() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Query is invalid: null");
+
+        new RegistryQueryPlan(Arrays.asList(RegistryQuery.keyExists("HKLM", "key"), null));
+    }
+
+    @Test
+    public void queryUnknownHive() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Unknown hive: HKXX");
+
+        RegistryQuery.keyExists("HKXX", "key");
+    }
+
+    @Test
+    public void queryEquality() {
+        assertEquals(RegistryQuery.value("HKLM", "Software\\\\Vendor\\", "Version"),
+            RegistryQuery.value("HKEY_LOCAL_MACHINE", "software\\vendor", "Version"));
+        assertEquals(RegistryQuery.value("HKLM", "key", null), RegistryQuery.value("HKLM", "key", ""));
+        assertNotEquals(RegistryQuery.value("HKLM", "key", "value"), RegistryQuery.valueExists("HKLM", "key", "value"));
+        assertNotEquals(RegistryQuery.keyExists("HKLM", "key"), RegistryQuery.keyExists("HKU", "key"));
+    }
+
+    @Test
+    public void groupsAndDeduplicates() {
+        final RegistryQuery query1 = RegistryQuery.value("HKLM", "Software\\Vendor", "Version");
+        final RegistryQuery query2 = RegistryQuery.keyExists("HKLM", "software\\other");
+        final RegistryQuery query3 = RegistryQuery.valueExists("HKLM", "SOFTWARE\\VENDOR", "Path");
+        final RegistryQuery query4 = RegistryQuery.value("HKLM", "software\\vendor\\", "Version");
+        final RegistryQuery query5 = RegistryQuery.subKeys("HKLM", "software");
+
+        final RegistryQueryPlan plan = new RegistryQueryPlan(Arrays.asList(query1, query2, query3, query4, query5));
+
+        assertEquals(Arrays.asList(query1, query2, query3, query5), plan.getQueries());
+        assertEquals(3, plan.getKeyCount());
+        final KeyGroup vendor = plan.getKeyGroups().get(2);
+        assertEquals("software\\vendor", vendor.getKeyPath());
+        assertEquals(Arrays.asList(query1, query3), vendor.getQueries());
+    }
+
+    @Test
+    public void ordersAncestorsFirst() {
+        final RegistryQueryPlan plan = new RegistryQueryPlan(Arrays.asList(RegistryQuery.keyExists("HKU", "a"),
+            RegistryQuery.keyExists("HKLM", "a b"), RegistryQuery.keyExists("HKLM", "a\\b\\c"),
+            RegistryQuery.keyExists("HKLM", "a"), RegistryQuery.keyExists("HKLM", "a\\b"),
+            RegistryQuery.keyExists("HKLM", "")));
+
+        final List<String> keys = new ArrayList<>();
+        for (final KeyGroup keyGroup : plan.getKeyGroups()) {
+            keys.add(keyGroup.getHive().getShortName() + ":" + keyGroup.getKeyPath());
+        }
+        assertEquals(Arrays.asList("HKLM:", "HKLM:a", "HKLM:a\\b", "HKLM:a\\b\\c", "HKLM:a b", "HKU:a"), keys);
+    }
+}
@@ -18,37 +18,61 @@
  */
 package com.rapid7.client.dcerpc.msrrp;
 
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_ACCESS_DENIED;
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_ALREADY_EXISTS;
 import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_FILE_NOT_FOUND;
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_INSUFFICIENT_BUFFER;
 import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_INVALID_FUNCTION;
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_KEY_DELETED;
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_MORE_DATA;
 import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_NO_MORE_ITEMS;
 import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_SUCCESS;
+import static org.bouncycastle.util.encoders.Hex.toHexString;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.bouncycastle.util.encoders.Hex;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
+import com.hierynomus.msdtyp.SecurityInformation;
 import com.rapid7.client.dcerpc.RPCException;
 import com.rapid7.client.dcerpc.messages.RequestCall;
+import com.rapid7.client.dcerpc.msrrp.messages.BaseRegCreateKeyResponse;
 import com.rapid7.client.dcerpc.msrrp.messages.BaseRegEnumKeyResponse;
 import com.rapid7.client.dcerpc.msrrp.messages.BaseRegEnumValueResponse;
+import com.rapid7.client.dcerpc.msrrp.messages.BaseRegGetKeySecurityResponse;
 import com.rapid7.client.dcerpc.msrrp.messages.BaseRegQueryInfoKeyResponse;
+import com.rapid7.client.dcerpc.msrrp.messages.BaseRegQueryMultipleValues2Response;
 import com.rapid7.client.dcerpc.msrrp.messages.BaseRegQueryValueResponse;
 import com.rapid7.client.dcerpc.msrrp.messages.HandleResponse;
+import com.rapid7.client.dcerpc.msrrp.messages.ReturnValueResponse;
 import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
 import com.rapid7.client.dcerpc.objects.FileTime;
 import com.rapid7.client.dcerpc.transport.RPCTransport;
 
 public class Test_RegistryService {
+    // O:BAG:SYD:(A;;KA;;;SY)
+    private final static byte[] SECURITY_DESCRIPTOR = Hex.decode("010004801400000024000000000000003000000001020000"
+        + "000000052000000020020000010100000000000512000000" + "02001c000100000000001400"
+        + "3f000f00010100000000000512000000");
+
     @Rule
     public final ExpectedException thrown = ExpectedException.none();
 
@@ -244,7 +268,7 @@ public class Test_RegistryService {
         when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
         when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
         when(valueResponse.getType()).thenReturn(RegistryValueType.REG_BINARY);
-        when(valueResponse.getData()).thenReturn(new byte[] { 0x01, 0x23, 0x45, 0x67 });
+        when(valueResponse.getDataSize()).thenReturn(4);
         when(valueResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
 
         assertTrue(registryService.doesValueExist("HKLM", "key", "value"));
@@ -255,7 +279,7 @@ public class Test_RegistryService {
         verify(keyResponse, times(1)).getHandle();
         verify(keyResponse, times(1)).getReturnValue();
         verify(valueResponse, times(1)).getType();
-        verify(valueResponse, times(1)).getData();
+        verify(valueResponse, times(1)).getDataSize();
         verify(valueResponse, times(1)).getReturnValue();
         verifyNoMoreInteractions(transport, hiveResponse, keyResponse, valueResponse);
     }
@@ -342,7 +366,7 @@ public class Test_RegistryService {
         when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
         when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
         when(valueResponse.getType()).thenReturn(RegistryValueType.REG_BINARY);
-        when(valueResponse.getData()).thenReturn(new byte[] { 0x01, 0x23, 0x45, 0x67 });
+        when(valueResponse.getDataSize()).thenReturn(4);
         when(valueResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
 
         assertTrue(registryService.doesValueExist("HKLM", "key", "value"));
@@ -353,7 +377,7 @@ public class Test_RegistryService {
         verify(keyResponse, times(1)).getHandle();
         verify(keyResponse, times(1)).getReturnValue();
         verify(valueResponse, times(1)).getType();
-        verify(valueResponse, times(1)).getData();
+        verify(valueResponse, times(1)).getDataSize();
         verify(valueResponse, times(1)).getReturnValue();
         verifyNoMoreInteractions(transport, hiveResponse, keyResponse, valueResponse);
     }
@@ -371,7 +395,7 @@ public class Test_RegistryService {
         when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
         when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
         when(valueResponse.getType()).thenReturn(RegistryValueType.REG_BINARY);
-        when(valueResponse.getData()).thenReturn(new byte[] { 0x01, 0x23, 0x45, 0x67 });
+        when(valueResponse.getDataSize()).thenReturn(4);
         when(valueResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
 
         assertTrue(registryService.doesValueExist("HKLM", "key", "value"));
@@ -382,7 +406,7 @@ public class Test_RegistryService {
         verify(keyResponse, times(1)).getHandle();
         verify(keyResponse, times(1)).getReturnValue();
         verify(valueResponse, times(1)).getType();
-        verify(valueResponse, times(1)).getData();
+        verify(valueResponse, times(1)).getDataSize();
         verify(valueResponse, times(1)).getReturnValue();
         verifyNoMoreInteractions(transport, hiveResponse, keyResponse, valueResponse);
     }
@@ -400,7 +424,7 @@ public class Test_RegistryService {
         when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
         when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
         when(valueResponse.getType()).thenReturn(RegistryValueType.REG_BINARY);
-        when(valueResponse.getData()).thenReturn(new byte[] { 0x01, 0x23, 0x45, 0x67 });
+        when(valueResponse.getDataSize()).thenReturn(4);
         when(valueResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
 
         assertTrue(registryService.doesValueExist("HKLM", "key", "value"));
@@ -411,7 +435,7 @@ public class Test_RegistryService {
         verify(keyResponse, times(1)).getHandle();
         verify(keyResponse, times(1)).getReturnValue();
         verify(valueResponse, times(1)).getType();
-        verify(valueResponse, times(1)).getData();
+        verify(valueResponse, times(1)).getDataSize();
         verify(valueResponse, times(1)).getReturnValue();
         verifyNoMoreInteractions(transport, hiveResponse, keyResponse, valueResponse);
     }
@@ -429,7 +453,7 @@ public class Test_RegistryService {
         when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
         when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
         when(valueResponse.getType()).thenReturn(RegistryValueType.REG_BINARY);
-        when(valueResponse.getData()).thenReturn(new byte[] { 0x01, 0x23, 0x45, 0x67 });
+        when(valueResponse.getDataSize()).thenReturn(4);
         when(valueResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
 
         assertTrue(registryService.doesValueExist("HKLM", "key", "value"));
@@ -440,184 +464,200 @@ public class Test_RegistryService {
         verify(keyResponse, times(1)).getHandle();
         verify(keyResponse, times(1)).getReturnValue();
         verify(valueResponse, times(1)).getType();
-        verify(valueResponse, times(1)).getData();
+        verify(valueResponse, times(1)).getDataSize();
         verify(valueResponse, times(1)).getReturnValue();
         verifyNoMoreInteractions(transport, hiveResponse, keyResponse, valueResponse);
     }
 
     @Test
-    public void getKeyInfo()
+    public void tryOpenKey()
         throws IOException {
         final RPCTransport transport = mock(RPCTransport.class);
         final HandleResponse hiveResponse = mock(HandleResponse.class);
         final HandleResponse keyResponse = mock(HandleResponse.class);
-        final BaseRegQueryInfoKeyResponse infoResponse = mock(BaseRegQueryInfoKeyResponse.class);
         final RegistryService registryService = new RegistryService(transport);
 
-        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse).thenReturn(infoResponse);
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse);
         when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
         when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
-        when(infoResponse.getSubKeys()).thenReturn(111);
-        when(infoResponse.getMaxSubKeyLen()).thenReturn(222);
-        when(infoResponse.getMaxClassLen()).thenReturn(333);
-        when(infoResponse.getValues()).thenReturn(444);
-        when(infoResponse.getMaxValueNameLen()).thenReturn(555);
-        when(infoResponse.getMaxValueLen()).thenReturn(666);
-        when(infoResponse.getSecurityDescriptor()).thenReturn(777);
-        when(infoResponse.getLastWriteTime()).thenReturn(116444736000000000l);
-        when(infoResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
 
-        final RegistryKeyInfo registryKeyInfo = registryService.getKeyInfo("HKLM", "key");
+        final RegistryResult<Void> result = registryService.tryOpenKey("HKLM", "key");
 
-        assertEquals(111, registryKeyInfo.getSubKeys());
-        assertEquals(222, registryKeyInfo.getMaxSubKeyLen());
-        assertEquals(333, registryKeyInfo.getMaxClassLen());
-        assertEquals(444, registryKeyInfo.getValues());
-        assertEquals(555, registryKeyInfo.getMaxValueNameLen());
-        assertEquals(666, registryKeyInfo.getMaxValueLen());
-        assertEquals(777, registryKeyInfo.getSecurityDescriptor());
-        assertEquals(116444736000000000l, registryKeyInfo.getLastWriteTime());
+        assertTrue(result.isSuccess());
+        assertEquals(ERROR_SUCCESS.getErrorCode(), result.getReturnCode());
+        assertNull(result.getOpName());
 
-        verify(transport, times(3)).call(any(RequestCall.class));
-        verify(hiveResponse, times(1)).getHandle();
-        verify(hiveResponse, times(1)).getReturnValue();
-        verify(keyResponse, times(1)).getHandle();
-        verify(keyResponse, times(1)).getReturnValue();
-        verify(infoResponse, times(1)).getSubKeys();
-        verify(infoResponse, times(1)).getMaxSubKeyLen();
-        verify(infoResponse, times(1)).getMaxClassLen();
-        verify(infoResponse, times(1)).getValues();
-        verify(infoResponse, times(1)).getMaxValueNameLen();
-        verify(infoResponse, times(1)).getMaxValueLen();
-        verify(infoResponse, times(1)).getSecurityDescriptor();
-        verify(infoResponse, times(1)).getLastWriteTime();
-        verify(infoResponse, times(1)).getReturnValue();
-        verifyNoMoreInteractions(transport, hiveResponse, keyResponse, infoResponse);
+        // The handle is cached, so the key is not opened again.
+        assertTrue(registryService.doesKeyExist("HKLM", "key"));
+        verify(transport, times(2)).call(any(RequestCall.class));
     }
 
     @Test
-    public void getKeyInfoWithEmptyHive()
+    public void tryOpenKeyWhenKeyDoesNotExist()
         throws IOException {
         final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
         final RegistryService registryService = new RegistryService(transport);
 
-        thrown.expect(IllegalArgumentException.class);
-        thrown.expectMessage("Unknown hive: ");
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
 
-        registryService.getKeyInfo("", "key");
+        final RegistryResult<Void> result = registryService.tryOpenKey("HKLM", "key");
+
+        assertFalse(result.isSuccess());
+        assertTrue(result.is(ERROR_FILE_NOT_FOUND));
+        assertEquals(ERROR_FILE_NOT_FOUND, result.getErrorCode());
+        assertEquals("BaseRegOpenKey", result.getOpName());
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("BaseRegOpenKey returned error code: 2 (ERROR_FILE_NOT_FOUND)");
+
+        result.get();
     }
 
     @Test
-    public void getKeyInfoWithNullHive()
+    public void tryOpenKeyWhenHiveDoesNotExist()
         throws IOException {
         final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
         final RegistryService registryService = new RegistryService(transport);
 
-        thrown.expect(IllegalArgumentException.class);
-        thrown.expectMessage("Invalid hive: null");
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_ACCESS_DENIED.getErrorCode());
 
-        registryService.getKeyInfo(null, "key");
+        final RegistryResult<Void> result = registryService.tryOpenKey("HKLM", "key");
+
+        assertTrue(result.is(ERROR_ACCESS_DENIED));
+        assertEquals("OpenLocalMachine", result.getOpName());
+        verify(transport, times(1)).call(any(RequestCall.class));
     }
 
     @Test
-    public void getKeyInfoWhenHiveDoesNotExistWithEmptyKey()
+    public void tryGetValue()
         throws IOException {
         final RPCTransport transport = mock(RPCTransport.class);
         final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegQueryValueResponse valueResponse = mock(BaseRegQueryValueResponse.class);
         final RegistryService registryService = new RegistryService(transport);
 
-        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse);
-        when(hiveResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(valueResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valueResponse.getType()).thenReturn(RegistryValueType.REG_BINARY);
+        when(valueResponse.getData()).thenReturn(new byte[] { 0x01, 0x23, 0x45, 0x67 });
+        when(valueResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
 
-        thrown.expect(RPCException.class);
-        thrown.expectMessage("OpenLocalMachine returned error code: 2 (ERROR_FILE_NOT_FOUND)");
+        final RegistryResult<RegistryValue> result = registryService.tryGetValue("HKLM", "key", "value");
 
-        registryService.getKeyInfo("HKLM", "");
+        assertTrue(result.isSuccess());
+        assertEquals("value", result.getValue().getName());
+        assertEquals(RegistryValueType.REG_BINARY, result.get().getType());
+        assertArrayEquals(new byte[] { 0x01, 0x23, 0x45, 0x67 }, result.get().getData());
     }
 
     @Test
-    public void getKeyInfoWhenHiveDoesNotExistWithNullKey()
+    public void tryGetValueWhenValueDoesNotExist()
         throws IOException {
         final RPCTransport transport = mock(RPCTransport.class);
         final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegQueryValueResponse valueResponse = mock(BaseRegQueryValueResponse.class);
         final RegistryService registryService = new RegistryService(transport);
 
-        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse);
-        when(hiveResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(valueResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valueResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
 
-        thrown.expect(RPCException.class);
-        thrown.expectMessage("OpenLocalMachine returned error code: 2 (ERROR_FILE_NOT_FOUND)");
+        final RegistryResult<RegistryValue> result = registryService.tryGetValue("HKLM", "key", "value");
 
-        registryService.getKeyInfo("HKLM", null);
+        assertTrue(result.is(ERROR_FILE_NOT_FOUND));
+        assertEquals("BaseRegQueryValue", result.getOpName());
+        assertNull(result.getValue());
+        verify(valueResponse, never()).getData();
     }
 
     @Test
-    public void getKeyInfoWhenKeyDoesNotExist()
+    public void tryGetValueWhenKeyDoesNotExist()
         throws IOException {
         final RPCTransport transport = mock(RPCTransport.class);
         final HandleResponse hiveResponse = mock(HandleResponse.class);
         final HandleResponse keyResponse = mock(HandleResponse.class);
-        final BaseRegQueryInfoKeyResponse infoResponse = mock(BaseRegQueryInfoKeyResponse.class);
-        final RegistryService registryService = new RegistryService(transport);
+        final RegistryService registryService =
+            new RegistryService(transport, new RegistryValueCache(1, TimeUnit.HOURS, 1024));
 
-        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse).thenReturn(infoResponse);
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse);
         when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
         when(keyResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
 
-        thrown.expect(RPCException.class);
-        thrown.expectMessage("BaseRegOpenKey returned error code: 2 (ERROR_FILE_NOT_FOUND)");
+        final RegistryResult<RegistryValue> result = registryService.tryGetValue("HKLM", "key", "value");
 
-        registryService.getKeyInfo("HKLM", "key");
+        assertTrue(result.is(ERROR_FILE_NOT_FOUND));
+        assertEquals("BaseRegOpenKey", result.getOpName());
+        verify(transport, times(2)).call(any(RequestCall.class));
     }
 
     @Test
-    public void getSubKeys()
+    public void tryGetValueFromCache()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegQueryInfoKeyResponse infoResponse = mock(BaseRegQueryInfoKeyResponse.class);
+        final BaseRegQueryValueResponse valueResponse = mock(BaseRegQueryValueResponse.class);
+        final RegistryService registryService =
+            new RegistryService(transport, new RegistryValueCache(1, TimeUnit.HOURS, 1024));
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(infoResponse).thenReturn(valueResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(infoResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(infoResponse.getLastWriteTime()).thenReturn(116444736000000000l);
+        when(valueResponse.getType()).thenReturn(RegistryValueType.REG_DWORD);
+        when(valueResponse.getData()).thenReturn(new byte[] { 0x01, 0x00, 0x00, 0x00 });
+        when(valueResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+
+        assertEquals(1, registryService.tryGetValue("HKLM", "key", "value").get().getDataAsInt());
+        // The key is still open, so the value is served without revalidating it.
+        assertEquals(1, registryService.tryGetValue("HKLM", "key", "value").get().getDataAsInt());
+
+        verify(transport, times(4)).call(any(RequestCall.class));
+        verify(valueResponse, times(1)).getData();
+    }
+
+    @Test
+    public void tryGetSubKeys()
         throws IOException {
         final RPCTransport transport = mock(RPCTransport.class);
         final HandleResponse hiveResponse = mock(HandleResponse.class);
         final HandleResponse keyResponse = mock(HandleResponse.class);
         final BaseRegEnumKeyResponse enumResponse1 = mock(BaseRegEnumKeyResponse.class);
         final BaseRegEnumKeyResponse enumResponse2 = mock(BaseRegEnumKeyResponse.class);
-        final BaseRegEnumKeyResponse enumResponse3 = mock(BaseRegEnumKeyResponse.class);
         final RegistryService registryService = new RegistryService(transport);
 
-        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse).thenReturn(enumResponse1)
-            .thenReturn(enumResponse2).thenReturn(enumResponse3);
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(enumResponse1).thenReturn(enumResponse2);
         when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
         when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
         when(enumResponse1.getName()).thenReturn("subKey1");
         when(enumResponse1.getLastWriteTime()).thenReturn(new FileTime(116444736000000000l));
         when(enumResponse1.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
-        when(enumResponse2.getName()).thenReturn("subKey2");
-        when(enumResponse2.getLastWriteTime()).thenReturn(new FileTime(116444736000000000l));
-        when(enumResponse2.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
-        when(enumResponse3.getReturnValue()).thenReturn(ERROR_NO_MORE_ITEMS.getErrorCode());
-
-        final List<RegistryKey> subKeys = registryService.getSubKeys("HKLM", "key");
-        final RegistryKey subKey1 = new RegistryKey("subKey1", new FileTime(116444736000000000l));
-        final RegistryKey subKey2 = new RegistryKey("subKey2", new FileTime(116444736000000000l));
+        when(enumResponse2.getReturnValue()).thenReturn(ERROR_NO_MORE_ITEMS.getErrorCode());
 
-        assertTrue(subKeys.contains(subKey1));
-        assertTrue(subKeys.contains(subKey2));
-        assertTrue(subKeys.size() == 2);
+        final RegistryResult<List<RegistryKey>> result = registryService.tryGetSubKeys("HKLM", "key");
 
-        verify(transport, times(5)).call(any(RequestCall.class));
-        verify(hiveResponse, times(1)).getHandle();
-        verify(hiveResponse, times(1)).getReturnValue();
-        verify(keyResponse, times(1)).getHandle();
-        verify(keyResponse, times(1)).getReturnValue();
-        verify(enumResponse1, times(1)).getName();
-        verify(enumResponse1, times(1)).getLastWriteTime();
-        verify(enumResponse1, times(1)).getReturnValue();
-        verify(enumResponse2, times(1)).getName();
-        verify(enumResponse2, times(1)).getLastWriteTime();
-        verify(enumResponse2, times(1)).getReturnValue();
-        verify(enumResponse3, times(1)).getReturnValue();
-        verifyNoMoreInteractions(transport, hiveResponse, keyResponse, enumResponse1, enumResponse2, enumResponse3);
+        assertTrue(result.isSuccess());
+        assertEquals(Arrays.asList(new RegistryKey("subKey1", new FileTime(116444736000000000l))), result.getValue());
     }
 
     @Test
-    public void getSubKeysWhenEmpty()
+    public void tryGetSubKeysWhenEnumerationFails()
         throws IOException {
         final RPCTransport transport = mock(RPCTransport.class);
         final HandleResponse hiveResponse = mock(HandleResponse.class);
@@ -625,132 +665,540 @@ public class Test_RegistryService {
         final BaseRegEnumKeyResponse enumResponse = mock(BaseRegEnumKeyResponse.class);
         final RegistryService registryService = new RegistryService(transport);
 
-        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse).thenReturn(enumResponse);
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(enumResponse);
         when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
         when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
-        when(enumResponse.getReturnValue()).thenReturn(ERROR_NO_MORE_ITEMS.getErrorCode());
-
-        final List<RegistryKey> subKeys = registryService.getSubKeys("HKLM", "key");
+        when(enumResponse.getReturnValue()).thenReturn(ERROR_KEY_DELETED.getErrorCode());
 
-        assertTrue(subKeys.isEmpty());
+        final RegistryResult<List<RegistryKey>> result = registryService.tryGetSubKeys("HKLM", "key");
 
-        verify(transport, times(3)).call(any(RequestCall.class));
-        verify(hiveResponse, times(1)).getHandle();
-        verify(hiveResponse, times(1)).getReturnValue();
-        verify(keyResponse, times(1)).getHandle();
-        verify(keyResponse, times(1)).getReturnValue();
-        verify(enumResponse, times(1)).getReturnValue();
-        verifyNoMoreInteractions(transport, hiveResponse, keyResponse, enumResponse);
+        assertTrue(result.is(ERROR_KEY_DELETED));
+        assertEquals("BaseRegEnumKey", result.getOpName());
+        assertNull(result.getValue());
     }
 
     @Test
-    public void getSubKeysWithEmptyHive()
-        throws IOException {
-        final RPCTransport transport = mock(RPCTransport.class);
-        final RegistryService registryService = new RegistryService(transport);
-
+    public void constructorNullNegativeCache() {
         thrown.expect(IllegalArgumentException.class);
-        thrown.expectMessage("Unknown hive: ");
+        thrown.expectMessage("Invalid registry negative cache: null");
 
-        registryService.getSubKeys("", "key");
+        new RegistryService(mock(RPCTransport.class), null, null);
     }
 
     @Test
-    public void getSubKeysWithNullHive()
+    public void doesKeyExistFromNegativeCache()
         throws IOException {
         final RPCTransport transport = mock(RPCTransport.class);
-        final RegistryService registryService = new RegistryService(transport);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final RegistryService registryService =
+            new RegistryService(transport, null, new RegistryNegativeCache(1, TimeUnit.HOURS, 1024));
 
-        thrown.expect(IllegalArgumentException.class);
-        thrown.expectMessage("Invalid hive: null");
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
 
-        registryService.getSubKeys(null, "key");
+        assertFalse(registryService.doesKeyExist("HKLM", "Software\\Vendor"));
+        assertFalse(registryService.doesKeyExist("HKLM", "software\\vendor"));
+        assertFalse(registryService.doesKeyExist("HKLM", "Software\\Vendor\\Product"));
+        assertTrue(registryService.tryGetValue("HKLM", "Software\\Vendor", "value").is(ERROR_FILE_NOT_FOUND));
+
+        verify(transport, times(2)).call(any(RequestCall.class));
     }
 
     @Test
-    public void getSubKeysWhenHiveDoesNotExistWithEmptyKey()
+    public void doesKeyExistWhenParentWritten()
         throws IOException {
         final RPCTransport transport = mock(RPCTransport.class);
         final HandleResponse hiveResponse = mock(HandleResponse.class);
-        final RegistryService registryService = new RegistryService(transport);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegQueryInfoKeyResponse infoResponse = mock(BaseRegQueryInfoKeyResponse.class);
+        final HandleResponse createdKeyResponse = mock(HandleResponse.class);
+        final RegistryService registryService =
+            new RegistryService(transport, null, new RegistryNegativeCache(1, TimeUnit.HOURS, 1024));
 
-        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse);
-        when(hiveResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(infoResponse).thenReturn(createdKeyResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+        when(infoResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(infoResponse.getLastWriteTime()).thenReturn(116444736000000000l);
+        when(createdKeyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
 
-        thrown.expect(RPCException.class);
-        thrown.expectMessage("OpenLocalMachine returned error code: 2 (ERROR_FILE_NOT_FOUND)");
+        assertFalse(registryService.doesKeyExist("HKLM", "vendor"));
+        // Reading the hive root's last write time discards the missing key, which was recorded before it was known.
+        registryService.getKeyInfo("HKLM", "");
+        assertTrue(registryService.doesKeyExist("HKLM", "vendor"));
 
-        registryService.getSubKeys("HKLM", "");
+        verify(transport, times(4)).call(any(RequestCall.class));
     }
 
     @Test
-    public void getSubKeysWhenHiveDoesNotExistWithNullKey()
+    public void doesValueExistFromNegativeCache()
         throws IOException {
         final RPCTransport transport = mock(RPCTransport.class);
         final HandleResponse hiveResponse = mock(HandleResponse.class);
-        final RegistryService registryService = new RegistryService(transport);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegQueryValueResponse valueResponse = mock(BaseRegQueryValueResponse.class);
+        final RegistryService registryService =
+            new RegistryService(transport, null, new RegistryNegativeCache(1, TimeUnit.HOURS, 1024));
 
-        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse);
-        when(hiveResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(valueResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valueResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+
+        assertFalse(registryService.doesValueExist("HKLM", "key", "Value"));
+        assertFalse(registryService.doesValueExist("HKLM", "key", "value"));
+        assertTrue(registryService.tryGetValue("HKLM", "key", "value").is(ERROR_FILE_NOT_FOUND));
 
         thrown.expect(RPCException.class);
-        thrown.expectMessage("OpenLocalMachine returned error code: 2 (ERROR_FILE_NOT_FOUND)");
+        thrown.expectMessage("BaseRegQueryValue returned error code: 2 (ERROR_FILE_NOT_FOUND)");
 
-        registryService.getSubKeys("HKLM", null);
+        try {
+            registryService.getValue("HKLM", "key", "value");
+        } finally {
+            verify(transport, times(3)).call(any(RequestCall.class));
+        }
     }
 
     @Test
-    public void getSubKeysWhenKeyDoesNotExist()
+    public void getValueFromNegativeCacheWhenKeyWritten()
         throws IOException {
         final RPCTransport transport = mock(RPCTransport.class);
         final HandleResponse hiveResponse = mock(HandleResponse.class);
         final HandleResponse keyResponse = mock(HandleResponse.class);
-        final RegistryService registryService = new RegistryService(transport);
-
-        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse);
+        final HandleResponse closeResponse = mock(HandleResponse.class);
+        final BaseRegQueryInfoKeyResponse infoResponse1 = mock(BaseRegQueryInfoKeyResponse.class);
+        final BaseRegQueryInfoKeyResponse infoResponse2 = mock(BaseRegQueryInfoKeyResponse.class);
+        final BaseRegQueryValueResponse valueResponse1 = mock(BaseRegQueryValueResponse.class);
+        final BaseRegQueryValueResponse valueResponse2 = mock(BaseRegQueryValueResponse.class);
+        final RegistryService registryService = new RegistryService(transport,
+            new RegistryValueCache(1, TimeUnit.HOURS, 1024), new RegistryNegativeCache(1, TimeUnit.HOURS, 1024));
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(infoResponse1).thenReturn(valueResponse1).thenReturn(closeResponse).thenReturn(keyResponse)
+            .thenReturn(infoResponse2).thenReturn(valueResponse2);
         when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
-        when(keyResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getHandle()).thenReturn(new ContextHandle("00000000a5a4c7e7e5e3b54a9c5b1a6c7b1d4e2f"));
+        when(infoResponse1.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(infoResponse1.getLastWriteTime()).thenReturn(116444736000000000l);
+        when(infoResponse2.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(infoResponse2.getLastWriteTime()).thenReturn(116444736000000001l);
+        when(valueResponse1.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+        when(valueResponse2.getType()).thenReturn(RegistryValueType.REG_DWORD);
+        when(valueResponse2.getData()).thenReturn(new byte[] { 0x01, 0x00, 0x00, 0x00 });
+        when(valueResponse2.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
 
-        thrown.expect(RPCException.class);
-        thrown.expectMessage("BaseRegOpenKey returned error code: 2 (ERROR_FILE_NOT_FOUND)");
+        assertTrue(registryService.tryGetValue("HKLM", "key", "value").is(ERROR_FILE_NOT_FOUND));
+        // The key is still open, so the value is still missing without querying it.
+        assertTrue(registryService.tryGetValue("HKLM", "key", "value").is(ERROR_FILE_NOT_FOUND));
+        // The value was created, which changed the last write time of the key, and is seen once the key is reopened.
+        registryService.closeKey("HKLM", "key");
+        assertEquals(1, registryService.getValue("HKLM", "key", "value").getDataAsInt());
 
-        registryService.getSubKeys("HKLM", "key");
+        verify(transport, times(8)).call(any(RequestCall.class));
     }
 
     @Test
-    public void getValues()
+    public void getKeyInfo()
         throws IOException {
         final RPCTransport transport = mock(RPCTransport.class);
         final HandleResponse hiveResponse = mock(HandleResponse.class);
         final HandleResponse keyResponse = mock(HandleResponse.class);
-        final BaseRegEnumValueResponse enumResponse1 = mock(BaseRegEnumValueResponse.class);
-        final BaseRegEnumValueResponse enumResponse2 = mock(BaseRegEnumValueResponse.class);
-        final BaseRegEnumValueResponse enumResponse3 = mock(BaseRegEnumValueResponse.class);
+        final BaseRegQueryInfoKeyResponse infoResponse = mock(BaseRegQueryInfoKeyResponse.class);
         final RegistryService registryService = new RegistryService(transport);
 
-        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse).thenReturn(enumResponse1)
-            .thenReturn(enumResponse2).thenReturn(enumResponse3);
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse).thenReturn(infoResponse);
         when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
         when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
-        when(enumResponse1.getName()).thenReturn("value1");
-        when(enumResponse1.getType()).thenReturn(RegistryValueType.REG_BINARY);
-        when(enumResponse1.getData()).thenReturn(new byte[] { 0x01, 0x23, 0x45, 0x67 });
-        when(enumResponse1.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
-        when(enumResponse2.getName()).thenReturn("value2");
-        when(enumResponse2.getType()).thenReturn(RegistryValueType.REG_BINARY);
-        when(enumResponse2.getData()).thenReturn(new byte[] { 0x01, 0x23, 0x45, 0x67 });
-        when(enumResponse2.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
-        when(enumResponse3.getReturnValue()).thenReturn(ERROR_NO_MORE_ITEMS.getErrorCode());
+        when(infoResponse.getSubKeys()).thenReturn(111);
+        when(infoResponse.getMaxSubKeyLen()).thenReturn(222);
+        when(infoResponse.getMaxClassLen()).thenReturn(333);
+        when(infoResponse.getValues()).thenReturn(444);
+        when(infoResponse.getMaxValueNameLen()).thenReturn(555);
+        when(infoResponse.getMaxValueLen()).thenReturn(666);
+        when(infoResponse.getSecurityDescriptor()).thenReturn(777);
+        when(infoResponse.getLastWriteTime()).thenReturn(116444736000000000l);
+        when(infoResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
 
-        final List<RegistryValue> values = registryService.getValues("HKLM", "key");
-        final RegistryValue value1 =
-            new RegistryValue("value1", RegistryValueType.REG_BINARY, new byte[] { 0x01, 0x23, 0x45, 0x67 });
-        final RegistryValue value2 =
-            new RegistryValue("value2", RegistryValueType.REG_BINARY, new byte[] { 0x01, 0x23, 0x45, 0x67 });
+        final RegistryKeyInfo registryKeyInfo = registryService.getKeyInfo("HKLM", "key");
 
-        assertTrue(values.contains(value1));
-        assertTrue(values.contains(value2));
-        assertTrue(values.size() == 2);
+        assertEquals(111, registryKeyInfo.getSubKeys());
+        assertEquals(222, registryKeyInfo.getMaxSubKeyLen());
+        assertEquals(333, registryKeyInfo.getMaxClassLen());
+        assertEquals(444, registryKeyInfo.getValues());
+        assertEquals(555, registryKeyInfo.getMaxValueNameLen());
+        assertEquals(666, registryKeyInfo.getMaxValueLen());
+        assertEquals(777, registryKeyInfo.getSecurityDescriptor());
+        assertEquals(116444736000000000l, registryKeyInfo.getLastWriteTime());
+
+        verify(transport, times(3)).call(any(RequestCall.class));
+        verify(hiveResponse, times(1)).getHandle();
+        verify(hiveResponse, times(1)).getReturnValue();
+        verify(keyResponse, times(1)).getHandle();
+        verify(keyResponse, times(1)).getReturnValue();
+        verify(infoResponse, times(1)).getSubKeys();
+        verify(infoResponse, times(1)).getMaxSubKeyLen();
+        verify(infoResponse, times(1)).getMaxClassLen();
+        verify(infoResponse, times(1)).getValues();
+        verify(infoResponse, times(1)).getMaxValueNameLen();
+        verify(infoResponse, times(1)).getMaxValueLen();
+        verify(infoResponse, times(1)).getSecurityDescriptor();
+        verify(infoResponse, times(1)).getLastWriteTime();
+        verify(infoResponse, times(1)).getReturnValue();
+        verifyNoMoreInteractions(transport, hiveResponse, keyResponse, infoResponse);
+    }
+
+    @Test
+    public void getKeyInfoWithEmptyHive()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Unknown hive: ");
+
+        registryService.getKeyInfo("", "key");
+    }
+
+    @Test
+    public void getKeyInfoWithNullHive()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Invalid hive: null");
+
+        registryService.getKeyInfo(null, "key");
+    }
+
+    @Test
+    public void getKeyInfoWhenHiveDoesNotExistWithEmptyKey()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("OpenLocalMachine returned error code: 2 (ERROR_FILE_NOT_FOUND)");
+
+        registryService.getKeyInfo("HKLM", "");
+    }
+
+    @Test
+    public void getKeyInfoWhenHiveDoesNotExistWithNullKey()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("OpenLocalMachine returned error code: 2 (ERROR_FILE_NOT_FOUND)");
+
+        registryService.getKeyInfo("HKLM", null);
+    }
+
+    @Test
+    public void getKeyInfoWhenKeyDoesNotExist()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegQueryInfoKeyResponse infoResponse = mock(BaseRegQueryInfoKeyResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse).thenReturn(infoResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("BaseRegOpenKey returned error code: 2 (ERROR_FILE_NOT_FOUND)");
+
+        registryService.getKeyInfo("HKLM", "key");
+    }
+
+    @Test
+    public void getKeySecurity()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse1 = mock(HandleResponse.class);
+        final HandleResponse keyResponse2 = mock(HandleResponse.class);
+        final BaseRegGetKeySecurityResponse securityResponse1 = mock(BaseRegGetKeySecurityResponse.class);
+        final BaseRegGetKeySecurityResponse securityResponse2 = mock(BaseRegGetKeySecurityResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse1)
+            .thenReturn(securityResponse1).thenReturn(keyResponse2).thenReturn(securityResponse2);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse1.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse2.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(securityResponse1.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(securityResponse1.getSecurityDescriptor()).thenReturn(SECURITY_DESCRIPTOR.clone());
+        when(securityResponse2.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(securityResponse2.getSecurityDescriptor()).thenReturn(SECURITY_DESCRIPTOR.clone());
+
+        final RegistryKeySecurity security1 = registryService.getKeySecurity("HKLM", "key1");
+        final RegistryKeySecurity security2 = registryService.getKeySecurity("HKLM", "key2");
+
+        assertEquals("S-1-5-32-544", security1.getOwnerSid().toString());
+        assertSame(security1, security2);
+        verify(transport, times(5)).call(any(RequestCall.class));
+    }
+
+    @Test
+    public void getKeySecurityWhenBufferTooSmall()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegGetKeySecurityResponse securityResponse1 = mock(BaseRegGetKeySecurityResponse.class);
+        final BaseRegGetKeySecurityResponse securityResponse2 = mock(BaseRegGetKeySecurityResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(securityResponse1).thenReturn(securityResponse2);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(securityResponse1.getReturnValue()).thenReturn(ERROR_INSUFFICIENT_BUFFER.getErrorCode());
+        when(keyResponse.getHandle()).thenReturn(new ContextHandle("0000000032daf234b77c86409d29efe60d326683"));
+        when(securityResponse1.getSecurityDescriptorSize()).thenReturn(20000);
+        when(securityResponse2.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(securityResponse2.getSecurityDescriptor()).thenReturn(SECURITY_DESCRIPTOR.clone());
+
+        assertEquals(1, registryService.getKeySecurity("HKLM", "key").getDacl().getAces().size());
+
+        final ArgumentCaptor<RequestCall> captor = ArgumentCaptor.forClass(RequestCall.class);
+        verify(transport, times(4)).call(captor.capture());
+        // The retry asks for the size reported by the server, in place of the 4096 byte initial buffer.
+        assertTrue(toHexString(captor.getAllValues().get(3).getStub()).endsWith("00000200204e000000000000204e0000"
+            + "0000000000000000"));
+    }
+
+    @Test
+    public void getKeySecurityAccessDenied()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegGetKeySecurityResponse securityResponse = mock(BaseRegGetKeySecurityResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(securityResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(securityResponse.getReturnValue()).thenReturn(ERROR_ACCESS_DENIED.getErrorCode());
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("BaseRegGetKeySecurity returned error code: 5 (ERROR_ACCESS_DENIED)");
+
+        registryService.getKeySecurity("HKLM", "key");
+    }
+
+    @Test
+    public void getKeySecurityInvalidSecurityInformation()
+        throws IOException {
+        final RegistryService registryService = new RegistryService(mock(RPCTransport.class));
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Security information is invalid: []");
+
+        registryService.getKeySecurity("HKLM", "key", EnumSet.noneOf(SecurityInformation.class));
+    }
+
+    @Test
+    public void getSubKeys()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegEnumKeyResponse enumResponse1 = mock(BaseRegEnumKeyResponse.class);
+        final BaseRegEnumKeyResponse enumResponse2 = mock(BaseRegEnumKeyResponse.class);
+        final BaseRegEnumKeyResponse enumResponse3 = mock(BaseRegEnumKeyResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse).thenReturn(enumResponse1)
+            .thenReturn(enumResponse2).thenReturn(enumResponse3);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(enumResponse1.getName()).thenReturn("subKey1");
+        when(enumResponse1.getLastWriteTime()).thenReturn(new FileTime(116444736000000000l));
+        when(enumResponse1.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(enumResponse2.getName()).thenReturn("subKey2");
+        when(enumResponse2.getLastWriteTime()).thenReturn(new FileTime(116444736000000000l));
+        when(enumResponse2.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(enumResponse3.getReturnValue()).thenReturn(ERROR_NO_MORE_ITEMS.getErrorCode());
+
+        final List<RegistryKey> subKeys = registryService.getSubKeys("HKLM", "key");
+        final RegistryKey subKey1 = new RegistryKey("subKey1", new FileTime(116444736000000000l));
+        final RegistryKey subKey2 = new RegistryKey("subKey2", new FileTime(116444736000000000l));
+
+        assertTrue(subKeys.contains(subKey1));
+        assertTrue(subKeys.contains(subKey2));
+        assertTrue(subKeys.size() == 2);
+
+        verify(transport, times(5)).call(any(RequestCall.class));
+        verify(hiveResponse, times(1)).getHandle();
+        verify(hiveResponse, times(1)).getReturnValue();
+        verify(keyResponse, times(1)).getHandle();
+        verify(keyResponse, times(1)).getReturnValue();
+        verify(enumResponse1, times(1)).getName();
+        verify(enumResponse1, times(1)).getLastWriteTime();
+        verify(enumResponse1, times(1)).getReturnValue();
+        verify(enumResponse2, times(1)).getName();
+        verify(enumResponse2, times(1)).getLastWriteTime();
+        verify(enumResponse2, times(1)).getReturnValue();
+        verify(enumResponse3, times(1)).getReturnValue();
+        verifyNoMoreInteractions(transport, hiveResponse, keyResponse, enumResponse1, enumResponse2, enumResponse3);
+    }
+
+    @Test
+    public void getSubKeysWhenEmpty()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegEnumKeyResponse enumResponse = mock(BaseRegEnumKeyResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse).thenReturn(enumResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(enumResponse.getReturnValue()).thenReturn(ERROR_NO_MORE_ITEMS.getErrorCode());
+
+        final List<RegistryKey> subKeys = registryService.getSubKeys("HKLM", "key");
+
+        assertTrue(subKeys.isEmpty());
+
+        verify(transport, times(3)).call(any(RequestCall.class));
+        verify(hiveResponse, times(1)).getHandle();
+        verify(hiveResponse, times(1)).getReturnValue();
+        verify(keyResponse, times(1)).getHandle();
+        verify(keyResponse, times(1)).getReturnValue();
+        verify(enumResponse, times(1)).getReturnValue();
+        verifyNoMoreInteractions(transport, hiveResponse, keyResponse, enumResponse);
+    }
+
+    @Test
+    public void getSubKeysWithEmptyHive()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Unknown hive: ");
+
+        registryService.getSubKeys("", "key");
+    }
+
+    @Test
+    public void getSubKeysWithNullHive()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Invalid hive: null");
+
+        registryService.getSubKeys(null, "key");
+    }
+
+    @Test
+    public void getSubKeysWhenHiveDoesNotExistWithEmptyKey()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("OpenLocalMachine returned error code: 2 (ERROR_FILE_NOT_FOUND)");
+
+        registryService.getSubKeys("HKLM", "");
+    }
+
+    @Test
+    public void getSubKeysWhenHiveDoesNotExistWithNullKey()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("OpenLocalMachine returned error code: 2 (ERROR_FILE_NOT_FOUND)");
+
+        registryService.getSubKeys("HKLM", null);
+    }
+
+    @Test
+    public void getSubKeysWhenKeyDoesNotExist()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("BaseRegOpenKey returned error code: 2 (ERROR_FILE_NOT_FOUND)");
+
+        registryService.getSubKeys("HKLM", "key");
+    }
+
+    @Test
+    public void getValues()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegEnumValueResponse enumResponse1 = mock(BaseRegEnumValueResponse.class);
+        final BaseRegEnumValueResponse enumResponse2 = mock(BaseRegEnumValueResponse.class);
+        final BaseRegEnumValueResponse enumResponse3 = mock(BaseRegEnumValueResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse).thenReturn(enumResponse1)
+            .thenReturn(enumResponse2).thenReturn(enumResponse3);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(enumResponse1.getName()).thenReturn("value1");
+        when(enumResponse1.getType()).thenReturn(RegistryValueType.REG_BINARY);
+        when(enumResponse1.getData()).thenReturn(new byte[] { 0x01, 0x23, 0x45, 0x67 });
+        when(enumResponse1.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(enumResponse2.getName()).thenReturn("value2");
+        when(enumResponse2.getType()).thenReturn(RegistryValueType.REG_BINARY);
+        when(enumResponse2.getData()).thenReturn(new byte[] { 0x01, 0x23, 0x45, 0x67 });
+        when(enumResponse2.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(enumResponse3.getReturnValue()).thenReturn(ERROR_NO_MORE_ITEMS.getErrorCode());
+
+        final List<RegistryValue> values = registryService.getValues("HKLM", "key");
+        final RegistryValue value1 =
+            new RegistryValue("value1", RegistryValueType.REG_BINARY, new byte[] { 0x01, 0x23, 0x45, 0x67 });
+        final RegistryValue value2 =
+            new RegistryValue("value2", RegistryValueType.REG_BINARY, new byte[] { 0x01, 0x23, 0x45, 0x67 });
+
+        assertTrue(values.contains(value1));
+        assertTrue(values.contains(value2));
+        assertTrue(values.size() == 2);
 
         verify(transport, times(5)).call(any(RequestCall.class));
         verify(hiveResponse, times(1)).getHandle();
@@ -867,40 +1315,285 @@ public class Test_RegistryService {
         thrown.expect(RPCException.class);
         thrown.expectMessage("BaseRegOpenKey returned error code: 2 (ERROR_FILE_NOT_FOUND)");
 
-        registryService.getValues("HKLM", "key");
+        registryService.getValues("HKLM", "key");
+    }
+
+    @Test
+    public void getValue()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegQueryValueResponse valueResponse = mock(BaseRegQueryValueResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse).thenReturn(valueResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valueResponse.getType()).thenReturn(RegistryValueType.REG_BINARY);
+        when(valueResponse.getData()).thenReturn(new byte[] { 0x01, 0x23, 0x45, 0x67 });
+        when(valueResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+
+        final RegistryValue value = registryService.getValue("HKLM", "key", "value");
+
+        assertEquals("value", value.getName());
+        assertEquals(RegistryValueType.REG_BINARY, value.getType());
+        assertArrayEquals(new byte[] { 0x01, 0x23, 0x45, 0x67 }, value.getData());
+
+        verify(transport, times(3)).call(any(RequestCall.class));
+        verify(hiveResponse, times(1)).getHandle();
+        verify(hiveResponse, times(1)).getReturnValue();
+        verify(keyResponse, times(1)).getHandle();
+        verify(keyResponse, times(1)).getReturnValue();
+        verify(valueResponse, times(1)).getType();
+        verify(valueResponse, times(1)).getData();
+        verify(valueResponse, times(1)).getReturnValue();
+        verifyNoMoreInteractions(transport, hiveResponse, keyResponse, valueResponse);
+    }
+
+    @Test
+    public void constructorNullValueCache() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Invalid registry value cache: null");
+
+        new RegistryService(mock(RPCTransport.class), null);
+    }
+
+    @Test
+    public void getValueCached()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegQueryInfoKeyResponse infoResponse = mock(BaseRegQueryInfoKeyResponse.class);
+        final BaseRegQueryValueResponse valueResponse = mock(BaseRegQueryValueResponse.class);
+        final RegistryValueCache valueCache = new RegistryValueCache(1, TimeUnit.HOURS, 1024);
+        final RegistryService registryService = new RegistryService(transport, valueCache);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(infoResponse).thenReturn(valueResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(infoResponse.getLastWriteTime()).thenReturn(116444736000000000l);
+        when(infoResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valueResponse.getType()).thenReturn(RegistryValueType.REG_BINARY);
+        when(valueResponse.getData()).thenReturn(new byte[] { 0x01, 0x23, 0x45, 0x67 });
+        when(valueResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+
+        final RegistryValue value1 = registryService.getValue("HKLM", "key", "value");
+        final RegistryValue value2 = registryService.getValue("HKLM", "KEY\\", "value");
+
+        assertEquals(new RegistryValue("value", RegistryValueType.REG_BINARY, new byte[] { 0x01, 0x23, 0x45, 0x67 }),
+            value1);
+        assertEquals(value1, value2);
+        assertEquals(1, valueCache.size());
+
+        verify(transport, times(4)).call(any(RequestCall.class));
+        verify(valueResponse, times(1)).getReturnValue();
+    }
+
+    @Test
+    public void getValueCachedWhenKeyWritten()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final HandleResponse closeResponse = mock(HandleResponse.class);
+        final BaseRegQueryInfoKeyResponse infoResponse1 = mock(BaseRegQueryInfoKeyResponse.class);
+        final BaseRegQueryInfoKeyResponse infoResponse2 = mock(BaseRegQueryInfoKeyResponse.class);
+        final BaseRegQueryValueResponse valueResponse1 = mock(BaseRegQueryValueResponse.class);
+        final BaseRegQueryValueResponse valueResponse2 = mock(BaseRegQueryValueResponse.class);
+        final RegistryService registryService =
+            new RegistryService(transport, new RegistryValueCache(1, TimeUnit.HOURS, 1024));
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(infoResponse1).thenReturn(valueResponse1).thenReturn(closeResponse).thenReturn(keyResponse)
+            .thenReturn(infoResponse2).thenReturn(valueResponse2);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getHandle()).thenReturn(new ContextHandle("00000000a5a4c7e7e5e3b54a9c5b1a6c7b1d4e2f"));
+        when(infoResponse1.getLastWriteTime()).thenReturn(116444736000000000l);
+        when(infoResponse1.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(infoResponse2.getLastWriteTime()).thenReturn(116444736000000001l);
+        when(infoResponse2.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valueResponse1.getType()).thenReturn(RegistryValueType.REG_DWORD);
+        when(valueResponse1.getData()).thenReturn(new byte[] { 0x01, 0x00, 0x00, 0x00 });
+        when(valueResponse1.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valueResponse2.getType()).thenReturn(RegistryValueType.REG_DWORD);
+        when(valueResponse2.getData()).thenReturn(new byte[] { 0x02, 0x00, 0x00, 0x00 });
+        when(valueResponse2.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+
+        assertEquals(1, registryService.getValue("HKLM", "key", "value").getDataAsInt());
+        // The write is seen once the key is closed and its last write time read again.
+        registryService.closeKey("HKLM", "key");
+        assertEquals(2, registryService.getValue("HKLM", "key", "value").getDataAsInt());
+
+        verify(transport, times(8)).call(any(RequestCall.class));
+    }
+
+    @Test
+    public void getValuesCached()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegQueryInfoKeyResponse infoResponse = mock(BaseRegQueryInfoKeyResponse.class);
+        final BaseRegEnumValueResponse valueResponse = mock(BaseRegEnumValueResponse.class);
+        final BaseRegEnumValueResponse endResponse = mock(BaseRegEnumValueResponse.class);
+        final RegistryService registryService =
+            new RegistryService(transport, new RegistryValueCache(1, TimeUnit.HOURS, 1024));
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(infoResponse).thenReturn(valueResponse).thenReturn(endResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(infoResponse.getLastWriteTime()).thenReturn(116444736000000000l);
+        when(infoResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valueResponse.getName()).thenReturn("value");
+        when(valueResponse.getType()).thenReturn(RegistryValueType.REG_BINARY);
+        when(valueResponse.getData()).thenReturn(new byte[] { 0x01, 0x23, 0x45, 0x67 });
+        when(valueResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(endResponse.getReturnValue()).thenReturn(ERROR_NO_MORE_ITEMS.getErrorCode());
+
+        final List<RegistryValue> values = registryService.getValues("HKLM", "key");
+
+        assertEquals(values, registryService.getValues("HKLM", "key"));
+        // Values read by enumeration are also served to single value reads.
+        assertEquals(values.get(0), registryService.getValue("HKLM", "key", "value"));
+
+        verify(transport, times(5)).call(any(RequestCall.class));
+    }
+
+    @Test
+    public void getValueCachedRevalidatesOpenKeyOnce()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final HandleResponse closeResponse = mock(HandleResponse.class);
+        final BaseRegQueryInfoKeyResponse infoResponse = mock(BaseRegQueryInfoKeyResponse.class);
+        final BaseRegQueryValueResponse valueResponse1 = mock(BaseRegQueryValueResponse.class);
+        final BaseRegQueryValueResponse valueResponse2 = mock(BaseRegQueryValueResponse.class);
+        final RegistryService registryService =
+            new RegistryService(transport, new RegistryValueCache(1, TimeUnit.HOURS, 1024));
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(infoResponse).thenReturn(valueResponse1).thenReturn(valueResponse2).thenReturn(closeResponse)
+            .thenReturn(keyResponse).thenReturn(infoResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getHandle()).thenReturn(new ContextHandle("00000000a5a4c7e7e5e3b54a9c5b1a6c7b1d4e2f"));
+        when(infoResponse.getLastWriteTime()).thenReturn(116444736000000000l);
+        when(infoResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valueResponse1.getType()).thenReturn(RegistryValueType.REG_DWORD);
+        when(valueResponse1.getData()).thenReturn(new byte[] { 0x01, 0x00, 0x00, 0x00 });
+        when(valueResponse1.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valueResponse2.getType()).thenReturn(RegistryValueType.REG_DWORD);
+        when(valueResponse2.getData()).thenReturn(new byte[] { 0x02, 0x00, 0x00, 0x00 });
+        when(valueResponse2.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+
+        for (int read = 0; read < 3; read++) {
+            assertEquals(1, registryService.getValue("HKLM", "key", "value1").getDataAsInt());
+            assertEquals(2, registryService.getValue("HKLM", "key", "value2").getDataAsInt());
+        }
+        // Once the key is closed, the next read revalidates its cached values again.
+        registryService.closeKey("HKLM", "key");
+        assertEquals(1, registryService.getValue("HKLM", "key", "value1").getDataAsInt());
+        assertEquals(2, registryService.getValue("HKLM", "key", "value2").getDataAsInt());
+
+        final ArgumentCaptor<RequestCall> requests = ArgumentCaptor.forClass(RequestCall.class);
+        verify(transport, times(8)).call(requests.capture());
+        int queryInfoKeyCalls = 0;
+        for (final RequestCall<?> request : requests.getAllValues()) {
+            if (request.getOpNum() == 16) {
+                queryInfoKeyCalls++;
+            }
+        }
+        assertEquals(2, queryInfoKeyCalls);
+    }
+
+    @Test
+    public void getValueInfo()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegQueryValueResponse valueResponse = mock(BaseRegQueryValueResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(valueResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valueResponse.getType()).thenReturn(RegistryValueType.REG_SZ);
+        when(valueResponse.getDataSize()).thenReturn(22);
+        when(valueResponse.getReturnValue()).thenReturn(ERROR_MORE_DATA.getErrorCode());
+
+        final RegistryValueInfo valueInfo = registryService.getValueInfo("HKLM", "key", "value");
+
+        assertEquals(new RegistryValueInfo("value", RegistryValueType.REG_SZ, 22), valueInfo);
+
+        verify(transport, times(3)).call(any(RequestCall.class));
+        verify(valueResponse, times(1)).getType();
+        verify(valueResponse, times(1)).getDataSize();
+        verify(valueResponse, times(1)).getReturnValue();
+        verifyNoMoreInteractions(valueResponse);
+    }
+
+    @Test
+    public void getValueInfoWhenDoesNotExist()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegQueryValueResponse valueResponse = mock(BaseRegQueryValueResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(valueResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valueResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("BaseRegQueryValue returned error code: 2 (ERROR_FILE_NOT_FOUND)");
+
+        registryService.getValueInfo("HKLM", "key", "value");
     }
 
     @Test
-    public void getValue()
+    public void getValueInfos()
         throws IOException {
         final RPCTransport transport = mock(RPCTransport.class);
         final HandleResponse hiveResponse = mock(HandleResponse.class);
         final HandleResponse keyResponse = mock(HandleResponse.class);
-        final BaseRegQueryValueResponse valueResponse = mock(BaseRegQueryValueResponse.class);
+        final BaseRegEnumValueResponse valueResponse1 = mock(BaseRegEnumValueResponse.class);
+        final BaseRegEnumValueResponse valueResponse2 = mock(BaseRegEnumValueResponse.class);
+        final BaseRegEnumValueResponse endResponse = mock(BaseRegEnumValueResponse.class);
         final RegistryService registryService = new RegistryService(transport);
 
-        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse).thenReturn(valueResponse);
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(valueResponse1).thenReturn(valueResponse2).thenReturn(endResponse);
         when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
         when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
-        when(valueResponse.getType()).thenReturn(RegistryValueType.REG_BINARY);
-        when(valueResponse.getData()).thenReturn(new byte[] { 0x01, 0x23, 0x45, 0x67 });
-        when(valueResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valueResponse1.getName()).thenReturn("value1");
+        when(valueResponse1.getType()).thenReturn(RegistryValueType.REG_DWORD);
+        when(valueResponse1.getDataSize()).thenReturn(4);
+        when(valueResponse1.getReturnValue()).thenReturn(ERROR_MORE_DATA.getErrorCode());
+        when(valueResponse2.getName()).thenReturn("value2");
+        when(valueResponse2.getType()).thenReturn(RegistryValueType.REG_BINARY);
+        when(valueResponse2.getDataSize()).thenReturn(0);
+        when(valueResponse2.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(endResponse.getReturnValue()).thenReturn(ERROR_NO_MORE_ITEMS.getErrorCode());
 
-        final RegistryValue value = registryService.getValue("HKLM", "key", "value");
+        final List<RegistryValueInfo> valueInfos = registryService.getValueInfos("HKLM", "key");
 
-        assertEquals("value", value.getName());
-        assertEquals(RegistryValueType.REG_BINARY, value.getType());
-        assertArrayEquals(new byte[] { 0x01, 0x23, 0x45, 0x67 }, value.getData());
+        assertEquals(Arrays.asList(new RegistryValueInfo("value1", RegistryValueType.REG_DWORD, 4),
+            new RegistryValueInfo("value2", RegistryValueType.REG_BINARY, 0)), valueInfos);
 
-        verify(transport, times(3)).call(any(RequestCall.class));
-        verify(hiveResponse, times(1)).getHandle();
-        verify(hiveResponse, times(1)).getReturnValue();
-        verify(keyResponse, times(1)).getHandle();
-        verify(keyResponse, times(1)).getReturnValue();
-        verify(valueResponse, times(1)).getType();
-        verify(valueResponse, times(1)).getData();
-        verify(valueResponse, times(1)).getReturnValue();
-        verifyNoMoreInteractions(transport, hiveResponse, keyResponse, valueResponse);
+        verify(transport, times(5)).call(any(RequestCall.class));
+        verify(valueResponse1, never()).getData();
+        verify(valueResponse2, never()).getData();
     }
 
     @Test
@@ -1063,6 +1756,117 @@ public class Test_RegistryService {
         registryService.getValue("HKLM", "key", "value");
     }
 
+    @Test
+    public void getValuesByName()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegQueryMultipleValues2Response valuesResponse = mock(BaseRegQueryMultipleValues2Response.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(valuesResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valuesResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valuesResponse.getTypes())
+            .thenReturn(new RegistryValueType[] { RegistryValueType.REG_BINARY, RegistryValueType.REG_DWORD });
+        when(valuesResponse.getData())
+            .thenReturn(new byte[][] { { 0x01, 0x23, 0x45, 0x67 }, { 0x67, 0x45, 0x23, 0x01 } });
+
+        final List<RegistryValue> values = registryService.getValues("HKLM", "key", Arrays.asList("value1", "value2"));
+
+        assertEquals(2, values.size());
+        assertEquals(new RegistryValue("value1", RegistryValueType.REG_BINARY, new byte[] { 0x01, 0x23, 0x45, 0x67 }),
+            values.get(0));
+        assertEquals(new RegistryValue("value2", RegistryValueType.REG_DWORD, new byte[] { 0x67, 0x45, 0x23, 0x01 }),
+            values.get(1));
+
+        verify(transport, times(3)).call(any(RequestCall.class));
+    }
+
+    @Test
+    public void getValuesByNameRetriesWithRequiredSize()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegQueryMultipleValues2Response moreDataResponse = mock(BaseRegQueryMultipleValues2Response.class);
+        final BaseRegQueryMultipleValues2Response valuesResponse = mock(BaseRegQueryMultipleValues2Response.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(moreDataResponse).thenReturn(valuesResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(moreDataResponse.getReturnValue()).thenReturn(ERROR_MORE_DATA.getErrorCode());
+        when(moreDataResponse.getRequiredSize()).thenReturn(4096);
+        when(valuesResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valuesResponse.getTypes()).thenReturn(new RegistryValueType[] { RegistryValueType.REG_BINARY });
+        when(valuesResponse.getData()).thenReturn(new byte[][] { { 0x01, 0x23, 0x45, 0x67 } });
+
+        final List<RegistryValue> values = registryService.getValues("HKLM", "key", Arrays.asList("value"));
+
+        assertEquals(1, values.size());
+        assertEquals("value", values.get(0).getName());
+
+        verify(transport, times(4)).call(any(RequestCall.class));
+    }
+
+    @Test
+    public void getValuesByNameFallsBackWhenValueDoesNotExist()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegQueryMultipleValues2Response valuesResponse = mock(BaseRegQueryMultipleValues2Response.class);
+        final BaseRegQueryValueResponse value1Response = mock(BaseRegQueryValueResponse.class);
+        final BaseRegQueryValueResponse value2Response = mock(BaseRegQueryValueResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(valuesResponse).thenReturn(value1Response).thenReturn(value2Response);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valuesResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+        when(value1Response.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+        when(value2Response.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(value2Response.getType()).thenReturn(RegistryValueType.REG_BINARY);
+        when(value2Response.getData()).thenReturn(new byte[] { 0x01, 0x23, 0x45, 0x67 });
+
+        final List<RegistryValue> values = registryService.getValues("HKLM", "key", Arrays.asList("value1", "value2"));
+
+        assertEquals(1, values.size());
+        assertEquals("value2", values.get(0).getName());
+
+        verify(transport, times(5)).call(any(RequestCall.class));
+    }
+
+    @Test
+    public void getValuesByNameFallsBackWhenUnsupported()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegQueryValueResponse valueResponse = mock(BaseRegQueryValueResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenThrow(new RPCException("Request (opnum 34)", 0x1C010002)).thenReturn(valueResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valueResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valueResponse.getType()).thenReturn(RegistryValueType.REG_BINARY);
+        when(valueResponse.getData()).thenReturn(new byte[] { 0x01, 0x23, 0x45, 0x67 });
+
+        assertEquals(1, registryService.getValues("HKLM", "key", Arrays.asList("value")).size());
+        // The server rejected BaseRegQueryMultipleValues2 so it is not attempted again.
+        assertEquals(1, registryService.getValues("HKLM", "key", Arrays.asList("value")).size());
+
+        verify(transport, times(5)).call(any(RequestCall.class));
+    }
+
     @Test
     public void canonicalize() {
         final RPCTransport transport = mock(RPCTransport.class);
@@ -1375,4 +2179,340 @@ public class Test_RegistryService {
         verify(hiveResponse, times(1)).getReturnValue();
         verifyNoMoreInteractions(transport, hiveResponse);
     }
+
+    @Test
+    public void saveKey()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final ReturnValueResponse saveResponse = mock(ReturnValueResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse).thenReturn(saveResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(saveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+
+        registryService.saveKey("HKLM", "SYSTEM\\Select", "..\\Temp\\select.hiv");
+
+        verify(transport, times(3)).call(any(RequestCall.class));
+        verify(saveResponse, times(1)).getReturnValue();
+    }
+
+    @Test
+    public void saveKeyWhenFileExists()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final ReturnValueResponse saveResponse = mock(ReturnValueResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse).thenReturn(saveResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(saveResponse.getReturnValue()).thenReturn(ERROR_ALREADY_EXISTS.getErrorCode());
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("BaseRegSaveKey returned error code: 183 (ERROR_ALREADY_EXISTS)");
+
+        registryService.saveKey("HKLM", "SYSTEM\\Select", "..\\Temp\\select.hiv");
+    }
+
+    @Test
+    public void saveKeyInvalidFilePath()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("File path is invalid: ");
+
+        registryService.saveKey("HKLM", "SYSTEM\\Select", "");
+    }
+
+    @Test
+    public void write()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final BaseRegCreateKeyResponse createResponse = mock(BaseRegCreateKeyResponse.class);
+        final ReturnValueResponse setResponse = mock(ReturnValueResponse.class);
+        final ReturnValueResponse deleteResponse = mock(ReturnValueResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(createResponse)
+            .thenReturn(setResponse).thenReturn(setResponse).thenReturn(deleteResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(hiveResponse.getHandle()).thenReturn(new ContextHandle("0000000032daf234b77c86409d29efe60d326683"));
+        when(createResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(createResponse.getHandle()).thenReturn(new ContextHandle("00000000a5a4c7e7e5e3b54a9c5b1a6c7b1d4e2f"));
+        when(setResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(deleteResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+
+        final RegistryValue value =
+            new RegistryValue("Version", RegistryValueType.REG_SZ, "1.0\0".getBytes("UTF-16LE"));
+        final RegistryValue dwordValue =
+            new RegistryValue("Enabled", RegistryValueType.REG_DWORD, new byte[] {0x01, 0x00, 0x00, 0x00});
+        final List<RegistryResult<Void>> results = registryService.write(Arrays.asList(
+            RegistryWrite.createKey("HKLM", "Software\\\\Vendor\\"),
+            RegistryWrite.setValue("HKLM", "software\\vendor\\", value),
+            RegistryWrite.setValue("HKLM", "Software\\Vendor", dwordValue),
+            RegistryWrite.deleteValue("HKLM", "Software\\Vendor", "Path")));
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        assertTrue(results.get(2).isSuccess());
+        assertTrue(results.get(3).is(ERROR_FILE_NOT_FOUND));
+        assertEquals("BaseRegDeleteValue", results.get(3).getOpName());
+
+        // The handle returned by BaseRegCreateKey is reused, so the key is never opened.
+        final ArgumentCaptor<RequestCall> requests = ArgumentCaptor.forClass(RequestCall.class);
+        verify(transport, times(5)).call(requests.capture());
+        assertEquals(6, requests.getAllValues().get(1).getOpNum());
+        // The key is created with the case given by the caller.
+        assertTrue(toHexString(requests.getAllValues().get(1).getStub())
+            .contains("53006f006600740077006100720065005c00560065006e0064006f007200"));
+        assertEquals(22, requests.getAllValues().get(2).getOpNum());
+        assertEquals("00000000a5a4c7e7e5e3b54a9c5b1a6c7b1d4e2f"
+            + "100010000000020008000000000000000800000056006500720073006900" + "6f006e000000" + "01000000"
+            + "08000000" + "31002e0030000000" + "08000000", toHexString(requests.getAllValues().get(2).getStub()));
+        // REG_DWORD data is written in little-endian order.
+        assertEquals(22, requests.getAllValues().get(3).getOpNum());
+        assertEquals("00000000a5a4c7e7e5e3b54a9c5b1a6c7b1d4e2f"
+            + "1000100000000200080000000000000008000000" + "45006e00610062006c00650064000000" + "04000000"
+            + "04000000" + "01000000" + "04000000", toHexString(requests.getAllValues().get(3).getStub()));
+        assertEquals(8, requests.getAllValues().get(4).getOpNum());
+    }
+
+    @Test
+    public void closeKey()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final HandleResponse closeResponse = mock(HandleResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(closeResponse).thenReturn(keyResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(hiveResponse.getHandle()).thenReturn(new ContextHandle("0000000032daf234b77c86409d29efe60d326683"));
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getHandle()).thenReturn(new ContextHandle("00000000a5a4c7e7e5e3b54a9c5b1a6c7b1d4e2f"));
+
+        assertTrue(registryService.doesKeyExist("HKLM", "Software\\Vendor"));
+        registryService.closeKey("HKLM", "software\\vendor\\");
+        // Neither a key which is not open nor the hive is closed.
+        registryService.closeKey("HKLM", "Software\\Vendor");
+        registryService.closeKey("HKLM", "");
+        // The key is opened again when it is used after it was closed.
+        assertTrue(registryService.doesKeyExist("HKLM", "Software\\Vendor"));
+
+        final ArgumentCaptor<RequestCall> requests = ArgumentCaptor.forClass(RequestCall.class);
+        verify(transport, times(4)).call(requests.capture());
+        assertEquals(5, requests.getAllValues().get(2).getOpNum());
+        assertEquals("00000000a5a4c7e7e5e3b54a9c5b1a6c7b1d4e2f", toHexString(requests.getAllValues().get(2).getStub()));
+        assertEquals(15, requests.getAllValues().get(3).getOpNum());
+    }
+
+    @Test
+    public void writeToMissingKey()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegCreateKeyResponse createResponse = mock(BaseRegCreateKeyResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(createResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+        when(createResponse.getReturnValue()).thenReturn(ERROR_ACCESS_DENIED.getErrorCode());
+
+        final List<RegistryResult<Void>> results =
+            registryService.write(Arrays.asList(RegistryWrite.deleteValue("HKLM", "Software\\Vendor", null),
+                RegistryWrite.createKey("HKLM", "Software\\Vendor")));
+
+        assertTrue(results.get(0).is(ERROR_FILE_NOT_FOUND));
+        assertEquals("BaseRegOpenKey", results.get(0).getOpName());
+        assertTrue(results.get(1).is(ERROR_ACCESS_DENIED));
+        assertEquals("BaseRegCreateKey", results.get(1).getOpName());
+        verify(transport, times(3)).call(any(RequestCall.class));
+    }
+
+    @Test
+    public void writeCreateOpenedKey()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final BaseRegCreateKeyResponse createResponse = mock(BaseRegCreateKeyResponse.class);
+        final HandleResponse closeResponse = mock(HandleResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse)
+            .thenReturn(createResponse).thenReturn(closeResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getHandle()).thenReturn(new ContextHandle("0000000032daf234b77c86409d29efe60d326683"));
+        when(createResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(createResponse.getHandle()).thenReturn(new ContextHandle("00000000a5a4c7e7e5e3b54a9c5b1a6c7b1d4e2f"));
+
+        assertTrue(registryService.doesKeyExist("HKLM", "Software\\Vendor"));
+        assertTrue(registryService.write(Arrays.asList(RegistryWrite.createKey("HKLM", "Software\\Vendor"))).get(0)
+            .isSuccess());
+
+        // The key already had a cached handle, so the duplicate handle is closed.
+        final ArgumentCaptor<RequestCall> requests = ArgumentCaptor.forClass(RequestCall.class);
+        verify(transport, times(4)).call(requests.capture());
+        assertEquals(5, requests.getAllValues().get(3).getOpNum());
+        assertEquals("00000000a5a4c7e7e5e3b54a9c5b1a6c7b1d4e2f", toHexString(requests.getAllValues().get(3).getStub()));
+    }
+
+    @Test
+    public void writeCreateKeyInvalidatesNegativeCache()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse1 = mock(HandleResponse.class);
+        final BaseRegCreateKeyResponse createResponse = mock(BaseRegCreateKeyResponse.class);
+        final HandleResponse keyResponse2 = mock(HandleResponse.class);
+        final RegistryService registryService =
+            new RegistryService(transport, null, new RegistryNegativeCache(1, TimeUnit.HOURS, 100));
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse1)
+            .thenReturn(createResponse).thenReturn(keyResponse2);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse1.getReturnValue()).thenReturn(ERROR_FILE_NOT_FOUND.getErrorCode());
+        when(createResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse2.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+
+        assertFalse(registryService.doesKeyExist("HKLM", "Software\\Vendor"));
+        registryService.write(Arrays.asList(RegistryWrite.createKey("HKLM", "Software\\Vendor\\Product")));
+        assertTrue(registryService.doesKeyExist("HKLM", "Software\\Vendor"));
+
+        verify(transport, times(4)).call(any(RequestCall.class));
+    }
+
+    @Test
+    public void writeInvalid()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Registry writes are invalid: [null]");
+
+        registryService.write(Arrays.asList((RegistryWrite) null));
+    }
+
+    @Test
+    public void writeCreateKeyInvalidKeyPath() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Key path is invalid: \\");
+
+        RegistryWrite.createKey("HKLM", "\\");
+    }
+
+    @Test
+    public void waitForChange()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final ReturnValueResponse notifyResponse = mock(ReturnValueResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse).thenReturn(notifyResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(notifyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+
+        registryService.waitForChange("HKLM", "SOFTWARE\\Policies", true,
+            EnumSet.of(RegistryNotifyFilter.REG_NOTIFY_CHANGE_LAST_SET));
+
+        verify(transport, times(3)).call(any(RequestCall.class));
+        verify(notifyResponse, times(1)).getReturnValue();
+    }
+
+    @Test
+    public void waitForChangeWhenKeyDeleted()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final HandleResponse keyResponse = mock(HandleResponse.class);
+        final ReturnValueResponse notifyResponse = mock(ReturnValueResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(keyResponse).thenReturn(notifyResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(keyResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(notifyResponse.getReturnValue()).thenReturn(ERROR_KEY_DELETED.getErrorCode());
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("BaseRegNotifyChangeKeyValue returned error code: 1018 (ERROR_KEY_DELETED)");
+
+        registryService.waitForChange("HKLM", "SOFTWARE\\Policies", true,
+            EnumSet.of(RegistryNotifyFilter.REG_NOTIFY_CHANGE_LAST_SET));
+    }
+
+    @Test
+    public void waitForChangeEmptyNotifyFilter()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Notify filter is invalid: []");
+
+        registryService.waitForChange("HKLM", "SOFTWARE\\Policies", true, EnumSet.noneOf(RegistryNotifyFilter.class));
+    }
+
+    @Test
+    public void getPerformanceData()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final BaseRegQueryValueResponse moreDataResponse = mock(BaseRegQueryValueResponse.class);
+        final BaseRegQueryValueResponse valueResponse = mock(BaseRegQueryValueResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+        final byte[] data = "PERF".getBytes("UTF-16LE");
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(moreDataResponse).thenReturn(valueResponse).thenReturn(valueResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(moreDataResponse.getReturnValue()).thenReturn(ERROR_MORE_DATA.getErrorCode());
+        when(valueResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valueResponse.getData()).thenReturn(data);
+
+        assertArrayEquals(data, registryService.getPerformanceData("Global"));
+        // The grown buffer size is reused, so the second query fits the first time.
+        assertArrayEquals(data, registryService.getPerformanceData("Global"));
+
+        verify(transport, times(4)).call(any(RequestCall.class));
+        verify(moreDataResponse, times(1)).getReturnValue();
+        verify(moreDataResponse, never()).getData();
+        verify(valueResponse, times(2)).getData();
+    }
+
+    @Test
+    public void getPerformanceDataAccessDenied()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final HandleResponse hiveResponse = mock(HandleResponse.class);
+        final BaseRegQueryValueResponse valueResponse = mock(BaseRegQueryValueResponse.class);
+        final RegistryService registryService = new RegistryService(transport);
+
+        when(transport.call(any(RequestCall.class))).thenReturn(hiveResponse).thenReturn(valueResponse);
+        when(hiveResponse.getReturnValue()).thenReturn(ERROR_SUCCESS.getErrorCode());
+        when(valueResponse.getReturnValue()).thenReturn(ERROR_ACCESS_DENIED.getErrorCode());
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("BaseRegQueryValue returned error code: 5 (ERROR_ACCESS_DENIED)");
+
+        registryService.getPerformanceData("Global");
+    }
 }
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import com.rapid7.client.dcerpc.msrrp.RegistrySnapshot.KeyEntry;
+import com.rapid7.client.dcerpc.msrrp.RegistrySnapshot.ValueEntry;
+
+public class Test_RegistrySnapshot {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void writeAndRead()
+        throws IOException {
+        final RegistrySnapshot snapshot = new RegistrySnapshot();
+        final Map<String, ValueEntry> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        values.put("value", RegistrySnapshot
+            .newValueEntry(new RegistryValue("value", RegistryValueType.REG_SZ, new byte[] { 0x61, 0x00 })));
+        snapshot.putKey("Software", new KeyEntry(116444736000000000l, 1, values));
+        snapshot.putKey("Software\\Vendor", new KeyEntry(116444736000009999l, 0, new TreeMap<String, ValueEntry>()));
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        snapshot.write(outputStream);
+        final RegistrySnapshot readSnapshot =
+            RegistrySnapshot.read(new ByteArrayInputStream(outputStream.toByteArray()));
+
+        assertEquals(2, readSnapshot.size());
+        assertEquals(Arrays.asList("Software", "Software\\Vendor"),
+            Arrays.asList(readSnapshot.getKeyPaths().toArray()));
+        final KeyEntry key = readSnapshot.getKey("SOFTWARE");
+        assertEquals(116444736000000000l, key.getLastWriteTime());
+        assertEquals(1, key.getSubKeys());
+        assertEquals(values.get("value"), key.getValues().get("VALUE"));
+        assertEquals(RegistryValueType.REG_SZ.getTypeID(), key.getValues().get("value").getType());
+        assertEquals(0, readSnapshot.getKey("software\\vendor").getValues().size());
+    }
+
+    @Test
+    public void readInvalidMagic()
+        throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
+        gzipOutputStream.write(new byte[] { 0x01, 0x02, 0x03, 0x04, 0x00, 0x00, 0x00, 0x01 });
+        gzipOutputStream.finish();
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Registry snapshot magic is invalid: 0x01020304");
+
+        RegistrySnapshot.read(new ByteArrayInputStream(outputStream.toByteArray()));
+    }
+
+    @Test
+    public void getDescendants() {
+        final RegistrySnapshot snapshot = new RegistrySnapshot();
+        final KeyEntry key = new KeyEntry(0, 0, new TreeMap<String, ValueEntry>());
+        snapshot.putKey("a", key);
+        snapshot.putKey("a\\b", key);
+        snapshot.putKey("A\\C\\d", key);
+        snapshot.putKey("a b", key);
+        snapshot.putKey("ab", key);
+
+        assertEquals(Arrays.asList("a\\b", "A\\C\\d"), Arrays.asList(snapshot.getDescendants("A").keySet().toArray()));
+        assertEquals(5, snapshot.getDescendants("").size());
+        assertTrue(snapshot.containsKey("AB"));
+        assertFalse(snapshot.containsKey("a\\c"));
+    }
+
+    @Test
+    public void getSubKeyPaths() {
+        final RegistrySnapshot snapshot = new RegistrySnapshot();
+        final KeyEntry key = new KeyEntry(0, 0, new TreeMap<String, ValueEntry>());
+        snapshot.putKey("a", key);
+        snapshot.putKey("a\\b", key);
+        snapshot.putKey("a\\b\\c", key);
+        snapshot.putKey("a\\b[", key);
+        snapshot.putKey("A\\D", key);
+        snapshot.putKey("a\\d\\e\\f", key);
+        snapshot.putKey("ab", key);
+
+        assertEquals(Arrays.asList("a\\b", "a\\b[", "A\\D"), snapshot.getSubKeyPaths("A"));
+        assertEquals(Arrays.asList("a", "ab"), snapshot.getSubKeyPaths(""));
+        assertEquals(Arrays.asList(), snapshot.getSubKeyPaths("ab"));
+    }
+}
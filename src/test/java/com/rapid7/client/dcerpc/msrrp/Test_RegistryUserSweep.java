@@ -0,0 +1,149 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_FILE_NOT_FOUND;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import com.rapid7.client.dcerpc.objects.FileTime;
+
+public class Test_RegistryUserSweep {
+    private final static String HKU = "HKEY_USERS";
+    private final static String SID1 = "S-1-5-21-1004336348-1177238915-682003330-1001";
+    private final static String SID2 = "S-1-5-21-1004336348-1177238915-682003330-1002";
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void constructorInvalidServices() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Registry services are invalid: null");
+
+        new RegistryUserSweep(null);
+    }
+
+    @Test
+    public void getUserSids()
+        throws IOException {
+        final RegistryService service = mock(RegistryService.class);
+        when(service.getSubKeys(HKU, "")).thenReturn(Arrays.asList(key(".DEFAULT"), key("S-1-5-19"),
+            key("S-1-5-20"), key(SID1), key(SID1 + "_Classes"), key("S-1-5-18"), key(SID2)));
+
+        assertEquals(Arrays.asList(SID1, SID2), new RegistryUserSweep(Arrays.asList(service)).getUserSids());
+    }
+
+    @Test
+    public void sweep()
+        throws IOException {
+        final RegistryService service = mock(RegistryService.class);
+        when(service.getSubKeys(HKU, "")).thenReturn(Arrays.asList(key(SID1), key(SID2)));
+        when(service.tryOpenKey(HKU, SID1.toLowerCase() + "\\software\\vendor"))
+            .thenReturn(RegistryResult.<Void>success(null));
+        when(service.tryOpenKey(HKU, SID2.toLowerCase() + "\\software\\vendor"))
+            .thenReturn(RegistryResult.<Void>failure("BaseRegOpenKey", ERROR_FILE_NOT_FOUND.getErrorCode()));
+
+        final RegistryQuery query = RegistryQuery.keyExists("HKCU", "Software\\Vendor");
+        final Map<String, Map<RegistryQuery, RegistryResult<?>>> results = sweep(Arrays.asList(service), query);
+
+        assertEquals(Arrays.asList(SID1, SID2), new ArrayList<>(results.keySet()));
+        assertEquals(true, results.get(SID1).get(query).get());
+        assertEquals(false, results.get(SID2).get(query).get());
+
+        // The keys opened in each user's hive are closed once the user is complete.
+        verify(service).closeKey(HKU, SID1.toLowerCase() + "\\software\\vendor");
+        verify(service).closeKey(HKU, SID2.toLowerCase() + "\\software\\vendor");
+    }
+
+    @Test
+    public void sweepAcrossPipes()
+        throws IOException {
+        final List<RegistryService> services = new ArrayList<>();
+        final List<RegistryKey> keys = new ArrayList<>();
+        for (int index = 0; index < 20; index++) {
+            keys.add(key(String.format("S-1-5-21-1-2-3-%d", 1000 + index)));
+        }
+        for (int index = 0; index < 4; index++) {
+            final RegistryService service = mock(RegistryService.class);
+            when(service.getSubKeys(HKU, "")).thenReturn(keys);
+            when(service.tryOpenKey(anyString(), anyString())).thenReturn(RegistryResult.<Void>success(null));
+            services.add(service);
+        }
+
+        final RegistryQuery query = RegistryQuery.keyExists("HKCU", "");
+        final Map<String, Map<RegistryQuery, RegistryResult<?>>> results = sweep(services, query);
+
+        assertEquals(20, results.size());
+        for (final Map<RegistryQuery, RegistryResult<?>> userResults : results.values()) {
+            assertEquals(true, userResults.get(query).get());
+        }
+    }
+
+    @Test
+    public void sweepInvalidHive()
+        throws IOException {
+        final RegistryService service = mock(RegistryService.class);
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Query is invalid: KEY_EXISTS HKEY_LOCAL_MACHINE\\software");
+
+        try {
+            new RegistryUserSweep(Arrays.asList(service)).sweep(Arrays.asList(SID1),
+                Arrays.asList(RegistryQuery.keyExists("HKLM", "Software")), new RegistryUserSweep.Listener() {
+                    @Override
+                    public void userSwept(final String sid, final Map<RegistryQuery, RegistryResult<?>> results) {
+                    }
+                });
+        } finally {
+            verify(service, never()).tryOpenKey(anyString(), anyString());
+        }
+    }
+
+    private Map<String, Map<RegistryQuery, RegistryResult<?>>> sweep(
+        final List<RegistryService> services,
+        final RegistryQuery query)
+        throws IOException {
+        final Map<String, Map<RegistryQuery, RegistryResult<?>>> results = new TreeMap<>();
+        new RegistryUserSweep(services).sweep(Collections.singletonList(query), new RegistryUserSweep.Listener() {
+            @Override
+            public void userSwept(final String sid, final Map<RegistryQuery, RegistryResult<?>> userResults) {
+                results.put(sid, userResults);
+            }
+        });
+        return results;
+    }
+
+    private static RegistryKey key(final String name) {
+        return new RegistryKey(name, new FileTime(116444736000000000l));
+    }
+}
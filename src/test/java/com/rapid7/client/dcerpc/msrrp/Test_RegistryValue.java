@@ -20,7 +20,10 @@ package com.rapid7.client.dcerpc.msrrp;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import java.io.IOException;
 import org.junit.Test;
 
@@ -899,4 +902,90 @@ public class Test_RegistryValue {
         assertNotEquals(value4, value3);
         assertEquals(value4, value4);
     }
+
+    @Test
+    public void wrap()
+        throws IOException {
+        final byte[] data = "test\0".getBytes("UTF-16LE");
+        final RegistryValue value = RegistryValue.wrap("test", RegistryValueType.REG_SZ, data);
+        assertSame(data, value.getData());
+        assertEquals(new RegistryValue("test", RegistryValueType.REG_SZ, data), value);
+    }
+
+    @Test(expected = IOException.class)
+    public void wrapBadLength()
+        throws IOException {
+        RegistryValue.wrap("test", RegistryValueType.REG_DWORD, new byte[] { 1, 2 });
+    }
+
+    @Test
+    public void REG_DWORD_getDataAsLongUnsigned()
+        throws IOException {
+        final byte[] data = new byte[] { (byte) 0xfe, (byte) 0xff, (byte) 0xff, (byte) 0xff };
+        final RegistryValue value = new RegistryValue("test", RegistryValueType.REG_DWORD, data);
+        assertEquals(-2, value.getDataAsInt());
+        assertEquals(0xfffffffel, value.getDataAsLong());
+        assertEquals(4, value.getDataLength());
+    }
+
+    @Test
+    public void REG_DWORD_BIG_ENDIAN_getDataAsLongUnsigned()
+        throws IOException {
+        final byte[] data = new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xfe };
+        final RegistryValue value = new RegistryValue("test", RegistryValueType.REG_DWORD_BIG_ENDIAN, data);
+        assertEquals(-2, value.getDataAsInt());
+        assertEquals(0xfffffffel, value.getDataAsLong());
+    }
+
+    @Test
+    public void REG_SZ_isDataEqualTo()
+        throws IOException {
+        final byte[] data = "C:\\Windows\0garbage".getBytes("UTF-16LE");
+        final RegistryValue value = new RegistryValue("test", RegistryValueType.REG_SZ, data);
+        assertTrue(value.isDataEqualTo("C:\\Windows"));
+        assertFalse(value.isDataEqualTo("c:\\windows"));
+        assertFalse(value.isDataEqualTo("C:\\Windows\0garbage"));
+        assertFalse(value.isDataEqualTo(null));
+        assertTrue(value.isDataEqualToIgnoreCase("c:\\WINDOWS"));
+        assertFalse(value.isDataEqualToIgnoreCase("c:\\WINNT"));
+    }
+
+    @Test
+    public void REG_SZ_isDataEqualToUnterminated()
+        throws IOException {
+        final RegistryValue value = new RegistryValue("test", RegistryValueType.REG_SZ, "abc".getBytes("UTF-16LE"));
+        assertTrue(value.isDataEqualTo("abc"));
+        assertFalse(value.isDataEqualTo("ab"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void REG_DWORD_isDataEqualTo()
+        throws IOException {
+        final RegistryValue value = new RegistryValue("test", RegistryValueType.REG_DWORD, new byte[4]);
+        value.isDataEqualTo("0");
+    }
+
+    @Test
+    public void REG_MULTI_SZ_multiStrContains()
+        throws IOException {
+        final byte[] data = "LanmanServer\0\0Netlogon\0\0".getBytes("UTF-16LE");
+        final RegistryValue value = new RegistryValue("test", RegistryValueType.REG_MULTI_SZ, data);
+        assertArrayEquals(new String[] { "LanmanServer", "", "Netlogon" }, value.getDataAsMultiStr());
+        assertTrue(value.multiStrContains("LanmanServer"));
+        assertTrue(value.multiStrContains("Netlogon"));
+        assertTrue(value.multiStrContains(""));
+        assertFalse(value.multiStrContains("netlogon"));
+        assertFalse(value.multiStrContains("Lanman"));
+        assertFalse(value.multiStrContains(null));
+    }
+
+    @Test
+    public void REG_MULTI_SZ_multiStrContainsUnterminated()
+        throws IOException {
+        final byte[] data = "a\0bc".getBytes("UTF-16LE");
+        final RegistryValue value = new RegistryValue("test", RegistryValueType.REG_MULTI_SZ, data);
+        assertTrue(value.multiStrContains("a"));
+        assertTrue(value.multiStrContains("bc"));
+        assertFalse(value.multiStrContains(""));
+    }
 }
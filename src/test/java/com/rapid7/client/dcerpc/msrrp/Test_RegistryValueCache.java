@@ -0,0 +1,128 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class Test_RegistryValueCache {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void constructorInvalidTimeToLive() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Time to live is invalid: 0");
+
+        new RegistryValueCache(0, TimeUnit.SECONDS, 1024);
+    }
+
+    @Test
+    public void constructorNullUnit() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Unit is invalid: null");
+
+        new RegistryValueCache(1, null, 1024);
+    }
+
+    @Test
+    public void constructorInvalidMaximumSize() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Maximum size is invalid: 0");
+
+        new RegistryValueCache(1, TimeUnit.SECONDS, 0);
+    }
+
+    @Test
+    public void getValue()
+        throws IOException {
+        final RegistryValueCache cache = new RegistryValueCache(1, TimeUnit.HOURS, 1024);
+        final RegistryValue value = new RegistryValue("value", RegistryValueType.REG_BINARY, new byte[] { 0x01 });
+
+        cache.putValue(RegistryHive.HKEY_LOCAL_MACHINE, "key", 1l, value);
+
+        assertEquals(value, cache.getValue(RegistryHive.HKEY_LOCAL_MACHINE, "key", "value", 1l));
+        assertNull(cache.getValue(RegistryHive.HKEY_CURRENT_USER, "key", "value", 1l));
+        assertNull(cache.getValue(RegistryHive.HKEY_LOCAL_MACHINE, "key2", "value", 1l));
+        assertNull(cache.getValue(RegistryHive.HKEY_LOCAL_MACHINE, "key", "value2", 1l));
+    }
+
+    @Test
+    public void getValueWhenKeyWritten()
+        throws IOException {
+        final RegistryValueCache cache = new RegistryValueCache(1, TimeUnit.HOURS, 1024);
+        final RegistryValue value = new RegistryValue("value", RegistryValueType.REG_BINARY, new byte[] { 0x01 });
+
+        cache.putValue(RegistryHive.HKEY_LOCAL_MACHINE, "key", 1l, value);
+
+        assertNull(cache.getValue(RegistryHive.HKEY_LOCAL_MACHINE, "key", "value", 2l));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void getValues()
+        throws IOException {
+        final RegistryValueCache cache = new RegistryValueCache(1, TimeUnit.HOURS, 1024);
+        final List<RegistryValue> values =
+            Arrays.asList(new RegistryValue("value1", RegistryValueType.REG_BINARY, new byte[] { 0x01 }),
+                new RegistryValue("value2", RegistryValueType.REG_BINARY, new byte[] { 0x02 }));
+
+        cache.putValues(RegistryHive.HKEY_LOCAL_MACHINE, "key", 1l, values);
+
+        assertEquals(values, cache.getValues(RegistryHive.HKEY_LOCAL_MACHINE, "key", 1l));
+        assertEquals(values.get(1), cache.getValue(RegistryHive.HKEY_LOCAL_MACHINE, "key", "value2", 1l));
+        assertNull(cache.getValue(RegistryHive.HKEY_LOCAL_MACHINE, "key", "value3", 1l));
+        assertNull(cache.getValues(RegistryHive.HKEY_LOCAL_MACHINE, "key", 2l));
+    }
+
+    @Test
+    public void evictsWhenFull()
+        throws IOException {
+        final RegistryValueCache cache = new RegistryValueCache(1, TimeUnit.HOURS, 4096);
+
+        for (int index = 0; index < 64; index++) {
+            cache.putValue(RegistryHive.HKEY_LOCAL_MACHINE, "key", 1l,
+                new RegistryValue("value" + index, RegistryValueType.REG_BINARY, new byte[256]));
+        }
+
+        // Each entry weighs more than 256 bytes, so no more than 16 entries fit.
+        assertTrue(cache.size() > 0);
+        assertTrue(cache.size() < 16);
+    }
+
+    @Test
+    public void invalidateAll()
+        throws IOException {
+        final RegistryValueCache cache = new RegistryValueCache(1, TimeUnit.HOURS, 1024);
+
+        cache.putValue(RegistryHive.HKEY_LOCAL_MACHINE, "key", 1l,
+            new RegistryValue("value", RegistryValueType.REG_BINARY, new byte[] { 0x01 }));
+        cache.invalidateAll();
+
+        assertEquals(0, cache.size());
+    }
+}
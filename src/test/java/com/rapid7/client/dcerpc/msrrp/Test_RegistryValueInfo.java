@@ -0,0 +1,67 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import org.junit.Test;
+
+public class Test_RegistryValueInfo {
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorNullName() {
+        new RegistryValueInfo(null, RegistryValueType.REG_SZ, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorNullType() {
+        new RegistryValueInfo("value", null, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorNegativeDataSize() {
+        new RegistryValueInfo("value", RegistryValueType.REG_SZ, -1);
+    }
+
+    @Test
+    public void getters() {
+        final RegistryValueInfo valueInfo = new RegistryValueInfo("value", RegistryValueType.REG_SZ, 22);
+        assertEquals("value", valueInfo.getName());
+        assertEquals(RegistryValueType.REG_SZ, valueInfo.getType());
+        assertEquals(22, valueInfo.getDataSize());
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals("value {type=REG_SZ, dataSize=22}",
+            new RegistryValueInfo("value", RegistryValueType.REG_SZ, 22).toString());
+    }
+
+    @Test
+    public void testEquals() {
+        final RegistryValueInfo valueInfo1 = new RegistryValueInfo("value", RegistryValueType.REG_SZ, 22);
+        final RegistryValueInfo valueInfo2 = new RegistryValueInfo("value", RegistryValueType.REG_SZ, 22);
+        final RegistryValueInfo valueInfo3 = new RegistryValueInfo("value", RegistryValueType.REG_BINARY, 22);
+        final RegistryValueInfo valueInfo4 = new RegistryValueInfo("value", RegistryValueType.REG_SZ, 24);
+
+        assertEquals(valueInfo1, valueInfo2);
+        assertEquals(valueInfo1.hashCode(), valueInfo2.hashCode());
+        assertNotEquals(valueInfo1, valueInfo3);
+        assertNotEquals(valueInfo1, valueInfo4);
+    }
+}
@@ -0,0 +1,263 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_ACCESS_DENIED;
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_FILE_NOT_FOUND;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import com.rapid7.client.dcerpc.objects.FileTime;
+
+public class Test_RegistryWalker {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Map<String, List<String>> tree = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final List<String> failures = new ArrayList<>();
+    private RegistryService registryService;
+    private File checkpointFile;
+
+    @Before
+    public void setup()
+        throws IOException {
+        tree.put("Software", Arrays.asList("A", "B", "C"));
+        tree.put("Software\\A", Arrays.asList("A1", "A2"));
+        tree.put("Software\\A\\A1", new ArrayList<String>());
+        tree.put("Software\\A\\A2", new ArrayList<String>());
+        tree.put("Software\\B", Arrays.asList("B1"));
+        tree.put("Software\\B\\B1", new ArrayList<String>());
+        tree.put("Software\\C", new ArrayList<String>());
+        registryService = mock(RegistryService.class);
+        when(registryService.tryGetSubKeys(anyString(), anyString()))
+            .thenAnswer(new Answer<RegistryResult<List<RegistryKey>>>() {
+                @Override
+                public RegistryResult<List<RegistryKey>> answer(final InvocationOnMock invocation)
+                    throws IOException {
+                    final String keyPath = (String) invocation.getArguments()[1];
+                    if (failures.remove(keyPath)) {
+                        throw new IOException("Pipe closed");
+                    }
+                    if (!tree.containsKey(keyPath)) {
+                        return RegistryResult.failure("BaseRegOpenKey", ERROR_FILE_NOT_FOUND.getErrorCode());
+                    }
+                    if (keyPath.endsWith("Denied")) {
+                        return RegistryResult.failure("BaseRegOpenKey", ERROR_ACCESS_DENIED.getErrorCode());
+                    }
+                    final List<RegistryKey> subKeys = new ArrayList<>();
+                    for (final String name : tree.get(keyPath)) {
+                        subKeys.add(new RegistryKey(name, new FileTime(116444736000000000l)));
+                    }
+                    return RegistryResult.success(subKeys);
+                }
+            });
+        checkpointFile = new File(folder.getRoot(), "walk.checkpoint");
+    }
+
+    @Test
+    public void constructorInvalidInterval() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Checkpoint interval is invalid: 0");
+
+        new RegistryWalker(registryService, checkpointFile, 0);
+    }
+
+    @Test
+    public void walk()
+        throws IOException {
+        tree.put("Software\\C", Arrays.asList("Denied", "Gone"));
+        tree.put("Software\\C\\Denied", new ArrayList<String>());
+
+        final List<String> visited = walk(new RegistryWalker(registryService, checkpointFile, 1));
+
+        assertEquals(Arrays.asList("Software", "Software\\A", "Software\\A\\A1", "Software\\A\\A2", "Software\\B",
+            "Software\\B\\B1", "Software\\C"), visited);
+        assertFalse(checkpointFile.exists());
+
+        // Each key is closed once its subkeys have been walked, children before their parents.
+        final InOrder inOrder = inOrder(registryService);
+        for (final String keyPath : Arrays.asList("Software\\A\\A1", "Software\\A\\A2", "Software\\A",
+            "Software\\B\\B1", "Software\\B", "Software\\C", "Software")) {
+            inOrder.verify(registryService).closeKey("HKLM", keyPath);
+        }
+    }
+
+    @Test
+    public void walkResumesAfterFailure()
+        throws IOException {
+        failures.add("Software\\B\\B1");
+        final List<String> visited = new ArrayList<>();
+        try {
+            walk(new RegistryWalker(registryService, checkpointFile, 1000), visited);
+            fail("Expected a transport error");
+        } catch (final IOException exception) {
+            assertEquals("Pipe closed", exception.getMessage());
+        }
+        assertEquals(Arrays.asList("Software", "Software\\A", "Software\\A\\A1", "Software\\A\\A2", "Software\\B"),
+            visited);
+        assertTrue(new RegistryWalker(registryService, checkpointFile).hasCheckpoint());
+
+        assertEquals(Arrays.asList("Software\\B\\B1", "Software\\C"),
+            walk(new RegistryWalker(registryService, checkpointFile)));
+        assertFalse(checkpointFile.exists());
+    }
+
+    @Test
+    public void walkResumesByName()
+        throws IOException {
+        failures.add("Software\\B\\B1");
+        try {
+            walk(new RegistryWalker(registryService, checkpointFile));
+            fail("Expected a transport error");
+        } catch (final IOException exception) {
+            assertEquals("Pipe closed", exception.getMessage());
+        }
+        // A subkey created before B while the walk was interrupted does not shift the walk.
+        tree.put("Software", Arrays.asList("A", "AA", "B", "C"));
+        tree.put("Software\\AA", new ArrayList<String>());
+
+        assertEquals(Arrays.asList("Software\\B\\B1", "Software\\C"),
+            walk(new RegistryWalker(registryService, checkpointFile)));
+    }
+
+    @Test
+    public void walkResumesAfterDeletedKey()
+        throws IOException {
+        failures.add("Software\\B\\B1");
+        try {
+            walk(new RegistryWalker(registryService, checkpointFile));
+            fail("Expected a transport error");
+        } catch (final IOException exception) {
+            assertEquals("Pipe closed", exception.getMessage());
+        }
+        tree.put("Software", Arrays.asList("A", "C"));
+        tree.remove("Software\\B");
+
+        assertEquals(Arrays.asList("Software\\C"), walk(new RegistryWalker(registryService, checkpointFile)));
+    }
+
+    @Test
+    public void walkVisitorFailureRetriesKey()
+        throws IOException {
+        final List<String> visited = new ArrayList<>();
+        try {
+            new RegistryWalker(registryService, checkpointFile).walk("HKLM", "Software",
+                new RegistryWalker.Visitor() {
+                    @Override
+                    public void visitKey(final String keyPath, final List<RegistryKey> subKeys)
+                        throws IOException {
+                        if (keyPath.equals("Software\\C")) {
+                            throw new IOException("Visitor failed");
+                        }
+                        visited.add(keyPath);
+                    }
+                });
+            fail("Expected a visitor error");
+        } catch (final IOException exception) {
+            assertEquals("Visitor failed", exception.getMessage());
+        }
+
+        assertEquals(Arrays.asList("Software\\C"), walk(new RegistryWalker(registryService, checkpointFile)));
+    }
+
+    @Test
+    public void walkPeriodicCheckpoint()
+        throws IOException {
+        failures.add("Software\\C");
+        try {
+            walk(new RegistryWalker(registryService, checkpointFile, 2));
+            fail("Expected a transport error");
+        } catch (final IOException exception) {
+            assertEquals("Pipe closed", exception.getMessage());
+        }
+
+        final RegistryWalkCheckpoint checkpoint;
+        try (final InputStream inputStream = new FileInputStream(checkpointFile)) {
+            checkpoint = RegistryWalkCheckpoint.read(inputStream);
+        }
+        assertEquals("HKLM", checkpoint.getHiveName());
+        assertEquals("Software", checkpoint.getKeyPath());
+        assertEquals(1, checkpoint.getLevels().size());
+        assertEquals(2, checkpoint.getLevels().get(0).getNextIndex());
+        assertEquals("B", checkpoint.getLevels().get(0).getLastSubKeyName());
+        assertFalse(new File(checkpointFile.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void walkCheckpointForAnotherKey()
+        throws IOException {
+        failures.add("Software\\C");
+        try {
+            walk(new RegistryWalker(registryService, checkpointFile));
+            fail("Expected a transport error");
+        } catch (final IOException exception) {
+            assertEquals("Pipe closed", exception.getMessage());
+        }
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("is for HKLM\\Software");
+
+        new RegistryWalker(registryService, checkpointFile).walk("HKLM", "System", new RegistryWalker.Visitor() {
+            @Override
+            public void visitKey(final String keyPath, final List<RegistryKey> subKeys) {
+            }
+        });
+    }
+
+    private List<String> walk(final RegistryWalker walker)
+        throws IOException {
+        final List<String> visited = new ArrayList<>();
+        walk(walker, visited);
+        return visited;
+    }
+
+    private void walk(final RegistryWalker walker, final List<String> visited)
+        throws IOException {
+        walker.walk("HKLM", "Software\\", new RegistryWalker.Visitor() {
+            @Override
+            public void visitKey(final String keyPath, final List<RegistryKey> subKeys) {
+                visited.add(keyPath);
+            }
+        });
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp;
+
+import static com.rapid7.client.dcerpc.mserref.SystemErrorCode.ERROR_KEY_DELETED;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.EnumSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.mockito.stubbing.Stubber;
+import com.rapid7.client.dcerpc.RPCException;
+
+public class Test_RegistryWatcher {
+    private final static EnumSet<RegistryNotifyFilter> FILTER =
+        EnumSet.of(RegistryNotifyFilter.REG_NOTIFY_CHANGE_LAST_SET);
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void constructorNullRegistryService() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Invalid registry service: null");
+
+        new RegistryWatcher(null, "HKLM", "key", false, FILTER, mock(RegistryWatcher.Listener.class));
+    }
+
+    @Test
+    public void constructorEmptyNotifyFilter() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Notify filter is invalid: []");
+
+        new RegistryWatcher(mock(RegistryService.class), "HKLM", "key", false,
+            EnumSet.noneOf(RegistryNotifyFilter.class), mock(RegistryWatcher.Listener.class));
+    }
+
+    @Test
+    public void watch()
+        throws IOException, InterruptedException {
+        final RegistryService registryService = mock(RegistryService.class);
+        final RegistryWatcher.Listener listener = mock(RegistryWatcher.Listener.class);
+        final RPCException exception =
+            new RPCException("BaseRegNotifyChangeKeyValue", ERROR_KEY_DELETED.getErrorCode());
+        final CountDownLatch failed = new CountDownLatch(1);
+
+        doNothing().doNothing().doThrow(exception).when(registryService).waitForChange("HKLM", "key", true, FILTER);
+        countDown(failed).when(listener).watchFailed("HKLM", "key", exception);
+
+        try (final RegistryWatcher watcher =
+            new RegistryWatcher(registryService, "HKLM", "key", true, FILTER, listener)) {
+            watcher.start();
+            assertTrue(failed.await(10, TimeUnit.SECONDS));
+        }
+
+        verify(registryService, times(3)).waitForChange("HKLM", "key", true, FILTER);
+        verify(listener, times(2)).keyChanged("HKLM", "key");
+        verify(listener, times(1)).watchFailed("HKLM", "key", exception);
+        verifyNoMoreInteractions(registryService, listener);
+    }
+
+    @Test
+    public void close()
+        throws IOException, InterruptedException {
+        final RegistryService registryService = mock(RegistryService.class);
+        final RegistryWatcher.Listener listener = mock(RegistryWatcher.Listener.class);
+        final CountDownLatch parked = new CountDownLatch(1);
+
+        // The parked call returns with an error once the watcher's pipe is closed.
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation)
+                throws IOException {
+                parked.countDown();
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+                } catch (final InterruptedException exception) {
+                    throw new InterruptedIOException();
+                }
+                throw new IOException("Pipe closed");
+            }
+        }).when(registryService).waitForChange("HKLM", "key", false, FILTER);
+
+        final RegistryWatcher watcher = new RegistryWatcher(registryService, "HKLM", "key", false, FILTER, listener);
+        watcher.start();
+        assertTrue(parked.await(10, TimeUnit.SECONDS));
+        watcher.close();
+
+        verify(registryService, timeout(1000).times(1)).waitForChange("HKLM", "key", false, FILTER);
+        verify(listener, after(500).never()).watchFailed(anyString(), anyString(), any(IOException.class));
+        verify(listener, never()).keyChanged(anyString(), anyString());
+    }
+
+    private static Stubber countDown(final CountDownLatch latch) {
+        return doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) {
+                latch.countDown();
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import static org.bouncycastle.util.encoders.Hex.toHexString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import java.io.IOException;
+import java.util.EnumSet;
+import org.junit.Test;
+import com.hierynomus.msdtyp.AccessMask;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+public class Test_BaseRegCreateKeyRequest {
+    private final ContextHandle contextHandle = new ContextHandle("0000000032daf234b77c86409d29efe60d326683");
+    private final BaseRegCreateKeyRequest request =
+        new BaseRegCreateKeyRequest(contextHandle, "Software\\Vendor", 0, EnumSet.of(AccessMask.MAXIMUM_ALLOWED));
+
+    @Test
+    public void getOpNum() {
+        assertEquals(6, request.getOpNum());
+    }
+
+    @Test
+    public void getStub()
+        throws IOException {
+        // Handle, name, empty class, options, access mask, NULL security attributes, disposition.
+        assertEquals("0000000032daf234b77c86409d29efe60d326683" + "2000200000000200100000000000000010000000"
+            + "53006f006600740077006100720065005c00560065006e0064006f0072000000" + "0000000000000000" + "00000000"
+            + "00000002" + "00000000" + "0400020000000000", toHexString(request.getStub()));
+    }
+
+    @Test
+    public void getResponseObject()
+        throws IOException {
+        assertThat(request.getResponseObject(), instanceOf(BaseRegCreateKeyResponse.class));
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import static org.junit.Assert.assertEquals;
+import java.io.IOException;
+import org.junit.Test;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+public class Test_BaseRegCreateKeyResponse {
+    @Test
+    public void unmarshal()
+        throws IOException {
+        final BaseRegCreateKeyResponse response = new BaseRegCreateKeyResponse();
+
+        response.fromHexString("0000000032daf234b77c86409d29efe60d326683" + "0000020001000000" + "00000000");
+
+        assertEquals(new ContextHandle("0000000032daf234b77c86409d29efe60d326683"), response.getHandle());
+        assertEquals(BaseRegCreateKeyResponse.REG_CREATED_NEW_KEY, response.getDisposition());
+        assertEquals(0, response.getReturnValue());
+    }
+
+    @Test
+    public void unmarshalAccessDenied()
+        throws IOException {
+        final BaseRegCreateKeyResponse response = new BaseRegCreateKeyResponse();
+
+        response.fromHexString("0000000000000000000000000000000000000000" + "00000000" + "05000000");
+
+        assertEquals(0, response.getDisposition());
+        assertEquals(5, response.getReturnValue());
+    }
+}
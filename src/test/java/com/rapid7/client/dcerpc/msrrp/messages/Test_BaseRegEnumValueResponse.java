@@ -20,6 +20,7 @@ package com.rapid7.client.dcerpc.msrrp.messages;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import java.io.IOException;
 import org.junit.Test;
 import com.rapid7.client.dcerpc.msrrp.RegistryValueType;
@@ -98,4 +99,20 @@ public class Test_BaseRegEnumValueResponse {
         assertArrayEquals("C:\\Windows\0".getBytes("UTF-16LE"), response.getData());
         assertEquals(0, response.getReturnValue());
     }
+
+    @Test
+    public void unmarshalMoreData()
+        throws IOException {
+        final BaseRegEnumValueResponse response = new BaseRegEnumValueResponse();
+
+        response.fromHexString(
+            "1600feff00000200ff7f0000000000000b000000530079007300740065006d0052006f006f0074000000000004000200010000000800020000000000"
+                + "00000000000000000c000200160000001000020000000000ea000000");
+
+        assertEquals("SystemRoot", response.getName());
+        assertEquals(RegistryValueType.REG_SZ, response.getType());
+        assertNull(response.getData());
+        assertEquals(22, response.getDataSize());
+        assertEquals(0xEA, response.getReturnValue());
+    }
 }
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import static org.bouncycastle.util.encoders.Hex.toHexString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import java.io.IOException;
+import java.util.EnumSet;
+import org.junit.Test;
+import com.hierynomus.msdtyp.SecurityInformation;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+public class Test_BaseRegGetKeySecurityRequest {
+    private final ContextHandle contextHandle = new ContextHandle("0000000032daf234b77c86409d29efe60d326683");
+    private final BaseRegGetKeySecurityRequest request = new BaseRegGetKeySecurityRequest(contextHandle,
+        EnumSet.of(SecurityInformation.OWNER_SECURITY_INFORMATION, SecurityInformation.GROUP_SECURITY_INFORMATION,
+            SecurityInformation.DACL_SECURITY_INFORMATION),
+        4096);
+
+    @Test
+    public void getOpNum() {
+        assertEquals(12, request.getOpNum());
+    }
+
+    @Test
+    public void getStub()
+        throws IOException {
+        // Remote Registry Service, GetKeySecurity
+        //      Operation: GetKeySecurity (12)
+        //      Pointer to Handle (policy_handle)
+        //          Policy Handle: 0000000032daf234b77c86409d29efe60d326683
+        //      Sec Info: 0x00000007
+        //      Pointer to Sd (KeySecurityData)
+        //          Sd
+        //              Pointer to Data (uint8)
+        //                  Referent ID: 0x00020000
+        //                  Max Count: 4096
+        //                  Offset: 0
+        //                  Actual Count: 0
+        //              Size: 4096
+        //              Len: 0
+        assertEquals("0000000032daf234b77c86409d29efe60d326683" + "07000000" + "00000200" + "00100000" + "00000000"
+            + "00100000" + "00000000" + "00000000", toHexString(request.getStub()));
+    }
+
+    @Test
+    public void getResponseObject()
+        throws IOException {
+        assertThat(request.getResponseObject(), instanceOf(BaseRegGetKeySecurityResponse.class));
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import static org.bouncycastle.util.encoders.Hex.toHexString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.io.IOException;
+import org.junit.Test;
+
+public class Test_BaseRegGetKeySecurityResponse {
+    // O:BAG:SYD:(A;;KA;;;SY)
+    private final static String SECURITY_DESCRIPTOR = "010004801400000024000000000000003000000001020000000000052000"
+        + "000020020000010100000000000512000000" + "02001c000100000000001400" + "3f000f00010100000000000512000000";
+
+    @Test
+    public void unmarshal()
+        throws IOException {
+        // Remote Registry Service, GetKeySecurity
+        //      Operation: GetKeySecurity (12)
+        //      Pointer to Sd (KeySecurityData)
+        //          Sd
+        //              Pointer to Data (uint8)
+        //                  Referent ID: 0x00020000
+        //                  Max Count: 4096
+        //                  Offset: 0
+        //                  Actual Count: 76
+        //              Size: 4096
+        //              Len: 76
+        //      Windows Error: WERR_OK (0x00000000)
+        final BaseRegGetKeySecurityResponse response = new BaseRegGetKeySecurityResponse();
+
+        response.fromHexString("00000200" + "00100000" + "4c000000" + "00100000" + "00000000" + "4c000000"
+            + SECURITY_DESCRIPTOR + "00000000");
+
+        assertEquals(SECURITY_DESCRIPTOR, toHexString(response.getSecurityDescriptor()));
+        assertEquals(4096, response.getSecurityDescriptorSize());
+        assertEquals(0, response.getReturnValue());
+    }
+
+    @Test
+    public void unmarshalInsufficientBuffer()
+        throws IOException {
+        final BaseRegGetKeySecurityResponse response = new BaseRegGetKeySecurityResponse();
+
+        response.fromHexString("00000200" + "00200000" + "00000000" + "00100000" + "00000000" + "00000000"
+            + "7a000000");
+
+        assertNull(response.getSecurityDescriptor());
+        assertEquals(8192, response.getSecurityDescriptorSize());
+        assertEquals(0x7A, response.getReturnValue());
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import static org.bouncycastle.util.encoders.Hex.toHexString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import java.io.IOException;
+import java.util.EnumSet;
+import org.junit.Test;
+import com.rapid7.client.dcerpc.msrrp.RegistryNotifyFilter;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+public class Test_BaseRegNotifyChangeKeyValue {
+    private final ContextHandle contextHandle = new ContextHandle("00000000b1ba3ee6c6cb6b40a91e7a3e4c6ba25e");
+    private final BaseRegNotifyChangeKeyValue request = new BaseRegNotifyChangeKeyValue(contextHandle, true,
+        EnumSet.of(RegistryNotifyFilter.REG_NOTIFY_CHANGE_NAME, RegistryNotifyFilter.REG_NOTIFY_CHANGE_LAST_SET));
+
+    @Test
+    public void getOpNum() {
+        assertEquals(14, request.getOpNum());
+    }
+
+    @Test
+    public void getStub()
+        throws IOException {
+        // Remote Registry Service, NotifyChangeKeyValue
+        //      Operation: NotifyChangeKeyValue (14)
+        //      Pointer to Handle (policy_handle)
+        //          Policy Handle: OpenKey(SOFTWARE\Policies)
+        //              Handle: 00000000b1ba3ee6c6cb6b40a91e7a3e4c6ba25e
+        //      Watch Subtree: 1
+        //      Notify Filter: 0x00000005
+        //      Unknown: 0
+        //      String1
+        //          Name Len: 0
+        //          Name Size: 0
+        //          NULL Pointer: Name
+        //      String2
+        //          Name Len: 0
+        //          Name Size: 0
+        //          NULL Pointer: Name
+        //      Unknown2: 0
+        assertEquals(
+            "00000000b1ba3ee6c6cb6b40a91e7a3e4c6ba25e0100000005000000000000000000000000000000000000000000000000000000",
+            toHexString(request.getStub()));
+    }
+
+    @Test
+    public void getResponseObject()
+        throws IOException {
+        assertThat(request.getResponseObject(), instanceOf(ReturnValueResponse.class));
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import static org.bouncycastle.util.encoders.Hex.toHexString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Test;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+public class Test_BaseRegQueryMultipleValues2Request {
+    private final ContextHandle contextHandle = new ContextHandle("000000000a665393f4666e49a68cd99f269d020f");
+    private final BaseRegQueryMultipleValues2Request request =
+        new BaseRegQueryMultipleValues2Request(contextHandle, Arrays.asList("a"), 4);
+
+    @Test
+    public void getOpNum() {
+        assertEquals(34, request.getOpNum());
+    }
+
+    @Test
+    public void getStub()
+        throws IOException {
+        // Remote Registry Service, QueryMultipleValues2
+        //      Operation: QueryMultipleValues2 (34)
+        //      Pointer to Handle (policy_handle)
+        //          Policy Handle
+        //              Handle: 000000000a665393f4666e49a68cd99f269d020f
+        //      Pointer to Values In (QueryMultipleValue)
+        //          Max Count: 1
+        //          Offset: 0
+        //          Actual Count: 1
+        //          Values In
+        //              Pointer to Ve Valuename (winreg_ValNameBuf)
+        //                  Referent ID: 0x00020000
+        //              Ve Valuelen: 0
+        //              Ve Valueptr: 0
+        //              Ve Type: REG_NONE (0)
+        //          Ve Valuename
+        //              Length: 4
+        //              Size: 4
+        //              Pointer to Name (uint16)
+        //                  Referent ID: 0x00020004
+        //                  Max Count: 2
+        //                  Offset: 0
+        //                  Actual Count: 2
+        //                  Name: a
+        //      Num Values: 1
+        //      Pointer to Buffer (uint8)
+        //          Referent ID: 0x00020008
+        //          Max Count: 4
+        //          Offset: 0
+        //          Actual Count: 4
+        //      Pointer to Offered (uint32)
+        //          Offered: 4
+        assertEquals("000000000a665393f4666e49a68cd99f269d020f" + "010000000000000001000000"
+            + "00000200000000000000000000000000" + "040004000400020002000000000000000200000061000000" + "01000000"
+            + "08000200040000000000000004000000" + "00000000" + "04000000", toHexString(request.getStub()));
+    }
+
+    @Test
+    public void getStubWithoutBuffer()
+        throws IOException {
+        final BaseRegQueryMultipleValues2Request request =
+            new BaseRegQueryMultipleValues2Request(contextHandle, Arrays.asList("a"), 0);
+        assertEquals("000000000a665393f4666e49a68cd99f269d020f" + "010000000000000001000000"
+            + "00000200000000000000000000000000" + "040004000400020002000000000000000200000061000000" + "01000000"
+            + "00000000" + "00000000", toHexString(request.getStub()));
+    }
+
+    @Test
+    public void getResponseObject()
+        throws IOException {
+        assertThat(request.getResponseObject(), instanceOf(BaseRegQueryMultipleValues2Response.class));
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.io.IOException;
+import org.junit.Test;
+import com.rapid7.client.dcerpc.msrrp.RegistryValueType;
+
+public class Test_BaseRegQueryMultipleValues2Response {
+    @Test
+    public void unmarshal()
+        throws IOException {
+        // Remote Registry Service, QueryMultipleValues2
+        //      Operation: QueryMultipleValues2 (34)
+        //      Pointer to Values Out (QueryMultipleValue)
+        //          Max Count: 2
+        //          Offset: 0
+        //          Actual Count: 2
+        //          Values Out
+        //              Pointer to Ve Valuename (winreg_ValNameBuf)
+        //                  Referent ID: 0x00020000
+        //              Ve Valuelen: 4
+        //              Ve Valueptr: 0
+        //              Ve Type: REG_DWORD (4)
+        //          Values Out
+        //              Pointer to Ve Valuename (winreg_ValNameBuf)
+        //                  Referent ID: 0x00020004
+        //              Ve Valuelen: 4
+        //              Ve Valueptr: 4
+        //              Ve Type: REG_SZ (1)
+        //          Ve Valuename: a
+        //          Ve Valuename: b
+        //      Pointer to Buffer (uint8)
+        //          Referent ID: 0x00020010
+        //          Max Count: 8
+        //          Offset: 0
+        //          Actual Count: 8
+        //          Buffer: 0100000063000000
+        //      Pointer to Needed (uint32)
+        //          Needed: 8
+        //      Windows Error: WERR_OK (0x00000000)
+        final BaseRegQueryMultipleValues2Response response = new BaseRegQueryMultipleValues2Response();
+
+        response.fromHexString("020000000000000002000000" + "00000200040000000000000004000000"
+            + "04000200040000000400000001000000" + "040004000800020002000000000000000200000061000000"
+            + "040004000c00020002000000000000000200000062000000"
+            + "100002000800000000000000080000000100000063000000" + "08000000" + "00000000");
+
+        assertEquals(2, response.getTypes().length);
+        assertEquals(RegistryValueType.REG_DWORD, response.getTypes()[0]);
+        assertEquals(RegistryValueType.REG_SZ, response.getTypes()[1]);
+        assertArrayEquals(new byte[] { 0x01, 0x00, 0x00, 0x00 }, response.getData()[0]);
+        assertArrayEquals("c\0".getBytes("UTF-16LE"), response.getData()[1]);
+        assertEquals(8, response.getRequiredSize());
+        assertEquals(0, response.getReturnValue());
+    }
+
+    @Test
+    public void unmarshalMoreData()
+        throws IOException {
+        final BaseRegQueryMultipleValues2Response response = new BaseRegQueryMultipleValues2Response();
+
+        response.fromHexString("010000000000000001000000" + "00000200000000000000000000000000"
+            + "040004000400020002000000000000000200000061000000" + "00000000" + "10000000" + "ea000000");
+
+        assertNull(response.getTypes());
+        assertNull(response.getData());
+        assertEquals(16, response.getRequiredSize());
+        assertEquals(0xEA, response.getReturnValue());
+    }
+}
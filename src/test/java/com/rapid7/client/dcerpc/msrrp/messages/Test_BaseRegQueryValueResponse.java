@@ -20,6 +20,7 @@ package com.rapid7.client.dcerpc.msrrp.messages;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import java.io.IOException;
 import org.junit.Test;
 import com.rapid7.client.dcerpc.msrrp.RegistryValueType;
@@ -63,4 +64,18 @@ public class Test_BaseRegQueryValueResponse {
         assertEquals(RegistryValueType.REG_SZ, response.getType());
         assertEquals(0, response.getReturnValue());
     }
+
+    @Test
+    public void unmarshalMoreData()
+        throws IOException {
+        final BaseRegQueryValueResponse response = new BaseRegQueryValueResponse();
+
+        response.fromHexString(
+            "00000200010000000400020000000000000000000000000008000200080000000c00020000000000ea000000");
+
+        assertNull(response.getData());
+        assertEquals(RegistryValueType.REG_SZ, response.getType());
+        assertEquals(8, response.getDataSize());
+        assertEquals(0xEA, response.getReturnValue());
+    }
 }
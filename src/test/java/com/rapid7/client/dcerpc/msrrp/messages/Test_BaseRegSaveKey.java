@@ -0,0 +1,67 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import static org.bouncycastle.util.encoders.Hex.toHexString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import java.io.IOException;
+import org.junit.Test;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+public class Test_BaseRegSaveKey {
+    private final ContextHandle contextHandle = new ContextHandle("000000003bc4e4c6ed08b24f97d3a8bd09a0fd4e");
+    private final BaseRegSaveKey request = new BaseRegSaveKey(contextHandle, "a.hiv");
+
+    @Test
+    public void getOpNum() {
+        assertEquals(20, request.getOpNum());
+    }
+
+    @Test
+    public void getStub()
+        throws IOException {
+        // Remote Registry Service, SaveKey
+        //      Operation: SaveKey (20)
+        //      Pointer to Handle (policy_handle)
+        //          Policy Handle: OpenKey(SYSTEM\Select)
+        //              Handle: 000000003bc4e4c6ed08b24f97d3a8bd09a0fd4e
+        //      Pointer to Filename (winreg_String)
+        //          Filename: a.hiv
+        //              Name Len: 12
+        //              Name Size: 12
+        //              Filename
+        //                  Referent ID: 0x00020000
+        //                  Max Count: 6
+        //                  Offset: 0
+        //                  Actual Count: 6
+        //                  Filename: a.hiv
+        //      NULL Pointer: Pointer to Sec Attrib (KeySecurityAttribute)
+        assertEquals(
+            "000000003bc4e4c6ed08b24f97d3a8bd09a0fd4e0c000c000000020006000000000000000600000061002e00680069007600000000000000",
+            toHexString(request.getStub()));
+    }
+
+    @Test
+    public void getResponseObject()
+        throws IOException {
+        assertThat(request.getResponseObject(), instanceOf(ReturnValueResponse.class));
+    }
+}
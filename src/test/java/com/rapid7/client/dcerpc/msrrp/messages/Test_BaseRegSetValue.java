@@ -0,0 +1,63 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import static org.bouncycastle.util.encoders.Hex.toHexString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import java.io.IOException;
+import org.junit.Test;
+import com.rapid7.client.dcerpc.msrrp.objects.ContextHandle;
+
+public class Test_BaseRegSetValue {
+    private final ContextHandle contextHandle = new ContextHandle("0000000032daf234b77c86409d29efe60d326683");
+
+    @Test
+    public void getOpNum() {
+        assertEquals(22, new BaseRegSetValue(contextHandle, "Version", 1, new byte[0]).getOpNum());
+    }
+
+    @Test
+    public void getStub()
+        throws IOException {
+        final BaseRegSetValue request =
+            new BaseRegSetValue(contextHandle, "Version", 1, "1.0\0".getBytes("UTF-16LE"));
+
+        assertEquals("0000000032daf234b77c86409d29efe60d326683"
+            + "1000100000000200080000000000000008000000560065007200730069006f006e000000" + "01000000" + "08000000"
+            + "31002e0030000000" + "08000000", toHexString(request.getStub()));
+    }
+
+    @Test
+    public void getStubUnalignedData()
+        throws IOException {
+        final BaseRegSetValue request = new BaseRegSetValue(contextHandle, "", 3, new byte[] { 1, 2, 3 });
+
+        assertEquals("0000000032daf234b77c86409d29efe60d326683" + "020002000000020001000000000000000100000000000000"
+            + "03000000" + "03000000" + "01020300" + "03000000", toHexString(request.getStub()));
+    }
+
+    @Test
+    public void getResponseObject()
+        throws IOException {
+        assertThat(new BaseRegSetValue(contextHandle, "Version", 1, new byte[0]).getResponseObject(),
+            instanceOf(ReturnValueResponse.class));
+    }
+}
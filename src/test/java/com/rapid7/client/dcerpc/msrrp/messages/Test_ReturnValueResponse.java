@@ -0,0 +1,39 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.messages;
+
+import static org.junit.Assert.assertEquals;
+import java.io.IOException;
+import org.junit.Test;
+
+public class Test_ReturnValueResponse {
+    @Test
+    public void unmarshal()
+        throws IOException {
+        // Remote Registry Service, SaveKey
+        //      Operation: SaveKey (20)
+        //      [Request in frame: 2061]
+        //      Windows Error: WERR_ALREADY_EXISTS (0x000000b7)
+        final ReturnValueResponse response = new ReturnValueResponse();
+
+        response.fromHexString("b7000000");
+
+        assertEquals(0xB7, response.getReturnValue());
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.perf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds PERF_DATA_BLOCKs for tests. Counters are given as {titleIndex, counterType, counterSize} triples and their
+ * values are laid out in that order in each counter block.
+ */
+class PerfDataBuilder {
+    private final ByteBuffer buffer = ByteBuffer.allocate(65536).order(ByteOrder.LITTLE_ENDIAN);
+    private int numObjectTypes;
+
+    PerfDataBuilder(final String systemName, final long perfTime, final long perfFreq, final long perfTime100nSec) {
+        buffer.put("PERF".getBytes(StandardCharsets.UTF_16LE));
+        buffer.putInt(8, 1);
+        buffer.putInt(12, 1);
+        buffer.putInt(16, 1);
+        buffer.putLong(56, perfTime);
+        buffer.putLong(64, perfFreq);
+        buffer.putLong(72, perfTime100nSec);
+        final byte[] name = (systemName + "\0").getBytes(StandardCharsets.UTF_16LE);
+        buffer.putInt(80, name.length);
+        buffer.putInt(84, 88);
+        buffer.position(88);
+        buffer.put(name);
+        align();
+        buffer.putInt(24, buffer.position());
+    }
+
+    /** Add an object without instances. */
+    PerfDataBuilder object(
+        final int titleIndex,
+        final long perfTime,
+        final long perfFreq,
+        final int[][] counters,
+        final long[] values) {
+        final int object = startObject(titleIndex, perfTime, perfFreq, counters, -1);
+        counterBlock(counters, values);
+        return endObject(object);
+    }
+
+    /** Add an object with instances, given as name and values pairs. */
+    PerfDataBuilder object(
+        final int titleIndex,
+        final long perfTime,
+        final long perfFreq,
+        final int[][] counters,
+        final String[] instances,
+        final long[][] values) {
+        final int object = startObject(titleIndex, perfTime, perfFreq, counters, instances.length);
+        for (int index = 0; index < instances.length; index++) {
+            final int instance = buffer.position();
+            final byte[] name = (instances[index] + "\0").getBytes(StandardCharsets.UTF_16LE);
+            buffer.putInt(0);
+            buffer.putInt(0);
+            buffer.putInt(0);
+            buffer.putInt(-1);
+            buffer.putInt(24);
+            buffer.putInt(name.length);
+            buffer.put(name);
+            align();
+            buffer.putInt(instance, buffer.position() - instance);
+            counterBlock(counters, values[index]);
+        }
+        return endObject(object);
+    }
+
+    byte[] build() {
+        buffer.putInt(20, buffer.position());
+        buffer.putInt(28, numObjectTypes);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private int startObject(
+        final int titleIndex,
+        final long perfTime,
+        final long perfFreq,
+        final int[][] counters,
+        final int numInstances) {
+        final int object = buffer.position();
+        buffer.putInt(object + 4, 64 + 40 * counters.length);
+        buffer.putInt(object + 8, 64);
+        buffer.putInt(object + 12, titleIndex);
+        buffer.putInt(object + 28, 100);
+        buffer.putInt(object + 32, counters.length);
+        buffer.putInt(object + 40, numInstances);
+        buffer.putLong(object + 48, perfTime);
+        buffer.putLong(object + 56, perfFreq);
+        int offset = 8;
+        for (int index = 0; index < counters.length; index++) {
+            final int counter = object + 64 + 40 * index;
+            buffer.putInt(counter, 40);
+            buffer.putInt(counter + 4, counters[index][0]);
+            buffer.putInt(counter + 24, 100);
+            buffer.putInt(counter + 28, counters[index][1]);
+            buffer.putInt(counter + 32, counters[index][2]);
+            buffer.putInt(counter + 36, offset);
+            offset += counters[index][2];
+        }
+        buffer.position(object + 64 + 40 * counters.length);
+        return object;
+    }
+
+    private PerfDataBuilder endObject(final int object) {
+        buffer.putInt(object, buffer.position() - object);
+        numObjectTypes++;
+        return this;
+    }
+
+    private void counterBlock(final int[][] counters, final long[] values) {
+        final int counterBlock = buffer.position();
+        buffer.position(counterBlock + 8);
+        for (int index = 0; index < counters.length; index++) {
+            if (counters[index][2] == 4) {
+                buffer.putInt((int) values[index]);
+            } else {
+                buffer.putLong(values[index]);
+            }
+        }
+        align();
+        buffer.putInt(counterBlock, buffer.position() - counterBlock);
+    }
+
+    private void align() {
+        while (buffer.position() % 8 != 0) {
+            buffer.put((byte) 0);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.perf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class Test_PerfDataParser {
+    private final static int[][] SYSTEM_COUNTERS = {{146, 0x10410400, 4}, {44, 0x00010000, 4}};
+    private final static int[][] PROCESSOR_COUNTERS = {{6, 0x21510500, 8}};
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private static class RecordingVisitor implements PerfDataParser.Visitor {
+        private final List<String> events = new ArrayList<>();
+        private final boolean skipProcessor;
+        private PerfDataBlock block;
+
+        private RecordingVisitor(final boolean skipProcessor) {
+            this.skipProcessor = skipProcessor;
+        }
+
+        @Override
+        public void visitBlock(final PerfDataBlock block) {
+            this.block = block;
+        }
+
+        @Override
+        public boolean visitObject(final PerfObjectType object) {
+            events.add("object " + object.getObjectNameTitleIndex() + " " + object.getCounters());
+            return !skipProcessor || object.getObjectNameTitleIndex() != 238;
+        }
+
+        @Override
+        public void visitCounters(
+            final PerfObjectType object,
+            final PerfInstanceDefinition instance,
+            final long[] values) {
+            events.add(object.getObjectNameTitleIndex() + "\\" + instance + " " + Arrays.toString(values));
+        }
+    }
+
+    private static byte[] newData() {
+        return new PerfDataBuilder("HOST", 3000L, 1000L, 20000000L)
+            .object(2, 0L, 0L, SYSTEM_COUNTERS, new long[] {0xFFFFFFFFL, 7})
+            .object(238, 0L, 0L, PROCESSOR_COUNTERS, new String[] {"0", "_Total"},
+                new long[][] {{15000000L}, {7500000L}})
+            .build();
+    }
+
+    @Test
+    public void parse()
+        throws IOException {
+        final RecordingVisitor visitor = new RecordingVisitor(false);
+
+        PerfDataParser.parse(newData(), visitor);
+
+        assertEquals("HOST", visitor.block.getSystemName());
+        assertEquals(2, visitor.block.getNumObjectTypes());
+        assertEquals(3000L, visitor.block.getPerfTime());
+        assertEquals(1000L, visitor.block.getPerfFreq());
+        assertEquals(20000000L, visitor.block.getPerfTime100nSec());
+        assertEquals(Arrays.asList("object 2 [146 {counterType=0x10410400}, 44 {counterType=0x00010000}]",
+            "2\\null [4294967295, 7]", "object 238 [6 {counterType=0x21510500}]", "238\\0 [15000000]",
+            "238\\_Total [7500000]"), visitor.events);
+    }
+
+    @Test
+    public void parseSkipObject()
+        throws IOException {
+        final RecordingVisitor visitor = new RecordingVisitor(true);
+
+        PerfDataParser.parse(newData(), visitor);
+
+        assertEquals(Arrays.asList("object 2 [146 {counterType=0x10410400}, 44 {counterType=0x00010000}]",
+            "2\\null [4294967295, 7]", "object 238 [6 {counterType=0x21510500}]"), visitor.events);
+    }
+
+    @Test
+    public void parseInstances()
+        throws IOException {
+        final List<PerfInstanceDefinition> instances = new ArrayList<>();
+        final List<long[]> values = new ArrayList<>();
+
+        PerfDataParser.parse(newData(), new PerfDataParser.Visitor() {
+            @Override
+            public void visitBlock(final PerfDataBlock block) {
+            }
+
+            @Override
+            public boolean visitObject(final PerfObjectType object) {
+                return object.getNumInstances() != PerfObjectType.PERF_NO_INSTANCES;
+            }
+
+            @Override
+            public void visitCounters(
+                final PerfObjectType object,
+                final PerfInstanceDefinition instance,
+                final long[] counterValues) {
+                instances.add(instance);
+                values.add(counterValues.clone());
+            }
+        });
+
+        assertEquals(2, instances.size());
+        assertEquals("_Total", instances.get(1).getName());
+        assertEquals(PerfInstanceDefinition.PERF_NO_UNIQUE_ID, instances.get(1).getUniqueID());
+        assertArrayEquals(new long[] {7500000L}, values.get(1));
+    }
+
+    @Test
+    public void parseInvalidSignature()
+        throws IOException {
+        final byte[] data = newData();
+        data[0] = 'X';
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Performance data signature is invalid: XERF");
+
+        PerfDataParser.parse(data, new RecordingVisitor(false));
+    }
+
+    @Test
+    public void parseTruncated()
+        throws IOException {
+        final byte[] data = Arrays.copyOf(newData(), 300);
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Performance data is truncated at offset ");
+
+        PerfDataParser.parse(data, new RecordingVisitor(false));
+    }
+
+    @Test
+    public void parseCounterCountExceedsDefinition()
+        throws IOException {
+        final byte[] data = newData();
+        final ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        final int object = buffer.getInt(24);
+        buffer.putInt(object + 32, Integer.MAX_VALUE);
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Performance counter count is invalid at offset " + object + ": " + Integer.MAX_VALUE);
+
+        PerfDataParser.parse(data, new RecordingVisitor(false));
+    }
+
+    @Test
+    public void parseNegativeCounterCount()
+        throws IOException {
+        final byte[] data = newData();
+        final ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        final int object = buffer.getInt(24);
+        buffer.putInt(object + 32, -2);
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Performance counter count is invalid at offset " + object + ": -2");
+
+        PerfDataParser.parse(data, new RecordingVisitor(false));
+    }
+
+    @Test
+    public void parseInstanceCountExceedsObject()
+        throws IOException {
+        final byte[] data = newData();
+        final ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        final int system = buffer.getInt(24);
+        final int processor = system + buffer.getInt(system);
+        buffer.putInt(processor + 40, Integer.MAX_VALUE);
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Performance instance count is invalid at offset " + processor + ": " + Integer.MAX_VALUE);
+
+        PerfDataParser.parse(data, new RecordingVisitor(false));
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.perf;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.io.IOException;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import com.rapid7.client.dcerpc.msrrp.RegistryService;
+
+public class Test_PerfDataSampler {
+    // Context Switches/sec (PERF_COUNTER_COUNTER), Processor Queue Length (PERF_COUNTER_RAWCOUNT).
+    private final static int[][] SYSTEM_COUNTERS = {{146, 0x10410400, 4}, {44, 0x00010000, 4}};
+    // % Processor Time (PERF_100NSEC_TIMER_INV), a PERF_RAW_FRACTION and its PERF_RAW_BASE.
+    private final static int[][] PROCESSOR_COUNTERS =
+        {{6, 0x21510500, 8}, {1000, 0x20020400, 4}, {1001, 0x40030403, 4}};
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void constructorNullRegistryService() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Invalid registry service: null");
+
+        new PerfDataSampler(null, "Global");
+    }
+
+    @Test
+    public void constructorEmptyValueName() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Value name is invalid: ");
+
+        new PerfDataSampler(mock(RegistryService.class), "");
+    }
+
+    @Test
+    public void sample()
+        throws IOException {
+        final RegistryService registryService = mock(RegistryService.class);
+        final byte[] first = new PerfDataBuilder("HOST", 1000L, 1000L, 0L)
+            .object(2, 0L, 0L, SYSTEM_COUNTERS, new long[] {100, 5})
+            .object(238, 0L, 0L, PROCESSOR_COUNTERS, new String[] {"_Total"}, new long[][] {{0, 1, 4}})
+            .build();
+        final byte[] second = new PerfDataBuilder("HOST", 3000L, 1000L, 20000000L)
+            .object(2, 0L, 0L, SYSTEM_COUNTERS, new long[] {700, 7})
+            .object(238, 0L, 0L, PROCESSOR_COUNTERS, new String[] {"_Total"}, new long[][] {{15000000L, 1, 2}})
+            .build();
+        when(registryService.getPerformanceData("2 238")).thenReturn(first).thenReturn(second);
+        final PerfDataSampler sampler = new PerfDataSampler(registryService, "2 238");
+
+        final List<PerfCounterSample> firstSamples = sampler.sample();
+        final List<PerfCounterSample> secondSamples = sampler.sample();
+
+        assertEquals("[2\\\\44 = 5.0, 238\\_Total\\1000 = 25.0]", firstSamples.toString());
+        assertEquals("[2\\\\146 = 300.0, 2\\\\44 = 7.0, 238\\_Total\\6 = 25.0, 238\\_Total\\1000 = 50.0]",
+            secondSamples.toString());
+        assertEquals(700L, secondSamples.get(0).getRawValue());
+        verify(registryService, times(2)).getPerformanceData("2 238");
+    }
+
+    @Test
+    public void reset()
+        throws IOException {
+        final RegistryService registryService = mock(RegistryService.class);
+        final byte[] data = new PerfDataBuilder("HOST", 1000L, 1000L, 0L)
+            .object(2, 0L, 0L, SYSTEM_COUNTERS, new long[] {100, 5})
+            .build();
+        when(registryService.getPerformanceData("2")).thenReturn(data);
+        final PerfDataSampler sampler = new PerfDataSampler(registryService, "2");
+
+        sampler.sample();
+        sampler.reset();
+
+        assertEquals("[2\\\\44 = 5.0]", sampler.sample().toString());
+    }
+}
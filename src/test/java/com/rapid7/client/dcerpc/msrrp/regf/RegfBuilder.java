@@ -0,0 +1,194 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.regf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds minimal regf hives for tests. Cells are appended to a single hive bin and their offsets returned for use in
+ * the cells which refer to them.
+ */
+class RegfBuilder {
+    final static int NO_CELL = -1;
+    private final static int BASE_BLOCK_SIZE = 4096;
+    private final static int HBIN_HEADER_SIZE = 32;
+    private ByteBuffer bins = ByteBuffer.allocate(65536).order(ByteOrder.LITTLE_ENDIAN);
+    private final Map<Integer, String> keyNames = new HashMap<>();
+    private int minorVersion = 5;
+
+    RegfBuilder() {
+        bins.put("hbin".getBytes(StandardCharsets.US_ASCII));
+        bins.position(HBIN_HEADER_SIZE);
+    }
+
+    RegfBuilder minorVersion(final int minorVersion) {
+        this.minorVersion = minorVersion;
+        return this;
+    }
+
+    int cell(final byte[] data) {
+        final int size = (data.length + 4 + 7) & ~7;
+        if (bins.remaining() < size) {
+            final ByteBuffer grown = ByteBuffer.allocate(bins.capacity() * 2 + size).order(ByteOrder.LITTLE_ENDIAN);
+            bins.flip();
+            grown.put(bins);
+            bins = grown;
+        }
+        final int offset = bins.position();
+        bins.putInt(-size);
+        bins.put(data);
+        bins.position(offset + size);
+        return offset;
+    }
+
+    int nk(
+        final String name,
+        final boolean compressed,
+        final long lastWriteTime,
+        final int subKeys,
+        final int subKeyList,
+        final int values,
+        final int valueList,
+        final int security,
+        final int maxSubKeyLen) {
+        final byte[] nameBytes = encode(name, compressed);
+        final ByteBuffer nk = allocate(76 + nameBytes.length);
+        nk.putShort(0, (short) 0x6B6E);
+        nk.putShort(2, (short) (compressed ? 0x0020 : 0));
+        nk.putLong(4, lastWriteTime);
+        nk.putInt(20, subKeys);
+        nk.putInt(28, subKeyList);
+        nk.putInt(36, values);
+        nk.putInt(40, valueList);
+        nk.putInt(44, security);
+        nk.putInt(52, maxSubKeyLen);
+        nk.putShort(72, (short) nameBytes.length);
+        nk.position(76);
+        nk.put(nameBytes);
+        final int offset = cell(nk.array());
+        keyNames.put(offset, name);
+        return offset;
+    }
+
+    int vk(final String name, final boolean compressed, final int type, final byte[] data) {
+        final int dataSize;
+        final int dataOffset;
+        if (data.length <= 4) {
+            dataSize = 0x80000000 | data.length;
+            dataOffset = ByteBuffer.wrap(Arrays.copyOf(data, 4)).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        } else if (data.length > 16344) {
+            dataSize = data.length;
+            dataOffset = db(data);
+        } else {
+            dataSize = data.length;
+            dataOffset = cell(data);
+        }
+        final byte[] nameBytes = encode(name, compressed);
+        final ByteBuffer vk = allocate(20 + nameBytes.length);
+        vk.putShort(0, (short) 0x6B76);
+        vk.putShort(2, (short) nameBytes.length);
+        vk.putInt(4, dataSize);
+        vk.putInt(8, dataOffset);
+        vk.putInt(12, type);
+        vk.putShort(16, (short) (compressed ? 0x0001 : 0));
+        vk.position(20);
+        vk.put(nameBytes);
+        return cell(vk.array());
+    }
+
+    int list(final String signature, final int... cellOffsets) {
+        final int elementSize = signature.equals("lf") || signature.equals("lh") ? 8 : 4;
+        final ByteBuffer list = allocate(4 + elementSize * cellOffsets.length);
+        list.put(signature.getBytes(StandardCharsets.US_ASCII));
+        list.putShort((short) cellOffsets.length);
+        for (final int cellOffset : cellOffsets) {
+            list.putInt(cellOffset);
+            if (elementSize == 8) {
+                list.putInt(signature.equals("lh") ? hash(keyNames.get(cellOffset)) : 0);
+            }
+        }
+        return cell(list.array());
+    }
+
+    int offsets(final int... cellOffsets) {
+        final ByteBuffer offsets = allocate(4 * cellOffsets.length);
+        for (final int cellOffset : cellOffsets) {
+            offsets.putInt(cellOffset);
+        }
+        return cell(offsets.array());
+    }
+
+    int sk(final int descriptorSize) {
+        final ByteBuffer sk = allocate(20 + descriptorSize);
+        sk.putShort(0, (short) 0x6B73);
+        sk.putInt(16, descriptorSize);
+        return cell(sk.array());
+    }
+
+    ByteBuffer build(final int rootCellOffset) {
+        final ByteBuffer hive = ByteBuffer.allocate(BASE_BLOCK_SIZE + bins.position()).order(ByteOrder.LITTLE_ENDIAN);
+        hive.put("regf".getBytes(StandardCharsets.US_ASCII));
+        hive.putInt(20, 1);
+        hive.putInt(24, minorVersion);
+        hive.putInt(36, rootCellOffset);
+        hive.putInt(40, bins.position());
+        hive.position(BASE_BLOCK_SIZE);
+        final ByteBuffer binsCopy = bins.duplicate();
+        binsCopy.flip();
+        hive.put(binsCopy);
+        hive.flip();
+        return hive;
+    }
+
+    private int db(final byte[] data) {
+        final int segmentCount = (data.length + 16343) / 16344;
+        final int[] segments = new int[segmentCount];
+        for (int index = 0; index < segmentCount; index++) {
+            final int from = index * 16344;
+            segments[index] = cell(Arrays.copyOfRange(data, from, Math.min(data.length, from + 16344)));
+        }
+        final int segmentList = offsets(segments);
+        final ByteBuffer db = allocate(8);
+        db.putShort(0, (short) 0x6264);
+        db.putShort(2, (short) segmentCount);
+        db.putInt(4, segmentList);
+        return cell(db.array());
+    }
+
+    private static int hash(final String name) {
+        int hash = 0;
+        for (final char c : name.toUpperCase().toCharArray()) {
+            hash = 37 * hash + c;
+        }
+        return hash;
+    }
+
+    private static ByteBuffer allocate(final int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static byte[] encode(final String name, final boolean compressed) {
+        return name.getBytes(compressed ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_16LE);
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.regf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import com.rapid7.client.dcerpc.RPCException;
+import com.rapid7.client.dcerpc.msrrp.RegistryKey;
+import com.rapid7.client.dcerpc.msrrp.RegistryValue;
+import com.rapid7.client.dcerpc.msrrp.RegistryValueType;
+import com.rapid7.client.dcerpc.objects.FileTime;
+
+public class Test_OfflineRegistry {
+    private final static int NO_CELL = RegfBuilder.NO_CELL;
+    private final static long EPOCH = 116444736000000000L;
+    private final static byte[] SZ = "Windows 10 Pro\0".getBytes(StandardCharsets.UTF_16LE);
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private ByteBuffer hive;
+
+    @Before
+    public void setUp() {
+        final RegfBuilder builder = new RegfBuilder();
+        final int productName = builder.vk("ProductName", true, RegistryValueType.REG_SZ.getTypeID(), SZ);
+        final int currentVersion =
+            builder.nk("CurrentVersion", true, EPOCH + 2, 0, NO_CELL, 1, builder.offsets(productName), NO_CELL, 0);
+        final int fonts = builder.nk("Fonts", true, EPOCH + 3, 0, NO_CELL, 0, NO_CELL, NO_CELL, 0);
+        final int windowsNT =
+            builder.nk("Windows NT", true, EPOCH + 1, 2, builder.list("lh", fonts, currentVersion), 0, NO_CELL,
+                NO_CELL, 0);
+        final int microsoft =
+            builder.nk("Microsoft", true, EPOCH, 1, builder.list("lh", windowsNT), 0, NO_CELL, NO_CELL, 0);
+        final int root =
+            builder.nk("SOFTWARE", true, EPOCH, 1, builder.list("lh", microsoft), 0, NO_CELL, NO_CELL, 0);
+        hive = builder.build(root);
+    }
+
+    @Test
+    public void constructorNullHive() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Invalid hive: null");
+
+        new OfflineRegistry(null);
+    }
+
+    @Test
+    public void open()
+        throws IOException {
+        final File file = folder.newFile("software.hiv");
+        try (final FileChannel channel = new FileOutputStream(file).getChannel()) {
+            channel.write(hive);
+        }
+
+        final OfflineRegistry registry = OfflineRegistry.open(file);
+
+        assertEquals("Windows 10 Pro",
+            registry.getValue("Microsoft\\Windows NT\\CurrentVersion", "ProductName").getDataAsStr());
+    }
+
+    @Test
+    public void doesKeyExist()
+        throws IOException {
+        final OfflineRegistry registry = new OfflineRegistry(new RegfHive(hive));
+
+        assertTrue(registry.doesKeyExist(""));
+        assertTrue(registry.doesKeyExist("microsoft\\WINDOWS NT\\currentversion"));
+        assertTrue(registry.doesKeyExist("\\Microsoft\\\\Windows NT\\"));
+        assertFalse(registry.doesKeyExist("Microsoft\\Windows"));
+        assertFalse(registry.doesKeyExist("Microsoft\\Windows\\CurrentVersion"));
+    }
+
+    @Test
+    public void doesValueExist()
+        throws IOException {
+        final OfflineRegistry registry = new OfflineRegistry(new RegfHive(hive));
+
+        assertTrue(registry.doesValueExist("Microsoft\\Windows NT\\CurrentVersion", "productname"));
+        assertFalse(registry.doesValueExist("Microsoft\\Windows NT\\CurrentVersion", "ProductId"));
+    }
+
+    @Test
+    public void getKeyInfo()
+        throws IOException {
+        final OfflineRegistry registry = new OfflineRegistry(new RegfHive(hive));
+
+        assertEquals(2, registry.getKeyInfo("Microsoft\\Windows NT").getSubKeys());
+        assertEquals(1, registry.getKeyInfo("Microsoft\\Windows NT\\CurrentVersion").getValues());
+    }
+
+    @Test
+    public void getSubKeys()
+        throws IOException {
+        final OfflineRegistry registry = new OfflineRegistry(new RegfHive(hive));
+
+        assertEquals(Arrays.asList(new RegistryKey("Fonts", new FileTime(EPOCH + 3)),
+            new RegistryKey("CurrentVersion", new FileTime(EPOCH + 2))), registry.getSubKeys("Microsoft\\Windows NT"));
+    }
+
+    @Test
+    public void getValues()
+        throws IOException {
+        final OfflineRegistry registry = new OfflineRegistry(new RegfHive(hive));
+
+        assertEquals(Arrays.asList(new RegistryValue("ProductName", RegistryValueType.REG_SZ, SZ)),
+            registry.getValues("Microsoft\\Windows NT\\CurrentVersion"));
+    }
+
+    @Test
+    public void getValueWhenDoesNotExist()
+        throws IOException {
+        final OfflineRegistry registry = new OfflineRegistry(new RegfHive(hive));
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("BaseRegQueryValue returned error code: 2 (ERROR_FILE_NOT_FOUND)");
+
+        registry.getValue("Microsoft\\Windows NT\\CurrentVersion", "ProductId");
+    }
+
+    @Test
+    public void getValuesWhenKeyDoesNotExist()
+        throws IOException {
+        final OfflineRegistry registry = new OfflineRegistry(new RegfHive(hive));
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("BaseRegOpenKey returned error code: 2 (ERROR_FILE_NOT_FOUND)");
+
+        registry.getValues("Microsoft\\Windows\\CurrentVersion");
+    }
+
+    @Test
+    public void openKeyIndexed()
+        throws IOException {
+        final OfflineRegistry registry = new OfflineRegistry(new RegfHive(hive));
+
+        assertSame(registry.openKey("Microsoft\\Windows NT"), registry.openKey("MICROSOFT\\windows nt\\"));
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.regf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class Test_RegfHive {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void constructorNullBuffer()
+        throws IOException {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Buffer is invalid: null");
+
+        new RegfHive(null);
+    }
+
+    @Test
+    public void constructorTruncated()
+        throws IOException {
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Hive is truncated: 512 bytes");
+
+        new RegfHive(ByteBuffer.allocate(512));
+    }
+
+    @Test
+    public void constructorInvalidSignature()
+        throws IOException {
+        final ByteBuffer buffer = new RegfBuilder().build(0);
+        buffer.put(0, (byte) 'x');
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Hive signature is invalid: 0x66676578");
+
+        new RegfHive(buffer);
+    }
+
+    @Test
+    public void read()
+        throws IOException {
+        final RegfBuilder builder = new RegfBuilder().minorVersion(3);
+        final int root = builder.nk("Select", true, 0, 0, RegfBuilder.NO_CELL, 0, RegfBuilder.NO_CELL,
+            RegfBuilder.NO_CELL, 0);
+        final ByteBuffer buffer = builder.build(root);
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+
+        final RegfHive hive = RegfHive.read(new ByteArrayInputStream(bytes));
+
+        assertEquals(3, hive.getMinorVersion());
+        assertEquals("Select", hive.getRootKey().getName());
+    }
+
+    @Test
+    public void getKey()
+        throws IOException {
+        final RegfBuilder builder = new RegfBuilder();
+        final int services = builder.nk("Services", true, 0, 0, RegfBuilder.NO_CELL, 0, RegfBuilder.NO_CELL,
+            RegfBuilder.NO_CELL, 0);
+        final int control = builder.nk("Control", true, 0, 0, RegfBuilder.NO_CELL, 0, RegfBuilder.NO_CELL,
+            RegfBuilder.NO_CELL, 0);
+        final int currentControlSet = builder.nk("CurrentControlSet", true, 0, 2, builder.list("lh", control, services),
+            0, RegfBuilder.NO_CELL, RegfBuilder.NO_CELL, 0);
+        final int root = builder.nk("SYSTEM", true, 0, 1, builder.list("lf", currentControlSet), 0,
+            RegfBuilder.NO_CELL, RegfBuilder.NO_CELL, 0);
+        final RegfHive hive = new RegfHive(builder.build(root));
+
+        assertEquals("SYSTEM", hive.getKey("").getName());
+        assertEquals("Services", hive.getKey("currentcontrolset\\SERVICES").getName());
+        assertEquals("Control", hive.getKey("\\CurrentControlSet\\\\Control\\").getName());
+        assertNull(hive.getKey("CurrentControlSet\\Enum"));
+        assertNull(hive.getKey("Select\\Current"));
+    }
+
+    @Test
+    public void getKeyInvalidCell()
+        throws IOException {
+        final RegfHive hive = new RegfHive(new RegfBuilder().build(0x10000));
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Hive cell offset is invalid: 65536");
+
+        hive.getRootKey();
+    }
+}
@@ -0,0 +1,252 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.msrrp.regf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import com.rapid7.client.dcerpc.msrrp.RegistryKey;
+import com.rapid7.client.dcerpc.msrrp.RegistryKeyInfo;
+import com.rapid7.client.dcerpc.msrrp.RegistryValue;
+import com.rapid7.client.dcerpc.msrrp.RegistryValueType;
+import com.rapid7.client.dcerpc.objects.FileTime;
+
+public class Test_RegfKey {
+    private final static int NO_CELL = RegfBuilder.NO_CELL;
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void getKeyInfo()
+        throws IOException {
+        final RegfBuilder builder = new RegfBuilder();
+        final int sk = builder.sk(92);
+        final int child = builder.nk("Child", true, 0, 0, NO_CELL, 0, NO_CELL, NO_CELL, 0);
+        // Virtualization flags in the upper bits of the maximum subkey name length are ignored.
+        final int root = builder.nk("Root", true, 116444736000000000L, 1, builder.list("lf", child), 0, NO_CELL, sk,
+            0x0100000A);
+        final RegfKey key = new RegfHive(builder.build(root)).getRootKey();
+
+        final RegistryKeyInfo keyInfo = key.getKeyInfo();
+
+        assertEquals(1, keyInfo.getSubKeys());
+        assertEquals(5, keyInfo.getMaxSubKeyLen());
+        assertEquals(0, keyInfo.getValues());
+        assertEquals(92, keyInfo.getSecurityDescriptor());
+        assertEquals(116444736000000000L, keyInfo.getLastWriteTime());
+        assertEquals(new RegistryKey("Root", new FileTime(116444736000000000L)), key.toRegistryKey());
+    }
+
+    @Test
+    public void getName()
+        throws IOException {
+        final RegfBuilder builder = new RegfBuilder();
+        final int compressed = builder.nk("Caf\u00e9", true, 0, 0, NO_CELL, 0, NO_CELL, NO_CELL, 0);
+        final int unicode = builder.nk("\u6771\u4eac", false, 0, 0, NO_CELL, 0, NO_CELL, NO_CELL, 0);
+        final int root = builder.nk("Root", true, 0, 2, builder.list("li", compressed, unicode), 0, NO_CELL, NO_CELL,
+            0);
+        final RegfKey key = new RegfHive(builder.build(root)).getRootKey();
+
+        final List<RegfKey> subKeys = key.getSubKeys();
+
+        assertEquals(2, subKeys.size());
+        assertEquals("Caf\u00e9", subKeys.get(0).getName());
+        assertEquals("\u6771\u4eac", subKeys.get(1).getName());
+    }
+
+    @Test
+    public void getSubKeysIndexRoot()
+        throws IOException {
+        final RegfBuilder builder = new RegfBuilder();
+        final int a = builder.nk("A", true, 0, 0, NO_CELL, 0, NO_CELL, NO_CELL, 0);
+        final int b = builder.nk("B", true, 0, 0, NO_CELL, 0, NO_CELL, NO_CELL, 0);
+        final int c = builder.nk("C", true, 0, 0, NO_CELL, 0, NO_CELL, NO_CELL, 0);
+        final int ri = builder.list("ri", builder.list("lh", a, b), builder.list("li", c));
+        final int root = builder.nk("Root", true, 0, 3, ri, 0, NO_CELL, NO_CELL, 0);
+        final RegfKey key = new RegfHive(builder.build(root)).getRootKey();
+
+        final List<RegfKey> subKeys = key.getSubKeys();
+
+        assertEquals(3, subKeys.size());
+        assertEquals("A", subKeys.get(0).getName());
+        assertEquals("B", subKeys.get(1).getName());
+        assertEquals("C", subKeys.get(2).getName());
+        assertEquals("B", key.getSubKey("b").getName());
+        assertNull(key.getSubKey("D"));
+    }
+
+    @Test
+    public void getSubKeysNestedIndexRoot()
+        throws IOException {
+        final RegfBuilder builder = new RegfBuilder();
+        final int a = builder.nk("A", true, 0, 0, NO_CELL, 0, NO_CELL, NO_CELL, 0);
+        final int inner = builder.list("ri", builder.list("li", a));
+        final int ri = builder.list("ri", inner);
+        final int root = builder.nk("Root", true, 0, 1, ri, 0, NO_CELL, NO_CELL, 0);
+        final RegfKey key = new RegfHive(builder.build(root)).getRootKey();
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Nested index root at offset " + inner);
+
+        key.getSubKeys();
+    }
+
+    @Test
+    public void getValues()
+        throws IOException {
+        final RegfBuilder builder = new RegfBuilder();
+        final byte[] dword = {0x01, 0x00, 0x00, 0x00};
+        final byte[] sz = "C:\\Windows\0".getBytes(StandardCharsets.UTF_16LE);
+        final int current = builder.vk("Current", true, RegistryValueType.REG_DWORD.getTypeID(), dword);
+        final int systemRoot = builder.vk("SystemRoot", false, RegistryValueType.REG_SZ.getTypeID(), sz);
+        final int unknown = builder.vk("Unknown", true, 0x7FFF, new byte[0]);
+        final int root = builder.nk("Root", true, 0, 0, NO_CELL, 3, builder.offsets(current, unknown, systemRoot),
+            NO_CELL, 0);
+        final RegfKey key = new RegfHive(builder.build(root)).getRootKey();
+
+        final List<RegistryValue> values = key.getValues();
+
+        assertEquals(Arrays.asList(new RegistryValue("Current", RegistryValueType.REG_DWORD, dword),
+            new RegistryValue("SystemRoot", RegistryValueType.REG_SZ, sz)), values);
+        assertEquals(1, key.getValue("current").getDataAsInt());
+        assertEquals("C:\\Windows", key.getValue("SystemRoot").getDataAsStr());
+        assertNull(key.getValue("Unknown"));
+        assertNull(key.getValue("Missing"));
+    }
+
+    @Test
+    public void getValueBigData()
+        throws IOException {
+        final RegfBuilder builder = new RegfBuilder();
+        final byte[] data = new byte[40000];
+        for (int index = 0; index < data.length; index++) {
+            data[index] = (byte) index;
+        }
+        final int big = builder.vk("Big", true, RegistryValueType.REG_BINARY.getTypeID(), data);
+        final int root = builder.nk("Root", true, 0, 0, NO_CELL, 1, builder.offsets(big), NO_CELL, 0);
+        final RegfKey key = new RegfHive(builder.build(root)).getRootKey();
+
+        assertArrayEquals(data, key.getValue("Big").getData());
+    }
+
+    @Test
+    public void getValueInvalidDataSize()
+        throws IOException {
+        final RegfBuilder builder = new RegfBuilder();
+        final int data = builder.cell(new byte[8]);
+        final int value = builder.vk("Value", true, RegistryValueType.REG_BINARY.getTypeID(), new byte[8]);
+        final int root = builder.nk("Root", true, 0, 0, NO_CELL, 1, builder.offsets(value), NO_CELL, 0);
+        final ByteBuffer buffer = builder.build(root);
+        // Point the value at a cell which is smaller than its data size.
+        final int valueCell = 4096 + value + 4;
+        buffer.putInt(valueCell + 4, 64);
+        buffer.putInt(valueCell + 8, data);
+        final RegfKey key = new RegfHive(buffer).getRootKey();
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Value data size is invalid at offset " + data + ": 64");
+
+        key.getValue("Value");
+    }
+
+    @Test
+    public void getSubKeysCountExceedsList()
+        throws IOException {
+        final RegfBuilder builder = new RegfBuilder();
+        final int a = builder.nk("A", true, 0, 0, NO_CELL, 0, NO_CELL, NO_CELL, 0);
+        final int li = builder.list("li", a);
+        final int root = builder.nk("Root", true, 0, 1, li, 0, NO_CELL, NO_CELL, 0);
+        final ByteBuffer buffer = builder.build(root);
+        buffer.putShort(4096 + li + 4 + 2, (short) 0xFFFF);
+        final RegfKey key = new RegfHive(buffer).getRootKey();
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Subkey list count is invalid at offset " + li + ": 65535");
+
+        key.getSubKeys();
+    }
+
+    @Test
+    public void getSubKeysNegativeCount()
+        throws IOException {
+        final RegfBuilder builder = new RegfBuilder();
+        final int a = builder.nk("A", true, 0, 0, NO_CELL, 0, NO_CELL, NO_CELL, 0);
+        final int root = builder.nk("Root", true, 0, -1, builder.list("lh", a), 0, NO_CELL, NO_CELL, 0);
+        final RegfKey key = new RegfHive(builder.build(root)).getRootKey();
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Subkey count is invalid: -1");
+
+        key.getSubKeys();
+    }
+
+    @Test
+    public void getValuesCountExceedsValueList()
+        throws IOException {
+        final RegfBuilder builder = new RegfBuilder();
+        final int value = builder.vk("Value", true, RegistryValueType.REG_DWORD.getTypeID(), new byte[4]);
+        final int valueList = builder.offsets(value);
+        final int root = builder.nk("Root", true, 0, 0, NO_CELL, Integer.MAX_VALUE, valueList, NO_CELL, 0);
+        final RegfKey key = new RegfHive(builder.build(root)).getRootKey();
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Value count is invalid at offset " + valueList + ": " + Integer.MAX_VALUE);
+
+        key.getValues();
+    }
+
+    @Test
+    public void getValueNegativeCount()
+        throws IOException {
+        final RegfBuilder builder = new RegfBuilder();
+        final int value = builder.vk("Value", true, RegistryValueType.REG_DWORD.getTypeID(), new byte[4]);
+        final int valueList = builder.offsets(value);
+        final int root = builder.nk("Root", true, 0, 0, NO_CELL, -1, valueList, NO_CELL, 0);
+        final RegfKey key = new RegfHive(builder.build(root)).getRootKey();
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Value count is invalid at offset " + valueList + ": -1");
+
+        key.getValue("Value");
+    }
+
+    @Test
+    public void getValueBigDataSizeExceedsSegments()
+        throws IOException {
+        final RegfBuilder builder = new RegfBuilder();
+        final int big = builder.vk("Big", true, RegistryValueType.REG_BINARY.getTypeID(), new byte[40000]);
+        final int root = builder.nk("Root", true, 0, 0, NO_CELL, 1, builder.offsets(big), NO_CELL, 0);
+        final ByteBuffer buffer = builder.build(root);
+        buffer.putInt(4096 + big + 4 + 4, Integer.MAX_VALUE);
+        final RegfKey key = new RegfHive(buffer).getRootKey();
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Value data size exceeds its 3 segments: " + Integer.MAX_VALUE);
+
+        key.getValue("Big");
+    }
+}
@@ -19,21 +19,39 @@
 package com.rapid7.client.dcerpc.mssrvs;
 
 import static org.junit.Assert.assertEquals;
+import static org.bouncycastle.util.encoders.Hex.toHexString;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
 import com.google.common.collect.Lists;
 import com.hierynomus.protocol.transport.TransportException;
 import com.rapid7.client.dcerpc.RPCException;
 import com.rapid7.client.dcerpc.messages.RequestCall;
 import com.rapid7.client.dcerpc.mserref.SystemErrorCode;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetConnectionInfo0;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetFileInfo2;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetFileInfo3;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetSessionInfo0;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetSessionInfo10;
 import com.rapid7.client.dcerpc.mssrvs.messages.NetShareInfo0;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetprPathCanonicalizeResponse;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetrConnectionEnumResponse;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetrFileEnumRequest;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetrFileEnumResponse;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetrSessionEnumResponse;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetrShareEnumRequest;
 import com.rapid7.client.dcerpc.mssrvs.messages.NetrShareEnumResponse;
 import com.rapid7.client.dcerpc.transport.RPCTransport;
 
@@ -157,4 +175,281 @@ public class Test_ServerService {
         final ServerService serverService = new ServerService(transport);
         serverService.getShares();
     }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void getSharesPaged()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final NetrShareEnumResponse response = mock(NetrShareEnumResponse.class);
+        final List<String> visited = new ArrayList<>();
+
+        when(transport.call((RequestCall<NetrShareEnumResponse>) any())).thenReturn(response);
+        when(response.getReturnValue()).thenReturn(SystemErrorCode.ERROR_MORE_DATA.getErrorCode())
+            .thenReturn(SystemErrorCode.ERROR_SUCCESS.getErrorCode());
+        when(response.getResumeHandle()).thenReturn(2);
+        when(response.getShares())
+            .thenReturn(Lists.newArrayList(new NetShareInfo0("test1"), new NetShareInfo0("test2")))
+            .thenReturn(Lists.newArrayList(new NetShareInfo0("test3")));
+
+        final ServerService serverService = new ServerService(transport);
+        serverService.getShares(1, 4096, new ServerService.ShareVisitor() {
+            @Override
+            public void visitShare(final NetShareInfo0 share) {
+                visited.add(share.getName());
+            }
+        });
+
+        assertEquals(Lists.newArrayList("test1", "test2", "test3"), visited);
+
+        final ArgumentCaptor<NetrShareEnumRequest> requests = ArgumentCaptor.forClass(NetrShareEnumRequest.class);
+        verify(transport, times(2)).call(requests.capture());
+        assertEquals("000000000100000001000000000002000000000000000000001000000400020000000000",
+            toHexString(requests.getAllValues().get(0).getStub()));
+        assertEquals("000000000100000001000000000002000000000000000000001000000400020002000000",
+            toHexString(requests.getAllValues().get(1).getStub()));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void getSharesPagedVisitorFails()
+        throws IOException {
+        thrown.expect(IOException.class);
+        thrown.expectMessage("stop");
+
+        final RPCTransport transport = mock(RPCTransport.class);
+        final NetrShareEnumResponse response = mock(NetrShareEnumResponse.class);
+
+        when(transport.call((RequestCall<NetrShareEnumResponse>) any())).thenReturn(response);
+        when(response.getReturnValue()).thenReturn(SystemErrorCode.ERROR_MORE_DATA.getErrorCode());
+        when(response.getResumeHandle()).thenReturn(1);
+        when(response.getShares()).thenReturn(Lists.newArrayList(new NetShareInfo0("test1")));
+
+        final ServerService serverService = new ServerService(transport);
+        serverService.getShares(2, NetrShareEnumRequest.MAX_PREFERRED_LENGTH, new ServerService.ShareVisitor() {
+            @Override
+            public void visitShare(final NetShareInfo0 share)
+                throws IOException {
+                throw new IOException("stop");
+            }
+        });
+    }
+
+    @Test
+    public void getSharesPagedInvalidLevel()
+        throws IOException {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Level is invalid: 503");
+
+        final ServerService serverService = new ServerService(mock(RPCTransport.class));
+        serverService.getShares(503, 4096, mock(ServerService.ShareVisitor.class));
+    }
+
+    @Test
+    public void getSharesPagedInvalidPreferredMaximumLength()
+        throws IOException {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Preferred maximum length is invalid: 0");
+
+        final ServerService serverService = new ServerService(mock(RPCTransport.class));
+        serverService.getShares(2, 0, mock(ServerService.ShareVisitor.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void getSessions()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final NetrSessionEnumResponse response = mock(NetrSessionEnumResponse.class);
+        final List<NetSessionInfo0> visited = new ArrayList<>();
+        final NetSessionInfo10 session = new NetSessionInfo10("\\\\10.0.0.5", "alice", 30, 5);
+
+        when(transport.call((RequestCall<NetrSessionEnumResponse>) any())).thenReturn(response);
+        when(response.getReturnValue()).thenReturn(SystemErrorCode.ERROR_SUCCESS.getErrorCode());
+        when(response.getEntries()).thenReturn(Lists.<NetSessionInfo0>newArrayList(session));
+
+        final ServerService serverService = new ServerService(transport);
+        serverService.getSessions(null, null, 10, 4096, new ServerService.SessionVisitor() {
+            @Override
+            public void visitSession(final NetSessionInfo0 session) {
+                visited.add(session);
+            }
+        });
+
+        assertEquals(Lists.<NetSessionInfo0>newArrayList(session), visited);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void getSessionsAccessDenied()
+        throws IOException {
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("NetrSessionEnum returned error code: 5 (ERROR_ACCESS_DENIED)");
+
+        final RPCTransport transport = mock(RPCTransport.class);
+        final NetrSessionEnumResponse response = mock(NetrSessionEnumResponse.class);
+
+        when(transport.call((RequestCall<NetrSessionEnumResponse>) any())).thenReturn(response);
+        when(response.getReturnValue()).thenReturn(SystemErrorCode.ERROR_ACCESS_DENIED.getErrorCode());
+        when(response.getEntries()).thenReturn(new ArrayList<NetSessionInfo0>());
+
+        final ServerService serverService = new ServerService(transport);
+        serverService.getSessions(null, null, 0, 4096, mock(ServerService.SessionVisitor.class));
+    }
+
+    @Test
+    public void getSessionsInvalidLevel()
+        throws IOException {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Level is invalid: 502");
+
+        final ServerService serverService = new ServerService(mock(RPCTransport.class));
+        serverService.getSessions(null, null, 502, 4096, mock(ServerService.SessionVisitor.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void getConnectionsMoreDataEmpty()
+        throws IOException {
+        thrown.expect(TransportException.class);
+        thrown.expectMessage("NetrConnectionEnum connections empty.");
+
+        final RPCTransport transport = mock(RPCTransport.class);
+        final NetrConnectionEnumResponse response = mock(NetrConnectionEnumResponse.class);
+
+        when(transport.call((RequestCall<NetrConnectionEnumResponse>) any())).thenReturn(response);
+        when(response.getReturnValue()).thenReturn(SystemErrorCode.ERROR_MORE_DATA.getErrorCode());
+        when(response.getResumeHandle()).thenReturn(1);
+        when(response.getEntries()).thenReturn(new ArrayList<NetConnectionInfo0>());
+
+        final ServerService serverService = new ServerService(transport);
+        serverService.getConnections("IPC$", 0, 4096, mock(ServerService.ConnectionVisitor.class));
+    }
+
+    @Test
+    public void getConnectionsInvalidQualifier()
+        throws IOException {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Qualifier is invalid: null");
+
+        final ServerService serverService = new ServerService(mock(RPCTransport.class));
+        serverService.getConnections(null, 1, 4096, mock(ServerService.ConnectionVisitor.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void getOpenFilesPaged()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final NetrFileEnumResponse response = mock(NetrFileEnumResponse.class);
+        final List<NetFileInfo2> visited = new ArrayList<>();
+        final NetFileInfo3 file1 = new NetFileInfo3(1, 1, 0, "C:\\Data\\a.txt", "alice");
+        final NetFileInfo3 file2 = new NetFileInfo3(2, 3, 0, "C:\\Data\\b.txt", "bob");
+
+        when(transport.call((RequestCall<NetrFileEnumResponse>) any())).thenReturn(response);
+        when(response.getReturnValue()).thenReturn(SystemErrorCode.ERROR_MORE_DATA.getErrorCode())
+            .thenReturn(SystemErrorCode.ERROR_SUCCESS.getErrorCode());
+        when(response.getResumeHandle()).thenReturn(5);
+        when(response.getEntries()).thenReturn(Lists.<NetFileInfo2>newArrayList(file1))
+            .thenReturn(Lists.<NetFileInfo2>newArrayList(file2));
+
+        final ServerService serverService = new ServerService(transport);
+        serverService.getOpenFiles("C:\\Data", null, 3, 1024, new ServerService.FileVisitor() {
+            @Override
+            public void visitFile(final NetFileInfo2 file) {
+                visited.add(file);
+            }
+        });
+
+        assertEquals(Lists.<NetFileInfo2>newArrayList(file1, file2), visited);
+
+        final ArgumentCaptor<NetrFileEnumRequest> requests = ArgumentCaptor.forClass(NetrFileEnumRequest.class);
+        verify(transport, times(2)).call(requests.capture());
+        assertEquals(toHexString(new NetrFileEnumRequest("C:\\Data", null, 3, 5, 1024).getStub()),
+            toHexString(requests.getAllValues().get(1).getStub()));
+    }
+
+    @Test
+    public void getOpenFilesInvalidPreferredMaximumLength()
+        throws IOException {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Preferred maximum length is invalid: -2");
+
+        final ServerService serverService = new ServerService(mock(RPCTransport.class));
+        serverService.getOpenFiles(null, null, 2, -2, mock(ServerService.FileVisitor.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void getCanonicalizedNames()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final NetprPathCanonicalizeResponse response = mock(NetprPathCanonicalizeResponse.class);
+
+        when(transport.call((RequestCall<NetprPathCanonicalizeResponse>) any())).thenReturn(response);
+        when(response.getReturnCode()).thenReturn(SystemErrorCode.ERROR_SUCCESS.getErrorCode());
+        when(response.getCanonicalizedPath()).thenReturn("C:\\A").thenReturn("C:\\B").thenReturn("C:\\C");
+
+        final ServerService serverService = new ServerService(transport);
+        final Map<String, String> first =
+            serverService.getCanonicalizedNames(null, Arrays.asList("c:/a", "c:/b", "c:/a"), "", 256, 0, 0);
+        final Map<String, String> second =
+            serverService.getCanonicalizedNames(null, Arrays.asList("c:/b", "c:/c"), "", 256, 0, 0);
+
+        assertEquals(Arrays.asList("c:/a", "c:/b"), new ArrayList<>(first.keySet()));
+        assertEquals("C:\\A", first.get("c:/a"));
+        assertEquals("C:\\B", first.get("c:/b"));
+        assertEquals("C:\\B", second.get("c:/b"));
+        assertEquals("C:\\C", second.get("c:/c"));
+        assertEquals("C:\\A", serverService.getCanonicalizedName(null, "c:/a", "", 256, 0, 0));
+        verify(transport, times(3)).call((RequestCall<NetprPathCanonicalizeResponse>) any());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void getCanonicalizedNamesCacheKeyedByPathType()
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final NetprPathCanonicalizeResponse response = mock(NetprPathCanonicalizeResponse.class);
+
+        when(transport.call((RequestCall<NetprPathCanonicalizeResponse>) any())).thenReturn(response);
+        when(response.getReturnCode()).thenReturn(SystemErrorCode.ERROR_SUCCESS.getErrorCode());
+        when(response.getCanonicalizedPath()).thenReturn("C:\\A");
+
+        final ServerService serverService = new ServerService(transport);
+        serverService.getCanonicalizedNames(null, Arrays.asList("c:/a"), "", 256, 0, 0);
+        serverService.getCanonicalizedNames(null, Arrays.asList("c:/a"), "", 256, NetprPathType.ITYPE_PATH_ABSD.getid(),
+            0);
+        serverService.getCanonicalizedNames(null, Arrays.asList("c:/a"), "", 256, 0, 1);
+        serverService.getCanonicalizedNames(null, Arrays.asList("c:/a"), "", 2, 0, 0);
+
+        verify(transport, times(4)).call((RequestCall<NetprPathCanonicalizeResponse>) any());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void getCanonicalizedNamesInvalidName()
+        throws IOException {
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("NetprPathCanonicalize returned error code: 123 (ERROR_INVALID_NAME)");
+
+        final RPCTransport transport = mock(RPCTransport.class);
+        final NetprPathCanonicalizeResponse response = mock(NetprPathCanonicalizeResponse.class);
+
+        when(transport.call((RequestCall<NetprPathCanonicalizeResponse>) any())).thenReturn(response);
+        when(response.getReturnCode()).thenReturn(SystemErrorCode.ERROR_INVALID_NAME.getErrorCode());
+
+        final ServerService serverService = new ServerService(transport);
+        serverService.getCanonicalizedNames(null, Arrays.asList("c:/a?"), "", 256, 0, 0);
+    }
+
+    @Test
+    public void getCanonicalizedNamesInvalid()
+        throws IOException {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Path names are invalid: null");
+
+        final ServerService serverService = new ServerService(mock(RPCTransport.class));
+        serverService.getCanonicalizedNames(null, null, "", 256, 0, 0);
+    }
 }
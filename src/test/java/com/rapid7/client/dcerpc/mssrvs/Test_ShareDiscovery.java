@@ -0,0 +1,266 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mssrvs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import com.google.common.collect.Lists;
+import com.hierynomus.smbj.session.Session;
+import com.rapid7.client.dcerpc.RPCException;
+import com.rapid7.client.dcerpc.messages.RequestCall;
+import com.rapid7.client.dcerpc.mserref.SystemErrorCode;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetShareInfo0;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetShareInfo1;
+import com.rapid7.client.dcerpc.mssrvs.messages.NetrShareEnumResponse;
+import com.rapid7.client.dcerpc.transport.RPCTransport;
+
+public class Test_ShareDiscovery {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private final Map<String, ShareDiscoveryResult> results = new HashMap<>();
+    private final ShareDiscovery.Listener listener = new ShareDiscovery.Listener() {
+        @Override
+        public void hostDiscovered(final ShareDiscoveryResult result) {
+            results.put(result.getHost(), result);
+        }
+    };
+
+    @Test
+    public void discover()
+        throws IOException {
+        final ShareDiscovery.Connector connector = mock(ShareDiscovery.Connector.class);
+        final Session session = mock(Session.class);
+        final RPCTransport transport = newTransport(SystemErrorCode.ERROR_SUCCESS.getErrorCode());
+
+        when(connector.connect(anyString())).thenReturn(session);
+        when(connector.bind(session)).thenReturn(transport);
+
+        new ShareDiscovery(connector, 4, 2, 10, TimeUnit.SECONDS, 1)
+            .discover(Arrays.asList("10.0.0.1", "10.0.0.2", "host3", "10.0.0.1"), listener);
+
+        assertEquals(3, results.size());
+        for (final ShareDiscoveryResult result : results.values()) {
+            assertEquals(Lists.<NetShareInfo0>newArrayList(new NetShareInfo1("C$", 0, "Default share")),
+                result.getShares());
+            assertNull(result.getFailure());
+            assertEquals(1, result.getAttempts());
+            assertTrue(result.getConnectNanos() >= 0);
+            assertTrue(result.getBindNanos() >= 0);
+            assertTrue(result.getEnumerateNanos() >= 0);
+            assertTrue(result.getElapsedNanos() >= result.getEnumerateNanos());
+        }
+        verify(connector, times(3)).close(session);
+    }
+
+    @Test
+    public void discoverRetriesTransportFailure()
+        throws IOException {
+        final ShareDiscovery.Connector connector = mock(ShareDiscovery.Connector.class);
+        final Session session = mock(Session.class);
+        final RPCTransport transport = newTransport(SystemErrorCode.ERROR_SUCCESS.getErrorCode());
+
+        when(connector.connect("host1")).thenThrow(new IOException("reset")).thenReturn(session);
+        when(connector.bind(session)).thenReturn(transport);
+
+        new ShareDiscovery(connector, 1, 1, 10, TimeUnit.SECONDS, 2).discover(Collections.singleton("host1"), listener);
+
+        final ShareDiscoveryResult result = results.get("host1");
+        assertNull(result.getFailure());
+        assertEquals(2, result.getAttempts());
+        assertEquals(1, result.getShares().size());
+    }
+
+    @Test
+    public void discoverRetriesExhausted()
+        throws IOException {
+        final ShareDiscovery.Connector connector = mock(ShareDiscovery.Connector.class);
+
+        when(connector.connect("host1")).thenThrow(new IOException("reset"));
+
+        new ShareDiscovery(connector, 1, 1, 10, TimeUnit.SECONDS, 2).discover(Collections.singleton("host1"), listener);
+
+        final ShareDiscoveryResult result = results.get("host1");
+        assertEquals("reset", result.getFailure().getMessage());
+        assertNull(result.getShares());
+        assertEquals(3, result.getAttempts());
+        assertEquals(-1, result.getConnectNanos());
+    }
+
+    @Test
+    public void discoverDoesNotRetryRPCError()
+        throws IOException {
+        final ShareDiscovery.Connector connector = mock(ShareDiscovery.Connector.class);
+        final Session session = mock(Session.class);
+        final RPCTransport transport = newTransport(SystemErrorCode.ERROR_ACCESS_DENIED.getErrorCode());
+
+        when(connector.connect("host1")).thenReturn(session);
+        when(connector.bind(session)).thenReturn(transport);
+
+        new ShareDiscovery(connector, 1, 1, 10, TimeUnit.SECONDS, 2).discover(Collections.singleton("host1"), listener);
+
+        final ShareDiscoveryResult result = results.get("host1");
+        assertTrue(result.getFailure() instanceof RPCException);
+        assertEquals(1, result.getAttempts());
+        assertTrue(result.getConnectNanos() >= 0);
+        assertTrue(result.getBindNanos() >= 0);
+        assertEquals(-1, result.getEnumerateNanos());
+        verify(connector).close(session);
+    }
+
+    @Test
+    public void discoverTimeout()
+        throws IOException {
+        final ShareDiscovery.Connector connector = mock(ShareDiscovery.Connector.class);
+
+        when(connector.connect("host1")).thenAnswer(new Answer<Session>() {
+            @Override
+            public Session answer(final InvocationOnMock invocation)
+                throws InterruptedException {
+                Thread.sleep(10000);
+                return null;
+            }
+        });
+
+        new ShareDiscovery(connector, 1, 1, 50, TimeUnit.MILLISECONDS, 1)
+            .discover(Collections.singleton("host1"), listener);
+
+        final ShareDiscoveryResult result = results.get("host1");
+        assertTrue(result.getFailure() instanceof InterruptedIOException);
+        assertEquals("host1 timed out after 50 ms.", result.getFailure().getMessage());
+        assertEquals(2, result.getAttempts());
+    }
+
+    @Test
+    public void discoverSubnetConcurrency()
+        throws IOException {
+        final ShareDiscovery.Connector connector = mock(ShareDiscovery.Connector.class);
+        final Session session = mock(Session.class);
+        final RPCTransport transport = newTransport(SystemErrorCode.ERROR_SUCCESS.getErrorCode());
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+
+        when(connector.connect(anyString())).thenAnswer(new Answer<Session>() {
+            @Override
+            public Session answer(final InvocationOnMock invocation)
+                throws InterruptedException {
+                final int nowActive = active.incrementAndGet();
+                synchronized (maxActive) {
+                    maxActive.set(Math.max(maxActive.get(), nowActive));
+                }
+                Thread.sleep(20);
+                active.decrementAndGet();
+                return session;
+            }
+        });
+        when(connector.bind(session)).thenReturn(transport);
+
+        new ShareDiscovery(connector, 4, 1, 10, TimeUnit.SECONDS, 0)
+            .discover(Arrays.asList("10.0.0.1", "10.0.0.2", "10.0.0.3", "10.0.0.4"), listener);
+
+        assertEquals(4, results.size());
+        assertEquals(1, maxActive.get());
+    }
+
+    @Test
+    public void discoverListenerFails()
+        throws IOException {
+        thrown.expect(IOException.class);
+        thrown.expectMessage("stop");
+
+        final ShareDiscovery.Connector connector = mock(ShareDiscovery.Connector.class);
+        when(connector.connect(anyString())).thenThrow(new IOException("reset"));
+
+        new ShareDiscovery(connector, 1, 1, 10, TimeUnit.SECONDS, 0)
+            .discover(Arrays.asList("host1", "host2"), new ShareDiscovery.Listener() {
+                @Override
+                public void hostDiscovered(final ShareDiscoveryResult result) {
+                    throw new IllegalStateException("stop");
+                }
+            });
+    }
+
+    @Test
+    public void discoverInvalidHosts()
+        throws IOException {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Hosts are invalid: [host1, null]");
+
+        new ShareDiscovery(mock(ShareDiscovery.Connector.class), 1, 1, 10, TimeUnit.SECONDS, 0)
+            .discover(Arrays.asList("host1", null), listener);
+    }
+
+    @Test
+    public void invalidMaxConcurrency() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Maximum concurrency is invalid: 0");
+
+        new ShareDiscovery(mock(ShareDiscovery.Connector.class), 0, 1, 10, TimeUnit.SECONDS, 0);
+    }
+
+    @Test
+    public void getSubnet() {
+        assertEquals("0a0000/24", ShareDiscovery.getSubnet("10.0.0.1"));
+        assertEquals("0a0000/24", ShareDiscovery.getSubnet("10.0.0.254"));
+        assertEquals("20010db800000001/64", ShareDiscovery.getSubnet("2001:db8:0:1::5"));
+        assertEquals("host1.example.com", ShareDiscovery.getSubnet("HOST1.example.com"));
+    }
+
+    @Test
+    public void interleaveBySubnet() {
+        final List<String> hosts =
+            Arrays.asList("10.0.0.1", "10.0.0.2", "10.0.0.3", "10.0.1.1", "10.0.1.2", "host1", "10.0.0.1");
+        assertEquals(Arrays.asList("10.0.0.1", "10.0.1.1", "host1", "10.0.0.2", "10.0.1.2", "10.0.0.3"),
+            ShareDiscovery.interleaveBySubnet(new ArrayList<>(hosts)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private RPCTransport newTransport(final int returnValue)
+        throws IOException {
+        final RPCTransport transport = mock(RPCTransport.class);
+        final NetrShareEnumResponse response = mock(NetrShareEnumResponse.class);
+        when(transport.call((RequestCall<NetrShareEnumResponse>) any())).thenReturn(response);
+        when(response.getReturnValue()).thenReturn(returnValue);
+        when(response.getShares())
+            .thenReturn(Lists.<NetShareInfo0>newArrayList(new NetShareInfo1("C$", 0, "Default share")));
+        return transport;
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mssrvs.messages;
+
+import static org.bouncycastle.util.encoders.Hex.toHexString;
+import static org.junit.Assert.assertEquals;
+import java.io.IOException;
+import java.util.List;
+import org.junit.Test;
+import com.rapid7.client.dcerpc.mserref.SystemErrorCode;
+
+public class Test_NetrConnectionEnum {
+    private final NetrConnectionEnumRequest request =
+        new NetrConnectionEnumRequest("IPC$", 1, 7, NetrShareEnumRequest.MAX_PREFERRED_LENGTH);
+
+    @Test
+    public void getOpNum() {
+        assertEquals(8, request.getOpNum());
+    }
+
+    @Test
+    public void getStub()
+        throws IOException {
+        assertEquals(
+            "00000000000002000500000000000000050000004900500043002400000000000100000001000000040002000000000000000000ffffffff0800020007000000",
+            toHexString(request.getStub()));
+    }
+
+    @Test
+    public void unmarshalLevel1()
+        throws IOException {
+        final NetrConnectionEnumResponse response = request.getResponseObject();
+        response.fromHexString(
+            "0100000001000000000002000100000004000200010000000700000003000000020000000100000078000000080002000c00020006000000000000000600000061006c0069006300650000000b000000000000000b0000005c005c00310030002e0030002e0030002e00350000000000040000001000020001000000ea000000");
+
+        final List<NetConnectionInfo0> connections = response.getEntries();
+
+        assertEquals(1, response.getLevel());
+        assertEquals(1, connections.size());
+        assertEquals(new NetConnectionInfo1(7, 3, 2, 1, 120, "alice", "\\\\10.0.0.5"), connections.get(0));
+        assertEquals(4, response.getTotalEntries());
+        assertEquals(Integer.valueOf(1), response.getResumeHandle());
+        assertEquals(SystemErrorCode.ERROR_MORE_DATA.getErrorCode(), response.getReturnValue());
+    }
+}
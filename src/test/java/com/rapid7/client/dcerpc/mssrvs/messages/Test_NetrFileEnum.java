@@ -0,0 +1,74 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mssrvs.messages;
+
+import static org.bouncycastle.util.encoders.Hex.toHexString;
+import static org.junit.Assert.assertEquals;
+import java.io.IOException;
+import java.util.List;
+import org.junit.Test;
+import com.rapid7.client.dcerpc.mserref.SystemErrorCode;
+
+public class Test_NetrFileEnum {
+    private final NetrFileEnumRequest request = new NetrFileEnumRequest("C:\\Data", null, 3, 0, 8192);
+
+    @Test
+    public void getOpNum() {
+        assertEquals(9, request.getOpNum());
+    }
+
+    @Test
+    public void getStub()
+        throws IOException {
+        assertEquals(
+            "000000000000020008000000000000000800000043003a005c0044006100740061000000000000000300000003000000040002000000000000000000002000000800020000000000",
+            toHexString(request.getStub()));
+    }
+
+    @Test
+    public void unmarshalLevel2()
+        throws IOException {
+        final NetrFileEnumResponse response = request.getResponseObject();
+        response.fromHexString("020000000200000000000200030000000400020003000000010000000200000003000000030000000000000000000000");
+
+        final List<NetFileInfo2> files = response.getEntries();
+
+        assertEquals(2, response.getLevel());
+        assertEquals(3, files.size());
+        assertEquals(new NetFileInfo2(1), files.get(0));
+        assertEquals(new NetFileInfo2(2), files.get(1));
+        assertEquals(new NetFileInfo2(3), files.get(2));
+    }
+
+    @Test
+    public void unmarshalLevel3()
+        throws IOException {
+        final NetrFileEnumResponse response = request.getResponseObject();
+        response.fromHexString(
+            "030000000300000000000200020000000400020002000000010100000100000000000000080002000c00020002010000030000000200000010000200000000000e000000000000000e00000043003a005c0044006100740061005c0061002e00740078007400000006000000000000000600000061006c0069006300650000000e000000000000000e00000043003a005c0044006100740061005c0062002e007400780074000000020000000000000000000000");
+
+        final List<NetFileInfo2> files = response.getEntries();
+
+        assertEquals(3, response.getLevel());
+        assertEquals(2, files.size());
+        assertEquals(new NetFileInfo3(0x101, 1, 0, "C:\\Data\\a.txt", "alice"), files.get(0));
+        assertEquals(new NetFileInfo3(0x102, 3, 2, "C:\\Data\\b.txt", null), files.get(1));
+        assertEquals(SystemErrorCode.ERROR_SUCCESS.getErrorCode(), response.getReturnValue());
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.mssrvs.messages;
+
+import static org.bouncycastle.util.encoders.Hex.toHexString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.io.IOException;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import com.hierynomus.protocol.transport.TransportException;
+import com.rapid7.client.dcerpc.mserref.SystemErrorCode;
+
+public class Test_NetrSessionEnum {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private final NetrSessionEnumRequest request = new NetrSessionEnumRequest(null, "alice", 10, 0, 4096);
+
+    @Test
+    public void getOpNum() {
+        assertEquals(12, request.getOpNum());
+    }
+
+    @Test
+    public void getStub()
+        throws IOException {
+        assertEquals(
+            "00000000000000000000020006000000000000000600000061006c0069006300650000000a0000000a000000040002000000000000000000001000000800020000000000",
+            toHexString(request.getStub()));
+    }
+
+    @Test
+    public void unmarshalLevel10()
+        throws IOException {
+        final NetrSessionEnumResponse response = request.getResponseObject();
+        response.fromHexString(
+            "0a0000000a00000000000200020000000400020002000000080002000c0002001e0000000500000010000200000000003c000000000000000b000000000000000b0000005c005c00310030002e0030002e0030002e0035000000000006000000000000000600000041004c0049004300450000000b000000000000000b0000005c005c00310030002e0030002e0030002e00360000000000020000000000000000000000");
+
+        final List<NetSessionInfo0> sessions = response.getEntries();
+
+        assertEquals(10, response.getLevel());
+        assertEquals(2, sessions.size());
+        assertEquals(new NetSessionInfo10("\\\\10.0.0.5", "ALICE", 30, 5), sessions.get(0));
+        assertEquals(new NetSessionInfo10("\\\\10.0.0.6", null, 60, 0), sessions.get(1));
+        assertEquals(2, response.getTotalEntries());
+        assertNull(response.getResumeHandle());
+        assertEquals(SystemErrorCode.ERROR_SUCCESS.getErrorCode(), response.getReturnValue());
+    }
+
+    @Test
+    public void unmarshalNullContainer()
+        throws IOException {
+        final NetrSessionEnumResponse response = request.getResponseObject();
+        response.fromHexString("000000000000000000000000000000000000000000000000");
+
+        assertEquals(0, response.getEntries().size());
+        assertEquals(0, response.getTotalEntries());
+    }
+
+    @Test
+    public void unmarshalCountExceedsStub()
+        throws IOException {
+        thrown.expect(TransportException.class);
+        thrown.expectMessage("Invalid entry count: 2147483647");
+
+        final NetrSessionEnumResponse response = request.getResponseObject();
+        response.fromHexString("0a0000000a00000000000200ffffff7f04000200ffffff7f0000000000000000");
+    }
+
+    @Test
+    public void unmarshalUnsupportedLevel()
+        throws IOException {
+        thrown.expect(TransportException.class);
+        thrown.expectMessage("Unsupported session info container.");
+
+        final NetrSessionEnumResponse response = request.getResponseObject();
+        response.fromHexString("01000000010000000000020001000000040002000100000000000000");
+    }
+}
@@ -44,6 +44,14 @@ public class Test_NetrShareEnum {
             toHexString(request.getStub()));
     }
 
+    @Test
+    public void getStubPreferredMaximumLength()
+        throws IOException {
+        final NetrShareEnumRequest request = new NetrShareEnumRequest(2, 3, 4096);
+        assertEquals("000000000200000002000000000002000000000000000000001000000400020003000000",
+            toHexString(request.getStub()));
+    }
+
     @Test
     public void getResponseObject()
         throws IOException {
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2017, Rapid7, Inc.
+ *
+ * License: BSD-3-clause
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ */
+package com.rapid7.client.dcerpc.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class Test_PipeFanOut {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void constructorInvalidServices() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Services are invalid: []");
+
+        new PipeFanOut<>(Collections.<String>emptyList());
+    }
+
+    @Test
+    public void run()
+        throws IOException {
+        final Queue<Integer> queue = new ConcurrentLinkedQueue<>(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10));
+        final AtomicInteger sum = new AtomicInteger();
+        final Set<String> pipes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        new PipeFanOut<>(Arrays.asList("pipe1", "pipe2", "pipe3")).run(queue.size(), queue, "test-%d",
+            new PipeFanOut.Task<String>() {
+                @Override
+                public void run(final String service) {
+                    pipes.add(service);
+                    Integer item;
+                    while ((item = queue.poll()) != null) {
+                        sum.addAndGet(item);
+                    }
+                }
+            });
+
+        assertEquals(55, sum.get());
+        assertTrue(queue.isEmpty());
+        assertTrue(pipes.contains("pipe1"));
+    }
+
+    @Test
+    public void runBoundedByWorkItems()
+        throws IOException {
+        final List<String> pipes = Collections.synchronizedList(new ArrayList<String>());
+
+        new PipeFanOut<>(Arrays.asList("pipe1", "pipe2", "pipe3")).run(1, new ConcurrentLinkedQueue<>(), "test-%d",
+            new PipeFanOut.Task<String>() {
+                @Override
+                public void run(final String service) {
+                    pipes.add(service);
+                }
+            });
+
+        assertEquals(Arrays.asList("pipe1"), pipes);
+    }
+
+    @Test
+    public void runFailure()
+        throws IOException {
+        final Queue<Integer> queue = new ConcurrentLinkedQueue<>(Arrays.asList(1, 2, 3, 4));
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Pipe closed");
+
+        try {
+            new PipeFanOut<>(Arrays.asList("pipe1", "pipe2")).run(queue.size(), queue, "test-%d",
+                new PipeFanOut.Task<String>() {
+                    @Override
+                    public void run(final String service)
+                        throws IOException {
+                        if (service.equals("pipe2")) {
+                            throw new IOException("Pipe closed");
+                        }
+                    }
+                });
+        } finally {
+            // The queue is cleared so the other pipes stop.
+            assertTrue(queue.isEmpty());
+        }
+    }
+}
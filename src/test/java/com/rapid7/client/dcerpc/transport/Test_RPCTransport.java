@@ -23,6 +23,7 @@ import org.mockito.stubbing.Answer;
 import com.rapid7.client.dcerpc.Interface;
 import com.rapid7.client.dcerpc.PDUType;
 import com.rapid7.client.dcerpc.PFCFlag;
+import com.rapid7.client.dcerpc.RPCException;
 import com.rapid7.client.dcerpc.io.PacketInput;
 import com.rapid7.client.dcerpc.messages.BindRequest;
 import com.rapid7.client.dcerpc.messages.BindResponse;
@@ -162,6 +163,38 @@ public class Test_RPCTransport {
         verifyNoMoreInteractions(requestCall, requestResponse);
     }
 
+    @Test
+    public void callFault()
+        throws IOException {
+        final Response response = new Response();
+
+        response.setPDUType(PDUType.FAULT);
+        response.setPFCFlags(EnumSet.of(PFCFlag.FIRST_FRAGMENT, PFCFlag.LAST_FRAGMENT));
+        response.setStub(Hex.decode("0200011c00000000"));
+
+        final byte[] responseBytes = Hex.decode(response.toHexString());
+
+        final RPCTransport transport = new TestRPCTransport() {
+            @Override
+            public int transact(final byte[] packetOut, final byte[] packetIn)
+                throws IOException {
+                System.arraycopy(responseBytes, 0, packetIn, 0, responseBytes.length);
+                return responseBytes.length;
+            }
+        };
+
+        @SuppressWarnings("unchecked")
+        final RequestCall<RequestResponse> requestCall = mock(RequestCall.class);
+
+        when(requestCall.getOpNum()).thenReturn((short) 34);
+        when(requestCall.getStub()).thenReturn(new byte[0]);
+
+        thrown.expect(RPCException.class);
+        thrown.expectMessage("Request (opnum 34) returned error code: 469827586 (null)");
+
+        transport.call(requestCall);
+    }
+
     @Test
     public void callWithStub()
         throws IOException {
@@ -310,6 +343,56 @@ public class Test_RPCTransport {
         verifyNoMoreInteractions(requestCall, requestResponse);
     }
 
+    @Test
+    public void callWithFragmentedRequest()
+        throws IOException {
+        final byte[] stub = new byte[40];
+        for (int index = 0; index < stub.length; index++) {
+            stub[index] = (byte) index;
+        }
+        final Queue<byte[]> requests = new LinkedList<>();
+        final Response response = new Response();
+
+        response.setPFCFlags(EnumSet.of(PFCFlag.FIRST_FRAGMENT, PFCFlag.LAST_FRAGMENT));
+        response.setStub(new byte[] { 0x67, 0x45, 0x23, 0x01 });
+
+        final byte[] responseBytes = Hex.decode(response.toHexString());
+        final RPCTransport transport = new TestRPCTransport() {
+            @Override
+            public void write(final byte[] packetOut) {
+                requests.add(packetOut);
+            }
+
+            @Override
+            public int transact(final byte[] packetOut, final byte[] packetIn) {
+                requests.add(packetOut);
+                System.arraycopy(responseBytes, 0, packetIn, 0, responseBytes.length);
+                return responseBytes.length;
+            }
+        };
+        // Room for 16 octets of stub per fragment.
+        transport.setMaxRecvFrag(44);
+
+        @SuppressWarnings("unchecked")
+        final RequestCall<RequestResponse> requestCall = mock(RequestCall.class);
+        final RequestResponse requestResponse = mock(RequestResponse.class);
+
+        when(requestCall.getOpNum()).thenReturn((short) 1);
+        when(requestCall.getStub()).thenReturn(stub);
+        when(requestCall.getResponseObject()).thenReturn(requestResponse);
+
+        assertEquals(requestResponse, transport.call(requestCall));
+
+        assertEquals(3, requests.size());
+        // Fragment flags, fragment length, call ID 0, allocation hint of the remaining stub, and the stub fragment.
+        assertEquals("05000001100000002800000000000000" + "28000000" + "00000100" + "000102030405060708090a0b0c0d0e0f",
+            Hex.toHexString(requests.poll()));
+        assertEquals("05000000100000002800000000000000" + "18000000" + "00000100" + "101112131415161718191a1b1c1d1e1f",
+            Hex.toHexString(requests.poll()));
+        assertEquals("05000002100000002000000000000000" + "08000000" + "00000100" + "2021222324252627",
+            Hex.toHexString(requests.poll()));
+    }
+
     @Test
     public void getCallID() {
         final RPCTransport transport = new TestRPCTransport();